@@ -0,0 +1,95 @@
+package com.googlecode.hibernate.memcached.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.hibernate.memcached.codec.CompressionPolicy;
+
+/**
+ * Measures compressing and decompressing a serialized query result with the
+ * LZ4 {@link CompressionPolicy} and with gzip, as done by spymemcached for
+ * large values. The result is a list of entity states of the given length.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int rows;
+
+    private final CompressionPolicy policy = new CompressionPolicy(0, 0, null);
+
+    private byte[] value;
+    private byte[] lz4;
+    private byte[] gzip;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Object[]> result = new ArrayList<Object[]>(rows);
+        for (int i = 0; i < rows; i++) {
+            result.add(new Object[] {(long) i, "Jane " + i, "Doe", "jane.doe" + i + "@example.com", i % 5});
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(result);
+        out.close();
+        value = bytes.toByteArray();
+        lz4 = compressLz4();
+        gzip = compressGzip();
+    }
+
+    @Benchmark
+    public byte[] compressLz4() {
+        return policy.compress(value, 0, value.length);
+    }
+
+    @Benchmark
+    public byte[] decompressLz4() throws IOException {
+        return CompressionPolicy.decompress(lz4, 0, lz4.length);
+    }
+
+    @Benchmark
+    public byte[] compressGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length / 2);
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(value);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] decompressGzip() throws IOException {
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.length);
+        byte[] chunk = new byte[4096];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            out.write(chunk, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,164 @@
+package com.googlecode.hibernate.memcached.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+import com.googlecode.hibernate.memcached.client.CasValue;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClientFactory;
+import com.googlecode.hibernate.memcached.concurrent.ImmediateFuture;
+
+/**
+ * A {@link HibernateMemcachedClient} that keeps values in a
+ * {@link ConcurrentHashMap}, so that benchmarks measure the library rather
+ * than the network. Values are stored by reference, not serialized, and never
+ * expire. CAS ids are the identity hash codes of the stored values.
+ */
+public class InMemoryMemcachedClient implements HibernateMemcachedClient {
+
+    private final ConcurrentMap<String, Object> cache = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * A {@link HibernateMemcachedClientFactory} for the
+     * <code>hibernate.memcached.memcacheClientFactory</code> property.
+     */
+    public static class Factory implements HibernateMemcachedClientFactory {
+
+        public Factory(Properties properties) {
+        }
+
+        @Override
+        public HibernateMemcachedClient createMemcacheClient() {
+            return new InMemoryMemcachedClient();
+        }
+    }
+
+    @Override
+    public Object get(String key) {
+        return cache.get(key);
+    }
+
+    @Override
+    public Map<String, Object> getMulti(String... keys) {
+        Map<String, Object> result = new HashMap<String, Object>(keys.length * 2);
+        for (String key : keys) {
+            Object value = cache.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public CasValue gets(String key) {
+        Object value = cache.get(key);
+        return value == null ? null : new CasValue(System.identityHashCode(value), value);
+    }
+
+    @Override
+    public boolean cas(String key, long casId, int cacheTimeSeconds, Object o) {
+        Object value = cache.get(key);
+        return value != null && System.identityHashCode(value) == casId && cache.replace(key, value, o);
+    }
+
+    @Override
+    public boolean set(String key, int cacheTimeSeconds, Object o) {
+        cache.put(key, o);
+        return true;
+    }
+
+    @Override
+    public boolean add(String key, int exp, Object o) {
+        return cache.putIfAbsent(key, o) == null;
+    }
+
+    @Override
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds) {
+        cache.putAll(values);
+        return true;
+    }
+
+    @Override
+    public boolean delete(String key) {
+        return cache.remove(key) != null;
+    }
+
+    @Override
+    public boolean deleteMulti(String... keys) {
+        for (String key : keys) {
+            cache.remove(key);
+        }
+        return true;
+    }
+
+    @Override
+    public long incr(String key, long factor, long startingValue) {
+        while (true) {
+            Object value = cache.get(key);
+            if (value == null) {
+                if (cache.putIfAbsent(key, startingValue) == null) {
+                    return startingValue;
+                }
+            } else if (cache.replace(key, value, (Long) value + factor)) {
+                return (Long) value + factor;
+            }
+        }
+    }
+
+    @Override
+    public long decr(String key, long by, long startingValue) {
+        while (true) {
+            Object value = cache.get(key);
+            if (value == null) {
+                if (cache.putIfAbsent(key, startingValue) == null) {
+                    return startingValue;
+                }
+            } else {
+                long decremented = Math.max(0, (Long) value - by);
+                if (cache.replace(key, value, decremented)) {
+                    return decremented;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Future<Object> getAsync(String key) {
+        return new ImmediateFuture<Object>(get(key));
+    }
+
+    @Override
+    public Future<Map<String, Object>> getMultiAsync(String... keys) {
+        return new ImmediateFuture<Map<String, Object>>(getMulti(keys));
+    }
+
+    @Override
+    public Future<Boolean> setAsync(String key, int cacheTimeSeconds, Object o) {
+        return new ImmediateFuture<Boolean>(set(key, cacheTimeSeconds, o));
+    }
+
+    @Override
+    public Future<Boolean> addAsync(String key, int exp, Object o) {
+        return new ImmediateFuture<Boolean>(add(key, exp, o));
+    }
+
+    @Override
+    public Future<Boolean> deleteAsync(String key) {
+        return new ImmediateFuture<Boolean>(delete(key));
+    }
+
+    @Override
+    public Future<Long> incrAsync(String key, long factor, long startingValue) {
+        return new ImmediateFuture<Long>(incr(key, factor, startingValue));
+    }
+
+    @Override
+    public void shutdown() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,113 @@
+package com.googlecode.hibernate.memcached.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.hibernate.memcached.strategy.key.KeyBuilder;
+import com.googlecode.hibernate.memcached.strategy.key.encoding.HybridKeyEncodingStrategy;
+import com.googlecode.hibernate.memcached.strategy.key.encoding.Md5KeyEncodingStrategy;
+import com.googlecode.hibernate.memcached.strategy.key.encoding.Murmur3KeyEncodingStrategy;
+import com.googlecode.hibernate.memcached.strategy.key.encoding.NestedKeyEncodingStrategy;
+import com.googlecode.hibernate.memcached.strategy.key.encoding.Sha1KeyEncodingStrategy;
+import com.googlecode.hibernate.memcached.strategy.key.encoding.ValidMemcachedKeyEncodingStrategy;
+import com.googlecode.hibernate.memcached.utils.StringUtils;
+
+/**
+ * Measures building a full key (<code>region:clearIndex:key</code>) and
+ * encoding it with each of the key encoding strategies.
+ * <p>
+ * <code>joinAndNested</code> builds keys the way the region clients used to,
+ * <code>keyBuilder</code> the way they do now, from a precomputed prefix.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyBenchmark {
+
+    @Param({"com.example.Contact#12345", "com.example.Contact#some-much-longer-natural-id-with-spaces and punctuation"})
+    public String key;
+
+    private final String region = "com.example.Contact";
+    private final long clearIndex = 42;
+    private String fullKey;
+
+    private final Sha1KeyEncodingStrategy sha1 = new Sha1KeyEncodingStrategy();
+    private final Md5KeyEncodingStrategy md5 = new Md5KeyEncodingStrategy();
+    private final Murmur3KeyEncodingStrategy murmur3 = new Murmur3KeyEncodingStrategy();
+    private final HybridKeyEncodingStrategy hybrid = new HybridKeyEncodingStrategy();
+    private final ValidMemcachedKeyEncodingStrategy valid = new ValidMemcachedKeyEncodingStrategy();
+    private final NestedKeyEncodingStrategy nested = new NestedKeyEncodingStrategy();
+    private KeyBuilder keyBuilder;
+
+    @Setup
+    public void setUp() {
+        fullKey = StringUtils.join(":", region, clearIndex, key);
+        nested.addStrategy(new ValidMemcachedKeyEncodingStrategy());
+        nested.addStrategy(new Sha1KeyEncodingStrategy());
+        keyBuilder = new KeyBuilder(region, ":", clearIndex, nested);
+    }
+
+    @Benchmark
+    public String join() {
+        return StringUtils.join(":", region, clearIndex, key);
+    }
+
+    @Benchmark
+    public String sha1() {
+        return sha1.encode(fullKey);
+    }
+
+    @Benchmark
+    public String md5() {
+        return md5.encode(fullKey);
+    }
+
+    @Benchmark
+    public String murmur3() {
+        return murmur3.encode(fullKey);
+    }
+
+    @Benchmark
+    public String hybrid() {
+        return hybrid.encode(fullKey);
+    }
+
+    @Benchmark
+    public String valid() {
+        return valid.encode(fullKey);
+    }
+
+    @Benchmark
+    public String nested() {
+        return nested.encode(fullKey);
+    }
+
+    @Benchmark
+    public String joinAndSha1() {
+        return sha1.encode(StringUtils.join(":", region, clearIndex, key));
+    }
+
+    @Benchmark
+    public String joinAndNested() {
+        return nested.encode(StringUtils.join(":", region, clearIndex, key));
+    }
+
+    @Benchmark
+    public String keyBuilder() {
+        return keyBuilder.build(key);
+    }
+}
@@ -0,0 +1,98 @@
+package com.googlecode.hibernate.memcached.benchmark;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.cache.internal.CacheDataDescriptionImpl;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionFactory;
+import com.googlecode.hibernate.memcached.region.MemcachedEntityRegion;
+import com.googlecode.hibernate.memcached.strategy.AbstractReadWriteMemcachedAccessStrategy;
+
+/**
+ * Measures the read and write paths of the read/write entity access
+ * strategies against an {@link InMemoryMemcachedClient}: key locking
+ * ({@link AbstractReadWriteMemcachedAccessStrategy}) and, for comparison,
+ * CAS.
+ * <p>
+ * The write paths are the ones Hibernate takes after loading an entity that
+ * was not cached (evicted here before every load), and for an update: lock
+ * the item, then write the new value and release the lock.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadWriteStrategyBenchmark {
+
+    @Param({"false", "true"})
+    public boolean casReadWrite;
+
+    private MemcachedRegionFactory regionFactory;
+    private EntityRegionAccessStrategy strategy;
+    private Object value;
+    private Long key = 1L;
+    private Long missingKey = 2L;
+    private long txTimestamp;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.memcached.memcacheClientFactory", InMemoryMemcachedClient.Factory.class.getName());
+        properties.setProperty("hibernate.memcached.casReadWrite", String.valueOf(casReadWrite));
+        regionFactory = new MemcachedRegionFactory();
+        regionFactory.start(null, properties);
+        MemcachedEntityRegion region = (MemcachedEntityRegion) regionFactory.buildEntityRegion(
+                "com.example.Contact", properties, new CacheDataDescriptionImpl(true, false, null));
+        strategy = region.buildAccessStrategy(AccessType.READ_WRITE);
+
+        value = new Object[] {1L, "Jane", "Doe", "jane.doe@example.com"};
+        strategy.putFromLoad(key, value, region.nextTimestamp(), null, false);
+        // items are only readable by transactions started after they were written
+        txTimestamp = region.nextTimestamp() + 1;
+    }
+
+    @TearDown
+    public void tearDown() {
+        regionFactory.stop();
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return strategy.get(key, txTimestamp);
+    }
+
+    @Benchmark
+    public Object getMiss() {
+        return strategy.get(missingKey, txTimestamp);
+    }
+
+    @Benchmark
+    public boolean putFromLoad() {
+        strategy.evict(missingKey);
+        return strategy.putFromLoad(missingKey, value, txTimestamp, null, false);
+    }
+
+    @Benchmark
+    public boolean update() {
+        SoftLock lock = strategy.lockItem(key, null);
+        return strategy.afterUpdate(key, value, null, null, lock);
+    }
+}
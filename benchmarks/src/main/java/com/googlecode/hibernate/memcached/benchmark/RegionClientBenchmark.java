@@ -0,0 +1,92 @@
+package com.googlecode.hibernate.memcached.benchmark;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.cache.internal.CacheDataDescriptionImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionFactory;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedRegionClient;
+import com.googlecode.hibernate.memcached.region.MemcachedEntityRegion;
+
+/**
+ * Measures {@link HibernateMemcachedRegionClient} reads against an
+ * {@link InMemoryMemcachedClient}, without dogpile prevention and in both
+ * dogpile prevention modes. The client is built by a
+ * {@link MemcachedRegionFactory}, so it is wired as in production.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegionClientBenchmark {
+
+    private static final int KEYS = 20;
+
+    @Param({"NONE", "TOKEN", "ENVELOPE"})
+    public String dogpilePrevention;
+
+    private MemcachedRegionFactory regionFactory;
+    private HibernateMemcachedClient client;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.memcached.memcacheClientFactory", InMemoryMemcachedClient.Factory.class.getName());
+        if (!"NONE".equals(dogpilePrevention)) {
+            properties.setProperty("hibernate.memcached.dogpilePrevention", "true");
+            properties.setProperty("hibernate.memcached.dogpilePrevention.mode", dogpilePrevention);
+        }
+        regionFactory = new MemcachedRegionFactory();
+        regionFactory.start(null, properties);
+        MemcachedEntityRegion region = (MemcachedEntityRegion) regionFactory.buildEntityRegion(
+                "com.example.Contact", properties, new CacheDataDescriptionImpl(true, false, null));
+        client = region.createComponentFactory().createMemcacheClient();
+
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "com.example.Contact#" + i;
+            // every other key is a miss
+            if (i % 2 == 0) {
+                client.set(keys[i], 300, new Object[] {(long) i, "Jane", "Doe"});
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        regionFactory.stop();
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return client.get(keys[0]);
+    }
+
+    @Benchmark
+    public Object getMiss() {
+        return client.get(keys[1]);
+    }
+
+    @Benchmark
+    public Map<String, Object> getMulti() {
+        return client.getMulti(keys);
+    }
+}
@@ -0,0 +1,124 @@
+package com.googlecode.hibernate.memcached.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Constructor;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.hibernate.memcached.codec.JavaValueSerializer;
+import com.googlecode.hibernate.memcached.concurrent.MonotonicTimestamper;
+import com.googlecode.hibernate.memcached.strategy.Item;
+import com.googlecode.hibernate.memcached.strategy.Lock;
+import com.googlecode.hibernate.memcached.strategy.LockableCodec;
+
+/**
+ * Measures Java serialization of the {@link Item} and {@link Lock} wrappers
+ * stored by the read/write access strategies, as done by the Memcached
+ * clients on every write and read, and the same with the compact
+ * {@link LockableCodec}. The wrapped value is a small array, as Hibernate
+ * caches the disassembled state of an entity.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private Item item;
+    private Lock lock;
+    private byte[] itemBytes;
+    private byte[] lockBytes;
+
+    private final LockableCodec codec = new LockableCodec(new JavaValueSerializer());
+    private byte[] encodedItem;
+    private byte[] encodedLock;
+
+    @Setup
+    public void setUp() throws Exception {
+        Object[] state = {12345L, "Jane", "Doe", "jane.doe@example.com", 3};
+        // Items are only created by the access strategies
+        Constructor<Item> constructor = Item.class.getDeclaredConstructor(Object.class, Object.class, long.class);
+        constructor.setAccessible(true);
+        MonotonicTimestamper timestamper = new MonotonicTimestamper();
+        item = constructor.newInstance(state, 7, timestamper.next());
+        lock = new Lock(timestamper.next() + timestamper.fromMillis(60000), UUID.randomUUID(), 1, 7);
+        itemBytes = serialize(item);
+        lockBytes = serialize(lock);
+        encodedItem = codec.encode(item);
+        encodedLock = codec.encode(lock);
+    }
+
+    @Benchmark
+    public byte[] serializeItem() throws IOException {
+        return serialize(item);
+    }
+
+    @Benchmark
+    public Object deserializeItem() throws Exception {
+        return deserialize(itemBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeLock() throws IOException {
+        return serialize(lock);
+    }
+
+    @Benchmark
+    public Object deserializeLock() throws Exception {
+        return deserialize(lockBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeItem() throws IOException {
+        return codec.encode(item);
+    }
+
+    @Benchmark
+    public Object decodeItem() throws IOException {
+        return codec.decode(encodedItem, 0, encodedItem.length);
+    }
+
+    @Benchmark
+    public byte[] encodeLock() throws IOException {
+        return codec.encode(lock);
+    }
+
+    @Benchmark
+    public Object decodeLock() throws IOException {
+        return codec.decode(encodedLock, 0, encodedLock.length);
+    }
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(o);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+}
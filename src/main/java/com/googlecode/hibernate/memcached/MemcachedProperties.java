@@ -5,8 +5,15 @@ import java.util.Properties;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClientFactory;
 import com.googlecode.hibernate.memcached.client.spymemcached.SpyMemcacheClientFactory;
+import com.googlecode.hibernate.memcached.codec.JavaValueSerializer;
+import com.googlecode.hibernate.memcached.codec.ValueSerializer;
 import com.googlecode.hibernate.memcached.strategy.key.KeyStrategy;
 import com.googlecode.hibernate.memcached.strategy.key.ToStringKeyStrategy;
+import com.googlecode.hibernate.memcached.client.dogpile.DogpilePreventionMode;
+import com.googlecode.hibernate.memcached.concurrent.MonotonicTimestamper;
+import com.googlecode.hibernate.memcached.concurrent.Timestamper;
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockProviderType;
+import com.googlecode.hibernate.memcached.strategy.LockableCodec;
 import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrategy;
 import com.googlecode.hibernate.memcached.strategy.key.encoding.Sha1KeyEncodingStrategy;
 import com.googlecode.hibernate.memcached.utils.PropertiesUtils;
@@ -24,7 +31,8 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * <td>hibernate.memcached.memcacheClientFactory</td>
  * <td>{@link com.googlecode.hibernate.memcached.client.spymemcached.SpyMemcacheClientFactory}</td>
  * <td>The {@link HibernateMemcachedClientFactory} used to create {@link HibernateMemcachedClient}s.
- * (e.g. {@link SpyMemcacheClientFactory} or {@link DangaMemcacheClientFactor})</td>
+ * (e.g. {@link SpyMemcacheClientFactory}, {@link DangaMemcacheClientFactor} or
+ * {@link com.googlecode.hibernate.memcached.client.nio.NioMemcacheClientFactory})</td>
  * </tr>
  * <tr>
  * <td>hibernate.memcached.readLockPrefix</td>
@@ -63,6 +71,78 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * <td><code>true</code> if region level clearing is supported, <code>false</code> otherwise.</td>
  * </tr>
  * <tr>
+ * <td>hibernate.memcached.clearIndexMaxStalenessMillis</td>
+ * <td>1000</td>
+ * <td>The maximum age, in milliseconds, of a locally cached region clear index. Clear indices are
+ * refreshed in the background at half this interval. Set to 0 to read the clear index from Memcached
+ * on every operation. This is a cache-wide property only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.batching</td>
+ * <td>false</td>
+ * <td><code>true</code> if concurrent single key gets should be sent to Memcached as one multi get. This is a cache-wide property only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.batching.windowMicros</td>
+ * <td>50</td>
+ * <td>The time, in microseconds, a batch of gets is kept open. This is a cache-wide property only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.batching.maxSize</td>
+ * <td>64</td>
+ * <td>The number of gets after which a batch is sent without waiting. This is a cache-wide property only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.circuitBreaker</td>
+ * <td>false</td>
+ * <td><code>true</code> if requests to a failing server should fail fast (reads miss, writes are skipped) instead of
+ * waiting for the operation timeout. This is a cache-wide property only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.circuitBreaker.failureThreshold</td>
+ * <td>5</td>
+ * <td>The number of consecutive failures after which requests to a server fail fast. This is a cache-wide property
+ * only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.circuitBreaker.openMillis</td>
+ * <td>5000</td>
+ * <td>The time, in milliseconds, requests to a failing server fail fast before a trial request is sent. This is a
+ * cache-wide property only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.circuitBreaker.slowCallMillis</td>
+ * <td>0</td>
+ * <td>The time, in milliseconds, after which a successful request counts as a failure. A slow multi key request
+ * counts as a failure of each of its servers. Set to 0 to only count failed requests. This is a cache-wide property
+ * only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.circuitBreaker.logIntervalMillis</td>
+ * <td>10000</td>
+ * <td>The minimum time, in milliseconds, between two logged request failures. This is a cache-wide property
+ * only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.statistics</td>
+ * <td>false</td>
+ * <td><code>true</code> if hit, miss, latency and lock statistics should be recorded per region and registered as
+ * JMX MBeans. They are also recorded if Hibernate statistics are enabled. This is a cache-wide property only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.compactEntries</td>
+ * <td>false</td>
+ * <td><code>true</code> if read-write entries, locks and dogpile envelopes should be stored in the binary layout of
+ * {@link LockableCodec} instead of being Java serialized. Used by the spymemcached and nio clients. Entries in
+ * either layout are always read, so enable this only once no node that cannot read the compact layout shares the
+ * cache. This is a cache-wide property only.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.valueSerializer</td>
+ * <td>{@link com.googlecode.hibernate.memcached.codec.JavaValueSerializer}</td>
+ * <td>The {@link ValueSerializer} used for the values of compact entries. This is a cache-wide property only.</td>
+ * </tr>
+ * <tr>
  * <td>hibernate.memcached.dogpilePrevention</td>
  * <td>false</td>
  * <td><code>true</code> if dogpile prevention is supported, <code>false</code> otherwise.</td>
@@ -73,6 +153,111 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * <td>The factor by which cache time should be multiplied when dogpile prevention is enabled.</td>
  * </tr>
  * <tr>
+ * <td>hibernate.memcached.dogpilePrevention.mode</td>
+ * <td>TOKEN</td>
+ * <td>How dogpiles are prevented. <b>Note:</b> Must be a {@link DogpilePreventionMode}. ENVELOPE stores one item per value instead of two.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.dogpilePrevention.beta</td>
+ * <td>1.0</td>
+ * <td>How early values are refreshed in ENVELOPE mode. Values above 1 favour earlier refreshes.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.casReadWrite</td>
+ * <td>false</td>
+ * <td><code>true</code> if read/write regions should use CAS instead of key locks, <code>false</code> otherwise. Clients without CAS support fall back to key locks.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.keyLockProvider</td>
+ * <td>UNBLOCKED_READ_BLOCKED_WRITE</td>
+ * <td>The kind of key locks used by read/write regions. <b>Note:</b> Must be a {@link KeyLockProviderType}. LOCAL locks are only safe if a single JVM writes to the region.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.keyLock.spinAttempts</td>
+ * <td>2</td>
+ * <td>The number of times a contended key lock is retried immediately, before backing off.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.keyLock.initialBackoffMillis</td>
+ * <td>5</td>
+ * <td>The first sleep, in milliseconds, between retries of a contended key lock. It doubles on every retry.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.keyLock.maxBackoffMillis</td>
+ * <td>200</td>
+ * <td>The longest sleep, in milliseconds, between retries of a contended key lock.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.keyLock.maxWaitMillis</td>
+ * <td>1000</td>
+ * <td>The time, in milliseconds, after which acquiring a key lock gives up. The operation then misses the cache or skips the cache write.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.keyLock.timeoutSeconds</td>
+ * <td>10</td>
+ * <td>The number of seconds a key lock is held at most, e.g. if its holder crashed.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.keyLock.localStripes</td>
+ * <td>64</td>
+ * <td>The number of JVM local locks that writers take before they ask Memcached for a key lock, so that only one thread per JVM polls Memcached for a key. 0 disables the local locks.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.singleFlight</td>
+ * <td>false</td>
+ * <td><code>true</code> if concurrent reads of the same key within a JVM should share one request to Memcached, <code>false</code> otherwise.
+ * The threads share the returned <code>Object</code>, so {@link org.hibernate.cache.spi.access.AccessType#READ_WRITE} regions, which modify their entries in place, never use it.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.nearCache</td>
+ * <td>false</td>
+ * <td><code>true</code> if regions should keep recently read <code>Object</code>s in a local in-JVM cache, <code>false</code> otherwise.
+ * The timestamps region and {@link org.hibernate.cache.spi.access.AccessType#READ_WRITE} regions never use a near cache.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.nearCache.maxEntries</td>
+ * <td>10000</td>
+ * <td>The maximum number of entries in a region's near cache.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.nearCache.maxBytes</td>
+ * <td>16777216</td>
+ * <td>The maximum estimated size, in bytes, of a region's near cache.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.nearCache.timeToLiveMillis</td>
+ * <td>1000</td>
+ * <td>The number of milliseconds a near cache entry is used before it is read from Memcached again.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.compression</td>
+ * <td>false</td>
+ * <td><code>true</code> if regions should store large values compressed with LZ4, <code>false</code> otherwise.
+ * Only the spymemcached and nio clients compress values.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.compression.minBytes</td>
+ * <td>1024</td>
+ * <td>The size, in bytes, below which values are stored uncompressed.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.compression.minSavingsPercent</td>
+ * <td>10</td>
+ * <td>The percentage of its size that compressing a value must save for the value to be stored compressed.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.chunking</td>
+ * <td>false</td>
+ * <td><code>true</code> if regions should split values too large for a single Memcached item into chunks,
+ * <code>false</code> otherwise. Deletes in a chunking region read the value first, to delete its chunks.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.chunking.chunkBytes</td>
+ * <td>1000000</td>
+ * <td>The largest number of serialized bytes of a value stored in a single item. Must leave room for the key and
+ * item header below the server's item size limit (1MB by default).</td>
+ * </tr>
+ * <tr>
  * <td>hibernate.memcached.keyStrategy</td>
  * <td>{@link com.googlecode.hibernate.memcached.strategy.key.ToStringKeyStrategy}</td>
  * <td>The {@link KeyStrategy} used to turn a key <code>Object</code> into a key <code>String</code>.</td>
@@ -82,6 +267,11 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * <td>{@link com.googlecode.hibernate.memcached.strategy.key.encoding.Sha1KeyEncodingStrategy}</td>
  * <td>The {@link KeyEncodingStrategy} used to encode the full key <code>String</code>.</td>
  * </tr>
+ * <tr>
+ * <td>hibernate.memcached.timestamper</td>
+ * <td>{@link MonotonicTimestamper}</td>
+ * <td>The {@link Timestamper} of transaction and item timestamps. Also sets the units of lock timeouts.</td>
+ * </tr>
  * </table>
  * 
  * @see PropertiesUtils
@@ -104,10 +294,43 @@ public class MemcachedProperties extends Properties {
 
     protected static final String CACHE_TIME_SECONDS = "cacheTimeSeconds";
     protected static final String CLEAR_SUPPORTED = "clearSupported";
+    protected static final String CLEAR_INDEX_MAX_STALENESS_MILLIS = "clearIndexMaxStalenessMillis";
+    protected static final String BATCHING = "batching";
+    protected static final String BATCHING_WINDOW_MICROS = "batching.windowMicros";
+    protected static final String BATCHING_MAX_SIZE = "batching.maxSize";
+    protected static final String CIRCUIT_BREAKER = "circuitBreaker";
+    protected static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD = "circuitBreaker.failureThreshold";
+    protected static final String CIRCUIT_BREAKER_OPEN_MILLIS = "circuitBreaker.openMillis";
+    protected static final String CIRCUIT_BREAKER_SLOW_CALL_MILLIS = "circuitBreaker.slowCallMillis";
+    protected static final String CIRCUIT_BREAKER_LOG_INTERVAL_MILLIS = "circuitBreaker.logIntervalMillis";
+    protected static final String STATISTICS = "statistics";
+    protected static final String COMPACT_ENTRIES = "compactEntries";
+    protected static final String VALUE_SERIALIZER = "valueSerializer";
     protected static final String DOGPILE_PREVENTION = "dogpilePrevention";
     protected static final String DOGPILE_PREVENTION_EXPIRATION_FACTOR = "dogpilePrevention.expirationFactor";
+    protected static final String DOGPILE_PREVENTION_MODE = "dogpilePrevention.mode";
+    protected static final String DOGPILE_PREVENTION_BETA = "dogpilePrevention.beta";
+    protected static final String CAS_READ_WRITE = "casReadWrite";
+    protected static final String KEY_LOCK_PROVIDER = "keyLockProvider";
+    protected static final String KEY_LOCK_SPIN_ATTEMPTS = "keyLock.spinAttempts";
+    protected static final String KEY_LOCK_INITIAL_BACKOFF_MILLIS = "keyLock.initialBackoffMillis";
+    protected static final String KEY_LOCK_MAX_BACKOFF_MILLIS = "keyLock.maxBackoffMillis";
+    protected static final String KEY_LOCK_MAX_WAIT_MILLIS = "keyLock.maxWaitMillis";
+    protected static final String KEY_LOCK_TIMEOUT_SECONDS = "keyLock.timeoutSeconds";
+    protected static final String KEY_LOCK_LOCAL_STRIPES = "keyLock.localStripes";
+    protected static final String SINGLE_FLIGHT = "singleFlight";
+    protected static final String NEAR_CACHE = "nearCache";
+    protected static final String NEAR_CACHE_MAX_ENTRIES = "nearCache.maxEntries";
+    protected static final String NEAR_CACHE_MAX_BYTES = "nearCache.maxBytes";
+    protected static final String NEAR_CACHE_TIME_TO_LIVE_MILLIS = "nearCache.timeToLiveMillis";
+    protected static final String COMPRESSION = "compression";
+    protected static final String COMPRESSION_MIN_BYTES = "compression.minBytes";
+    protected static final String COMPRESSION_MIN_SAVINGS_PERCENT = "compression.minSavingsPercent";
+    protected static final String CHUNKING = "chunking";
+    protected static final String CHUNKING_CHUNK_BYTES = "chunking.chunkBytes";
     protected static final String KEY_STRATEGY = "keyStrategy";
     protected static final String KEY_ENCODING_STRATEGY = "keyEncodingStrategy";
+    protected static final String TIMESTAMPER = "timestamper";
     
     // Defaults
     protected static final String DEFAULT_MEMCACHE_CLIENT_FACTORY_NAME = SpyMemcacheClientFactory.class.getName();
@@ -120,10 +343,42 @@ public class MemcachedProperties extends Properties {
     
     protected static final int DEFAULT_CACHE_TIME_SECONDS = 300;
     protected static final boolean DEFAULT_CLEAR_SUPPORTED = false;
+    protected static final long DEFAULT_CLEAR_INDEX_MAX_STALENESS_MILLIS = 1000;
+    protected static final boolean DEFAULT_BATCHING = false;
+    protected static final long DEFAULT_BATCHING_WINDOW_MICROS = 50;
+    protected static final int DEFAULT_BATCHING_MAX_SIZE = 64;
+    protected static final boolean DEFAULT_CIRCUIT_BREAKER = false;
+    protected static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    protected static final long DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS = 5000;
+    protected static final long DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_MILLIS = 0;
+    protected static final long DEFAULT_CIRCUIT_BREAKER_LOG_INTERVAL_MILLIS = 10000;
+    protected static final boolean DEFAULT_STATISTICS = false;
+    protected static final boolean DEFAULT_COMPACT_ENTRIES = false;
     protected static final boolean DEFAULT_DOGPILE_PREVENTION = false;
     protected static final KeyStrategy DEFAULT_KEY_STRATEGY = new ToStringKeyStrategy();
     protected static final KeyEncodingStrategy DEFAULT_KEY_ENCODING_STRATEGY = new Sha1KeyEncodingStrategy();
+    protected static final Timestamper DEFAULT_TIMESTAMPER = new MonotonicTimestamper();
     protected static final int DEFAULT_DOGPILE_EXPIRATION_FACTOR = 2;
+    protected static final DogpilePreventionMode DEFAULT_DOGPILE_PREVENTION_MODE = DogpilePreventionMode.TOKEN;
+    protected static final double DEFAULT_DOGPILE_PREVENTION_BETA = 1.0;
+    protected static final boolean DEFAULT_CAS_READ_WRITE = false;
+    protected static final KeyLockProviderType DEFAULT_KEY_LOCK_PROVIDER = KeyLockProviderType.UNBLOCKED_READ_BLOCKED_WRITE;
+    protected static final int DEFAULT_KEY_LOCK_SPIN_ATTEMPTS = 2;
+    protected static final long DEFAULT_KEY_LOCK_INITIAL_BACKOFF_MILLIS = 5;
+    protected static final long DEFAULT_KEY_LOCK_MAX_BACKOFF_MILLIS = 200;
+    protected static final long DEFAULT_KEY_LOCK_MAX_WAIT_MILLIS = 1000;
+    protected static final int DEFAULT_KEY_LOCK_TIMEOUT_SECONDS = 10;
+    protected static final int DEFAULT_KEY_LOCK_LOCAL_STRIPES = 64;
+    protected static final boolean DEFAULT_SINGLE_FLIGHT = false;
+    protected static final boolean DEFAULT_NEAR_CACHE = false;
+    protected static final int DEFAULT_NEAR_CACHE_MAX_ENTRIES = 10000;
+    protected static final long DEFAULT_NEAR_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+    protected static final long DEFAULT_NEAR_CACHE_TIME_TO_LIVE_MILLIS = 1000;
+    protected static final boolean DEFAULT_COMPRESSION = false;
+    protected static final int DEFAULT_COMPRESSION_MIN_BYTES = 1024;
+    protected static final int DEFAULT_COMPRESSION_MIN_SAVINGS_PERCENT = 10;
+    protected static final boolean DEFAULT_CHUNKING = false;
+    protected static final int DEFAULT_CHUNKING_CHUNK_BYTES = 1000000;
     
     /**
      * Creates a new {@link MemcachedProperties} using the passed in 
@@ -229,6 +484,16 @@ public class MemcachedProperties extends Properties {
         return getObject(key, DEFAULT_KEY_ENCODING_STRATEGY);
     }
 
+    /**
+     * Gets the configured {@link Timestamper}, used for all regions.
+     * 
+     * @return the configured {@link Timestamper}
+     */
+    public Timestamper getTimestamper() {
+        String key = toKey(TIMESTAMPER);
+        return getObject(key, DEFAULT_TIMESTAMPER);
+    }
+
     /**
      * Determines if region level clearing is enabled.
      * 
@@ -240,6 +505,145 @@ public class MemcachedProperties extends Properties {
         return getBoolean(key, DEFAULT_CLEAR_SUPPORTED);
     }
 
+    /**
+     * Gets the configured maximum age of a locally cached clear index, in
+     * milliseconds.
+     * 
+     * @return the configured staleness bound, <code>0</code> or less if clear
+     *         indices should not be cached
+     */
+    public long getClearIndexMaxStalenessMillis() {
+        String key = toKey(CLEAR_INDEX_MAX_STALENESS_MILLIS);
+        return getLong(key, DEFAULT_CLEAR_INDEX_MAX_STALENESS_MILLIS);
+    }
+
+    /**
+     * Determines if concurrent single key gets are batched.
+     * 
+     * @return <code>true</code> if gets are batched,
+     *         <code>false</code> otherwise
+     */
+    public boolean isBatchingEnabled() {
+        String key = toKey(BATCHING);
+        return getBoolean(key, DEFAULT_BATCHING);
+    }
+
+    /**
+     * Gets the time a batch of gets is kept open.
+     * 
+     * @return the configured batch window, in microseconds
+     */
+    public long getBatchingWindowMicros() {
+        String key = toKey(BATCHING_WINDOW_MICROS);
+        return getLong(key, DEFAULT_BATCHING_WINDOW_MICROS);
+    }
+
+    /**
+     * Gets the number of gets after which a batch is sent without waiting.
+     * 
+     * @return the configured maximum batch size
+     */
+    public int getBatchingMaxSize() {
+        String key = toKey(BATCHING_MAX_SIZE);
+        return getInt(key, DEFAULT_BATCHING_MAX_SIZE);
+    }
+
+    /**
+     * Determines if requests to failing servers fail fast.
+     * 
+     * @return <code>true</code> if a circuit breaker is used,
+     *         <code>false</code> otherwise
+     */
+    public boolean isCircuitBreakerEnabled() {
+        String key = toKey(CIRCUIT_BREAKER);
+        return getBoolean(key, DEFAULT_CIRCUIT_BREAKER);
+    }
+
+    /**
+     * Gets the number of consecutive failures after which requests to a server
+     * fail fast.
+     * 
+     * @return the configured failure threshold
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        String key = toKey(CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+        return getInt(key, DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+    }
+
+    /**
+     * Gets the time requests to a failing server fail fast before a trial
+     * request is sent.
+     * 
+     * @return the configured open time, in milliseconds
+     */
+    public long getCircuitBreakerOpenMillis() {
+        String key = toKey(CIRCUIT_BREAKER_OPEN_MILLIS);
+        return getLong(key, DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS);
+    }
+
+    /**
+     * Gets the time after which a successful request counts as a failure.
+     * 
+     * @return the configured slow call time, in milliseconds, or
+     *         <code>0</code> if latency is ignored
+     */
+    public long getCircuitBreakerSlowCallMillis() {
+        String key = toKey(CIRCUIT_BREAKER_SLOW_CALL_MILLIS);
+        return getLong(key, DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_MILLIS);
+    }
+
+    /**
+     * Gets the minimum time between two logged request failures.
+     * 
+     * @return the configured log interval, in milliseconds
+     */
+    public long getCircuitBreakerLogIntervalMillis() {
+        String key = toKey(CIRCUIT_BREAKER_LOG_INTERVAL_MILLIS);
+        return getLong(key, DEFAULT_CIRCUIT_BREAKER_LOG_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Determines if region statistics are recorded.
+     * 
+     * @return <code>true</code> if statistics are recorded,
+     *         <code>false</code> otherwise
+     */
+    public boolean isStatisticsEnabled() {
+        String key = toKey(STATISTICS);
+        return getBoolean(key, DEFAULT_STATISTICS);
+    }
+
+    /**
+     * Determines if entries are stored in the compact binary layout.
+     * 
+     * @return <code>true</code> if entries are stored compactly,
+     *         <code>false</code> if they are Java serialized
+     */
+    public boolean isCompactEntriesEnabled() {
+        String key = toKey(COMPACT_ENTRIES);
+        return getBoolean(key, DEFAULT_COMPACT_ENTRIES);
+    }
+
+    /**
+     * Gets the configured value serializer.
+     * 
+     * @return the configured value serializer
+     */
+    public ValueSerializer getValueSerializer() {
+        String key = toKey(VALUE_SERIALIZER);
+        return getObject(key, new JavaValueSerializer());
+    }
+
+    /**
+     * Creates the codec used to read compact entries, and to store entries if
+     * {@link #isCompactEntriesEnabled()}.
+     * 
+     * @return a new codec
+     */
+    public LockableCodec createLockableCodec() {
+        return new LockableCodec(getValueSerializer());
+    }
+
     /**
      * Determines if dogpile prevention is enabled.
      * 
@@ -260,6 +664,218 @@ public class MemcachedProperties extends Properties {
         String key = toKey(DOGPILE_PREVENTION_EXPIRATION_FACTOR);
         return getInt(key, DEFAULT_DOGPILE_EXPIRATION_FACTOR);
     }
+
+    /**
+     * Gets the configured way dogpiles are prevented.
+     * 
+     * @return the configured {@link DogpilePreventionMode}
+     */
+    public DogpilePreventionMode getDogpilePreventionMode() {
+        String key = toKey(DOGPILE_PREVENTION_MODE);
+        return getEnum(key, DogpilePreventionMode.class, DEFAULT_DOGPILE_PREVENTION_MODE);
+    }
+
+    /**
+     * Gets the configured weight of the recompute time used to pick early
+     * refreshers in {@link DogpilePreventionMode#ENVELOPE} mode.
+     * 
+     * @return the configured beta
+     */
+    public double getDogpilePreventionBeta() {
+        String key = toKey(DOGPILE_PREVENTION_BETA);
+        return getDouble(key, DEFAULT_DOGPILE_PREVENTION_BETA);
+    }
+
+    /**
+     * Determines if read/write regions use CAS (check and set) instead of
+     * key locks. Requires a client that supports <code>gets</code> and
+     * <code>cas</code>.
+     * 
+     * @return <code>true</code> if CAS read/write is enabled,
+     *         <code>false</code> otherwise
+     */
+    public boolean isCasReadWriteEnabled() {
+        String key = toKey(CAS_READ_WRITE);
+        return getBoolean(key, DEFAULT_CAS_READ_WRITE);
+    }
+
+    /**
+     * Gets the kind of key locks used by read/write regions.
+     * 
+     * @return the configured {@link KeyLockProviderType}
+     */
+    public KeyLockProviderType getKeyLockProviderType() {
+        String key = toKey(KEY_LOCK_PROVIDER);
+        return getEnum(key, KeyLockProviderType.class, DEFAULT_KEY_LOCK_PROVIDER);
+    }
+
+    /**
+     * Gets the number of immediate retries of a contended key lock.
+     * 
+     * @return the configured number of immediate retries
+     */
+    public int getKeyLockSpinAttempts() {
+        String key = toKey(KEY_LOCK_SPIN_ATTEMPTS);
+        return getInt(key, DEFAULT_KEY_LOCK_SPIN_ATTEMPTS);
+    }
+
+    /**
+     * Gets the first sleep between key lock retries, in milliseconds.
+     * 
+     * @return the configured initial backoff, in milliseconds
+     */
+    public long getKeyLockInitialBackoffMillis() {
+        String key = toKey(KEY_LOCK_INITIAL_BACKOFF_MILLIS);
+        return getLong(key, DEFAULT_KEY_LOCK_INITIAL_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Gets the longest sleep between key lock retries, in milliseconds.
+     * 
+     * @return the configured maximum backoff, in milliseconds
+     */
+    public long getKeyLockMaxBackoffMillis() {
+        String key = toKey(KEY_LOCK_MAX_BACKOFF_MILLIS);
+        return getLong(key, DEFAULT_KEY_LOCK_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Gets the time after which acquiring a key lock gives up, in milliseconds.
+     * 
+     * @return the configured maximum wait, in milliseconds
+     */
+    public long getKeyLockMaxWaitMillis() {
+        String key = toKey(KEY_LOCK_MAX_WAIT_MILLIS);
+        return getLong(key, DEFAULT_KEY_LOCK_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * Gets the time to live of key locks, in seconds.
+     * 
+     * @return the configured lock time to live, in seconds
+     */
+    public int getKeyLockTimeoutSeconds() {
+        String key = toKey(KEY_LOCK_TIMEOUT_SECONDS);
+        return getInt(key, DEFAULT_KEY_LOCK_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Gets the number of JVM local locks taken by writers before they ask
+     * Memcached for a key lock.
+     * 
+     * @return the configured number of local lock stripes, 0 if local locks
+     *         are disabled
+     */
+    public int getKeyLockLocalStripes() {
+        String key = toKey(KEY_LOCK_LOCAL_STRIPES);
+        return getInt(key, DEFAULT_KEY_LOCK_LOCAL_STRIPES);
+    }
+
+    /**
+     * Determines if concurrent reads of the same key share one request.
+     * 
+     * @return <code>true</code> if reads are coalesced,
+     *         <code>false</code> otherwise
+     */
+    public boolean isSingleFlightEnabled() {
+        String key = toKey(SINGLE_FLIGHT);
+        return getBoolean(key, DEFAULT_SINGLE_FLIGHT);
+    }
+
+    /**
+     * Determines if regions keep a local near cache in front of Memcached.
+     * 
+     * @return <code>true</code> if the near cache is enabled,
+     *         <code>false</code> otherwise
+     */
+    public boolean isNearCacheEnabled() {
+        String key = toKey(NEAR_CACHE);
+        return getBoolean(key, DEFAULT_NEAR_CACHE);
+    }
+
+    /**
+     * Gets the configured maximum number of near cache entries.
+     * 
+     * @return the configured maximum number of entries
+     */
+    public int getNearCacheMaxEntries() {
+        String key = toKey(NEAR_CACHE_MAX_ENTRIES);
+        return getInt(key, DEFAULT_NEAR_CACHE_MAX_ENTRIES);
+    }
+
+    /**
+     * Gets the configured maximum near cache size, in bytes.
+     * 
+     * @return the configured maximum size, in bytes
+     */
+    public long getNearCacheMaxBytes() {
+        String key = toKey(NEAR_CACHE_MAX_BYTES);
+        return getLong(key, DEFAULT_NEAR_CACHE_MAX_BYTES);
+    }
+
+    /**
+     * Gets the configured near cache time to live, in milliseconds.
+     * 
+     * @return the configured time to live, in milliseconds
+     */
+    public long getNearCacheTimeToLiveMillis() {
+        String key = toKey(NEAR_CACHE_TIME_TO_LIVE_MILLIS);
+        return getLong(key, DEFAULT_NEAR_CACHE_TIME_TO_LIVE_MILLIS);
+    }
+
+    /**
+     * Determines if regions store large values compressed.
+     * 
+     * @return <code>true</code> if compression is enabled,
+     *         <code>false</code> otherwise
+     */
+    public boolean isCompressionEnabled() {
+        String key = toKey(COMPRESSION);
+        return getBoolean(key, DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Gets the configured size below which values are not compressed.
+     * 
+     * @return the configured minimum size, in bytes
+     */
+    public int getCompressionMinBytes() {
+        String key = toKey(COMPRESSION_MIN_BYTES);
+        return getInt(key, DEFAULT_COMPRESSION_MIN_BYTES);
+    }
+
+    /**
+     * Gets the configured percentage of its size that compressing a value
+     * must save.
+     * 
+     * @return the configured minimum savings, in percent
+     */
+    public int getCompressionMinSavingsPercent() {
+        String key = toKey(COMPRESSION_MIN_SAVINGS_PERCENT);
+        return getInt(key, DEFAULT_COMPRESSION_MIN_SAVINGS_PERCENT);
+    }
+
+    /**
+     * Determines if regions split large values into chunks.
+     * 
+     * @return <code>true</code> if chunking is enabled,
+     *         <code>false</code> otherwise
+     */
+    public boolean isChunkingEnabled() {
+        String key = toKey(CHUNKING);
+        return getBoolean(key, DEFAULT_CHUNKING);
+    }
+
+    /**
+     * Gets the configured largest number of bytes of a value stored in one
+     * chunk.
+     * 
+     * @return the configured chunk size, in bytes
+     */
+    public int getChunkingChunkBytes() {
+        String key = toKey(CHUNKING_CHUNK_BYTES);
+        return getInt(key, DEFAULT_CHUNKING_CHUNK_BYTES);
+    }
     
     // Helper Methods
     
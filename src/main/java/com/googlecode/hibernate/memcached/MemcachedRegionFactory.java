@@ -31,13 +31,30 @@ import org.slf4j.LoggerFactory;
 
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClientFactory;
+import com.googlecode.hibernate.memcached.client.NonCasClient;
 import com.googlecode.hibernate.memcached.client.dangamemcached.DangaMemcacheClientFactory;
+import com.googlecode.hibernate.memcached.client.batch.BatchingMemcachedClient;
+import com.googlecode.hibernate.memcached.client.breaker.CircuitBreakingMemcachedClient;
+import com.googlecode.hibernate.memcached.client.chunk.ValueChunker;
+import com.googlecode.hibernate.memcached.client.dogpile.DogpilePreventionMode;
+import com.googlecode.hibernate.memcached.client.dogpile.EarlyExpiration;
+import com.googlecode.hibernate.memcached.client.near.NearCache;
+import com.googlecode.hibernate.memcached.codec.CompressionPolicy;
+import com.googlecode.hibernate.memcached.concurrent.SingleFlight;
+import com.googlecode.hibernate.memcached.concurrent.Timestamper;
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockPolicy;
+import com.googlecode.hibernate.memcached.concurrent.keylock.LocalKeyLocks;
+import com.googlecode.hibernate.memcached.concurrent.keylock.LocalReadWriteKeyLockProvider;
+import com.googlecode.hibernate.memcached.concurrent.keylock.NoLockKeyLockProvider;
 import com.googlecode.hibernate.memcached.client.spymemcached.SpyMemcachedProperties;
 import com.googlecode.hibernate.memcached.region.MemcachedCollectionRegion;
 import com.googlecode.hibernate.memcached.region.MemcachedEntityRegion;
 import com.googlecode.hibernate.memcached.region.MemcachedNaturalIdRegion;
 import com.googlecode.hibernate.memcached.region.MemcachedQueryResultsRegion;
 import com.googlecode.hibernate.memcached.region.MemcachedTimestampsRegion;
+import com.googlecode.hibernate.memcached.stats.StatisticsRegistry;
+import com.googlecode.hibernate.memcached.strategy.LockableCodec;
+import com.googlecode.hibernate.memcached.strategy.clear.ClearIndexRefresher;
 import com.googlecode.hibernate.memcached.strategy.clear.MemcachedRegionClearStrategy;
 
 
@@ -62,7 +79,11 @@ public class MemcachedRegionFactory implements RegionFactory {
     private static final Logger log = LoggerFactory.getLogger(MemcachedRegionFactory.class);
 
     private HibernateMemcachedClient client;
+    private ClearIndexRefresher clearIndexRefresher;
+    private StatisticsRegistry statisticsRegistry;
     private Settings hibernateSettings;
+    private Timestamper timestamper = MemcachedProperties.DEFAULT_TIMESTAMPER;
+    private boolean casSupported = true;
     
     /**
      * Creates a new {@link MemcachedRegionFactory}.
@@ -85,7 +106,36 @@ public class MemcachedRegionFactory implements RegionFactory {
         try {
             log.info("Starting HibernateMemcachedClient...");
             client = buildHibernateMemcachedClient(properties);
+            casSupported = !(client instanceof NonCasClient);
             log.info("HibernateMemcachedClient started!");
+
+            MemcachedProperties memcachedProperties = new MemcachedProperties(properties);
+            timestamper = memcachedProperties.getTimestamper();
+            if (memcachedProperties.isCircuitBreakerEnabled()) {
+                client = new CircuitBreakingMemcachedClient(client,
+                        memcachedProperties.getCircuitBreakerFailureThreshold(),
+                        memcachedProperties.getCircuitBreakerOpenMillis(),
+                        memcachedProperties.getCircuitBreakerSlowCallMillis(),
+                        memcachedProperties.getCircuitBreakerLogIntervalMillis());
+            }
+            if (memcachedProperties.isBatchingEnabled()) {
+                client = new BatchingMemcachedClient(client, memcachedProperties.getBatchingWindowMicros(),
+                        memcachedProperties.getBatchingMaxSize());
+            }
+
+            long maxStalenessMillis = memcachedProperties.getClearIndexMaxStalenessMillis();
+            if (maxStalenessMillis > 0) {
+                clearIndexRefresher = new ClearIndexRefresher(client, maxStalenessMillis);
+            }
+
+            if (memcachedProperties.isStatisticsEnabled()
+                    || (settings != null && settings.isStatisticsEnabled())) {
+                statisticsRegistry = new StatisticsRegistry();
+                statisticsRegistry.registerCodecStatistics(LockableCodec.getStatistics());
+                if (clearIndexRefresher != null) {
+                    statisticsRegistry.registerClearIndexRefresher(clearIndexRefresher);
+                }
+            }
         } catch (Exception e) {
             throw new CacheException("Unable to initialize HibernateMemcachedClient", e);
         }
@@ -93,6 +143,14 @@ public class MemcachedRegionFactory implements RegionFactory {
 
     @Override
     public void stop() {
+        if (clearIndexRefresher != null) {
+            clearIndexRefresher.shutdown();
+        }
+        clearIndexRefresher = null;
+        if (statisticsRegistry != null) {
+            statisticsRegistry.shutdown();
+        }
+        statisticsRegistry = null;
         if (client != null) {
             log.debug("Shutting down Memcache client");
             client.shutdown();
@@ -113,47 +171,116 @@ public class MemcachedRegionFactory implements RegionFactory {
 
     @Override
     public long nextTimestamp() {
-        return System.currentTimeMillis() / 100;
+        return timestamper.next();
     }
 
     @Override
     public EntityRegion buildEntityRegion(String regionName, Properties properties, CacheDataDescription metadata) throws CacheException {
-        return new MemcachedEntityRegion(client, buildMemcachedRegionSettings(regionName, properties), metadata);
+        return new MemcachedEntityRegion(client, buildMemcachedRegionSettings(regionName, properties, true), metadata);
     }
 
     @Override
     public CollectionRegion buildCollectionRegion(String regionName, Properties properties, CacheDataDescription metadata) throws CacheException {
-        return new MemcachedCollectionRegion(client, buildMemcachedRegionSettings(regionName, properties),  metadata);
+        return new MemcachedCollectionRegion(client, buildMemcachedRegionSettings(regionName, properties, true),  metadata);
     }
     
     @Override
     public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties, CacheDataDescription metadata) throws CacheException {
-        return new MemcachedNaturalIdRegion(client, buildMemcachedRegionSettings(regionName, properties), metadata);
+        return new MemcachedNaturalIdRegion(client, buildMemcachedRegionSettings(regionName, properties, true), metadata);
     }
 
     @Override
     public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties) throws CacheException {
-        return new MemcachedQueryResultsRegion(client, buildMemcachedRegionSettings(regionName, properties));
+        return new MemcachedQueryResultsRegion(client, buildMemcachedRegionSettings(regionName, properties, true));
     }
 
     @Override
     public TimestampsRegion buildTimestampsRegion(String regionName, Properties properties) throws CacheException {
-        return new MemcachedTimestampsRegion(client, buildMemcachedRegionSettings(regionName, properties));
+        // timestamps must always be current, so they are never cached locally
+        return new MemcachedTimestampsRegion(client, buildMemcachedRegionSettings(regionName, properties, false));
+    }
+    
+    /**
+     * Gets the refresher of the regions' locally cached clear indices.
+     * 
+     * @return the refresher, or <code>null</code> if clear indices are not
+     *         cached or the factory has not been started
+     */
+    public ClearIndexRefresher getClearIndexRefresher() {
+        return clearIndexRefresher;
+    }
+    
+    /**
+     * Gets the registry of the regions' statistics.
+     * 
+     * @return the registry, or <code>null</code> if statistics are not
+     *         recorded or the factory has not been started
+     */
+    public StatisticsRegistry getStatisticsRegistry() {
+        return statisticsRegistry;
     }
     
     /**
      * Builds the {@link MemcachedRegionSettings} for a region using the given
      * {@link Properties}.
      * 
-     * @param regionName the name of the region to get the settings for
-     * @param properties the properties used to build the settings
-     * @return           the settings for the given region
+     * @param regionName       the name of the region to get the settings for
+     * @param properties       the properties used to build the settings
+     * @param nearCacheAllowed <code>false</code> if the region must not use a
+     *                         {@link NearCache} even if one is configured
+     * @return                 the settings for the given region
      */
-    private MemcachedRegionSettings buildMemcachedRegionSettings(String regionName, Properties properties) {
+    private MemcachedRegionSettings buildMemcachedRegionSettings(String regionName, Properties properties, boolean nearCacheAllowed) {
         MemcachedRegionProperties regionProperties = new MemcachedRegionProperties(properties);
         MemcachedRegionSettings regionSettings = new MemcachedRegionSettings(regionName, regionProperties);
-        regionSettings.setClearStrategy(new MemcachedRegionClearStrategy(client, regionSettings));
+        MemcachedRegionClearStrategy clearStrategy =
+                new MemcachedRegionClearStrategy(client, regionSettings, clearIndexRefresher);
+        regionSettings.setClearStrategy(clearStrategy);
         regionSettings.setHibernateSettings(hibernateSettings);
+        regionSettings.setTimestamper(timestamper);
+        regionSettings.setKeyLockPolicy(new KeyLockPolicy(regionSettings));
+        if (regionSettings.isCasReadWriteEnabled() && !casSupported) {
+            log.warn("The memcached client does not support CAS, region [{}] uses key locks instead", regionName);
+            regionSettings.setCasReadWriteEnabled(false);
+        }
+        switch (regionSettings.getKeyLockProviderType()) {
+        case LOCAL:
+            int stripes = regionSettings.getKeyLockLocalStripes() > 0
+                    ? regionSettings.getKeyLockLocalStripes() : MemcachedProperties.DEFAULT_KEY_LOCK_LOCAL_STRIPES;
+            regionSettings.setReadWriteKeyLockProvider(
+                    new LocalReadWriteKeyLockProvider(stripes, regionSettings.getKeyLockPolicy()));
+            break;
+        case NONE:
+            regionSettings.setReadWriteKeyLockProvider(new NoLockKeyLockProvider());
+            break;
+        default:
+            if (regionSettings.getKeyLockLocalStripes() > 0) {
+                regionSettings.setLocalKeyLocks(new LocalKeyLocks(regionSettings.getKeyLockLocalStripes()));
+            }
+        }
+        if (regionSettings.isDogpilePreventionEnabled()
+                && regionSettings.getDogpilePreventionMode() == DogpilePreventionMode.ENVELOPE) {
+            regionSettings.setEarlyExpiration(new EarlyExpiration(regionSettings.getDogpilePreventionBeta()));
+        }
+        if (regionSettings.isSingleFlightEnabled()) {
+            regionSettings.setSingleFlight(new SingleFlight());
+        }
+        if (nearCacheAllowed && regionSettings.isNearCacheEnabled()) {
+            regionSettings.setNearCache(new NearCache(regionSettings.getNearCacheMaxEntries(),
+                    regionSettings.getNearCacheMaxBytes(), regionSettings.getNearCacheTimeToLiveMillis()));
+        }
+        if (statisticsRegistry != null) {
+            regionSettings.setStatistics(statisticsRegistry.getRegionStatistics(regionName));
+            regionSettings.getStatistics().setClearStrategy(clearStrategy);
+        }
+        if (regionSettings.isCompressionEnabled()) {
+            regionSettings.setCompressionPolicy(new CompressionPolicy(regionSettings.getCompressionMinBytes(),
+                    regionSettings.getCompressionMinSavingsPercent(), regionSettings.getStatistics()));
+        }
+        if (regionSettings.isChunkingEnabled()) {
+            regionSettings.setValueChunker(new ValueChunker(regionSettings.getChunkingChunkBytes(),
+                    regionProperties.getValueSerializer()));
+        }
         return regionSettings;
     }
     
@@ -4,6 +4,8 @@ import java.util.Properties;
 
 import com.googlecode.hibernate.memcached.region.MemcachedRegion;
 import com.googlecode.hibernate.memcached.strategy.key.KeyStrategy;
+import com.googlecode.hibernate.memcached.client.dogpile.DogpilePreventionMode;
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockProviderType;
 import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrategy;
 
 /**
@@ -55,6 +57,88 @@ import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrat
  * <td>The factor by which cache time should be multiplied when dogpile prevention is enabled.</td>
  * </tr>
  * <tr>
+ * <td>hibernate.memcached.[region-name].dogpilePrevention.mode</td>
+ * <td>How dogpiles are prevented. <b>Note:</b> Must be a {@link DogpilePreventionMode}.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].dogpilePrevention.beta</td>
+ * <td>How early values are refreshed in ENVELOPE mode.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].casReadWrite</td>
+ * <td><code>true</code> if read/write regions should use CAS instead of key locks, <code>false</code> otherwise.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].keyLockProvider</td>
+ * <td>The kind of key locks used by the region. <b>Note:</b> Must be a {@link KeyLockProviderType}.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].keyLock.spinAttempts</td>
+ * <td>The number of times a contended key lock is retried immediately, before backing off.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].keyLock.initialBackoffMillis</td>
+ * <td>The first sleep, in milliseconds, between retries of a contended key lock. It doubles on every retry.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].keyLock.maxBackoffMillis</td>
+ * <td>The longest sleep, in milliseconds, between retries of a contended key lock.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].keyLock.maxWaitMillis</td>
+ * <td>The time, in milliseconds, after which acquiring a key lock gives up. The operation then misses the cache or skips the cache write.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].keyLock.timeoutSeconds</td>
+ * <td>The number of seconds a key lock is held at most, e.g. if its holder crashed.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].keyLock.localStripes</td>
+ * <td>The number of JVM local locks that writers take before they ask Memcached for a key lock. 0 disables the local locks.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].singleFlight</td>
+ * <td><code>true</code> if concurrent reads of the same key within a JVM should share one request to Memcached, <code>false</code> otherwise.
+ * Ignored by <code>READ_WRITE</code> regions.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].nearCache</td>
+ * <td><code>true</code> if the region should keep recently read <code>Object</code>s in a local in-JVM cache, <code>false</code> otherwise.
+ * Ignored by <code>READ_WRITE</code> regions.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].nearCache.maxEntries</td>
+ * <td>The maximum number of entries in the region's near cache.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].nearCache.maxBytes</td>
+ * <td>The maximum estimated size, in bytes, of the region's near cache.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].nearCache.timeToLiveMillis</td>
+ * <td>The number of milliseconds a near cache entry is used before it is read from Memcached again.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].compression</td>
+ * <td><code>true</code> if the region should store large values compressed with LZ4, <code>false</code> otherwise.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].compression.minBytes</td>
+ * <td>The size, in bytes, below which the region's values are stored uncompressed.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].compression.minSavingsPercent</td>
+ * <td>The percentage of its size that compressing a value must save for the value to be stored compressed.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].chunking</td>
+ * <td><code>true</code> if the region should split values too large for a single Memcached item into chunks, <code>false</code> otherwise.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.[region-name].chunking.chunkBytes</td>
+ * <td>The largest number of serialized bytes of a value stored in a single item.</td>
+ * </tr>
+ * <tr>
  * <td>hibernate.memcached.[region-name].keyStrategy</td>
  * <td>The {@link KeyStrategy} used to turn a key <code>Object</code> into a key <code>String</code>.</td>
  * </tr>
@@ -205,6 +289,229 @@ public class MemcachedRegionProperties extends MemcachedProperties {
         return result;
     }
 
+    /**
+     * See {@link MemcachedProperties#getDogpilePreventionMode()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public DogpilePreventionMode getDogpilePreventionMode(String cacheRegion) {
+        String key = toKey(DOGPILE_PREVENTION_MODE, cacheRegion);
+        DogpilePreventionMode result = getEnum(key, DogpilePreventionMode.class, getDogpilePreventionMode());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getDogpilePreventionBeta()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public double getDogpilePreventionBeta(String cacheRegion) {
+        String key = toKey(DOGPILE_PREVENTION_BETA, cacheRegion);
+        double result = getDouble(key, getDogpilePreventionBeta());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#isCasReadWriteEnabled()}.
+     * 
+     * @param cacheRegion the name of the region to get the CAS status for
+     */
+    public boolean isCasReadWriteEnabled(String cacheRegion) {
+        String key = toKey(CAS_READ_WRITE, cacheRegion);
+        boolean result = getBoolean(key, isCasReadWriteEnabled());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getKeyLockProviderType()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public KeyLockProviderType getKeyLockProviderType(String cacheRegion) {
+        String key = toKey(KEY_LOCK_PROVIDER, cacheRegion);
+        KeyLockProviderType result = getEnum(key, KeyLockProviderType.class, getKeyLockProviderType());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getKeyLockSpinAttempts()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public int getKeyLockSpinAttempts(String cacheRegion) {
+        String key = toKey(KEY_LOCK_SPIN_ATTEMPTS, cacheRegion);
+        int result = getInt(key, getKeyLockSpinAttempts());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getKeyLockInitialBackoffMillis()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public long getKeyLockInitialBackoffMillis(String cacheRegion) {
+        String key = toKey(KEY_LOCK_INITIAL_BACKOFF_MILLIS, cacheRegion);
+        long result = getLong(key, getKeyLockInitialBackoffMillis());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getKeyLockMaxBackoffMillis()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public long getKeyLockMaxBackoffMillis(String cacheRegion) {
+        String key = toKey(KEY_LOCK_MAX_BACKOFF_MILLIS, cacheRegion);
+        long result = getLong(key, getKeyLockMaxBackoffMillis());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getKeyLockMaxWaitMillis()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public long getKeyLockMaxWaitMillis(String cacheRegion) {
+        String key = toKey(KEY_LOCK_MAX_WAIT_MILLIS, cacheRegion);
+        long result = getLong(key, getKeyLockMaxWaitMillis());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getKeyLockTimeoutSeconds()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public int getKeyLockTimeoutSeconds(String cacheRegion) {
+        String key = toKey(KEY_LOCK_TIMEOUT_SECONDS, cacheRegion);
+        int result = getInt(key, getKeyLockTimeoutSeconds());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getKeyLockLocalStripes()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public int getKeyLockLocalStripes(String cacheRegion) {
+        String key = toKey(KEY_LOCK_LOCAL_STRIPES, cacheRegion);
+        int result = getInt(key, getKeyLockLocalStripes());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#isSingleFlightEnabled()}.
+     * 
+     * @param cacheRegion the name of the region to get the value for
+     */
+    public boolean isSingleFlightEnabled(String cacheRegion) {
+        String key = toKey(SINGLE_FLIGHT, cacheRegion);
+        boolean result = getBoolean(key, isSingleFlightEnabled());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#isNearCacheEnabled()}.
+     * 
+     * @param cacheRegion the name of the region to get the near cache status
+     *                    for
+     */
+    public boolean isNearCacheEnabled(String cacheRegion) {
+        String key = toKey(NEAR_CACHE, cacheRegion);
+        boolean result = getBoolean(key, isNearCacheEnabled());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getNearCacheMaxEntries()}.
+     * 
+     * @param cacheRegion the name of the region to get the maximum number of
+     *                    entries for
+     */
+    public int getNearCacheMaxEntries(String cacheRegion) {
+        String key = toKey(NEAR_CACHE_MAX_ENTRIES, cacheRegion);
+        int result = getInt(key, getNearCacheMaxEntries());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getNearCacheMaxBytes()}.
+     * 
+     * @param cacheRegion the name of the region to get the maximum size for
+     */
+    public long getNearCacheMaxBytes(String cacheRegion) {
+        String key = toKey(NEAR_CACHE_MAX_BYTES, cacheRegion);
+        long result = getLong(key, getNearCacheMaxBytes());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getNearCacheTimeToLiveMillis()}.
+     * 
+     * @param cacheRegion the name of the region to get the time to live for
+     */
+    public long getNearCacheTimeToLiveMillis(String cacheRegion) {
+        String key = toKey(NEAR_CACHE_TIME_TO_LIVE_MILLIS, cacheRegion);
+        long result = getLong(key, getNearCacheTimeToLiveMillis());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#isCompressionEnabled()}.
+     * 
+     * @param cacheRegion the name of the region to get the compression status
+     *                    for
+     */
+    public boolean isCompressionEnabled(String cacheRegion) {
+        String key = toKey(COMPRESSION, cacheRegion);
+        boolean result = getBoolean(key, isCompressionEnabled());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getCompressionMinBytes()}.
+     * 
+     * @param cacheRegion the name of the region to get the minimum size for
+     */
+    public int getCompressionMinBytes(String cacheRegion) {
+        String key = toKey(COMPRESSION_MIN_BYTES, cacheRegion);
+        int result = getInt(key, getCompressionMinBytes());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getCompressionMinSavingsPercent()}.
+     * 
+     * @param cacheRegion the name of the region to get the minimum savings for
+     */
+    public int getCompressionMinSavingsPercent(String cacheRegion) {
+        String key = toKey(COMPRESSION_MIN_SAVINGS_PERCENT, cacheRegion);
+        int result = getInt(key, getCompressionMinSavingsPercent());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#isChunkingEnabled()}.
+     * 
+     * @param cacheRegion the name of the region to get the chunking status for
+     */
+    public boolean isChunkingEnabled(String cacheRegion) {
+        String key = toKey(CHUNKING, cacheRegion);
+        boolean result = getBoolean(key, isChunkingEnabled());
+        return result;
+    }
+
+    /**
+     * See {@link MemcachedProperties#getChunkingChunkBytes()}.
+     * 
+     * @param cacheRegion the name of the region to get the chunk size for
+     */
+    public int getChunkingChunkBytes(String cacheRegion) {
+        String key = toKey(CHUNKING_CHUNK_BYTES, cacheRegion);
+        int result = getInt(key, getChunkingChunkBytes());
+        return result;
+    }
+
     // Helper Methods
     
     private String get(String key, String region, String defaultVal) {
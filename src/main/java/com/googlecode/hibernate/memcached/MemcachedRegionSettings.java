@@ -2,9 +2,21 @@ package com.googlecode.hibernate.memcached;
 
 import org.hibernate.cfg.Settings;
 
+import com.googlecode.hibernate.memcached.client.chunk.ValueChunker;
+import com.googlecode.hibernate.memcached.client.dogpile.DogpilePreventionMode;
+import com.googlecode.hibernate.memcached.client.dogpile.EarlyExpiration;
+import com.googlecode.hibernate.memcached.client.near.NearCache;
+import com.googlecode.hibernate.memcached.codec.CompressionPolicy;
+import com.googlecode.hibernate.memcached.concurrent.SingleFlight;
+import com.googlecode.hibernate.memcached.concurrent.Timestamper;
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockPolicy;
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockProviderType;
+import com.googlecode.hibernate.memcached.concurrent.keylock.LocalKeyLocks;
 import com.googlecode.hibernate.memcached.concurrent.keylock.MemcachedReadWriteKeyLockProvider;
+import com.googlecode.hibernate.memcached.stats.RegionStatistics;
 import com.googlecode.hibernate.memcached.strategy.clear.ClearStrategy;
 import com.googlecode.hibernate.memcached.strategy.key.KeyStrategy;
+import com.googlecode.hibernate.memcached.strategy.key.RegionKeys;
 import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrategy;
 
 /**
@@ -25,12 +37,42 @@ public class MemcachedRegionSettings {
     private int cacheTimeSeconds;
     private KeyStrategy keyStrategy;
     private KeyEncodingStrategy keyEncodingStrategy;
+    private Timestamper timestamper;
     private String dogpileTokenKeyPrefix;
     private boolean dogpilePreventionEnabled;
     private int dogpilePreventionExpirationFactor;
+    private DogpilePreventionMode dogpilePreventionMode;
+    private double dogpilePreventionBeta;
+    private boolean casReadWriteEnabled;
+    private KeyLockProviderType keyLockProviderType;
+    private int keyLockSpinAttempts;
+    private long keyLockInitialBackoffMillis;
+    private long keyLockMaxBackoffMillis;
+    private long keyLockMaxWaitMillis;
+    private int keyLockTimeoutSeconds;
+    private int keyLockLocalStripes;
+    private boolean singleFlightEnabled;
+    private boolean nearCacheEnabled;
+    private int nearCacheMaxEntries;
+    private long nearCacheMaxBytes;
+    private long nearCacheTimeToLiveMillis;
+    private boolean compressionEnabled;
+    private int compressionMinBytes;
+    private int compressionMinSavingsPercent;
+    private boolean chunkingEnabled;
+    private int chunkingChunkBytes;
     
     private ClearStrategy clearStrategy;
+    private NearCache nearCache;
+    private CompressionPolicy compressionPolicy;
+    private ValueChunker valueChunker;
+    private KeyLockPolicy keyLockPolicy;
+    private EarlyExpiration earlyExpiration;
+    private SingleFlight singleFlight;
+    private LocalKeyLocks localKeyLocks;
     private MemcachedReadWriteKeyLockProvider readWriteKeyLockProvider;
+    private RegionStatistics statistics;
+    private volatile RegionKeys regionKeys;
     
     /**
      * A constructor that initializes as many settings as possible using the
@@ -51,8 +93,29 @@ public class MemcachedRegionSettings {
         this.cacheTimeSeconds = properties.getCacheTimeSeconds(name);
         this.keyStrategy = properties.getKeyStrategy(name);
         this.keyEncodingStrategy = properties.getKeyEncodingStrategy(name);
+        this.timestamper = properties.getTimestamper();
         this.dogpilePreventionEnabled = properties.isDogpilePreventionEnabled(name);
         this.dogpilePreventionExpirationFactor = properties.getDogpilePreventionExpirationFactor(name);
+        this.dogpilePreventionMode = properties.getDogpilePreventionMode(name);
+        this.dogpilePreventionBeta = properties.getDogpilePreventionBeta(name);
+        this.casReadWriteEnabled = properties.isCasReadWriteEnabled(name);
+        this.keyLockProviderType = properties.getKeyLockProviderType(name);
+        this.keyLockSpinAttempts = properties.getKeyLockSpinAttempts(name);
+        this.keyLockInitialBackoffMillis = properties.getKeyLockInitialBackoffMillis(name);
+        this.keyLockMaxBackoffMillis = properties.getKeyLockMaxBackoffMillis(name);
+        this.keyLockMaxWaitMillis = properties.getKeyLockMaxWaitMillis(name);
+        this.keyLockTimeoutSeconds = properties.getKeyLockTimeoutSeconds(name);
+        this.keyLockLocalStripes = properties.getKeyLockLocalStripes(name);
+        this.singleFlightEnabled = properties.isSingleFlightEnabled(name);
+        this.nearCacheEnabled = properties.isNearCacheEnabled(name);
+        this.nearCacheMaxEntries = properties.getNearCacheMaxEntries(name);
+        this.nearCacheMaxBytes = properties.getNearCacheMaxBytes(name);
+        this.nearCacheTimeToLiveMillis = properties.getNearCacheTimeToLiveMillis(name);
+        this.compressionEnabled = properties.isCompressionEnabled(name);
+        this.compressionMinBytes = properties.getCompressionMinBytes(name);
+        this.compressionMinSavingsPercent = properties.getCompressionMinSavingsPercent(name);
+        this.chunkingEnabled = properties.isChunkingEnabled(name);
+        this.chunkingChunkBytes = properties.getChunkingChunkBytes(name);
     }
 
     public String getName() {
@@ -61,6 +124,7 @@ public class MemcachedRegionSettings {
 
     public void setName(String name) {
         this.name = name;
+        this.regionKeys = null;
     }
 
     public String getReadLockKeyPrefix() {
@@ -69,6 +133,7 @@ public class MemcachedRegionSettings {
 
     public void setReadLockKeyPrefix(String readLockKeyPrefix) {
         this.readLockKeyPrefix = readLockKeyPrefix;
+        this.regionKeys = null;
     }
 
     public String getWriteLockKeyPrefix() {
@@ -77,6 +142,7 @@ public class MemcachedRegionSettings {
 
     public void setWriteLockKeyPrefix(String writeLockKeyPrefix) {
         this.writeLockKeyPrefix = writeLockKeyPrefix;
+        this.regionKeys = null;
     }
 
     public boolean isClearSupported() {
@@ -117,8 +183,23 @@ public class MemcachedRegionSettings {
 
 	public void setKeyEncodingStrategy(KeyEncodingStrategy keyEncodingStrategy) {
 		this.keyEncodingStrategy = keyEncodingStrategy;
+		this.regionKeys = null;
 	}
 
+    /**
+     * Gets the source of the region's timestamps, shared with the region
+     * factory.
+     * 
+     * @return the {@link Timestamper}
+     */
+    public Timestamper getTimestamper() {
+        return timestamper;
+    }
+
+    public void setTimestamper(Timestamper timestamper) {
+        this.timestamper = timestamper;
+    }
+
 	public boolean isDogpilePreventionEnabled() {
         return dogpilePreventionEnabled;
     }
@@ -135,12 +216,173 @@ public class MemcachedRegionSettings {
         this.dogpilePreventionExpirationFactor = dogpilePreventionExpirationFactor;
     }
 
+    public DogpilePreventionMode getDogpilePreventionMode() {
+        return dogpilePreventionMode;
+    }
+
+    public void setDogpilePreventionMode(DogpilePreventionMode dogpilePreventionMode) {
+        this.dogpilePreventionMode = dogpilePreventionMode;
+    }
+
+    public double getDogpilePreventionBeta() {
+        return dogpilePreventionBeta;
+    }
+
+    public void setDogpilePreventionBeta(double dogpilePreventionBeta) {
+        this.dogpilePreventionBeta = dogpilePreventionBeta;
+    }
+
+    public boolean isCasReadWriteEnabled() {
+        return casReadWriteEnabled;
+    }
+
+    public void setCasReadWriteEnabled(boolean casReadWriteEnabled) {
+        this.casReadWriteEnabled = casReadWriteEnabled;
+    }
+
+    public KeyLockProviderType getKeyLockProviderType() {
+        return keyLockProviderType;
+    }
+
+    public void setKeyLockProviderType(KeyLockProviderType keyLockProviderType) {
+        this.keyLockProviderType = keyLockProviderType;
+    }
+
+    public int getKeyLockSpinAttempts() {
+        return keyLockSpinAttempts;
+    }
+
+    public void setKeyLockSpinAttempts(int keyLockSpinAttempts) {
+        this.keyLockSpinAttempts = keyLockSpinAttempts;
+    }
+
+    public long getKeyLockInitialBackoffMillis() {
+        return keyLockInitialBackoffMillis;
+    }
+
+    public void setKeyLockInitialBackoffMillis(long keyLockInitialBackoffMillis) {
+        this.keyLockInitialBackoffMillis = keyLockInitialBackoffMillis;
+    }
+
+    public long getKeyLockMaxBackoffMillis() {
+        return keyLockMaxBackoffMillis;
+    }
+
+    public void setKeyLockMaxBackoffMillis(long keyLockMaxBackoffMillis) {
+        this.keyLockMaxBackoffMillis = keyLockMaxBackoffMillis;
+    }
+
+    public long getKeyLockMaxWaitMillis() {
+        return keyLockMaxWaitMillis;
+    }
+
+    public void setKeyLockMaxWaitMillis(long keyLockMaxWaitMillis) {
+        this.keyLockMaxWaitMillis = keyLockMaxWaitMillis;
+    }
+
+    public int getKeyLockTimeoutSeconds() {
+        return keyLockTimeoutSeconds;
+    }
+
+    public void setKeyLockTimeoutSeconds(int keyLockTimeoutSeconds) {
+        this.keyLockTimeoutSeconds = keyLockTimeoutSeconds;
+    }
+
+    public int getKeyLockLocalStripes() {
+        return keyLockLocalStripes;
+    }
+
+    public void setKeyLockLocalStripes(int keyLockLocalStripes) {
+        this.keyLockLocalStripes = keyLockLocalStripes;
+    }
+
+    public boolean isSingleFlightEnabled() {
+        return singleFlightEnabled;
+    }
+
+    public void setSingleFlightEnabled(boolean singleFlightEnabled) {
+        this.singleFlightEnabled = singleFlightEnabled;
+    }
+
+    public boolean isNearCacheEnabled() {
+        return nearCacheEnabled;
+    }
+
+    public void setNearCacheEnabled(boolean nearCacheEnabled) {
+        this.nearCacheEnabled = nearCacheEnabled;
+    }
+
+    public int getNearCacheMaxEntries() {
+        return nearCacheMaxEntries;
+    }
+
+    public void setNearCacheMaxEntries(int nearCacheMaxEntries) {
+        this.nearCacheMaxEntries = nearCacheMaxEntries;
+    }
+
+    public long getNearCacheMaxBytes() {
+        return nearCacheMaxBytes;
+    }
+
+    public void setNearCacheMaxBytes(long nearCacheMaxBytes) {
+        this.nearCacheMaxBytes = nearCacheMaxBytes;
+    }
+
+    public long getNearCacheTimeToLiveMillis() {
+        return nearCacheTimeToLiveMillis;
+    }
+
+    public void setNearCacheTimeToLiveMillis(long nearCacheTimeToLiveMillis) {
+        this.nearCacheTimeToLiveMillis = nearCacheTimeToLiveMillis;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public int getCompressionMinBytes() {
+        return compressionMinBytes;
+    }
+
+    public void setCompressionMinBytes(int compressionMinBytes) {
+        this.compressionMinBytes = compressionMinBytes;
+    }
+
+    public int getCompressionMinSavingsPercent() {
+        return compressionMinSavingsPercent;
+    }
+
+    public void setCompressionMinSavingsPercent(int compressionMinSavingsPercent) {
+        this.compressionMinSavingsPercent = compressionMinSavingsPercent;
+    }
+
+    public boolean isChunkingEnabled() {
+        return chunkingEnabled;
+    }
+
+    public void setChunkingEnabled(boolean chunkingEnabled) {
+        this.chunkingEnabled = chunkingEnabled;
+    }
+
+    public int getChunkingChunkBytes() {
+        return chunkingChunkBytes;
+    }
+
+    public void setChunkingChunkBytes(int chunkingChunkBytes) {
+        this.chunkingChunkBytes = chunkingChunkBytes;
+    }
+
     public String getNamespaceSeparator() {
         return namespaceSeparator;
     }
 
     public void setNamespaceSeparator(String namespaceSeparator) {
         this.namespaceSeparator = namespaceSeparator;
+        this.regionKeys = null;
     }
 
     public ClearStrategy getClearStrategy() {
@@ -151,6 +393,142 @@ public class MemcachedRegionSettings {
         this.clearStrategy = clearStrategy;
     }
 
+    /**
+     * Gets the near cache of this region.
+     * 
+     * @return the near cache, or <code>null</code> if the region does not use
+     *         one
+     */
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public void setNearCache(NearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    /**
+     * Gets the policy deciding which values of this region are compressed.
+     * 
+     * @return the compression policy, or <code>null</code> if the region does
+     *         not compress values
+     */
+    public CompressionPolicy getCompressionPolicy() {
+        return compressionPolicy;
+    }
+
+    public void setCompressionPolicy(CompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    /**
+     * Gets the chunker splitting the large values of this region.
+     * 
+     * @return the value chunker, or <code>null</code> if the region does not
+     *         split values
+     */
+    public ValueChunker getValueChunker() {
+        return valueChunker;
+    }
+
+    public void setValueChunker(ValueChunker valueChunker) {
+        this.valueChunker = valueChunker;
+    }
+
+    /**
+     * Gets the policy used when acquiring key locks in this region.
+     * 
+     * @return the key lock policy, or <code>null</code> if none was set
+     */
+    public KeyLockPolicy getKeyLockPolicy() {
+        return keyLockPolicy;
+    }
+
+    public void setKeyLockPolicy(KeyLockPolicy keyLockPolicy) {
+        this.keyLockPolicy = keyLockPolicy;
+    }
+
+    /**
+     * Gets the JVM local key locks taken by writers of this region.
+     * 
+     * @return the local key locks, or <code>null</code> if local locks are
+     *         disabled
+     */
+    public LocalKeyLocks getLocalKeyLocks() {
+        return localKeyLocks;
+    }
+
+    public void setLocalKeyLocks(LocalKeyLocks localKeyLocks) {
+        this.localKeyLocks = localKeyLocks;
+    }
+
+    /**
+     * Gets the lock provider shared by all users of this region. Only set for
+     * providers that do not store their locks in Memcached, the others are
+     * created per clear index.
+     * 
+     * @return the region wide lock provider, or <code>null</code>
+     * @see    #getKeyLockProviderType()
+     */
+    /**
+     * Gets the early expiration used to pick refreshers when dogpile
+     * prevention is enabled in {@link DogpilePreventionMode#ENVELOPE} mode.
+     * 
+     * @return the early expiration, or <code>null</code> if envelopes are not
+     *         used
+     */
+    public EarlyExpiration getEarlyExpiration() {
+        return earlyExpiration;
+    }
+
+    public void setEarlyExpiration(EarlyExpiration earlyExpiration) {
+        this.earlyExpiration = earlyExpiration;
+    }
+
+    /**
+     * Gets the table of reads in flight shared by all clients of this region.
+     * 
+     * @return the single flight table, or <code>null</code> if reads are not
+     *         coalesced
+     */
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public void setSingleFlight(SingleFlight singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    /**
+     * Gets the statistics recorded by all clients and lock providers of this
+     * region.
+     * 
+     * @return the statistics, or <code>null</code> if statistics are not
+     *         recorded
+     */
+    public RegionStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(RegionStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Gets the key builders of this region for the clear index they were last
+     * requested for.
+     * 
+     * @return the key builders, or <code>null</code>
+     * @see RegionKeys#get(MemcachedRegionSettings, long)
+     */
+    public RegionKeys getRegionKeys() {
+        return regionKeys;
+    }
+
+    public void setRegionKeys(RegionKeys regionKeys) {
+        this.regionKeys = regionKeys;
+    }
+
     public MemcachedReadWriteKeyLockProvider getReadWriteKeyLockProvider() {
         return readWriteKeyLockProvider;
     }
@@ -173,5 +551,6 @@ public class MemcachedRegionSettings {
 
 	public void setDogpileTokenKeyPrefix(String dogpileTokenKeyPrefix) {
 		this.dogpileTokenKeyPrefix = dogpileTokenKeyPrefix;
+		this.regionKeys = null;
 	}
 }
@@ -0,0 +1,88 @@
+package com.googlecode.hibernate.memcached;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link MemcacheExceptionHandler} that passes at most one failure per
+ * interval on to another handler. Failures in between are only counted (and
+ * logged at debug level); their number is logged with the next failure that
+ * is passed on.
+ * <p>
+ * This keeps an unavailable server from filling the log with a stack trace
+ * per request.
+ */
+public class RateLimitedExceptionHandler implements MemcacheExceptionHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitedExceptionHandler.class);
+
+    private final MemcacheExceptionHandler delegate;
+    private final long intervalNanos;
+
+    private final AtomicLong nextAllowed = new AtomicLong(System.nanoTime());
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong suppressedSinceLastAllowed = new AtomicLong();
+
+    /**
+     * Creates a new {@link RateLimitedExceptionHandler}.
+     *
+     * @param delegate       the handler failures are passed on to
+     * @param intervalMillis the minimum time between two failures passed on
+     */
+    public RateLimitedExceptionHandler(MemcacheExceptionHandler delegate, long intervalMillis) {
+        this.delegate = delegate;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    public void handleErrorOnGet(String key, Exception e) {
+        if (allow("get", key, e)) {
+            delegate.handleErrorOnGet(key, e);
+        }
+    }
+
+    public void handleErrorOnSet(String key, int cacheTimeSeconds, Object o, Exception e) {
+        if (allow("set", key, e)) {
+            delegate.handleErrorOnSet(key, cacheTimeSeconds, o, e);
+        }
+    }
+
+    public void handleErrorOnDelete(String key, Exception e) {
+        if (allow("delete", key, e)) {
+            delegate.handleErrorOnDelete(key, e);
+        }
+    }
+
+    public void handleErrorOnIncr(String key, long factor, long startingValue, Exception e) {
+        if (allow("incr", key, e)) {
+            delegate.handleErrorOnIncr(key, factor, startingValue, e);
+        }
+    }
+
+    /**
+     * Gets the number of failures that were not passed on since this handler
+     * was created.
+     */
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    private boolean allow(String operation, String key, Exception e) {
+        long now = System.nanoTime();
+        long next = nextAllowed.get();
+        if (now - next >= 0 && nextAllowed.compareAndSet(next, now + intervalNanos)) {
+            long count = suppressedSinceLastAllowed.getAndSet(0);
+            if (count > 0) {
+                log.warn("{} more cache failures were not logged", count);
+            }
+            return true;
+        }
+
+        suppressed.incrementAndGet();
+        suppressedSinceLastAllowed.incrementAndGet();
+        log.debug("Cache '" + operation + "' failed for key [" + key + "]: " + e);
+        return false;
+    }
+}
@@ -0,0 +1,48 @@
+package com.googlecode.hibernate.memcached.client;
+
+/**
+ * An <code>Object</code> read from the cache together with the CAS 
+ * (check and set) identifier memcached assigned to it. The identifier changes
+ * every time the stored <code>Object</code> is modified, and can be passed to
+ * {@link HibernateMemcachedClient#cas(String, long, int, Object)} to replace
+ * the <code>Object</code> only if nobody else modified it in the meantime.
+ */
+public class CasValue {
+
+    private final long cas;
+    private final Object value;
+
+    /**
+     * Creates a new {@link CasValue}.
+     * 
+     * @param cas   the CAS identifier of the stored value
+     * @param value the stored value
+     */
+    public CasValue(long cas, Object value) {
+        this.cas = cas;
+        this.value = value;
+    }
+
+    /**
+     * Gets the CAS identifier of the stored value.
+     * 
+     * @return the CAS identifier
+     */
+    public long getCas() {
+        return cas;
+    }
+
+    /**
+     * Gets the stored value.
+     * 
+     * @return the stored value
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "CasValue(" + cas + ", " + value + ")";
+    }
+}
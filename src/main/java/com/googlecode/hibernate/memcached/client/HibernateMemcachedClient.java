@@ -1,11 +1,20 @@
 package com.googlecode.hibernate.memcached.client;
 
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * An interface to abstract
  * <a href="https://github.com/memcached/memcached/blob/master/doc/protocol.txt">
  * memcached operations</href>.
+ * <p>
+ * Every operation is available in a blocking form and in an asynchronous
+ * form (the <code>*Async</code> methods). The asynchronous forms return as
+ * soon as the request has been queued, which allows callers to overlap
+ * independent round trips. Errors are reported the same way for both forms:
+ * the returned {@link Future} yields the same fallback value (e.g.
+ * <code>null</code>, <code>false</code> or <code>-1</code>) the blocking
+ * method would have returned.
  *
  * @author  Ray Krueger
  */
@@ -28,6 +37,32 @@ public interface HibernateMemcachedClient {
      */
     public Map<String, Object> getMulti(String... keys);
 
+    /**
+     * Gets an <code>Object</code> from the cache along with its CAS 
+     * identifier.
+     * 
+     * @param key the identifier to look up
+     * @return    a {@link CasValue} holding the {@link Object} and its CAS
+     *            identifier, or <code>null</code> if nothing is stored under
+     *            the given key
+     */
+    public CasValue gets(String key);
+
+    /**
+     * Stores an <code>Object</code> in the cache under the given key, but only
+     * if the currently stored <code>Object</code> still has the given CAS 
+     * identifier.
+     * 
+     * @param key              an identifier to store the {@link Object} under
+     * @param casId            the CAS identifier returned by {@link #gets(String)}
+     * @param cacheTimeSeconds the number of seconds to store the given {@link Object}
+     * @param o                the {@link Object} to store
+     * @return                 <code>true</code> if the object was stored, 
+     *                         <code>false</code> if it was modified or removed
+     *                         since it was read, or on error
+     */
+    public boolean cas(String key, long casId, int cacheTimeSeconds, Object o);
+
     /**
      * Stores an <code>Object</code> in the cache under the given key for some
      * number of seconds. 
@@ -55,6 +90,20 @@ public interface HibernateMemcachedClient {
      */
     public boolean add(String key, int exp, Object o);
 
+    /**
+     * Stores multiple <code>Object</code>s in the cache for some number of
+     * seconds. All writes are sent before any reply is awaited, so the whole
+     * batch costs roughly a single round trip.
+     * 
+     * @param values           a {@link Map} of each identifier to the
+     *                         {@link Object} to store under it
+     * @param cacheTimeSeconds the number of seconds to store the given 
+     *                         {@link Object}s
+     * @return                 <code>true</code> if all the objects were 
+     *                         successfully stored, <code>false</code> otherwise
+     */
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds);
+
     /**
      * Removes an <code>Object</code> from the cache.
      * 
@@ -64,6 +113,16 @@ public interface HibernateMemcachedClient {
      */
     public boolean delete(String key);
 
+    /**
+     * Removes multiple <code>Object</code>s from the cache. All deletes are
+     * sent before any reply is awaited.
+     * 
+     * @param keys the identifiers for the {@link Object}s to remove
+     * @return     <code>true</code> if all the objects were successfully
+     *             removed, <code>false</code> otherwise
+     */
+    public boolean deleteMulti(String... keys);
+
     /**
      * Atomicly increments the numeric value stored under the given key.
      * 
@@ -86,6 +145,75 @@ public interface HibernateMemcachedClient {
      */
     long decr(String key, long by, long startingValue);
 
+    /**
+     * Asynchronously gets an <code>Object</code> from the cache.
+     * 
+     * @param key the identifier to look up
+     * @return    a {@link Future} holding the cached {@link Object} or
+     *            <code>null</code>
+     * @see #get(String)
+     */
+    public Future<Object> getAsync(String key);
+
+    /**
+     * Asynchronously gets multiple <code>Object</code>s from the cache in a
+     * single operation.
+     * 
+     * @param keys an array of identifiers to look up
+     * @return     a {@link Future} holding a {@link Map} of each key to its
+     *             associated {@link Object}, or an empty {@link Map}
+     * @see #getMulti(String...)
+     */
+    public Future<Map<String, Object>> getMultiAsync(String... keys);
+
+    /**
+     * Asynchronously stores an <code>Object</code> in the cache.
+     * 
+     * @param key              an identifier to store the {@link Object} under
+     * @param cacheTimeSeconds the number of seconds to store the given {@link Object}
+     * @param o                the {@link Object} to store
+     * @return                 a {@link Future} holding <code>true</code> if
+     *                         the object was successfully stored
+     * @see #set(String, int, Object)
+     */
+    public Future<Boolean> setAsync(String key, int cacheTimeSeconds, Object o);
+
+    /**
+     * Asynchronously stores an <code>Object</code> in the cache, but only if
+     * no <code>Object</code> is currently stored under the given key.
+     * 
+     * @param key an identifier to store the {@link Object} under
+     * @param exp the number of seconds to store the given {@link Object}
+     * @param o   the {@link Object} to store
+     * @return    a {@link Future} holding <code>true</code> if the object was
+     *            successfully stored
+     * @see #add(String, int, Object)
+     */
+    public Future<Boolean> addAsync(String key, int exp, Object o);
+
+    /**
+     * Asynchronously removes an <code>Object</code> from the cache.
+     * 
+     * @param key the identifier for the {@link Object} to remove
+     * @return    a {@link Future} holding <code>true</code> if the object was
+     *            successfully removed
+     * @see #delete(String)
+     */
+    public Future<Boolean> deleteAsync(String key);
+
+    /**
+     * Asynchronously increments the numeric value stored under the given key.
+     * 
+     * @param key           an identifier for the stored number
+     * @param factor        the amount to increment by
+     * @param startingValue a starting value for the key, used if no value
+     *                      is stored under the given key
+     * @return              a {@link Future} holding the new value, or 
+     *                      <code>-1</code>
+     * @see #incr(String, long, long)
+     */
+    public Future<Long> incrAsync(String key, long factor, long startingValue);
+
     /**
      * Initiates client shutdown.
      */
@@ -2,18 +2,31 @@ package com.googlecode.hibernate.memcached.client;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
-import org.hibernate.cache.spi.Region;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.googlecode.hibernate.memcached.MemcachedRegionProperties;
 import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
-import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrategy;
+import com.googlecode.hibernate.memcached.client.chunk.ChunkManifest;
+import com.googlecode.hibernate.memcached.client.chunk.ChunkedValue;
+import com.googlecode.hibernate.memcached.client.chunk.ValueChunker;
+import com.googlecode.hibernate.memcached.client.dogpile.DogpileEnvelope;
+import com.googlecode.hibernate.memcached.client.dogpile.DogpilePreventionMode;
+import com.googlecode.hibernate.memcached.client.dogpile.EarlyExpiration;
+import com.googlecode.hibernate.memcached.codec.CompressibleValue;
+import com.googlecode.hibernate.memcached.codec.CompressionPolicy;
+import com.googlecode.hibernate.memcached.concurrent.FutureAdapter;
+import com.googlecode.hibernate.memcached.concurrent.SingleFlight;
+import com.googlecode.hibernate.memcached.region.MemcachedRegion;
+import com.googlecode.hibernate.memcached.stats.RegionStatistics;
+import com.googlecode.hibernate.memcached.strategy.key.KeyBuilder;
+import com.googlecode.hibernate.memcached.strategy.key.RegionKeys;
 import com.googlecode.hibernate.memcached.utils.MemcachedRegionSettingsUtils;
-import com.googlecode.hibernate.memcached.utils.StringUtils;
 
 
 /**
@@ -26,6 +39,7 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * prefixing to a key using the {@link MemcachedRegionSettings#getName()} and
  * the clear index constructor argument. Additionally, all keys will be encoded
  * using a {@link MemcachedRegionSettingsUtils#getValidatedMemcachedKeyEncodingStrategy(MemcachedRegionSettings)}.
+ * The prefixes are joined once per clear index, see {@link RegionKeys}.
  * <p>
  * <b>Dogpile Prevention(stampeding herd prevention?):</b> Dogpile prevention
  * can be used to reduce the number of requests to the data store for an 
@@ -35,7 +49,7 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * <p>
  * It works by storing a dogpile token for each <code>Object</code> in the
  * cache for the requested <code>cacheTime</code> (usually 
- * {@link Region#getTimeout()}) and then storing the actual <code>Object</code>
+ * {@link MemcachedRegion#getCacheTimeSeconds()}) and then storing the actual <code>Object</code>
  * for some longer amount of time. If enabled any <code>get</code> request will
  * retrieve both the dogpile token in addition to the requested 
  * <code>Object</code>. Once a request has found that the dogpile token for an
@@ -57,6 +71,47 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * This is, of course, only helpful if your data expires from the cache and you
  * expect many requests for an <code>Object</code> in the time that it takes to
  * refresh the cache after an expiration.
+ * <p>
+ * <b>Envelopes:</b> In {@link DogpilePreventionMode#ENVELOPE} mode no dogpile
+ * tokens are used. Each <code>Object</code> is stored in a
+ * {@link DogpileEnvelope} that carries its soft expiry time (the requested
+ * <code>cacheTime</code>), and the envelope is cached for the extended time.
+ * Reads fetch a single item, and the region's {@link EarlyExpiration} decides
+ * which request is handed <code>null</code> to refresh the value, while others
+ * keep getting the cached <code>Object</code>.
+ * <p>
+ * <b>Single flight:</b> If the region has a {@link SingleFlight} table,
+ * concurrent {@link #get(String)}s of the same key share one request to
+ * Memcached (except with dogpile tokens, whose reads have side effects).
+ * Every write of a key ends its flight.
+ * <p>
+ * <b>Statistics:</b> If the region records {@link RegionStatistics}, the
+ * hits, misses, writes, deletes and latencies of the synchronous operations
+ * are recorded, as well as exceptions thrown by the underlying client.
+ * Asynchronous operations are counted without a latency. Reads made by
+ * {@link #gets(String)} and counter updates are not counted.
+ * <p>
+ * <b>Compression:</b> If the region has a {@link CompressionPolicy}, written
+ * values are passed to the underlying client in a {@link CompressibleValue},
+ * and the client's transcoder compresses them as the policy decides. Reads
+ * need no help: compressed values are flagged as such when stored.
+ * <p>
+ * <b>Chunking:</b> If the region has a {@link ValueChunker}, values too large
+ * for a single Memcached item are split into chunks. The chunks are written in
+ * one {@link HibernateMemcachedClient#setMulti(Map, int)} before a
+ * {@link ChunkManifest} is written in place of the value, and are read back
+ * with one {@link HibernateMemcachedClient#getMulti(String...)} when the
+ * manifest is read. Chunk keys include the generation of their manifest, so
+ * a write, even one that loses to another (a failed <code>add</code> or
+ * <code>cas</code>), never replaces the chunks of the value still stored; its
+ * own chunks are left to expire. Chunks that do not belong to the manifest
+ * make the read a miss.
+ * <p>
+ * {@link #delete(String)} and {@link #deleteMulti(String...)} read the
+ * manifests first, one extra round trip even for values that were never
+ * chunked, so that the chunks are deleted along with them, without waiting for
+ * their replies. {@link #deleteAsync(String)} deletes only the manifest, its
+ * chunks expire.
  * 
  * @see MemcachedRegionProperties
  */
@@ -68,86 +123,339 @@ public class HibernateMemcachedRegionClient implements HibernateMemcachedClient
 
     private final HibernateMemcachedClient client;
     private final MemcachedRegionSettings settings;
-    private final long clearIndex;
     
-    private final String fullDogpileTokenKeyPrefix;
-    private final KeyEncodingStrategy keyEncodingStrategy;
+    private final KeyBuilder objectKeys;
+    private final KeyBuilder dogpileTokenKeys;
+    private final KeyBuilder chunkKeys;
     
-    private final String name;
     private final int cacheTime;
+    private final EarlyExpiration earlyExpiration;
+    private final SingleFlight singleFlight;
+    private final CompressionPolicy compressionPolicy;
+    private final ValueChunker valueChunker;
+    private final RegionStatistics statistics;
     
     public HibernateMemcachedRegionClient(HibernateMemcachedClient client, MemcachedRegionSettings settings, long clearIndex2) {
         this.client = client;
         this.settings = settings;
-        this.clearIndex = clearIndex2;
 
-        this.fullDogpileTokenKeyPrefix = 
-                MemcachedRegionSettingsUtils.getFullDogpileTokenKeyPrefix(settings);
-        this.keyEncodingStrategy = 
-                MemcachedRegionSettingsUtils.getValidatedMemcachedKeyEncodingStrategy(settings);
+        RegionKeys regionKeys = RegionKeys.get(settings, clearIndex2);
+        this.objectKeys = regionKeys.getObjectKeys();
+        this.dogpileTokenKeys = regionKeys.getDogpileTokenKeys();
+        this.chunkKeys = regionKeys.getChunkKeys();
         
-        this.name = settings.getName();
         this.cacheTime = settings.getCacheTimeSeconds(); // used for dogpile timeout, make separate config?
+        this.earlyExpiration = getEarlyExpiration(settings);
+        this.singleFlight = settings.getSingleFlight();
+        this.compressionPolicy = settings.getCompressionPolicy();
+        this.valueChunker = settings.getValueChunker();
+        this.statistics = settings.getStatistics();
     }
     
     @Override
     public Object get(String key) {
+        long start = startTimer();
+        try {
+            Object value = doGet(key);
+            recordRead(value != null ? 1 : 0, value == null ? 1 : 0, start);
+            return value;
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMulti(String... keys) {
+        long start = startTimer();
+        try {
+            Map<String, Object> multi = doGetMulti(keys);
+            recordRead(multi.size(), keys.length - multi.size(), start);
+            return multi;
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    private Object doGet(String key) {
         String fullKey = getFullKey(key);
         
-        if (settings.isDogpilePreventionEnabled()) {
+        if (earlyExpiration != null) {
+            return resolve(key, earlyExpiration.unwrap(fullKey, fetch(key, fullKey)));
+        } else if (settings.isDogpilePreventionEnabled()) {
             Map<String, Object> multi = getMultiUsingDogpilePrevention(key);
-            return multi.get(fullKey);
+            return multi.get(key);
         } else {
-            log.debug("Memcached.get({})", fullKey);
-            return client.get(fullKey);
+            return resolve(key, fetch(key, fullKey));
         }
     }
 
-    @Override
-    public Map<String, Object> getMulti(String... keys) {
-        if (settings.isDogpilePreventionEnabled()) {
+    private Map<String, Object> doGetMulti(String... keys) {
+        if (earlyExpiration == null && settings.isDogpilePreventionEnabled()) {
             return getMultiUsingDogpilePrevention(keys);
-        } else {
-            keys = getFullKeyMulti(keys);
-            log.debug("Memcached.getMulti({})", keys);
-            return client.getMulti(keys);
         }
-        
+        String[] fullKeys = getFullKeyMulti(keys);
+        log.debug("Memcached.getMulti({})", fullKeys);
+        return toCallerKeys(client.getMulti(fullKeys), keys, fullKeys);
     }
 
     @Override
-    public boolean set(String key, int cacheTimeSeconds, Object o) {
-        int cacheTime = setDogpileKey(cacheTimeSeconds, key);
+    public CasValue gets(String key) {
+        // gets is used to read before a write, so dogpile tokens are ignored
         String fullKey = getFullKey(key);
-        log.debug("Memcached.set({})", fullKey);
-        return client.set(fullKey, cacheTime, o);
+        log.debug("Memcached.gets({})", fullKey);
+        CasValue casValue;
+        try {
+            casValue = client.gets(fullKey);
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+        if (casValue == null) {
+            return null;
+        }
+        Object value = casValue.getValue();
+        if (value instanceof DogpileEnvelope) {
+            value = ((DogpileEnvelope) value).getValue();
+        }
+        if (value instanceof ChunkManifest) {
+            // a manifest whose chunks are gone still holds the cas id to replace it with
+            value = resolve(key, value);
+        }
+        return value == casValue.getValue() ? casValue : new CasValue(casValue.getCas(), value);
+    }
+
+    @Override
+    public boolean cas(String key, long casId, int cacheTimeSeconds, Object o) {
+        long start = startTimer();
+        try {
+            int cacheTime = setDogpileKey(cacheTimeSeconds, key);
+            String fullKey = getFullKey(key);
+            written(fullKey);
+            log.debug("Memcached.cas({})", fullKey);
+            boolean stored = client.cas(fullKey, casId, cacheTime, wrap(key, fullKey, cacheTime, cacheTimeSeconds, o));
+            recordPut(1, start);
+            return stored;
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public boolean set(String key, int cacheTimeSeconds, Object o) {
+        long start = startTimer();
+        try {
+            int cacheTime = setDogpileKey(cacheTimeSeconds, key);
+            String fullKey = getFullKey(key);
+            written(fullKey);
+            log.debug("Memcached.set({})", fullKey);
+            boolean stored = client.set(fullKey, cacheTime, wrap(key, fullKey, cacheTime, cacheTimeSeconds, o));
+            recordPut(1, start);
+            return stored;
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
     }
     
     @Override
     public boolean add(String key, int cacheTimeSeconds, Object o) {
-        int cacheTime = setDogpileKey(cacheTimeSeconds, key);
-        String fullKey = getFullKey(key);
-        log.debug("Memcached.add({})", fullKey);
-        return client.add(fullKey, cacheTime, o);
+        long start = startTimer();
+        try {
+            int cacheTime = setDogpileKey(cacheTimeSeconds, key);
+            String fullKey = getFullKey(key);
+            written(fullKey);
+            log.debug("Memcached.add({})", fullKey);
+            boolean stored = client.add(fullKey, cacheTime, wrap(key, fullKey, cacheTime, cacheTimeSeconds, o));
+            recordPut(1, start);
+            return stored;
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
     }
     
     @Override
     public boolean delete(String key) {
         // delete dogpile token also?
+        long start = startTimer();
         String fullKey = getFullKey(key);
-        return client.delete(fullKey);
+        deleted(key, fullKey);
+        try {
+            deleteChunks(key, fullKey);
+            boolean deleted = client.delete(fullKey);
+            recordEviction(1, start);
+            return deleted;
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds) {
+        long start = startTimer();
+        try {
+            int cacheTime = setDogpileKeyMulti(cacheTimeSeconds, values.keySet());
+            Map<String, Object> fullValues = new HashMap<String, Object>(values.size() * 2);
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                String fullKey = getFullKey(entry.getKey());
+                written(fullKey);
+                fullValues.put(fullKey, wrap(entry.getKey(), fullKey, cacheTime, cacheTimeSeconds, entry.getValue()));
+            }
+            log.debug("Memcached.setMulti({})", fullValues.keySet());
+            boolean stored = client.setMulti(fullValues, cacheTime);
+            recordPut(values.size(), start);
+            return stored;
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public boolean deleteMulti(String... keys) {
+        long start = startTimer();
+        String[] fullKeys = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            fullKeys[i] = getFullKey(keys[i]);
+            deleted(keys[i], fullKeys[i]);
+        }
+        try {
+            deleteChunks(keys, fullKeys);
+            boolean deleted = client.deleteMulti(fullKeys);
+            recordEviction(keys.length, start);
+            return deleted;
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
     }
 
     @Override
     public long incr(String key, long factor, long startingValue) {
         String fullKey = getFullKey(key);
-        return client.incr(fullKey, factor, startingValue);
+        written(fullKey);
+        try {
+            return client.incr(fullKey, factor, startingValue);
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
     }
 
     @Override
     public long decr(String key, long by, long startingValue) {
         String fullKey = getFullKey(key);
-        return client.decr(fullKey, by, startingValue);
+        written(fullKey);
+        try {
+            return client.decr(fullKey, by, startingValue);
+        } catch (RuntimeException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public Future<Object> getAsync(String key) {
+        Future<Object> future = doGetAsync(key);
+        if (statistics == null) {
+            return future;
+        }
+        return new FutureAdapter<Object, Object>(future) {
+            @Override
+            protected Object convert(Object value) {
+                recordRead(value != null ? 1 : 0, value == null ? 1 : 0, -1);
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public Future<Map<String, Object>> getMultiAsync(final String... keys) {
+        Future<Map<String, Object>> future = doGetMultiAsync(keys);
+        if (statistics == null) {
+            return future;
+        }
+        return new FutureAdapter<Map<String, Object>, Map<String, Object>>(future) {
+            @Override
+            protected Map<String, Object> convert(Map<String, Object> multi) {
+                recordRead(multi.size(), keys.length - multi.size(), -1);
+                return multi;
+            }
+        };
+    }
+
+    private Future<Object> doGetAsync(final String key) {
+        final String fullKey = getFullKey(key);
+        
+        if (earlyExpiration != null) {
+            log.debug("Memcached.getAsync({})", fullKey);
+            return new FutureAdapter<Object, Object>(client.getAsync(fullKey)) {
+                @Override
+                protected Object convert(Object stored) {
+                    return resolve(key, earlyExpiration.unwrap(fullKey, stored));
+                }
+            };
+        } else if (settings.isDogpilePreventionEnabled()) {
+            return new FutureAdapter<Map<String, Object>, Object>(getMultiAsyncUsingDogpilePrevention(key)) {
+                @Override
+                protected Object convert(Map<String, Object> multi) {
+                    return multi.get(key);
+                }
+            };
+        } else {
+            log.debug("Memcached.getAsync({})", fullKey);
+            if (valueChunker == null) {
+                return client.getAsync(fullKey);
+            }
+            return new FutureAdapter<Object, Object>(client.getAsync(fullKey)) {
+                @Override
+                protected Object convert(Object stored) {
+                    return resolve(key, stored);
+                }
+            };
+        }
+    }
+
+    private Future<Map<String, Object>> doGetMultiAsync(final String... keys) {
+        if (earlyExpiration == null && settings.isDogpilePreventionEnabled()) {
+            return getMultiAsyncUsingDogpilePrevention(keys);
+        }
+        final String[] fullKeys = getFullKeyMulti(keys);
+        log.debug("Memcached.getMultiAsync({})", fullKeys);
+        return new FutureAdapter<Map<String, Object>, Map<String, Object>>(client.getMultiAsync(fullKeys)) {
+            @Override
+            protected Map<String, Object> convert(Map<String, Object> multi) {
+                return toCallerKeys(multi, keys, fullKeys);
+            }
+        };
+    }
+
+    @Override
+    public Future<Boolean> setAsync(String key, int cacheTimeSeconds, Object o) {
+        int cacheTime = setDogpileKey(cacheTimeSeconds, key);
+        String fullKey = getFullKey(key);
+        written(fullKey);
+        log.debug("Memcached.setAsync({})", fullKey);
+        recordPut(1, -1);
+        return client.setAsync(fullKey, cacheTime, wrap(key, fullKey, cacheTime, cacheTimeSeconds, o));
+    }
+
+    @Override
+    public Future<Boolean> addAsync(String key, int cacheTimeSeconds, Object o) {
+        int cacheTime = setDogpileKey(cacheTimeSeconds, key);
+        String fullKey = getFullKey(key);
+        written(fullKey);
+        log.debug("Memcached.addAsync({})", fullKey);
+        recordPut(1, -1);
+        return client.addAsync(fullKey, cacheTime, wrap(key, fullKey, cacheTime, cacheTimeSeconds, o));
+    }
+
+    @Override
+    public Future<Boolean> deleteAsync(String key) {
+        String fullKey = getFullKey(key);
+        deleted(key, fullKey);
+        recordEviction(1, -1);
+        return client.deleteAsync(fullKey);
+    }
+
+    @Override
+    public Future<Long> incrAsync(String key, long factor, long startingValue) {
+        String fullKey = getFullKey(key);
+        written(fullKey);
+        return client.incrAsync(fullKey, factor, startingValue);
     }
 
     @Override
@@ -158,7 +466,10 @@ public class HibernateMemcachedRegionClient implements HibernateMemcachedClient
     // private and protected methods
     
     /**
-     * Sets the dogpile token, if dogpile prevention is enabled.
+     * Sets the dogpile token, if dogpile prevention is enabled in
+     * {@link DogpilePreventionMode#TOKEN} mode. The token is written
+     * asynchronously so that it overlaps with the write of the
+     * <code>Object</code> itself.
      *
      * @param cacheTime  the amount of time to cache the dogpile token
      * @param key        the identifier for an object to be stored
@@ -167,9 +478,11 @@ public class HibernateMemcachedRegionClient implements HibernateMemcachedClient
      */
     private int setDogpileKey(int cacheTime, String key) {
         if (settings.isDogpilePreventionEnabled()) {
-            String dogpileKey = getDogpileTokenKey(key);
-            log.debug("Dogpile prevention enabled, setting token and adjusting object cache time. Key: [{}]", dogpileKey);
-            client.set(dogpileKey, cacheTime, DOGPILE_TOKEN);
+            if (earlyExpiration == null) {
+                String dogpileKey = getDogpileTokenKey(key);
+                log.debug("Dogpile prevention enabled, setting token and adjusting object cache time. Key: [{}]", dogpileKey);
+                client.setAsync(dogpileKey, cacheTime, DOGPILE_TOKEN);
+            }
             cacheTime = (int) (cacheTime * settings.getDogpilePreventionExpirationFactor());
             // does this play nice with minimal puts?
         }
@@ -177,6 +490,33 @@ public class HibernateMemcachedRegionClient implements HibernateMemcachedClient
         return cacheTime;
     }
     
+    /**
+     * Sets the dogpile tokens for all the given keys in a single 
+     * {@link HibernateMemcachedClient#setMulti(Map, int)}, if dogpile
+     * prevention is enabled.
+     *
+     * @param cacheTime  the amount of time to cache the dogpile tokens
+     * @param keys       the identifiers for the objects to be stored
+     * @return           the amount of time to cache the {@link Object}s under
+     *                   the given keys
+     * @see #setDogpileKey(int, String)
+     */
+    private int setDogpileKeyMulti(int cacheTime, Iterable<String> keys) {
+        if (settings.isDogpilePreventionEnabled() && earlyExpiration == null) {
+            Map<String, Object> tokens = new HashMap<String, Object>();
+            for (String key : keys) {
+                tokens.put(getDogpileTokenKey(key), DOGPILE_TOKEN);
+            }
+            log.debug("Dogpile prevention enabled, setting tokens and adjusting object cache time. Keys: [{}]", tokens.keySet());
+            client.setMulti(tokens, cacheTime);
+        }
+        if (settings.isDogpilePreventionEnabled()) {
+            cacheTime = (int) (cacheTime * settings.getDogpilePreventionExpirationFactor());
+        }
+        
+        return cacheTime;
+    }
+    
     /**
      * Gets all the objects in Memcached associated with the given keys using 
      * dogpile prevention rules.
@@ -187,27 +527,62 @@ public class HibernateMemcachedRegionClient implements HibernateMemcachedClient
      * in the result <code>Map</code>.
      * 
      * @param keys       a list of identifiers to look up
-     * @return           a {@link Map} of each key to its associated 
+     * @return           a {@link Map} of each given key to its associated 
      *                   {@link Object} from the cache, if one exists and has
      *                   its dogpile token set. Or an empty {@link Map}
      */
     private Map<String, Object> getMultiUsingDogpilePrevention(String ... keys) {
-        List<String> allKeys = new ArrayList<String>(keys.length*2);
-        
         String[] fullKeys = getFullKeyMulti(keys);
         String[] dogpileKeys = getDogpileTokenKeyMulti(keys);
         log.debug("Checking dogpile keys: [{}]", dogpileKeys);
         
-        allKeys.addAll(Arrays.asList(fullKeys));
-        allKeys.addAll(Arrays.asList(dogpileKeys));
-        
+        String[] allKeys = concatenateKeys(fullKeys, dogpileKeys);
         log.debug("Memcache.getMulti({})", allKeys);
-        Map<String, Object> multi = client.getMulti((String[]) allKeys.toArray());
-
-        for (int i = 0; i < keys.length; i++) {
+        
+        Map<String, Object> multi = removeExpiredDogpileEntries(client.getMulti(allKeys), fullKeys, dogpileKeys);
+        return toCallerKeys(multi, keys, fullKeys);
+    }
+    
+    /**
+     * The asynchronous form of {@link #getMultiUsingDogpilePrevention(String...)}.
+     * The dogpile rules are applied when the result is read.
+     * 
+     * @param keys a list of identifiers to look up
+     * @return     a {@link Future} holding the result of
+     *             {@link #getMultiUsingDogpilePrevention(String...)}
+     */
+    private Future<Map<String, Object>> getMultiAsyncUsingDogpilePrevention(final String ... keys) {
+        final String[] fullKeys = getFullKeyMulti(keys);
+        final String[] dogpileKeys = getDogpileTokenKeyMulti(keys);
+        log.debug("Checking dogpile keys: [{}]", dogpileKeys);
+        
+        String[] allKeys = concatenateKeys(fullKeys, dogpileKeys);
+        log.debug("Memcache.getMultiAsync({})", allKeys);
+        
+        return new FutureAdapter<Map<String, Object>, Map<String, Object>>(client.getMultiAsync(allKeys)) {
+            @Override
+            protected Map<String, Object> convert(Map<String, Object> multi) {
+                return toCallerKeys(removeExpiredDogpileEntries(multi, fullKeys, dogpileKeys), keys, fullKeys);
+            }
+        };
+    }
+    
+    /**
+     * Removes the dogpile tokens from the given result, along with any 
+     * <code>Object</code> whose dogpile token has expired. Expired tokens are
+     * reset without waiting for the write to complete.
+     * 
+     * @param multi       the result of a multi get for both the object keys
+     *                    and the dogpile keys
+     * @param fullKeys    the full object keys
+     * @param dogpileKeys the dogpile keys, in the same order as the object keys
+     * @return            the given result
+     */
+    private Map<String, Object> removeExpiredDogpileEntries(Map<String, Object> multi, String[] fullKeys, String[] dogpileKeys) {
+        for (int i = 0; i < fullKeys.length; i++) {
             if (multi.get(fullKeys[i]) != null && multi.get(dogpileKeys[i]) == null) {
                 log.debug("Dogpile key ({}) not found updating token and returning null", dogpileKeys[i]);
-                client.set(dogpileKeys[i], cacheTime, DOGPILE_TOKEN);
+                client.setAsync(dogpileKeys[i], cacheTime, DOGPILE_TOKEN);
                 multi.remove(fullKeys[i]);
             }
             multi.remove(dogpileKeys[i]);
@@ -216,37 +591,259 @@ public class HibernateMemcachedRegionClient implements HibernateMemcachedClient
         return multi;
     }
     
-    // Private Key Constructors
+    /**
+     * Reads the given key from Memcached, sharing the request with concurrent
+     * reads of the same key if the region has a {@link SingleFlight} table.
+     * 
+     * @param key     the key as given by the caller
+     * @param fullKey the full key to read
+     * @return        the stored object
+     */
+    private Object fetch(String key, final String fullKey) {
+        log.debug("Memcached.get({})", fullKey);
+        if (singleFlight == null) {
+            return client.get(fullKey);
+        }
+        return singleFlight.get(fullKey, key, new SingleFlight.Loader() {
+            @Override
+            public Object load() {
+                return client.get(fullKey);
+            }
+        });
+    }
     
-    private String getDogpileTokenKey(String key) {
-        return getFullKey(fullDogpileTokenKeyPrefix, key);
+    private long startTimer() {
+        return statistics == null ? -1 : System.nanoTime();
     }
     
-    private String[] getDogpileTokenKeyMulti(String ... keys) {
-        return getFullKeyMulti(fullDogpileTokenKeyPrefix, keys);
+    private void recordRead(int hits, int misses, long start) {
+        if (statistics != null) {
+            statistics.read(hits, misses, start);
+        }
     }
     
-    private String getFullKey(String key) {
-        return getFullKey(name, key);
+    private void recordPut(int count, long start) {
+        if (statistics != null) {
+            statistics.put(count, start);
+        }
     }
     
-    private String[] getFullKeyMulti(String ... keys) {
-        return getFullKeyMulti(name, keys);
+    private void recordEviction(int count, long start) {
+        if (statistics != null) {
+            statistics.evict(count, start);
+        }
+    }
+    
+    private RuntimeException failed(RuntimeException e) {
+        if (statistics != null) {
+            statistics.error();
+        }
+        return e;
+    }
+    
+    private void written(String fullKey) {
+        if (singleFlight != null) {
+            singleFlight.written(fullKey);
+        }
+    }
+    
+    private void deleted(String key, String fullKey) {
+        if (singleFlight != null) {
+            singleFlight.deleted(fullKey, key);
+        }
+    }
+    
+    /**
+     * Splits the given <code>Object</code> into chunks, if the region chunks
+     * values and it is too large for one item, writing the chunks and
+     * replacing the object with their {@link ChunkManifest}. The result is
+     * then wrapped in a {@link DogpileEnvelope}, if envelopes are used, and in
+     * a {@link CompressibleValue}, if the region compresses values.
+     * 
+     * @param key              the key as given by the caller
+     * @param fullKey          the full key the object is stored under
+     * @param cacheTime        the amount of time the object is stored for,
+     *                         and so its chunks
+     * @param cacheTimeSeconds the requested cache time, which becomes the
+     *                         soft expiry time of the envelope
+     * @param o                the object to store
+     * @return                 the object to send to Memcached
+     */
+    private Object wrap(String key, String fullKey, int cacheTime, int cacheTimeSeconds, Object o) {
+        Object value = valueChunker == null ? o : writeChunks(key, cacheTime, o);
+        if (earlyExpiration != null) {
+            value = earlyExpiration.wrap(fullKey, value, cacheTimeSeconds);
+        }
+        return compress(value);
+    }
+    
+    private Object compress(Object value) {
+        return compressionPolicy == null ? value : new CompressibleValue(value, compressionPolicy);
+    }
+    
+    /**
+     * Writes the chunks of the given <code>Object</code>, if it is too large
+     * for one item. The chunks are written without waiting, ahead of the
+     * manifest that refers to them.
+     * 
+     * @param key       the key as given by the caller
+     * @param cacheTime the amount of time to store the chunks for
+     * @param o         the object to store
+     * @return          the manifest of the chunks, or the given object if it
+     *                  was not split
+     */
+    private Object writeChunks(String key, int cacheTime, Object o) {
+        ChunkedValue chunked = valueChunker.split(o);
+        if (chunked == null) {
+            return o;
+        }
+        byte[][] chunks = chunked.getChunks();
+        long generation = chunked.getManifest().getGeneration();
+        Map<String, Object> chunkValues = new HashMap<String, Object>(chunks.length * 2);
+        for (int i = 0; i < chunks.length; i++) {
+            chunkValues.put(getChunkKey(key, generation, i), compress(chunks[i]));
+        }
+        log.debug("Memcached.setMulti({})", chunkValues.keySet());
+        client.setMulti(chunkValues, cacheTime);
+        return chunked.getManifest();
     }
     
-    private String getFullKey(String prefix, String key) {
-        return keyEncodingStrategy.encode(concatenateKey(prefix, key));
+    /**
+     * Deletes the chunks of the value stored under the given key, if the
+     * region chunks values and a {@link ChunkManifest} is stored. This reads
+     * the value, the deletes are not waited for.
+     * 
+     * @param key     the key as given by the caller
+     * @param fullKey the full key of the value
+     */
+    private void deleteChunks(String key, String fullKey) {
+        if (valueChunker != null) {
+            deleteChunks(new String[] {key}, new String[] {fullKey});
+        }
     }
     
-    private String[] getFullKeyMulti(String prefix, String ... keys) {
+    /**
+     * Deletes the chunks of the values stored under the given keys, if the
+     * region chunks values. The manifests are read with one
+     * {@link HibernateMemcachedClient#getMulti(String...)}, the deletes are
+     * not waited for.
+     * 
+     * @param keys     the keys as given by the caller
+     * @param fullKeys the full keys, in the same order as the keys
+     */
+    private void deleteChunks(String[] keys, String[] fullKeys) {
+        if (valueChunker == null) {
+            return;
+        }
+        log.debug("Memcached.getMulti({})", fullKeys);
+        Map<String, Object> multi = client.getMulti(fullKeys);
         for (int i = 0; i < keys.length; i++) {
-            keys[i] = keyEncodingStrategy.encode(concatenateKey(prefix,  keys[i]));
+            Object value = multi.get(fullKeys[i]);
+            if (value instanceof DogpileEnvelope) {
+                value = ((DogpileEnvelope) value).getValue();
+            }
+            if (value instanceof ChunkManifest) {
+                for (String chunkKey : getChunkKeys(keys[i], (ChunkManifest) value)) {
+                    log.debug("Memcached.deleteAsync({})", chunkKey);
+                    client.deleteAsync(chunkKey);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reads and joins the chunks of the given value, if it is a
+     * {@link ChunkManifest}.
+     * 
+     * @param key   the key as given by the caller
+     * @param value the value read, unwrapped from its envelope
+     * @return      the joined value, <code>null</code> if the chunks are
+     *              missing or belong to another write, or the given value if
+     *              it is not a manifest
+     */
+    private Object resolve(String key, Object value) {
+        if (valueChunker == null || !(value instanceof ChunkManifest)) {
+            return value;
+        }
+        ChunkManifest manifest = (ChunkManifest) value;
+        String[] chunkKeys = getChunkKeys(key, manifest);
+        log.debug("Memcached.getMulti({})", chunkKeys);
+        Map<String, Object> multi = client.getMulti(chunkKeys);
+        Object[] chunks = new Object[chunkKeys.length];
+        for (int i = 0; i < chunkKeys.length; i++) {
+            chunks[i] = multi.get(chunkKeys[i]);
+        }
+        return valueChunker.join(manifest, chunks);
+    }
+    
+    /**
+     * Maps the result of a multi get back to the keys given by the caller,
+     * unwrapping envelopes if they are used and joining chunked values. Keys
+     * without a value are left out.
+     * 
+     * @param multi    the result of a multi get, keyed by full key
+     * @param keys     the keys as given by the caller
+     * @param fullKeys the full keys, in the same order as the keys
+     * @return         a {@link Map} of each given key to its value
+     */
+    private Map<String, Object> toCallerKeys(Map<String, Object> multi, String[] keys, String[] fullKeys) {
+        Map<String, Object> result = new HashMap<String, Object>(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            Object value = multi.get(fullKeys[i]);
+            if (earlyExpiration != null) {
+                value = earlyExpiration.unwrap(fullKeys[i], value);
+            }
+            value = resolve(keys[i], value);
+            if (value != null) {
+                result.put(keys[i], value);
+            }
+        }
+        return result;
+    }
+    
+    private static EarlyExpiration getEarlyExpiration(MemcachedRegionSettings settings) {
+        if (!settings.isDogpilePreventionEnabled()
+                || settings.getDogpilePreventionMode() != DogpilePreventionMode.ENVELOPE) {
+            return null;
+        }
+        EarlyExpiration earlyExpiration = settings.getEarlyExpiration();
+        return earlyExpiration != null ? earlyExpiration : new EarlyExpiration(settings.getDogpilePreventionBeta());
+    }
+    
+    private String[] concatenateKeys(String[] fullKeys, String[] dogpileKeys) {
+        List<String> allKeys = new ArrayList<String>(fullKeys.length + dogpileKeys.length);
+        allKeys.addAll(Arrays.asList(fullKeys));
+        allKeys.addAll(Arrays.asList(dogpileKeys));
+        return allKeys.toArray(new String[allKeys.size()]);
+    }
+    
+    // Private Key Constructors
+    
+    private String getDogpileTokenKey(String key) {
+        return dogpileTokenKeys.build(key);
+    }
+    
+    private String[] getDogpileTokenKeyMulti(String ... keys) {
+        return dogpileTokenKeys.build(keys);
+    }
+    
+    private String getChunkKey(String key, long generation, int index) {
+        return chunkKeys.build(key + '#' + generation + '#' + index);
+    }
+    
+    private String[] getChunkKeys(String key, ChunkManifest manifest) {
+        String[] keys = new String[manifest.getChunkCount()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = getChunkKey(key, manifest.getGeneration(), i);
         }
-        
         return keys;
     }
     
-    private String concatenateKey(String prefix, String key) {
-        return StringUtils.join(settings.getNamespaceSeparator(), prefix, clearIndex, key);
+    private String getFullKey(String key) {
+        return objectKeys.build(key);
+    }
+    
+    private String[] getFullKeyMulti(String ... keys) {
+        return objectKeys.build(keys);
     }
 }
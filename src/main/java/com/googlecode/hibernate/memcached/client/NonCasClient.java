@@ -0,0 +1,12 @@
+package com.googlecode.hibernate.memcached.client;
+
+/**
+ * A {@link HibernateMemcachedClient} that cannot perform
+ * {@link #gets(String)} and {@link #cas(String, long, int, Object)}. Regions
+ * configured for CAS based read/write access fall back to key locks when the
+ * cache uses such a client.
+ *
+ * @see com.googlecode.hibernate.memcached.MemcachedProperties#isCasReadWriteEnabled()
+ */
+public interface NonCasClient extends HibernateMemcachedClient {
+}
@@ -0,0 +1,27 @@
+package com.googlecode.hibernate.memcached.client;
+
+import com.googlecode.hibernate.memcached.MemcacheExceptionHandler;
+
+/**
+ * A {@link HibernateMemcachedClient} that reports its failures to a
+ * {@link MemcacheExceptionHandler} instead of throwing them, and knows which
+ * server a key is stored on.
+ */
+public interface ServerAwareClient extends HibernateMemcachedClient {
+
+    /**
+     * Sets the handler failed operations are reported to.
+     *
+     * @param exceptionHandler the handler
+     */
+    public void setExceptionHandler(MemcacheExceptionHandler exceptionHandler);
+
+    /**
+     * Gets the server the given key is stored on.
+     *
+     * @param key the key
+     * @return    a name identifying the server, or <code>null</code> if
+     *            the server is not known
+     */
+    public String getServer(String key);
+}
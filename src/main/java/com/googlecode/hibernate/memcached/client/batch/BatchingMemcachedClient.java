@@ -0,0 +1,247 @@
+package com.googlecode.hibernate.memcached.client.batch;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.client.CasValue;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+
+/**
+ * A {@link HibernateMemcachedClient} that collects concurrent single key
+ * {@link #get(String)}s and sends them as one
+ * {@link HibernateMemcachedClient#getMulti(String...)}.
+ * <p>
+ * The first thread to call <code>get</code> opens a batch and waits for the
+ * batch window to pass. Threads calling <code>get</code> in the meantime add
+ * their keys to the open batch. When the window has passed, or the batch is
+ * full, the batch is closed and sent by the thread that closed it; every
+ * caller then takes its value from the shared result. A batch holding a single
+ * key is sent as a plain <code>get</code>.
+ * <p>
+ * This adds at most the batch window to the latency of a <code>get</code>, in
+ * return for far fewer requests when many threads read at once. How a
+ * <code>getMulti</code> is split between the servers is up to the wrapped
+ * client. All other operations are passed on unchanged.
+ */
+public class BatchingMemcachedClient implements HibernateMemcachedClient {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingMemcachedClient.class);
+
+    private final HibernateMemcachedClient client;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final Object lock = new Object();
+    private Batch open;
+
+    /**
+     * Creates a new {@link BatchingMemcachedClient}.
+     *
+     * @param client       the client used to access Memcached
+     * @param windowMicros the time a batch is kept open, in microseconds
+     * @param maxBatchSize the number of keys after which a batch is sent
+     *                     without waiting for the window to pass
+     */
+    public BatchingMemcachedClient(HibernateMemcachedClient client, long windowMicros, int maxBatchSize) {
+        this.client = client;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    @Override
+    public Object get(String key) {
+        Batch batch;
+        boolean opened = false;
+        boolean full = false;
+        synchronized (lock) {
+            if (open == null) {
+                open = new Batch(System.nanoTime() + windowNanos);
+                opened = true;
+            }
+            batch = open;
+            batch.keys.add(key);
+            if (batch.keys.size() >= maxBatchSize) {
+                open = null;
+                full = true;
+            }
+        }
+
+        if (full) {
+            batch.send(client);
+        } else if (opened) {
+            waitForWindow(batch);
+            if (close(batch)) {
+                batch.send(client);
+            }
+        }
+        return batch.get(key);
+    }
+
+    @Override
+    public Map<String, Object> getMulti(String... keys) {
+        return client.getMulti(keys);
+    }
+
+    @Override
+    public CasValue gets(String key) {
+        return client.gets(key);
+    }
+
+    @Override
+    public boolean cas(String key, long casId, int cacheTimeSeconds, Object o) {
+        return client.cas(key, casId, cacheTimeSeconds, o);
+    }
+
+    @Override
+    public boolean set(String key, int cacheTimeSeconds, Object o) {
+        return client.set(key, cacheTimeSeconds, o);
+    }
+
+    @Override
+    public boolean add(String key, int exp, Object o) {
+        return client.add(key, exp, o);
+    }
+
+    @Override
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds) {
+        return client.setMulti(values, cacheTimeSeconds);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        return client.delete(key);
+    }
+
+    @Override
+    public boolean deleteMulti(String... keys) {
+        return client.deleteMulti(keys);
+    }
+
+    @Override
+    public long incr(String key, long factor, long startingValue) {
+        return client.incr(key, factor, startingValue);
+    }
+
+    @Override
+    public long decr(String key, long by, long startingValue) {
+        return client.decr(key, by, startingValue);
+    }
+
+    @Override
+    public Future<Object> getAsync(String key) {
+        return client.getAsync(key);
+    }
+
+    @Override
+    public Future<Map<String, Object>> getMultiAsync(String... keys) {
+        return client.getMultiAsync(keys);
+    }
+
+    @Override
+    public Future<Boolean> setAsync(String key, int cacheTimeSeconds, Object o) {
+        return client.setAsync(key, cacheTimeSeconds, o);
+    }
+
+    @Override
+    public Future<Boolean> addAsync(String key, int exp, Object o) {
+        return client.addAsync(key, exp, o);
+    }
+
+    @Override
+    public Future<Boolean> deleteAsync(String key) {
+        return client.deleteAsync(key);
+    }
+
+    @Override
+    public Future<Long> incrAsync(String key, long factor, long startingValue) {
+        return client.incrAsync(key, factor, startingValue);
+    }
+
+    @Override
+    public void shutdown() {
+        client.shutdown();
+    }
+
+    private void waitForWindow(Batch batch) {
+        long remaining;
+        while ((remaining = batch.closesAt - System.nanoTime()) > 0 && !batch.sent) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * Closes the given batch, unless it was closed because it filled up.
+     *
+     * @return <code>true</code> if the batch was closed by this call
+     */
+    private boolean close(Batch batch) {
+        synchronized (lock) {
+            if (open == batch) {
+                open = null;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Batch {
+        final Set<String> keys = new LinkedHashSet<String>();
+        final long closesAt;
+        final Thread opener = Thread.currentThread();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean sent;
+        Map<String, Object> values;
+        Object value;
+        RuntimeException failure;
+
+        Batch(long closesAt) {
+            this.closesAt = closesAt;
+        }
+
+        void send(HibernateMemcachedClient client) {
+            sent = true;
+            // the opener may still be waiting for the window to pass
+            LockSupport.unpark(opener);
+            try {
+                if (keys.size() == 1) {
+                    value = client.get(keys.iterator().next());
+                } else {
+                    log.debug("Sending batch of {} gets", keys.size());
+                    values = client.getMulti(keys.toArray(new String[keys.size()]));
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        Object get(String key) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+            return values == null ? value : values.get(key);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.googlecode.hibernate.memcached.client.breaker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The circuit breaker of a single server.
+ * <p>
+ * The breaker starts {@link State#CLOSED}: all requests are let through. It
+ * opens after the failure threshold is reached by consecutive failures; while
+ * it is {@link State#OPEN} all requests are rejected. Once the open time has
+ * passed the breaker is {@link State#HALF_OPEN} and lets a single trial
+ * request through. A successful trial closes the breaker, a failed one opens
+ * it again. A trial that reports nothing within the open time is replaced by
+ * a new one.
+ *
+ * @see CircuitBreakingMemcachedClient
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * The states of a {@link CircuitBreaker}.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String server;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger unhealthy;
+
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures;
+    private long openedAt;
+    private long trialStartedAt;
+    private boolean trialInFlight;
+
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    /**
+     * Creates a new {@link CircuitBreaker}.
+     *
+     * @param server           the server guarded by this breaker
+     * @param failureThreshold the number of consecutive failures that open
+     *                         the breaker
+     * @param openMillis       the time the breaker stays open before a trial
+     *                         request is let through
+     * @param unhealthy        a counter shared by all breakers of a client,
+     *                         holding the number of breakers that are open or
+     *                         have seen failures since they last closed
+     */
+    CircuitBreaker(String server, int failureThreshold, long openMillis, AtomicInteger unhealthy) {
+        this.server = server;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.unhealthy = unhealthy;
+    }
+
+    /**
+     * Decides whether a request to the server may be made.
+     *
+     * @return <code>true</code> if the request may be made,
+     *         <code>false</code> if it must be rejected
+     */
+    public boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt >= openNanos) {
+                    log.info("Circuit breaker of server {} is half open, sending a trial request", server);
+                    state = State.HALF_OPEN;
+                    return startTrial(now);
+                }
+                break;
+            case HALF_OPEN:
+                if (!trialInFlight || now - trialStartedAt >= openNanos) {
+                    return startTrial(now);
+                }
+                break;
+            }
+        }
+        rejections.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Records a successful request.
+     */
+    public void success() {
+        if (state == State.CLOSED && consecutiveFailures == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            if (state != State.CLOSED) {
+                log.info("Circuit breaker of server {} is closed", server);
+                state = State.CLOSED;
+                trialInFlight = false;
+                unhealthy.decrementAndGet();
+            } else if (consecutiveFailures > 0) {
+                unhealthy.decrementAndGet();
+            }
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Records a failed (or too slow) request.
+     */
+    public void failure() {
+        failures.incrementAndGet();
+
+        synchronized (this) {
+            if (state == State.CLOSED && consecutiveFailures++ == 0) {
+                unhealthy.incrementAndGet();
+            }
+            if (state == State.HALF_OPEN) {
+                log.warn("Trial request to server {} failed, circuit breaker is open again", server);
+                open();
+            } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+                log.warn("Circuit breaker of server {} is open after {} consecutive failures, "
+                        + "requests fail fast for {}ms", new Object[] {server, consecutiveFailures,
+                        TimeUnit.NANOSECONDS.toMillis(openNanos)});
+                open();
+            }
+        }
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Gets the number of requests that failed or were too slow.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Gets the number of requests that were rejected because the breaker was
+     * open.
+     */
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * Gets the number of times the breaker opened.
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        trialInFlight = false;
+        opened.incrementAndGet();
+    }
+
+    private boolean startTrial(long now) {
+        trialInFlight = true;
+        trialStartedAt = now;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return server + " " + state;
+    }
+}
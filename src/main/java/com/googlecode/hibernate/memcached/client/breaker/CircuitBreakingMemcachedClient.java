@@ -0,0 +1,525 @@
+package com.googlecode.hibernate.memcached.client.breaker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.googlecode.hibernate.memcached.LoggingMemcacheExceptionHandler;
+import com.googlecode.hibernate.memcached.MemcacheExceptionHandler;
+import com.googlecode.hibernate.memcached.RateLimitedExceptionHandler;
+import com.googlecode.hibernate.memcached.client.CasValue;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.ServerAwareClient;
+import com.googlecode.hibernate.memcached.concurrent.ImmediateFuture;
+import com.googlecode.hibernate.memcached.utils.StringUtils;
+
+/**
+ * A {@link HibernateMemcachedClient} that stops sending requests to a server
+ * that keeps failing, using one {@link CircuitBreaker} per server.
+ * <p>
+ * A request counts as failed if the wrapped client reports a failure for it,
+ * or throws, or if it takes longer than the slow call threshold. While the
+ * breaker of a server is open, reads of its keys return misses and writes of
+ * its keys are skipped (returning <code>false</code>) without waiting for a
+ * timeout. Writes skipped this way are lost, including deletes.
+ * <p>
+ * The failures of a {@link ServerAwareClient} are attributed to the server of
+ * their key, and reported to a {@link RateLimitedExceptionHandler}. A multi key
+ * request waits for all of its servers, so when it fails or is too slow, the
+ * failure is attributed to every server it involved: the servers that were
+ * not at fault recover with their next successful request. The
+ * failures of other clients can only be seen if they throw, and are all
+ * attributed to a single breaker.
+ */
+public class CircuitBreakingMemcachedClient implements HibernateMemcachedClient, MemcacheExceptionHandler {
+
+    private static final String ALL_SERVERS = "*";
+
+    private final HibernateMemcachedClient client;
+    private final ServerAwareClient serverAwareClient;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final long slowCallNanos;
+    private final RateLimitedExceptionHandler exceptionHandler;
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+    private final AtomicInteger unhealthy = new AtomicInteger();
+
+    /**
+     * The number of failures reported on the current thread, used to tell
+     * whether a call failed.
+     */
+    private final ThreadLocal<int[]> reportedFailures = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * Creates a new {@link CircuitBreakingMemcachedClient}.
+     *
+     * @param client            the client used to access Memcached
+     * @param failureThreshold  the number of consecutive failures of a server
+     *                          that open its breaker
+     * @param openMillis        the time a breaker stays open before a trial
+     *                          request is let through
+     * @param slowCallMillis    the time after which a successful request
+     *                          counts as failed, or <code>0</code> to ignore
+     *                          latency
+     * @param logIntervalMillis the minimum time between two logged failures
+     */
+    public CircuitBreakingMemcachedClient(HibernateMemcachedClient client, int failureThreshold, long openMillis,
+            long slowCallMillis, long logIntervalMillis) {
+        this.client = client;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.exceptionHandler = new RateLimitedExceptionHandler(new LoggingMemcacheExceptionHandler(), logIntervalMillis);
+
+        if (client instanceof ServerAwareClient) {
+            this.serverAwareClient = (ServerAwareClient) client;
+            serverAwareClient.setExceptionHandler(this);
+        } else {
+            this.serverAwareClient = null;
+        }
+    }
+
+    @Override
+    public Object get(String key) {
+        if (!allowRequest(key)) {
+            return null;
+        }
+        long start = start();
+        Object value = null;
+        try {
+            value = client.get(key);
+        } catch (RuntimeException e) {
+            handleErrorOnGet(key, e);
+        }
+        finish(key, start);
+        return value;
+    }
+
+    @Override
+    public Map<String, Object> getMulti(String... keys) {
+        String[] allowed = allowRequests(keys);
+        if (allowed.length == 0) {
+            return new HashMap<String, Object>(0);
+        }
+        long start = start();
+        Map<String, Object> values = new HashMap<String, Object>(0);
+        try {
+            values = client.getMulti(allowed);
+        } catch (RuntimeException e) {
+            handleErrorOnGet(StringUtils.join(", ", allowed), e);
+        }
+        finish(allowed, start);
+        return values;
+    }
+
+    @Override
+    public CasValue gets(String key) {
+        if (!allowRequest(key)) {
+            return null;
+        }
+        long start = start();
+        CasValue value = null;
+        try {
+            value = client.gets(key);
+        } catch (RuntimeException e) {
+            handleErrorOnGet(key, e);
+        }
+        finish(key, start);
+        return value;
+    }
+
+    @Override
+    public boolean cas(String key, long casId, int cacheTimeSeconds, Object o) {
+        if (!allowRequest(key)) {
+            return false;
+        }
+        long start = start();
+        boolean result = false;
+        try {
+            result = client.cas(key, casId, cacheTimeSeconds, o);
+        } catch (RuntimeException e) {
+            handleErrorOnSet(key, cacheTimeSeconds, o, e);
+        }
+        finish(key, start);
+        return result;
+    }
+
+    @Override
+    public boolean set(String key, int cacheTimeSeconds, Object o) {
+        if (!allowRequest(key)) {
+            return false;
+        }
+        long start = start();
+        boolean result = false;
+        try {
+            result = client.set(key, cacheTimeSeconds, o);
+        } catch (RuntimeException e) {
+            handleErrorOnSet(key, cacheTimeSeconds, o, e);
+        }
+        finish(key, start);
+        return result;
+    }
+
+    @Override
+    public boolean add(String key, int exp, Object o) {
+        if (!allowRequest(key)) {
+            return false;
+        }
+        long start = start();
+        boolean result = false;
+        try {
+            result = client.add(key, exp, o);
+        } catch (RuntimeException e) {
+            handleErrorOnSet(key, exp, o, e);
+        }
+        finish(key, start);
+        return result;
+    }
+
+    @Override
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds) {
+        String[] keys = values.keySet().toArray(new String[values.size()]);
+        String[] allowed = allowRequests(keys);
+        if (allowed.length == 0) {
+            return false;
+        }
+        Map<String, Object> allowedValues = values;
+        if (allowed.length < keys.length) {
+            allowedValues = new HashMap<String, Object>(allowed.length * 2);
+            for (String key : allowed) {
+                allowedValues.put(key, values.get(key));
+            }
+        }
+
+        long start = start();
+        boolean result = false;
+        try {
+            result = client.setMulti(allowedValues, cacheTimeSeconds);
+        } catch (RuntimeException e) {
+            handleErrorOnSet(StringUtils.join(", ", allowed), cacheTimeSeconds, null, e);
+        }
+        finish(allowed, start);
+        return result && allowed.length == keys.length;
+    }
+
+    @Override
+    public boolean delete(String key) {
+        if (!allowRequest(key)) {
+            return false;
+        }
+        long start = start();
+        boolean result = false;
+        try {
+            result = client.delete(key);
+        } catch (RuntimeException e) {
+            handleErrorOnDelete(key, e);
+        }
+        finish(key, start);
+        return result;
+    }
+
+    @Override
+    public boolean deleteMulti(String... keys) {
+        String[] allowed = allowRequests(keys);
+        if (allowed.length == 0) {
+            return false;
+        }
+        long start = start();
+        boolean result = false;
+        try {
+            result = client.deleteMulti(allowed);
+        } catch (RuntimeException e) {
+            handleErrorOnDelete(StringUtils.join(", ", allowed), e);
+        }
+        finish(allowed, start);
+        return result && allowed.length == keys.length;
+    }
+
+    @Override
+    public long incr(String key, long factor, long startingValue) {
+        if (!allowRequest(key)) {
+            return -1;
+        }
+        long start = start();
+        long result = -1;
+        try {
+            result = client.incr(key, factor, startingValue);
+        } catch (RuntimeException e) {
+            handleErrorOnIncr(key, factor, startingValue, e);
+        }
+        finish(key, start);
+        return result;
+    }
+
+    @Override
+    public long decr(String key, long by, long startingValue) {
+        if (!allowRequest(key)) {
+            return -1;
+        }
+        long start = start();
+        long result = -1;
+        try {
+            result = client.decr(key, by, startingValue);
+        } catch (RuntimeException e) {
+            handleErrorOnIncr(key, by, startingValue, e);
+        }
+        finish(key, start);
+        return result;
+    }
+
+    @Override
+    public Future<Object> getAsync(String key) {
+        if (!allowRequest(key)) {
+            return new ImmediateFuture<Object>(null);
+        }
+        try {
+            return client.getAsync(key);
+        } catch (RuntimeException e) {
+            handleErrorOnGet(key, e);
+        }
+        return new ImmediateFuture<Object>(null);
+    }
+
+    @Override
+    public Future<Map<String, Object>> getMultiAsync(String... keys) {
+        String[] allowed = allowRequests(keys);
+        if (allowed.length > 0) {
+            try {
+                return client.getMultiAsync(allowed);
+            } catch (RuntimeException e) {
+                handleErrorOnGet(StringUtils.join(", ", allowed), e);
+            }
+        }
+        return new ImmediateFuture<Map<String, Object>>(new HashMap<String, Object>(0));
+    }
+
+    @Override
+    public Future<Boolean> setAsync(String key, int cacheTimeSeconds, Object o) {
+        if (!allowRequest(key)) {
+            return new ImmediateFuture<Boolean>(false);
+        }
+        try {
+            return client.setAsync(key, cacheTimeSeconds, o);
+        } catch (RuntimeException e) {
+            handleErrorOnSet(key, cacheTimeSeconds, o, e);
+        }
+        return new ImmediateFuture<Boolean>(false);
+    }
+
+    @Override
+    public Future<Boolean> addAsync(String key, int exp, Object o) {
+        if (!allowRequest(key)) {
+            return new ImmediateFuture<Boolean>(false);
+        }
+        try {
+            return client.addAsync(key, exp, o);
+        } catch (RuntimeException e) {
+            handleErrorOnSet(key, exp, o, e);
+        }
+        return new ImmediateFuture<Boolean>(false);
+    }
+
+    @Override
+    public Future<Boolean> deleteAsync(String key) {
+        if (!allowRequest(key)) {
+            return new ImmediateFuture<Boolean>(false);
+        }
+        try {
+            return client.deleteAsync(key);
+        } catch (RuntimeException e) {
+            handleErrorOnDelete(key, e);
+        }
+        return new ImmediateFuture<Boolean>(false);
+    }
+
+    @Override
+    public Future<Long> incrAsync(String key, long factor, long startingValue) {
+        if (!allowRequest(key)) {
+            return new ImmediateFuture<Long>(-1L);
+        }
+        try {
+            return client.incrAsync(key, factor, startingValue);
+        } catch (RuntimeException e) {
+            handleErrorOnIncr(key, factor, startingValue, e);
+        }
+        return new ImmediateFuture<Long>(-1L);
+    }
+
+    @Override
+    public void shutdown() {
+        client.shutdown();
+    }
+
+    // MemcacheExceptionHandler, called by the wrapped client
+
+    public void handleErrorOnGet(String key, Exception e) {
+        failed(key);
+        exceptionHandler.handleErrorOnGet(key, e);
+    }
+
+    public void handleErrorOnSet(String key, int cacheTimeSeconds, Object o, Exception e) {
+        failed(key);
+        exceptionHandler.handleErrorOnSet(key, cacheTimeSeconds, o, e);
+    }
+
+    public void handleErrorOnDelete(String key, Exception e) {
+        failed(key);
+        exceptionHandler.handleErrorOnDelete(key, e);
+    }
+
+    public void handleErrorOnIncr(String key, long factor, long startingValue, Exception e) {
+        failed(key);
+        exceptionHandler.handleErrorOnIncr(key, factor, startingValue, e);
+    }
+
+    /**
+     * Gets the breakers of all servers that were used so far.
+     */
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableCollection(breakers.values());
+    }
+
+    /**
+     * Gets the number of failures that were not logged.
+     *
+     * @see RateLimitedExceptionHandler#getSuppressed()
+     */
+    public long getSuppressedFailures() {
+        return exceptionHandler.getSuppressed();
+    }
+
+    private boolean allowRequest(String key) {
+        return unhealthy.get() == 0 || getCircuitBreaker(key).allowRequest();
+    }
+
+    private String[] allowRequests(String... keys) {
+        if (unhealthy.get() == 0) {
+            return keys;
+        }
+        List<String> allowed = new ArrayList<String>(keys.length);
+        Map<String, Boolean> servers = new HashMap<String, Boolean>();
+        for (String key : keys) {
+            String server = getServer(key);
+            Boolean allow = servers.get(server);
+            if (allow == null) {
+                allow = getCircuitBreakerOfServer(server).allowRequest();
+                servers.put(server, allow);
+            }
+            if (allow) {
+                allowed.add(key);
+            }
+        }
+        return allowed.size() == keys.length ? keys : allowed.toArray(new String[allowed.size()]);
+    }
+
+    /**
+     * Starts a blocking call.
+     *
+     * @return the start time of the call
+     */
+    private long start() {
+        reportedFailures.get()[0] = 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the outcome of a blocking call of a single key, unless a failure
+     * was already reported for it.
+     */
+    private void finish(String key, long start) {
+        if (reportedFailures.get()[0] > 0) {
+            return;
+        }
+        if (slowCallNanos > 0 && System.nanoTime() - start > slowCallNanos) {
+            getCircuitBreaker(key).failure();
+        } else if (unhealthy.get() > 0) {
+            getCircuitBreaker(key).success();
+        }
+    }
+
+    /**
+     * Records the outcome of a blocking call of many keys on each of their
+     * servers, unless a failure was already reported for it. The servers are
+     * queried in parallel, so the slow call threshold applies to each of them.
+     */
+    private void finish(String[] keys, long start) {
+        if (reportedFailures.get()[0] > 0) {
+            return;
+        }
+        boolean slow = slowCallNanos > 0 && System.nanoTime() - start > slowCallNanos;
+        if (!slow && unhealthy.get() == 0) {
+            return;
+        }
+        for (String server : getServers(keys)) {
+            if (slow) {
+                getCircuitBreakerOfServer(server).failure();
+            } else {
+                getCircuitBreakerOfServer(server).success();
+            }
+        }
+    }
+
+    /**
+     * Counts a failure reported for the given key. Multi key operations report
+     * their keys joined by ", " (keys can not contain spaces), the failure is
+     * counted once for each of their servers.
+     */
+    private void failed(String key) {
+        reportedFailures.get()[0]++;
+        if (key == null || key.indexOf(", ") < 0) {
+            getCircuitBreaker(key).failure();
+            return;
+        }
+        for (String server : getServers(key.split(", "))) {
+            getCircuitBreakerOfServer(server).failure();
+        }
+    }
+
+    private Set<String> getServers(String[] keys) {
+        Set<String> servers = new HashSet<String>();
+        for (String key : keys) {
+            servers.add(getServer(key));
+        }
+        return servers;
+    }
+
+    private CircuitBreaker getCircuitBreaker(String key) {
+        return getCircuitBreakerOfServer(getServer(key));
+    }
+
+    private String getServer(String key) {
+        String server = null;
+        if (serverAwareClient != null && key != null) {
+            server = serverAwareClient.getServer(key);
+        }
+        return server == null ? ALL_SERVERS : server;
+    }
+
+    private CircuitBreaker getCircuitBreakerOfServer(String server) {
+        CircuitBreaker breaker = breakers.get(server);
+        if (breaker == null) {
+            breaker = new CircuitBreaker(server, failureThreshold, openMillis, unhealthy);
+            CircuitBreaker existing = breakers.putIfAbsent(server, breaker);
+            if (existing != null) {
+                breaker = existing;
+            }
+        }
+        return breaker;
+    }
+}
@@ -0,0 +1,49 @@
+package com.googlecode.hibernate.memcached.client.chunk;
+
+import java.io.Serializable;
+
+/**
+ * Stored in place of a value that was split into chunks. The chunks are
+ * stored under their own keys, each starting with the generation of the
+ * manifest they were written with.
+ *
+ * @see ValueChunker
+ */
+public final class ChunkManifest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long generation;
+    private final int chunkCount;
+    private final int length;
+
+    /**
+     * Creates a new {@link ChunkManifest}.
+     *
+     * @param generation the random id of the write that stored the chunks
+     * @param chunkCount the number of chunks
+     * @param length     the size of the serialized value
+     */
+    public ChunkManifest(long generation, int chunkCount, int length) {
+        this.generation = generation;
+        this.chunkCount = chunkCount;
+        this.length = length;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkManifest(" + generation + ", " + chunkCount + ", " + length + ")";
+    }
+}
@@ -0,0 +1,27 @@
+package com.googlecode.hibernate.memcached.client.chunk;
+
+/**
+ * A value split by a {@link ValueChunker}: the manifest to store under the
+ * key of the value, and the chunks to store under the chunk keys.
+ */
+public final class ChunkedValue {
+
+    private final ChunkManifest manifest;
+    private final byte[][] chunks;
+
+    ChunkedValue(ChunkManifest manifest, byte[][] chunks) {
+        this.manifest = manifest;
+        this.chunks = chunks;
+    }
+
+    public ChunkManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Gets the chunks, in order.
+     */
+    public byte[][] getChunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,156 @@
+package com.googlecode.hibernate.memcached.client.chunk;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
+import com.googlecode.hibernate.memcached.client.near.SizeEstimator;
+import com.googlecode.hibernate.memcached.codec.ValueSerializer;
+
+/**
+ * Splits values too large for a single Memcached item into chunks, and joins
+ * them again when they are read.
+ * <p>
+ * A value is split if its serialized form is larger than the chunk size. The
+ * chunks are stored under their own keys, which include the random
+ * generation of their {@link ChunkManifest}, and the manifest under the key
+ * of the value. Every chunk also starts with that generation, so a reader that
+ * finds a chunk of another write treats the value as missing instead of
+ * joining the chunks of different values.
+ * <p>
+ * Serializing a value only to find that it fits in one item would double the
+ * cost of every write, so values whose estimated size (see
+ * {@link SizeEstimator}) is below half the chunk size are not serialized.
+ * <p>
+ * One instance is shared by all clients of a region.
+ *
+ * @see MemcachedRegionSettings#getValueChunker()
+ */
+public class ValueChunker {
+
+    /**
+     * The prefix of chunk keys, in front of the region name.
+     */
+    public static final String KEY_PREFIX = "chunk";
+
+    private static final Logger log = LoggerFactory.getLogger(ValueChunker.class);
+
+    private static final int GENERATION_BYTES = 8;
+
+    private final Random random = new Random();
+    private final int chunkBytes;
+    private final ValueSerializer serializer;
+
+    /**
+     * Creates a new {@link ValueChunker}.
+     *
+     * @param chunkBytes the largest number of bytes of a value stored in one
+     *                   chunk
+     * @param serializer the serializer of chunked values
+     */
+    public ValueChunker(int chunkBytes, ValueSerializer serializer) {
+        this.chunkBytes = chunkBytes;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Splits the given value if it is too large for one item. Values that
+     * cannot be serialized are not split, so the client fails to write them
+     * as it would without chunking.
+     *
+     * @param value the value to store
+     * @return      the manifest and chunks to store, or <code>null</code> if
+     *              the value should be stored as it is
+     */
+    public ChunkedValue split(Object value) {
+        if (SizeEstimator.estimate(value) < chunkBytes / 2) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = serializer.serialize(value);
+        } catch (IOException e) {
+            log.debug("Could not serialize value, not splitting it", e);
+            return null;
+        }
+        if (bytes.length <= chunkBytes) {
+            return null;
+        }
+
+        long generation = random.nextLong();
+        int chunkCount = (bytes.length + chunkBytes - 1) / chunkBytes;
+        byte[][] chunks = new byte[chunkCount][];
+        for (int i = 0; i < chunkCount; i++) {
+            int offset = i * chunkBytes;
+            int length = Math.min(chunkBytes, bytes.length - offset);
+            byte[] chunk = new byte[GENERATION_BYTES + length];
+            putLong(chunk, generation);
+            System.arraycopy(bytes, offset, chunk, GENERATION_BYTES, length);
+            chunks[i] = chunk;
+        }
+        return new ChunkedValue(new ChunkManifest(generation, chunkCount, bytes.length), chunks);
+    }
+
+    /**
+     * Joins the chunks of a value.
+     *
+     * @param manifest the manifest of the value
+     * @param chunks   the chunks read, in order, with <code>null</code> for
+     *                 missing chunks
+     * @return         the value, or <code>null</code> if a chunk is missing
+     *                 or was written with another manifest
+     */
+    public Object join(ChunkManifest manifest, Object[] chunks) {
+        if (chunks.length != manifest.getChunkCount()) {
+            return null;
+        }
+        byte[] bytes = new byte[manifest.getLength()];
+        int offset = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            if (!(chunks[i] instanceof byte[])) {
+                log.debug("Chunk {} of {} is missing", i, manifest);
+                return null;
+            }
+            byte[] chunk = (byte[]) chunks[i];
+            int length = chunk.length - GENERATION_BYTES;
+            if (length < 0 || getLong(chunk) != manifest.getGeneration() || length > bytes.length - offset) {
+                log.debug("Chunk {} of {} belongs to another write", i, manifest);
+                return null;
+            }
+            System.arraycopy(chunk, GENERATION_BYTES, bytes, offset, length);
+            offset += length;
+        }
+        if (offset != bytes.length) {
+            log.debug("Chunks of {} hold {} bytes", manifest, offset);
+            return null;
+        }
+
+        try {
+            return serializer.deserialize(bytes, 0, bytes.length);
+        } catch (IOException e) {
+            log.warn("Could not deserialize chunked value of " + bytes.length + " bytes", e);
+            return null;
+        }
+    }
+
+    public int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    private static void putLong(byte[] data, long value) {
+        for (int i = 0; i < GENERATION_BYTES; i++) {
+            data[i] = (byte) (value >>> (56 - (i << 3)));
+        }
+    }
+
+    private static long getLong(byte[] data) {
+        long result = 0;
+        for (int i = 0; i < GENERATION_BYTES; i++) {
+            result = (result << 8) | (data[i] & 0xffL);
+        }
+        return result;
+    }
+}
@@ -3,6 +3,7 @@ package com.googlecode.hibernate.memcached.client.dangamemcached;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,7 +12,10 @@ import com.danga.MemCached.MemCachedClient;
 import com.danga.MemCached.SockIOPool;
 import com.googlecode.hibernate.memcached.LoggingMemcacheExceptionHandler;
 import com.googlecode.hibernate.memcached.MemcacheExceptionHandler;
-import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.CasValue;
+import com.googlecode.hibernate.memcached.client.NonCasClient;
+import com.googlecode.hibernate.memcached.client.ServerAwareClient;
+import com.googlecode.hibernate.memcached.concurrent.ImmediateFuture;
 import com.googlecode.hibernate.memcached.utils.StringUtils;
 
 /**
@@ -19,7 +23,7 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  *
  * @author George Wei
  */
-public class DangaMemcache implements HibernateMemcachedClient {
+public class DangaMemcache implements ServerAwareClient, NonCasClient {
 
     private static final Logger log = LoggerFactory.getLogger(DangaMemcache.class);
 
@@ -57,6 +61,24 @@ public class DangaMemcache implements HibernateMemcachedClient {
         return null;
     }
 
+    /**
+     * Not supported, Danga's MemCachedClient 2.0.1 does not implement gets.
+     * 
+     * @throws UnsupportedOperationException always
+     */
+    public CasValue gets(String key) {
+        throw new UnsupportedOperationException("gets is not supported by the danga client");
+    }
+
+    /**
+     * Not supported, Danga's MemCachedClient 2.0.1 does not implement cas.
+     * 
+     * @throws UnsupportedOperationException always
+     */
+    public boolean cas(String key, long casId, int cacheTimeSeconds, Object o) {
+        throw new UnsupportedOperationException("cas is not supported by the danga client");
+    }
+
     public boolean set(String key, int cacheTimeSeconds, Object o) {
         log.debug("MemCachedClient.set({})", key);
         try {
@@ -80,6 +102,22 @@ public class DangaMemcache implements HibernateMemcachedClient {
         return false;
     }
 
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds) {
+        boolean result = true;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            result &= set(entry.getKey(), cacheTimeSeconds, entry.getValue());
+        }
+        return result;
+    }
+
+    public boolean deleteMulti(String... keys) {
+        boolean result = true;
+        for (String key : keys) {
+            result &= delete(key);
+        }
+        return result;
+    }
+
     public long incr(String key, long factor, long startingValue) {
         long rv = -1;
         
@@ -97,6 +135,33 @@ public class DangaMemcache implements HibernateMemcachedClient {
         return rv;
     }
 
+    // Danga's MemCachedClient is blocking, so the async operations complete
+    // before they return.
+
+    public Future<Object> getAsync(String key) {
+        return new ImmediateFuture<Object>(get(key));
+    }
+
+    public Future<Map<String, Object>> getMultiAsync(String... keys) {
+        return new ImmediateFuture<Map<String, Object>>(getMulti(keys));
+    }
+
+    public Future<Boolean> setAsync(String key, int cacheTimeSeconds, Object o) {
+        return new ImmediateFuture<Boolean>(set(key, cacheTimeSeconds, o));
+    }
+
+    public Future<Boolean> addAsync(String key, int exp, Object o) {
+        return new ImmediateFuture<Boolean>(add(key, exp, o));
+    }
+
+    public Future<Boolean> deleteAsync(String key) {
+        return new ImmediateFuture<Boolean>(delete(key));
+    }
+
+    public Future<Long> incrAsync(String key, long factor, long startingValue) {
+        return new ImmediateFuture<Long>(incr(key, factor, startingValue));
+    }
+
     public void shutdown() {
         log.debug("Shutting down danga MemCachedClient");
 
@@ -109,6 +174,15 @@ public class DangaMemcache implements HibernateMemcachedClient {
         this.exceptionHandler = exceptionHandler;
     }
 
+    /**
+     * {@inheritDoc}<br>
+     * Always returns <code>null</code>, the server of a key is not exposed by
+     * the danga client.
+     */
+    public String getServer(String key) {
+        return null;
+    }
+
 	@Override
 	public boolean add(String key, int exp, Object o) {
 		// TODO Auto-generated method stub
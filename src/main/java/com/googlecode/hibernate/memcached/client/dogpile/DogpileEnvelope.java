@@ -0,0 +1,50 @@
+package com.googlecode.hibernate.memcached.client.dogpile;
+
+import java.io.Serializable;
+
+/**
+ * A cached value together with the time it should be refreshed, and the time
+ * it took to compute it. The envelope itself is stored for longer than its
+ * soft expiry time, so the value can still be served while it is refreshed.
+ *
+ * @see EarlyExpiration
+ */
+public class DogpileEnvelope implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object value;
+    private final long softExpiresAt;
+    private final int recomputeMillis;
+
+    /**
+     * Creates a new {@link DogpileEnvelope}.
+     *
+     * @param value           the cached value
+     * @param softExpiresAt   the time the value should be refreshed, in
+     *                        milliseconds since the epoch
+     * @param recomputeMillis the time it took to compute the value
+     */
+    public DogpileEnvelope(Object value, long softExpiresAt, int recomputeMillis) {
+        this.value = value;
+        this.softExpiresAt = softExpiresAt;
+        this.recomputeMillis = recomputeMillis;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public long getSoftExpiresAt() {
+        return softExpiresAt;
+    }
+
+    public int getRecomputeMillis() {
+        return recomputeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "DogpileEnvelope(" + value + ", " + softExpiresAt + ", " + recomputeMillis + ")";
+    }
+}
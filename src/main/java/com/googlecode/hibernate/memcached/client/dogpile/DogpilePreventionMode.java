@@ -0,0 +1,22 @@
+package com.googlecode.hibernate.memcached.client.dogpile;
+
+/**
+ * The ways a region can prevent dogpiles, see
+ * {@link com.googlecode.hibernate.memcached.client.HibernateMemcachedRegionClient}.
+ */
+public enum DogpilePreventionMode {
+
+    /**
+     * A separate dogpile token key is stored next to every value. Reads fetch
+     * both keys, and the first reader to find an expired token resets it and
+     * refreshes the value.
+     */
+    TOKEN,
+
+    /**
+     * The value is stored in a {@link DogpileEnvelope} that carries its soft
+     * expiry time, so every value is a single Memcached item. A refresher is
+     * picked by {@link EarlyExpiration}.
+     */
+    ENVELOPE
+}
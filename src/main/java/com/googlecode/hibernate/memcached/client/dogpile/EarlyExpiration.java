@@ -0,0 +1,121 @@
+package com.googlecode.hibernate.memcached.client.dogpile;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
+
+/**
+ * Decides which reader of a {@link DogpileEnvelope} refreshes its value, using
+ * probabilistic early expiration (XFetch).
+ * <p>
+ * A reader treats an envelope as expired if
+ * <code>now - recompute * beta * ln(random) &gt;= softExpiresAt</code>, where
+ * <code>recompute</code> is the time it took to compute the value and
+ * <code>random</code> is uniform in (0, 1]. The closer the soft expiry and the
+ * more expensive the value, the more likely a reader is to refresh it early.
+ * Under load a single reader is almost always picked well before the soft
+ * expiry, while all other readers keep getting the cached value.
+ * <p>
+ * The recompute time is measured as the time between a reader being picked
+ * and the refreshed value being written. Once a reader of this JVM has been
+ * picked, other readers of this JVM keep getting the cached value until the
+ * refresh is written or has taken too long.
+ * <p>
+ * One instance is shared by all clients of a region.
+ *
+ * @see MemcachedRegionSettings#getEarlyExpiration()
+ */
+public class EarlyExpiration {
+
+    private static final int MAX_REFRESHES = 10000;
+    private static final long MIN_REFRESH_TIMEOUT_MILLIS = 1000;
+
+    private final Random random = new Random();
+    private final ConcurrentMap<String, Long> refreshes = new ConcurrentHashMap<String, Long>();
+    private final double beta;
+    private volatile long averageRecomputeMillis;
+
+    /**
+     * Creates a new {@link EarlyExpiration}.
+     *
+     * @param beta the weight of the recompute time, values above 1 favour
+     *             earlier refreshes
+     */
+    public EarlyExpiration(double beta) {
+        this.beta = beta;
+    }
+
+    /**
+     * Wraps a value that is about to be written.
+     *
+     * @param key              the full key of the value
+     * @param value            the value
+     * @param cacheTimeSeconds the time after which the value should be
+     *                         refreshed, 0 or less to never refresh it, as
+     *                         Memcached never expires such items
+     * @return                 the envelope to store
+     */
+    public DogpileEnvelope wrap(String key, Object value, int cacheTimeSeconds) {
+        long recompute = averageRecomputeMillis;
+        Long started = refreshes.remove(key);
+        if (started != null) {
+            recompute = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            averageRecomputeMillis = (averageRecomputeMillis * 7 + recompute) / 8;
+        }
+        long softExpiresAt = cacheTimeSeconds <= 0 ? Long.MAX_VALUE
+                : System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(cacheTimeSeconds);
+        return new DogpileEnvelope(value, softExpiresAt, (int) Math.min(Integer.MAX_VALUE, recompute));
+    }
+
+    /**
+     * Unwraps a value that was read from Memcached.
+     *
+     * @param key    the full key of the value
+     * @param stored the value stored in Memcached
+     * @return       the value, or <code>null</code> if the caller should
+     *               refresh it. Values that are not wrapped are returned as is.
+     */
+    public Object unwrap(String key, Object stored) {
+        if (!(stored instanceof DogpileEnvelope)) {
+            return stored;
+        }
+
+        DogpileEnvelope envelope = (DogpileEnvelope) stored;
+        if (isExpired(envelope, System.currentTimeMillis()) && startRefresh(key, envelope)) {
+            return null;
+        }
+        return envelope.getValue();
+    }
+
+    /**
+     * Gets the average time it took to recompute a value of the region.
+     */
+    public long getAverageRecomputeMillis() {
+        return averageRecomputeMillis;
+    }
+
+    boolean isExpired(DogpileEnvelope envelope, long now) {
+        double gap = -envelope.getRecomputeMillis() * beta * Math.log(1.0 - random.nextDouble());
+        return now + gap >= envelope.getSoftExpiresAt();
+    }
+
+    private boolean startRefresh(String key, DogpileEnvelope envelope) {
+        if (refreshes.size() >= MAX_REFRESHES) {
+            // refreshes that were never written, most likely abandoned
+            refreshes.clear();
+        }
+
+        long now = System.nanoTime();
+        Long started = refreshes.putIfAbsent(key, now);
+        if (started == null) {
+            return true;
+        }
+
+        long timeout = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(MIN_REFRESH_TIMEOUT_MILLIS, 4L * envelope.getRecomputeMillis()));
+        return now - started > timeout && refreshes.replace(key, started, now);
+    }
+}
@@ -0,0 +1,88 @@
+package com.googlecode.hibernate.memcached.client.near;
+
+/**
+ * A count-min sketch of 4-bit counters used to estimate how often a key has
+ * been requested recently. All counters are halved once the number of
+ * recorded requests reaches ten times the capacity, so that the estimate
+ * follows changes in popularity.
+ * <p>
+ * This class is not thread safe, callers must synchronize access.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * Creates a sketch sized for the given number of cache entries.
+     *
+     * @param capacity the maximum number of entries of the cache
+     */
+    FrequencySketch(int capacity) {
+        int length = 1;
+        while (length < Math.max(capacity, 16)) {
+            length <<= 1;
+        }
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * Math.max(capacity, 16);
+    }
+
+    /**
+     * Records a request for the key with the given hash.
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            int offset = counterOffset(hash, i);
+            if (((table[index] >>> offset) & MAX_COUNT) < MAX_COUNT) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Estimates the number of recent requests for the key with the given
+     * hash.
+     */
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int count = (int) ((table[indexOf(hash, i)] >>> counterOffset(hash, i)) & MAX_COUNT);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size /= 2;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    private int counterOffset(int hash, int i) {
+        // each long holds 16 counters, use a different one per row
+        return (((hash >>> (i << 3)) + i) & 15) << 2;
+    }
+}
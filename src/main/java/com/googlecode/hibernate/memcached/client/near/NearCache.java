@@ -0,0 +1,274 @@
+package com.googlecode.hibernate.memcached.client.near;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
+
+/**
+ * A small in-JVM cache that sits in front of Memcached for a single region,
+ * see {@link NearCacheRegionClient}.
+ * <p>
+ * The cache is bounded by a number of entries and an estimated number of
+ * bytes (see {@link SizeEstimator}), and entries expire after a short time
+ * to live so that changes made by other JVMs become visible quickly.
+ * <p>
+ * <b>Admission and eviction:</b> Entries are kept in least recently used
+ * order. When the cache is full a new entry is only admitted if it has been
+ * requested more often than the entry it would evict, as estimated by a
+ * {@link FrequencySketch} (the TinyLFU policy). This keeps one-off reads from
+ * flushing out the entries that are read over and over again.
+ * <p>
+ * <b>Clear index:</b> Every entry remembers the clear index it was loaded
+ * with. A lookup with a different clear index misses, so entries loaded before
+ * a region clear are never returned after it.
+ * <p>
+ * <b>Invalidation:</b> Loads are guarded by an invalidation stamp, see
+ * {@link #getStamp(String)}. A value read from Memcached is only stored if
+ * no key of its segment was invalidated while the read was in progress, so
+ * that a slow read can not put back a value that a concurrent write has
+ * replaced.
+ * <p>
+ * The cache is split into independently locked segments so that lookups from
+ * many threads do not contend on a single lock.
+ *
+ * @see MemcachedRegionSettings#getNearCache()
+ */
+public class NearCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_ENTRIES_PER_SEGMENT = 256;
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final long timeToLiveNanos;
+
+    /**
+     * Creates a new {@link NearCache}.
+     *
+     * @param maxEntries       the maximum number of entries
+     * @param maxBytes         the maximum estimated size of all entries
+     * @param timeToLiveMillis the number of milliseconds an entry may be used
+     *                         after it was loaded
+     */
+    public NearCache(int maxEntries, long maxBytes, long timeToLiveMillis) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("The near cache size must be positive");
+        }
+
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && maxEntries / (segmentCount * 2) >= MIN_ENTRIES_PER_SEGMENT) {
+            segmentCount <<= 1;
+        }
+
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment((maxEntries + segmentCount - 1) / segmentCount, maxBytes / segmentCount);
+        }
+        this.segmentMask = segmentCount - 1;
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+    }
+
+    /**
+     * Gets the value cached under the given key.
+     *
+     * @param key        the key to look up
+     * @param clearIndex the current clear index of the region
+     * @return           the cached value, or <code>null</code> if it is not
+     *                   cached, expired or was loaded with another clear index
+     */
+    public Object get(String key, long clearIndex) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash, clearIndex, System.nanoTime());
+    }
+
+    /**
+     * Gets the invalidation stamp of the given key. The stamp should be read
+     * before the value is read from Memcached and passed to
+     * {@link #put(String, long, Object, long)} afterwards.
+     *
+     * @param key the key about to be loaded
+     * @return    the current invalidation stamp for the key
+     */
+    public long getStamp(String key) {
+        return segmentFor(hash(key)).getStamp();
+    }
+
+    /**
+     * Caches a value read from Memcached, unless the key was invalidated after
+     * the given stamp was taken or the admission policy rejects it.
+     *
+     * @param key        the key of the value
+     * @param clearIndex the clear index the value was read with
+     * @param value      the value, <code>null</code> values are not cached
+     * @param stamp      the stamp returned by {@link #getStamp(String)} before
+     *                   the value was read
+     */
+    public void put(String key, long clearIndex, Object value, long stamp) {
+        if (value == null) {
+            return;
+        }
+        int hash = hash(key);
+        long weight = ENTRY_OVERHEAD + SizeEstimator.estimate(key) + SizeEstimator.estimate(value);
+        long now = System.nanoTime();
+        Entry entry = new Entry(value, clearIndex, now + timeToLiveNanos, weight);
+        segmentFor(hash).put(key, hash, entry, stamp, now);
+    }
+
+    /**
+     * Removes the given key, and makes any load of it that is in progress
+     * discard its result.
+     *
+     * @param key the key to invalidate
+     */
+    public void invalidate(String key) {
+        segmentFor(hash(key)).invalidate(key);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Gets the number of cached entries, including expired entries that have
+     * not been removed yet.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Gets the estimated size of all cached entries in bytes.
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getBytes();
+        }
+        return bytes;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> 16) & segmentMask];
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long clearIndex;
+        final long expiresAt;
+        final long weight;
+
+        Entry(Object value, long clearIndex, long expiresAt, long weight) {
+            this.value = value;
+            this.clearIndex = clearIndex;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    private static final class Segment {
+        private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        private final FrequencySketch sketch;
+        private final int maxEntries;
+        private final long maxBytes;
+        private long bytes;
+        private long stamp;
+
+        Segment(int maxEntries, long maxBytes) {
+            this.sketch = new FrequencySketch(maxEntries);
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized Object get(String key, int hash, long clearIndex, long now) {
+            sketch.increment(hash);
+
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(now) || entry.clearIndex < clearIndex) {
+                remove(key);
+                return null;
+            }
+            return entry.clearIndex == clearIndex ? entry.value : null;
+        }
+
+        synchronized long getStamp() {
+            return stamp;
+        }
+
+        synchronized void put(String key, int hash, Entry entry, long expectedStamp, long now) {
+            if (stamp != expectedStamp || entry.weight > maxBytes) {
+                return;
+            }
+
+            remove(key);
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() >= maxEntries || bytes + entry.weight > maxBytes) {
+                Map.Entry<String, Entry> victim = eldest.next();
+                if (!victim.getValue().isExpired(now)
+                        && sketch.frequency(hash) <= sketch.frequency(hash(victim.getKey()))) {
+                    // the candidate is less popular than what it would replace
+                    return;
+                }
+                bytes -= victim.getValue().weight;
+                eldest.remove();
+            }
+
+            entries.put(key, entry);
+            bytes += entry.weight;
+        }
+
+        synchronized void invalidate(String key) {
+            stamp++;
+            remove(key);
+        }
+
+        synchronized void clear() {
+            stamp++;
+            entries.clear();
+            bytes = 0;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+
+        private void remove(String key) {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                bytes -= removed.weight;
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.googlecode.hibernate.memcached.client.near;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.client.CasValue;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedRegionClient;
+import com.googlecode.hibernate.memcached.concurrent.FutureAdapter;
+import com.googlecode.hibernate.memcached.concurrent.ImmediateFuture;
+import com.googlecode.hibernate.memcached.stats.RegionStatistics;
+
+/**
+ * A {@link HibernateMemcachedClient} that answers reads from a region's
+ * {@link NearCache} and falls back to a {@link HibernateMemcachedRegionClient}
+ * on a miss. Values read from Memcached are added to the near cache.
+ * <p>
+ * Every write (including deletes and counter updates) invalidates the local
+ * copy of the key before it is passed on, so the access strategies never read
+ * back their own stale values. Writes made by other JVMs are only seen once
+ * the local copy expires, which is why <code>READ_WRITE</code> regions, whose
+ * soft locks must be seen at once, do not use a near cache.
+ * <p>
+ * {@link #gets(String)} always reads from Memcached, since its result is used
+ * to make a conditional write.
+ * <p>
+ * Reads answered by the near cache are recorded in the region's
+ * {@link RegionStatistics}, if given; reads passed on are recorded by the
+ * region client.
+ */
+public class NearCacheRegionClient implements HibernateMemcachedClient {
+
+    private static final Logger log = LoggerFactory.getLogger(NearCacheRegionClient.class);
+
+    private final HibernateMemcachedClient client;
+    private final NearCache nearCache;
+    private final long clearIndex;
+    private final RegionStatistics statistics;
+
+    /**
+     * Creates a new {@link NearCacheRegionClient}.
+     *
+     * @param client     the region client used on a miss
+     * @param nearCache  the near cache of the region
+     * @param clearIndex the clear index the region client was created with
+     */
+    public NearCacheRegionClient(HibernateMemcachedClient client, NearCache nearCache, long clearIndex) {
+        this(client, nearCache, clearIndex, null);
+    }
+
+    /**
+     * Creates a new {@link NearCacheRegionClient}.
+     *
+     * @param client     the region client used on a miss
+     * @param nearCache  the near cache of the region
+     * @param clearIndex the clear index the region client was created with
+     * @param statistics the statistics of the region, or <code>null</code>
+     */
+    public NearCacheRegionClient(HibernateMemcachedClient client, NearCache nearCache, long clearIndex,
+            RegionStatistics statistics) {
+        this.client = client;
+        this.nearCache = nearCache;
+        this.clearIndex = clearIndex;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Object get(String key) {
+        Object value = nearCache.get(key, clearIndex);
+        if (value != null) {
+            log.debug("Near cache hit for key {}", key);
+            nearCacheHit();
+            return value;
+        }
+
+        long stamp = nearCache.getStamp(key);
+        value = client.get(key);
+        nearCache.put(key, clearIndex, value, stamp);
+        return value;
+    }
+
+    @Override
+    public Map<String, Object> getMulti(String... keys) {
+        Map<String, Object> result = new HashMap<String, Object>(keys.length * 2);
+        List<String> missing = new ArrayList<String>(keys.length);
+        for (String key : keys) {
+            Object value = nearCache.get(key, clearIndex);
+            if (value != null) {
+                nearCacheHit();
+                result.put(key, value);
+            } else {
+                missing.add(key);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            result.putAll(load(missing));
+        }
+        return result;
+    }
+
+    @Override
+    public CasValue gets(String key) {
+        return client.gets(key);
+    }
+
+    @Override
+    public boolean cas(String key, long casId, int cacheTimeSeconds, Object o) {
+        nearCache.invalidate(key);
+        return client.cas(key, casId, cacheTimeSeconds, o);
+    }
+
+    @Override
+    public boolean set(String key, int cacheTimeSeconds, Object o) {
+        nearCache.invalidate(key);
+        return client.set(key, cacheTimeSeconds, o);
+    }
+
+    @Override
+    public boolean add(String key, int exp, Object o) {
+        nearCache.invalidate(key);
+        return client.add(key, exp, o);
+    }
+
+    @Override
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds) {
+        for (String key : values.keySet()) {
+            nearCache.invalidate(key);
+        }
+        return client.setMulti(values, cacheTimeSeconds);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        nearCache.invalidate(key);
+        return client.delete(key);
+    }
+
+    @Override
+    public boolean deleteMulti(String... keys) {
+        for (String key : keys) {
+            nearCache.invalidate(key);
+        }
+        return client.deleteMulti(keys);
+    }
+
+    @Override
+    public long incr(String key, long factor, long startingValue) {
+        nearCache.invalidate(key);
+        return client.incr(key, factor, startingValue);
+    }
+
+    @Override
+    public long decr(String key, long by, long startingValue) {
+        nearCache.invalidate(key);
+        return client.decr(key, by, startingValue);
+    }
+
+    @Override
+    public Future<Object> getAsync(final String key) {
+        Object value = nearCache.get(key, clearIndex);
+        if (value != null) {
+            log.debug("Near cache hit for key {}", key);
+            nearCacheHit();
+            return new ImmediateFuture<Object>(value);
+        }
+
+        final long stamp = nearCache.getStamp(key);
+        return new FutureAdapter<Object, Object>(client.getAsync(key)) {
+            @Override
+            protected Object convert(Object value) {
+                nearCache.put(key, clearIndex, value, stamp);
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public Future<Map<String, Object>> getMultiAsync(String... keys) {
+        final Map<String, Object> hits = new HashMap<String, Object>(keys.length * 2);
+        List<String> missing = new ArrayList<String>(keys.length);
+        for (String key : keys) {
+            Object value = nearCache.get(key, clearIndex);
+            if (value != null) {
+                nearCacheHit();
+                hits.put(key, value);
+            } else {
+                missing.add(key);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return new ImmediateFuture<Map<String, Object>>(hits);
+        }
+
+        final String[] missingKeys = missing.toArray(new String[missing.size()]);
+        final long[] stamps = stamps(missingKeys);
+        return new FutureAdapter<Map<String, Object>, Map<String, Object>>(client.getMultiAsync(missingKeys.clone())) {
+            @Override
+            protected Map<String, Object> convert(Map<String, Object> loaded) {
+                store(missingKeys, stamps, loaded);
+                Map<String, Object> result = new HashMap<String, Object>(hits);
+                result.putAll(loaded);
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public Future<Boolean> setAsync(String key, int cacheTimeSeconds, Object o) {
+        nearCache.invalidate(key);
+        return client.setAsync(key, cacheTimeSeconds, o);
+    }
+
+    @Override
+    public Future<Boolean> addAsync(String key, int exp, Object o) {
+        nearCache.invalidate(key);
+        return client.addAsync(key, exp, o);
+    }
+
+    @Override
+    public Future<Boolean> deleteAsync(String key) {
+        nearCache.invalidate(key);
+        return client.deleteAsync(key);
+    }
+
+    @Override
+    public Future<Long> incrAsync(String key, long factor, long startingValue) {
+        nearCache.invalidate(key);
+        return client.incrAsync(key, factor, startingValue);
+    }
+
+    @Override
+    public void shutdown() {
+        client.shutdown();
+    }
+
+    private void nearCacheHit() {
+        if (statistics != null) {
+            statistics.nearCacheHit();
+        }
+    }
+
+    private Map<String, Object> load(List<String> keys) {
+        String[] missingKeys = keys.toArray(new String[keys.size()]);
+        long[] stamps = stamps(missingKeys);
+        Map<String, Object> loaded = client.getMulti(missingKeys.clone());
+        store(missingKeys, stamps, loaded);
+        return loaded;
+    }
+
+    private long[] stamps(String[] keys) {
+        long[] stamps = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            stamps[i] = nearCache.getStamp(keys[i]);
+        }
+        return stamps;
+    }
+
+    private void store(String[] keys, long[] stamps, Map<String, Object> loaded) {
+        for (int i = 0; i < keys.length; i++) {
+            nearCache.put(keys[i], clearIndex, loaded.get(keys[i]), stamps[i]);
+        }
+    }
+}
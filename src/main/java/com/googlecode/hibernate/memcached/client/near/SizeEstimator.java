@@ -0,0 +1,109 @@
+package com.googlecode.hibernate.memcached.client.near;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+
+import com.googlecode.hibernate.memcached.client.dogpile.DogpileEnvelope;
+import com.googlecode.hibernate.memcached.codec.SerializedValue;
+import com.googlecode.hibernate.memcached.strategy.Item;
+import com.googlecode.hibernate.memcached.strategy.Lockable;
+
+/**
+ * Estimates the heap size of cached values. The estimate follows the types
+ * Hibernate actually caches (disassembled entity and collection state,
+ * query result lists, strings, numbers and dates) and uses a fixed size for
+ * anything else. It is meant to keep the {@link NearCache} within a rough
+ * memory bound, not to be exact. The
+ * {@link com.googlecode.hibernate.memcached.client.chunk.ValueChunker} uses it
+ * to skip serializing values that are clearly small.
+ * <p>
+ * Items whose value is still serialized are estimated by the size of the
+ * serialized value, so that estimating does not deserialize it.
+ */
+public final class SizeEstimator {
+
+    static final long DEFAULT_OBJECT_SIZE = 64;
+
+    private static final long OBJECT_HEADER = 16;
+    private static final long REFERENCE = 4;
+    private static final int MAX_DEPTH = 4;
+
+    private SizeEstimator() {
+    }
+
+    /**
+     * Estimates the size of the given value in bytes.
+     */
+    public static long estimate(Object value) {
+        return estimate(value, 0);
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return OBJECT_HEADER + ((byte[]) value).length;
+        }
+        if (value instanceof char[]) {
+            return OBJECT_HEADER + 2L * ((char[]) value).length;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Date || value instanceof Enum<?>) {
+            return 24;
+        }
+        if (depth >= MAX_DEPTH) {
+            return DEFAULT_OBJECT_SIZE;
+        }
+        if (value instanceof Item) {
+            SerializedValue serialized = ((Item) value).getSerializedValue();
+            if (serialized != null) {
+                return 32 + OBJECT_HEADER + serialized.getLength();
+            }
+        }
+        if (value instanceof DogpileEnvelope) {
+            return 32 + estimate(((DogpileEnvelope) value).getValue(), depth + 1);
+        }
+        if (value instanceof Lockable) {
+            return 32 + estimate(((Lockable) value).getValue(), depth + 1);
+        }
+        if (value instanceof CacheEntry) {
+            return 32 + estimate(((CacheEntry) value).getDisassembledState(), depth + 1);
+        }
+        if (value instanceof CollectionCacheEntry) {
+            return 16 + estimate(((CollectionCacheEntry) value).getState(), depth + 1);
+        }
+        if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long size = OBJECT_HEADER + REFERENCE * array.length;
+            for (Object element : array) {
+                size += estimate(element, depth + 1);
+            }
+            return size;
+        }
+        if (value instanceof Collection<?>) {
+            Collection<?> collection = (Collection<?>) value;
+            long size = 48 + 2 * REFERENCE * collection.size();
+            for (Object element : collection) {
+                size += estimate(element, depth + 1);
+            }
+            return size;
+        }
+        if (value instanceof Map<?, ?>) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long size = 48 + 32L * map.size();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+            }
+            return size;
+        }
+        return DEFAULT_OBJECT_SIZE;
+    }
+}
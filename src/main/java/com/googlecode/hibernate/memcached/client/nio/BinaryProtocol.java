@@ -0,0 +1,114 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Constants and request encoding of the
+ * <a href="https://github.com/memcached/memcached/wiki/BinaryProtocolRevamped">
+ * memcached binary protocol</a>.
+ * <p>
+ * Every request is a 24 byte header followed by the extras, the key and the
+ * value. The header is reserved first and filled in once the body has been
+ * written, so values are serialized straight into the request buffer.
+ */
+final class BinaryProtocol {
+
+    static final int HEADER_LENGTH = 24;
+    static final int MAX_KEY_LENGTH = 250;
+
+    static final int REQUEST_MAGIC = 0x80;
+    static final int RESPONSE_MAGIC = 0x81;
+
+    // Opcodes
+    static final int GET = 0x00;
+    static final int SET = 0x01;
+    static final int ADD = 0x02;
+    static final int DELETE = 0x04;
+    static final int INCREMENT = 0x05;
+    static final int DECREMENT = 0x06;
+    static final int GETQ = 0x09;
+    static final int NOOP = 0x0a;
+    static final int SETQ = 0x11;
+    static final int DELETEQ = 0x14;
+
+    // Status codes
+    static final int STATUS_OK = 0x00;
+    static final int STATUS_KEY_NOT_FOUND = 0x01;
+    static final int STATUS_KEY_EXISTS = 0x02;
+    static final int STATUS_ITEM_NOT_STORED = 0x05;
+
+    private BinaryProtocol() {
+    }
+
+    static void writeGet(ByteBufferOutputStream out, int opcode, String key, int opaque) {
+        int start = beginRequest(out);
+        int keyLength = writeKey(out, key);
+        endRequest(out, start, opcode, keyLength, 0, opaque, 0);
+    }
+
+    static void writeStore(ByteBufferOutputStream out, Transcoder transcoder, int opcode, String key, int exp, Object value, int opaque, long cas) throws IOException {
+        int start = beginRequest(out);
+        int flagsIndex = out.position();
+        out.writeInt(0);
+        out.writeInt(exp);
+        int keyLength = writeKey(out, key);
+        int flags = transcoder.encode(value, out);
+        out.putInt(flagsIndex, flags);
+        endRequest(out, start, opcode, keyLength, 8, opaque, cas);
+    }
+
+    static void writeDelete(ByteBufferOutputStream out, int opcode, String key, int opaque) {
+        int start = beginRequest(out);
+        int keyLength = writeKey(out, key);
+        endRequest(out, start, opcode, keyLength, 0, opaque, 0);
+    }
+
+    static void writeMutate(ByteBufferOutputStream out, int opcode, String key, long by, long initial, int exp, int opaque) {
+        int start = beginRequest(out);
+        out.writeLong(by);
+        out.writeLong(initial);
+        out.writeInt(exp);
+        int keyLength = writeKey(out, key);
+        endRequest(out, start, opcode, keyLength, 20, opaque, 0);
+    }
+
+    static void writeNoop(ByteBufferOutputStream out, int opaque) {
+        int start = beginRequest(out);
+        endRequest(out, start, NOOP, 0, 0, opaque, 0);
+    }
+
+    static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int beginRequest(ByteBufferOutputStream out) {
+        int start = out.position();
+        out.reserve(HEADER_LENGTH);
+        return start;
+    }
+
+    private static int writeKey(ByteBufferOutputStream out, String key) {
+        int keyLength = out.writeString(key);
+        if (keyLength > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key is too long (max " + MAX_KEY_LENGTH + " bytes): " + key);
+        }
+        return keyLength;
+    }
+
+    private static void endRequest(ByteBufferOutputStream out, int start, int opcode, int keyLength, int extrasLength, int opaque, long cas) {
+        out.putByte(start, REQUEST_MAGIC);
+        out.putByte(start + 1, opcode);
+        out.putShort(start + 2, keyLength);
+        out.putByte(start + 4, extrasLength);
+        out.putByte(start + 5, 0);
+        out.putShort(start + 6, 0);
+        out.putInt(start + 8, out.position() - start - HEADER_LENGTH);
+        out.putInt(start + 12, opaque);
+        out.putLong(start + 16, cas);
+    }
+}
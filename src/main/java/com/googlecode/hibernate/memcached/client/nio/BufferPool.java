@@ -0,0 +1,65 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of equally sized direct {@link ByteBuffer}s. Direct buffers are
+ * expensive to allocate and free, so they are recycled instead of being left
+ * to the garbage collector. Buffers larger than the pooled size are heap
+ * buffers that are simply dropped on release.
+ */
+final class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Takes a cleared buffer of the pooled size.
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Takes a cleared buffer with at least the given capacity.
+     */
+    ByteBuffer acquire(int minCapacity) {
+        if (minCapacity <= bufferSize) {
+            return acquire();
+        }
+        return ByteBuffer.allocate(minCapacity);
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used afterwards.
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= maxPooled) {
+            buffers.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link OutputStream} writing into a pooled {@link ByteBuffer}. When the
+ * buffer is full its content is moved to a larger one, so values can be
+ * serialized straight into the request without knowing their size first.
+ * Fixed size fields (like the request header) can be reserved up front and
+ * filled in later with the absolute <code>put</code> methods.
+ */
+final class ByteBufferOutputStream extends OutputStream {
+
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+
+    ByteBufferOutputStream(BufferPool pool) {
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    @Override
+    public void write(int b) {
+        ensureRemaining(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureRemaining(len);
+        buffer.put(b, off, len);
+    }
+
+    /**
+     * Writes an ASCII <code>String</code> without creating an intermediate
+     * byte array. Non ASCII strings are encoded as UTF-8.
+     * 
+     * @return the number of bytes written
+     */
+    int writeString(String s) {
+        int length = s.length();
+        ensureRemaining(length);
+        int start = buffer.position();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(start);
+                byte[] bytes = BinaryProtocol.utf8(s);
+                write(bytes, 0, bytes.length);
+                return bytes.length;
+            }
+            buffer.put((byte) c);
+        }
+        return length;
+    }
+
+    void writeByte(int b) {
+        write(b);
+    }
+
+    void writeShort(int s) {
+        ensureRemaining(2);
+        buffer.putShort((short) s);
+    }
+
+    void writeInt(int i) {
+        ensureRemaining(4);
+        buffer.putInt(i);
+    }
+
+    void writeLong(long l) {
+        ensureRemaining(8);
+        buffer.putLong(l);
+    }
+
+    /**
+     * Skips the given number of bytes, to be filled in later.
+     */
+    void reserve(int length) {
+        ensureRemaining(length);
+        buffer.position(buffer.position() + length);
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Copies the bytes written since the given position.
+     */
+    byte[] copyFrom(int start) {
+        byte[] bytes = new byte[buffer.position() - start];
+        ByteBuffer written = buffer.duplicate();
+        written.position(start);
+        written.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Drops the bytes written since the given position.
+     */
+    void truncate(int position) {
+        buffer.position(position);
+    }
+
+    void putByte(int index, int b) {
+        buffer.put(index, (byte) b);
+    }
+
+    void putShort(int index, int s) {
+        buffer.putShort(index, (short) s);
+    }
+
+    void putInt(int index, int i) {
+        buffer.putInt(index, i);
+    }
+
+    void putLong(int index, long l) {
+        buffer.putLong(index, l);
+    }
+
+    /**
+     * Flips and returns the buffer holding everything written so far. The
+     * stream must not be used afterwards.
+     */
+    ByteBuffer toBuffer() {
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Releases the buffer without using it.
+     */
+    void discard() {
+        pool.release(buffer);
+        buffer = null;
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+        ByteBuffer larger = pool.acquire(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        pool.release(buffer);
+        buffer = larger;
+    }
+}
@@ -0,0 +1,31 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+/**
+ * Deletes a single value.
+ */
+final class DeleteOperation extends Operation<Boolean> {
+
+    private final String key;
+
+    DeleteOperation(String key, int opaque) {
+        super(opaque, 1);
+        this.key = key;
+    }
+
+    @Override
+    protected void encode(ByteBufferOutputStream out) {
+        BinaryProtocol.writeDelete(out, BinaryProtocol.DELETE, key, getOpaque());
+    }
+
+    @Override
+    protected boolean handle(Response response) {
+        if (response.status == BinaryProtocol.STATUS_OK) {
+            complete(true);
+        } else if (response.status == BinaryProtocol.STATUS_KEY_NOT_FOUND) {
+            complete(false);
+        } else {
+            fail(response);
+        }
+        return true;
+    }
+}
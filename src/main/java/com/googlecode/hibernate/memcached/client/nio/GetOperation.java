@@ -0,0 +1,44 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+
+import com.googlecode.hibernate.memcached.client.CasValue;
+
+/**
+ * Gets a single value, optionally along with its CAS identifier.
+ */
+final class GetOperation extends Operation<Object> {
+
+    private final Transcoder transcoder;
+    private final String key;
+    private final boolean withCas;
+
+    GetOperation(Transcoder transcoder, String key, boolean withCas, int opaque) {
+        super(opaque, 1);
+        this.transcoder = transcoder;
+        this.key = key;
+        this.withCas = withCas;
+    }
+
+    @Override
+    protected void encode(ByteBufferOutputStream out) {
+        BinaryProtocol.writeGet(out, BinaryProtocol.GET, key, getOpaque());
+    }
+
+    @Override
+    protected boolean handle(Response response) {
+        if (response.status == BinaryProtocol.STATUS_OK) {
+            try {
+                Object value = transcoder.decode(response.getFlags(), response.getValue());
+                complete(withCas ? new CasValue(response.cas, value) : value);
+            } catch (IOException e) {
+                fail(e);
+            }
+        } else if (response.status == BinaryProtocol.STATUS_KEY_NOT_FOUND) {
+            complete(null);
+        } else {
+            fail(response);
+        }
+        return true;
+    }
+}
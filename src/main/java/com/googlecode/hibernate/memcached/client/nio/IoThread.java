@@ -0,0 +1,119 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A selector thread serving a fixed set of {@link NioConnection}s.
+ * <p>
+ * Calling threads hand connections with newly queued operations to the thread
+ * with {@link #schedule(NioConnection)}. A connection is only scheduled (and
+ * the selector only woken up) once until the thread has serviced it, so a
+ * burst of operations costs a single wake-up.
+ */
+final class IoThread extends Thread {
+
+    private static final Logger log = LoggerFactory.getLogger(IoThread.class);
+
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+
+    private final Selector selector;
+    private final List<NioConnection> connections = new ArrayList<NioConnection>();
+    private final ConcurrentLinkedQueue<NioConnection> scheduled = new ConcurrentLinkedQueue<NioConnection>();
+    private volatile boolean running = true;
+
+    IoThread(String name, boolean daemon) throws IOException {
+        super(name);
+        setDaemon(daemon);
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Adds a connection, must be called before the thread is started.
+     */
+    void addConnection(NioConnection connection) {
+        connections.add(connection);
+    }
+
+    void schedule(NioConnection connection) {
+        if (connection.scheduled.compareAndSet(false, true)) {
+            scheduled.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        for (NioConnection connection : connections) {
+            connection.connect(selector);
+        }
+
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+            } catch (IOException e) {
+                log.error("Select failed", e);
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                handle(key);
+            }
+
+            NioConnection connection;
+            while ((connection = scheduled.poll()) != null) {
+                connection.scheduled.set(false);
+                connection.service();
+            }
+
+            long now = System.nanoTime();
+            for (NioConnection c : connections) {
+                c.checkTimeouts(selector, now);
+            }
+        }
+
+        for (NioConnection connection : connections) {
+            connection.close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Error closing selector", e);
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                connection.finishConnect();
+            }
+            if (key.isValid() && key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (CancelledKeyException e) {
+            // the connection has been closed in the meantime
+        } catch (IOException e) {
+            connection.failed(e);
+        }
+    }
+}
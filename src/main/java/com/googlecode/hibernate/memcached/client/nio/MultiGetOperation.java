@@ -0,0 +1,62 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gets several values from one server. A quiet get is sent for every key,
+ * followed by a no-op: the server only answers the gets that hit, and the
+ * reply to the no-op marks the end of the batch. Each get uses its own opaque
+ * value, so hits are mapped back to their key without reading the key from
+ * the response.
+ */
+final class MultiGetOperation extends Operation<Map<String, Object>> {
+
+    private static final Logger log = LoggerFactory.getLogger(MultiGetOperation.class);
+
+    private final Transcoder transcoder;
+    private final List<String> keys;
+    private final Map<String, Object> result;
+
+    MultiGetOperation(Transcoder transcoder, List<String> keys, int opaque) {
+        super(opaque, keys.size() + 1);
+        this.transcoder = transcoder;
+        this.keys = keys;
+        this.result = new HashMap<String, Object>(keys.size() * 2);
+    }
+
+    @Override
+    protected void encode(ByteBufferOutputStream out) {
+        int opaque = getOpaque();
+        for (int i = 0; i < keys.size(); i++) {
+            BinaryProtocol.writeGet(out, BinaryProtocol.GETQ, keys.get(i), opaque + i);
+        }
+        BinaryProtocol.writeNoop(out, opaque + keys.size());
+    }
+
+    @Override
+    protected boolean handle(Response response) {
+        int index = response.opaque - getOpaque();
+        if (index == keys.size()) {
+            complete(result);
+            return true;
+        }
+
+        String key = keys.get(index);
+        if (response.status == BinaryProtocol.STATUS_OK) {
+            try {
+                result.put(key, transcoder.decode(response.getFlags(), response.getValue()));
+            } catch (IOException e) {
+                log.warn("Could not decode value for key " + key, e);
+            }
+        } else {
+            log.warn("Could not get key {}: {}", key, response.getErrorMessage());
+        }
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+/**
+ * Increments or decrements a counter, creating it with an initial value if it
+ * does not exist.
+ */
+final class MutateOperation extends Operation<Long> {
+
+    private final int opcode;
+    private final String key;
+    private final long by;
+    private final long initial;
+
+    MutateOperation(int opcode, String key, long by, long initial, int opaque) {
+        super(opaque, 1);
+        this.opcode = opcode;
+        this.key = key;
+        this.by = by;
+        this.initial = initial;
+    }
+
+    @Override
+    protected void encode(ByteBufferOutputStream out) {
+        BinaryProtocol.writeMutate(out, opcode, key, by, initial, 0, getOpaque());
+    }
+
+    @Override
+    protected boolean handle(Response response) {
+        if (response.status == BinaryProtocol.STATUS_OK) {
+            complete(response.getLongValue());
+        } else {
+            fail(response);
+        }
+        return true;
+    }
+}
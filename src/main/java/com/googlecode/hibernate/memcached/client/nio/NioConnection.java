@@ -0,0 +1,358 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The connection to a single server. Operations are queued by the calling
+ * threads and everything else happens on the connection's {@link IoThread}.
+ * <p>
+ * Queued requests are written with a single gathering write, so operations
+ * issued concurrently share system calls and TCP segments. Responses are
+ * parsed in place in the connection's read buffer.
+ * <p>
+ * When the connection fails all pending operations fail, and new operations
+ * fail immediately until the connection has been re-established.
+ */
+final class NioConnection {
+
+    private static final Logger log = LoggerFactory.getLogger(NioConnection.class);
+
+    private static final int MAX_GATHER = 64;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30000;
+
+    private final InetSocketAddress address;
+    private final IoThread ioThread;
+    private final BufferPool pool;
+    private final long connectTimeoutNanos;
+    private final long responseTimeoutNanos;
+    private final long reconnectDelayMillis;
+
+    private final ConcurrentLinkedQueue<Operation<?>> pending = new ConcurrentLinkedQueue<Operation<?>>();
+    private volatile boolean down;
+
+    /**
+     * Set while the connection waits to be serviced by its IO thread.
+     */
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // Only accessed by the IO thread
+    private SocketChannel channel;
+    private SelectionKey selectionKey;
+    private boolean connected;
+    private long connectDeadline;
+    private long reconnectAt;
+    private long currentReconnectDelayMillis;
+    private final ArrayDeque<Operation<?>> writeQueue = new ArrayDeque<Operation<?>>();
+    private final ArrayDeque<Operation<?>> inflight = new ArrayDeque<Operation<?>>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private final Response response = new Response();
+    private ByteBuffer readBuffer;
+    private ByteBuffer largeBody;
+
+    /**
+     * @param responseTimeoutMillis the time after which a server that has not
+     *                              answered the oldest pending request is
+     *                              considered failed
+     */
+    NioConnection(InetSocketAddress address, IoThread ioThread, BufferPool pool,
+            long connectTimeoutMillis, long responseTimeoutMillis, long reconnectDelayMillis) {
+        this.address = address;
+        this.ioThread = ioThread;
+        this.pool = pool;
+        this.connectTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(connectTimeoutMillis);
+        this.responseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(responseTimeoutMillis);
+        this.reconnectDelayMillis = reconnectDelayMillis;
+        this.currentReconnectDelayMillis = reconnectDelayMillis;
+        ioThread.addConnection(this);
+    }
+
+    /**
+     * Queues an encoded operation.
+     */
+    void enqueue(Operation<?> op) {
+        if (down) {
+            op.releaseRequest(pool);
+            op.fail(new IOException("Server " + address + " is unavailable"));
+            return;
+        }
+        pending.add(op);
+        ioThread.schedule(this);
+    }
+
+    @Override
+    public String toString() {
+        return address.toString();
+    }
+
+    // The methods below are only called by the IO thread
+
+    void connect(Selector selector) {
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.socket().setKeepAlive(true);
+            if (channel.connect(address)) {
+                selectionKey = channel.register(selector, SelectionKey.OP_READ, this);
+                connected();
+            } else {
+                selectionKey = channel.register(selector, SelectionKey.OP_CONNECT, this);
+                connectDeadline = System.nanoTime() + connectTimeoutNanos;
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    void finishConnect() throws IOException {
+        if (channel.finishConnect()) {
+            connected();
+        }
+    }
+
+    /**
+     * Moves newly queued operations to the write queue and writes them.
+     */
+    void service() {
+        Operation<?> op;
+        while ((op = pending.poll()) != null) {
+            if (op.isCancelled()) {
+                op.releaseRequest(pool);
+            } else if (channel == null) {
+                op.releaseRequest(pool);
+                op.fail(new IOException("Server " + address + " is unavailable"));
+            } else {
+                writeQueue.add(op);
+                inflight.add(op);
+            }
+        }
+
+        if (connected) {
+            try {
+                write();
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+    }
+
+    void write() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            int count = 0;
+            for (Operation<?> op : writeQueue) {
+                gather[count++] = op.getRequest();
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+
+            long written = channel.write(gather, 0, count);
+            Arrays.fill(gather, 0, count, null);
+
+            long now = System.nanoTime();
+            while (!writeQueue.isEmpty() && !writeQueue.peek().getRequest().hasRemaining()) {
+                Operation<?> op = writeQueue.poll();
+                op.writtenAt = now;
+                op.releaseRequest(pool);
+            }
+
+            if (written == 0) {
+                break;
+            }
+        }
+
+        int interest = writeQueue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        if (selectionKey.interestOps() != interest) {
+            selectionKey.interestOps(interest);
+        }
+    }
+
+    void read() throws IOException {
+        int n;
+        while ((n = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            readResponses();
+            readBuffer.compact();
+        }
+        if (n < 0) {
+            throw new IOException("Connection closed by server");
+        }
+    }
+
+    /**
+     * Fails the connection if it did not connect or answer in time, and
+     * reconnects a failed connection once its delay has passed.
+     */
+    void checkTimeouts(Selector selector, long now) {
+        if (channel == null) {
+            if (now - reconnectAt >= 0) {
+                log.info("Reconnecting to {}", address);
+                connect(selector);
+            }
+        } else if (!connected) {
+            if (now - connectDeadline >= 0) {
+                failed(new IOException("Timed out connecting to " + address));
+            }
+        } else {
+            Operation<?> oldest = inflight.peek();
+            if (oldest != null && oldest.writtenAt != 0 && now - oldest.writtenAt > responseTimeoutNanos) {
+                failed(new IOException("No response from " + address + " within "
+                        + TimeUnit.NANOSECONDS.toMillis(responseTimeoutNanos) + "ms"));
+            }
+        }
+    }
+
+    /**
+     * Closes the connection and fails all its operations.
+     */
+    void close() {
+        down = true;
+        closeChannel();
+        failAll(new IOException("Client has been shut down"));
+    }
+
+    /**
+     * Closes the connection after an error, fails all its operations and
+     * schedules a reconnect.
+     */
+    void failed(IOException e) {
+        log.warn("Connection to " + address + " failed, retrying in " + currentReconnectDelayMillis + "ms", e);
+        down = true;
+        closeChannel();
+        failAll(e);
+        reconnectAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(currentReconnectDelayMillis);
+        currentReconnectDelayMillis = Math.min(currentReconnectDelayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+    }
+
+    private void connected() {
+        log.info("Connected to {}", address);
+        connected = true;
+        down = false;
+        currentReconnectDelayMillis = reconnectDelayMillis;
+        readBuffer = pool.acquire();
+        service();
+    }
+
+    private void readResponses() throws IOException {
+        ByteBuffer buffer = readBuffer;
+        int limit = buffer.limit();
+
+        while (true) {
+            if (largeBody != null) {
+                int n = Math.min(largeBody.remaining(), buffer.remaining());
+                buffer.limit(buffer.position() + n);
+                largeBody.put(buffer);
+                buffer.limit(limit);
+                if (largeBody.hasRemaining()) {
+                    return;
+                }
+                largeBody.flip();
+                response.body = largeBody;
+                largeBody = null;
+                dispatch();
+                continue;
+            }
+
+            if (buffer.remaining() < BinaryProtocol.HEADER_LENGTH) {
+                return;
+            }
+
+            int start = buffer.position();
+            if ((buffer.get(start) & 0xff) != BinaryProtocol.RESPONSE_MAGIC) {
+                throw new IOException("Invalid response magic from " + address);
+            }
+            response.opcode = buffer.get(start + 1) & 0xff;
+            response.keyLength = buffer.getShort(start + 2) & 0xffff;
+            response.extrasLength = buffer.get(start + 4) & 0xff;
+            response.status = buffer.getShort(start + 6) & 0xffff;
+            response.bodyLength = buffer.getInt(start + 8);
+            response.opaque = buffer.getInt(start + 12);
+            response.cas = buffer.getLong(start + 16);
+
+            int bodyLength = response.bodyLength;
+            if (bodyLength < 0) {
+                throw new IOException("Invalid response length from " + address);
+            }
+            if (bodyLength > buffer.capacity() - BinaryProtocol.HEADER_LENGTH) {
+                // can never fit into the read buffer, collect it separately
+                buffer.position(start + BinaryProtocol.HEADER_LENGTH);
+                largeBody = ByteBuffer.allocate(bodyLength);
+                continue;
+            }
+            if (buffer.remaining() < BinaryProtocol.HEADER_LENGTH + bodyLength) {
+                return;
+            }
+
+            int end = start + BinaryProtocol.HEADER_LENGTH + bodyLength;
+            buffer.position(start + BinaryProtocol.HEADER_LENGTH);
+            buffer.limit(end);
+            response.body = buffer;
+            try {
+                dispatch();
+            } finally {
+                buffer.limit(limit);
+                buffer.position(end);
+            }
+        }
+    }
+
+    private void dispatch() throws IOException {
+        Operation<?> op = inflight.peek();
+        if (op == null || !op.matches(response.opaque)) {
+            throw new IOException("Unexpected response from " + address + " (opaque " + response.opaque + ")");
+        }
+        if (op.handle(response)) {
+            inflight.poll();
+        }
+    }
+
+    private void closeChannel() {
+        connected = false;
+        if (selectionKey != null) {
+            selectionKey.cancel();
+            selectionKey = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing connection to " + address, e);
+            }
+            channel = null;
+        }
+        pool.release(readBuffer);
+        readBuffer = null;
+        largeBody = null;
+    }
+
+    private void failAll(IOException e) {
+        for (Operation<?> op : writeQueue) {
+            op.releaseRequest(pool);
+        }
+        writeQueue.clear();
+
+        for (Operation<?> op : inflight) {
+            op.fail(e);
+        }
+        inflight.clear();
+
+        Operation<?> op;
+        while ((op = pending.poll()) != null) {
+            op.releaseRequest(pool);
+            op.fail(e);
+        }
+    }
+}
@@ -0,0 +1,527 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.spy.memcached.DefaultHashAlgorithm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.LoggingMemcacheExceptionHandler;
+import com.googlecode.hibernate.memcached.MemcacheExceptionHandler;
+import com.googlecode.hibernate.memcached.client.CasValue;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.ServerAwareClient;
+import com.googlecode.hibernate.memcached.concurrent.FutureAdapter;
+import com.googlecode.hibernate.memcached.concurrent.ImmediateFuture;
+import com.googlecode.hibernate.memcached.utils.StringUtils;
+
+/**
+ * A {@link HibernateMemcachedClient} speaking the memcached binary protocol
+ * over non-blocking connections.
+ * <p>
+ * Requests are encoded (and values serialized) by the calling thread
+ * directly into pooled direct buffers. Each server has a single connection,
+ * served by one of a small number of selector threads, which writes all
+ * queued requests at once and decodes responses straight from its read
+ * buffer. Multi-key operations send one batch of quiet commands per server.
+ * <p>
+ * Keys are mapped to servers the same way spymemcached does with its default
+ * connection factory (the configured hash algorithm, modulo the number of
+ * servers), so both clients can share a cache.
+ *
+ * @see NioMemcacheClientFactory
+ */
+public class NioMemcache implements ServerAwareClient {
+
+    private static final Logger log = LoggerFactory.getLogger(NioMemcache.class);
+    private MemcacheExceptionHandler exceptionHandler = new LoggingMemcacheExceptionHandler();
+
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("MD5 not supported", e);
+            }
+        }
+    };
+
+    private final Transcoder transcoder;
+    private final DefaultHashAlgorithm hashAlgorithm;
+    private final AtomicInteger opaques = new AtomicInteger();
+    private final long operationTimeoutMillis;
+    private final BufferPool pool;
+    private final IoThread[] ioThreads;
+    private final NioConnection[] connections;
+
+    public NioMemcache(NioMemcachedProperties properties) throws IOException {
+        List<InetSocketAddress> addresses = properties.getServerAddresses();
+        this.operationTimeoutMillis = properties.getOperationTimeoutMillis();
+        this.hashAlgorithm = properties.getHashAlgorithm();
+        this.transcoder = new Transcoder(properties.createLockableCodec(), properties.isCompactEntriesEnabled());
+        this.pool = new BufferPool(properties.getBufferSize(), properties.getBufferPoolSize());
+
+        int threads = Math.max(1, Math.min(properties.getIoThreads(), addresses.size()));
+        this.ioThreads = new IoThread[threads];
+        for (int i = 0; i < threads; i++) {
+            ioThreads[i] = new IoThread("hibernate-memcached-io-" + i, properties.isDaemonMode());
+        }
+
+        this.connections = new NioConnection[addresses.size()];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new NioConnection(addresses.get(i), ioThreads[i % threads], pool,
+                    properties.getConnectTimeoutMillis(), 2 * operationTimeoutMillis,
+                    properties.getReconnectDelayMillis());
+        }
+
+        for (IoThread ioThread : ioThreads) {
+            ioThread.start();
+        }
+    }
+
+    public Object get(String key) {
+        return await(getAsync(key), null);
+    }
+
+    public Map<String, Object> getMulti(String... keys) {
+        return await(getMultiAsync(keys), new HashMap<String, Object>(0));
+    }
+
+    public CasValue gets(final String key) {
+        log.debug("NioMemcache.gets({})", key);
+        try {
+            Future<Object> future = submit(key, new GetOperation(transcoder, key, true, nextOpaque(1)));
+            return (CasValue) await(new HandledFuture<Object>(future) {
+                @Override
+                protected Object onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnGet(key, e);
+                    return null;
+                }
+            }, null);
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnGet(key, e);
+        }
+        return null;
+    }
+
+    public boolean cas(final String key, long casId, final int cacheTimeSeconds, final Object o) {
+        log.debug("NioMemcache.cas({})", key);
+        try {
+            Future<Boolean> future = submit(key, new StoreOperation(transcoder, BinaryProtocol.SET, key, cacheTimeSeconds, o, casId, nextOpaque(1)));
+            return await(new HandledFuture<Boolean>(future) {
+                @Override
+                protected Boolean onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnSet(key, cacheTimeSeconds, o, e);
+                    return false;
+                }
+            }, false);
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnSet(key, cacheTimeSeconds, o, e);
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * Like the spymemcached client this does not wait for the reply,
+     * <code>true</code> means the write was queued.
+     */
+    public boolean set(String key, int cacheTimeSeconds, Object o) {
+        Future<Boolean> result = setAsync(key, cacheTimeSeconds, o);
+        return !result.isDone() || await(result, false);
+    }
+
+    public boolean add(String key, int exp, Object o) {
+        return await(addAsync(key, exp, o), false);
+    }
+
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds) {
+        log.debug("NioMemcache.setMulti({})", values.keySet());
+        Map<NioConnection, List<String>> keysByConnection = new IdentityHashMap<NioConnection, List<String>>();
+        Map<NioConnection, List<Object>> valuesByConnection = new IdentityHashMap<NioConnection, List<Object>>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            NioConnection connection = connectionFor(entry.getKey());
+            List<String> keys = keysByConnection.get(connection);
+            if (keys == null) {
+                keys = new ArrayList<String>();
+                keysByConnection.put(connection, keys);
+                valuesByConnection.put(connection, new ArrayList<Object>());
+            }
+            keys.add(entry.getKey());
+            valuesByConnection.get(connection).add(entry.getValue());
+        }
+
+        boolean result = true;
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(keysByConnection.size());
+        for (Map.Entry<NioConnection, List<String>> entry : keysByConnection.entrySet()) {
+            List<String> keys = entry.getValue();
+            try {
+                futures.add(submit(entry.getKey(), new QuietBatchOperation(transcoder, BinaryProtocol.SETQ,
+                        keys, valuesByConnection.get(entry.getKey()), cacheTimeSeconds, nextOpaque(keys.size() + 1))));
+            } catch (Exception e) {
+                exceptionHandler.handleErrorOnSet(StringUtils.join(", ", keys.toArray()), cacheTimeSeconds, null, e);
+                result = false;
+            }
+        }
+
+        for (Future<Boolean> future : futures) {
+            try {
+                result &= future.get(operationTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                exceptionHandler.handleErrorOnSet(StringUtils.join(", ", values.keySet().toArray()), cacheTimeSeconds, null, e);
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    public boolean delete(String key) {
+        return await(deleteAsync(key), false);
+    }
+
+    public boolean deleteMulti(String... keys) {
+        log.debug("NioMemcache.deleteMulti({})", (Object) keys);
+        boolean result = true;
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (Map.Entry<NioConnection, List<String>> entry : groupByConnection(keys).entrySet()) {
+            List<String> nodeKeys = entry.getValue();
+            try {
+                futures.add(submit(entry.getKey(), new QuietBatchOperation(transcoder, BinaryProtocol.DELETEQ,
+                        nodeKeys, null, 0, nextOpaque(nodeKeys.size() + 1))));
+            } catch (Exception e) {
+                exceptionHandler.handleErrorOnDelete(StringUtils.join(", ", nodeKeys.toArray()), e);
+                result = false;
+            }
+        }
+
+        for (Future<Boolean> future : futures) {
+            try {
+                result &= future.get(operationTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                exceptionHandler.handleErrorOnDelete(StringUtils.join(", ", keys), e);
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    public long incr(String key, long factor, long startingValue) {
+        return await(incrAsync(key, factor, startingValue), -1L);
+    }
+
+    public long decr(final String key, final long by, final long startingValue) {
+        try {
+            Future<Long> future = submit(key, new MutateOperation(BinaryProtocol.DECREMENT, key, by, startingValue, nextOpaque(1)));
+            return await(new HandledFuture<Long>(future) {
+                @Override
+                protected Long onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnIncr(key, by, startingValue, e);
+                    return -1L;
+                }
+            }, -1L);
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnIncr(key, by, startingValue, e);
+        }
+        return -1;
+    }
+
+    public Future<Object> getAsync(final String key) {
+        log.debug("NioMemcache.get({})", key);
+        try {
+            return new HandledFuture<Object>(submit(key, new GetOperation(transcoder, key, false, nextOpaque(1)))) {
+                @Override
+                protected Object onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnGet(key, e);
+                    return null;
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnGet(key, e);
+        }
+        return new ImmediateFuture<Object>(null);
+    }
+
+    public Future<Map<String, Object>> getMultiAsync(final String... keys) {
+        try {
+            List<Future<Map<String, Object>>> futures = new ArrayList<Future<Map<String, Object>>>();
+            for (Map.Entry<NioConnection, List<String>> entry : groupByConnection(keys).entrySet()) {
+                List<String> nodeKeys = entry.getValue();
+                futures.add(submit(entry.getKey(), new MultiGetOperation(transcoder, nodeKeys, nextOpaque(nodeKeys.size() + 1))));
+            }
+            return new HandledFuture<Map<String, Object>>(new MergedFuture(futures)) {
+                @Override
+                protected Map<String, Object> onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnGet(StringUtils.join(", ", keys), e);
+                    return new HashMap<String, Object>(0);
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnGet(StringUtils.join(", ", keys), e);
+        }
+        return new ImmediateFuture<Map<String, Object>>(new HashMap<String, Object>(0));
+    }
+
+    public Future<Boolean> setAsync(final String key, final int cacheTimeSeconds, final Object o) {
+        log.debug("NioMemcache.set({})", key);
+        return store(BinaryProtocol.SET, key, cacheTimeSeconds, o);
+    }
+
+    public Future<Boolean> addAsync(final String key, final int exp, final Object o) {
+        log.debug("NioMemcache.add({})", key);
+        return store(BinaryProtocol.ADD, key, exp, o);
+    }
+
+    public Future<Boolean> deleteAsync(final String key) {
+        try {
+            return new HandledFuture<Boolean>(submit(key, new DeleteOperation(key, nextOpaque(1)))) {
+                @Override
+                protected Boolean onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnDelete(key, e);
+                    return false;
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnDelete(key, e);
+        }
+        return new ImmediateFuture<Boolean>(false);
+    }
+
+    public Future<Long> incrAsync(final String key, final long factor, final long startingValue) {
+        try {
+            Operation<Long> op = new MutateOperation(BinaryProtocol.INCREMENT, key, factor, startingValue, nextOpaque(1));
+            return new HandledFuture<Long>(submit(key, op)) {
+                @Override
+                protected Long onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnIncr(key, factor, startingValue, e);
+                    return -1L;
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnIncr(key, factor, startingValue, e);
+        }
+        return new ImmediateFuture<Long>(-1L);
+    }
+
+    public void shutdown() {
+        log.debug("Shutting down NioMemcache");
+        for (IoThread ioThread : ioThreads) {
+            ioThread.shutdown();
+        }
+        for (IoThread ioThread : ioThreads) {
+            try {
+                ioThread.join(operationTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public void setExceptionHandler(MemcacheExceptionHandler exceptionHandler) {
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    public String getServer(String key) {
+        return connectionFor(key).toString();
+    }
+
+    private Future<Boolean> store(int opcode, final String key, final int exp, final Object o) {
+        try {
+            return new HandledFuture<Boolean>(submit(key, new StoreOperation(transcoder, opcode, key, exp, o, 0, nextOpaque(1)))) {
+                @Override
+                protected Boolean onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnSet(key, exp, o, e);
+                    return false;
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnSet(key, exp, o, e);
+        }
+        return new ImmediateFuture<Boolean>(false);
+    }
+
+    private <T> Operation<T> submit(String key, Operation<T> op) throws IOException {
+        return submit(connectionFor(key), op);
+    }
+
+    private <T> Operation<T> submit(NioConnection connection, Operation<T> op) throws IOException {
+        op.encode(pool);
+        connection.enqueue(op);
+        return op;
+    }
+
+    /**
+     * Waits for a {@link HandledFuture}, which reports its own failures.
+     */
+    private <T> T await(Future<T> future, T fallback) {
+        try {
+            return future.get(operationTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("Operation failed", e);
+        }
+        return fallback;
+    }
+
+    private int nextOpaque(int count) {
+        return opaques.getAndAdd(count);
+    }
+
+    private NioConnection connectionFor(String key) {
+        if (connections.length == 1) {
+            return connections[0];
+        }
+        return connections[(int) (hash(key) % connections.length)];
+    }
+
+    private Map<NioConnection, List<String>> groupByConnection(String... keys) {
+        Map<NioConnection, List<String>> result = new IdentityHashMap<NioConnection, List<String>>();
+        for (String key : keys) {
+            NioConnection connection = connectionFor(key);
+            List<String> connectionKeys = result.get(connection);
+            if (connectionKeys == null) {
+                connectionKeys = new ArrayList<String>();
+                result.put(connection, connectionKeys);
+            }
+            connectionKeys.add(key);
+        }
+        return result;
+    }
+
+    private long hash(String key) {
+        return hashAlgorithm == DefaultHashAlgorithm.KETAMA_HASH ? ketamaHash(key) : hashAlgorithm.hash(key);
+    }
+
+    /**
+     * The ketama hash of spymemcached's {@link DefaultHashAlgorithm}, without
+     * copying a <code>MessageDigest</code> for every key.
+     */
+    private static long ketamaHash(String key) {
+        MessageDigest md5 = MD5.get();
+        md5.reset();
+        byte[] digest = md5.digest(BinaryProtocol.utf8(key));
+        long hash = ((long) (digest[3] & 0xff) << 24)
+                | ((long) (digest[2] & 0xff) << 16)
+                | ((long) (digest[1] & 0xff) << 8)
+                | (digest[0] & 0xff);
+        return hash & 0xffffffffL;
+    }
+
+    /**
+     * A {@link FutureAdapter} that passes results through unchanged, reports
+     * failures to the {@link MemcacheExceptionHandler} and never waits longer
+     * than the operation timeout.
+     */
+    private abstract class HandledFuture<T> extends FutureAdapter<T, T> {
+
+        HandledFuture(Future<T> source) {
+            super(source);
+        }
+
+        @Override
+        protected T convert(T value) {
+            return value;
+        }
+
+        @Override
+        protected abstract T onFailure(Exception e);
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            try {
+                return get(operationTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new ExecutionException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Merges the results of the per server operations of a multi get.
+     */
+    private static final class MergedFuture implements Future<Map<String, Object>> {
+
+        private final List<Future<Map<String, Object>>> futures;
+
+        MergedFuture(List<Future<Map<String, Object>>> futures) {
+            this.futures = futures;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = false;
+            for (Future<Map<String, Object>> future : futures) {
+                cancelled |= future.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            for (Future<Map<String, Object>> future : futures) {
+                if (future.isCancelled()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            for (Future<Map<String, Object>> future : futures) {
+                if (!future.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Map<String, Object> get() throws InterruptedException, ExecutionException {
+            if (futures.size() == 1) {
+                return futures.get(0).get();
+            }
+            Map<String, Object> result = new HashMap<String, Object>();
+            for (Future<Map<String, Object>> future : futures) {
+                result.putAll(future.get());
+            }
+            return result;
+        }
+
+        @Override
+        public Map<String, Object> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            if (futures.size() == 1) {
+                return futures.get(0).get(timeout, unit);
+            }
+            Map<String, Object> result = new HashMap<String, Object>();
+            for (Future<Map<String, Object>> future : futures) {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                result.putAll(future.get(remaining, TimeUnit.NANOSECONDS));
+            }
+            return result;
+        }
+    }
+}
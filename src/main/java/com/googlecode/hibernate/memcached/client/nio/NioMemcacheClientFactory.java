@@ -0,0 +1,37 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+
+import org.hibernate.cache.CacheException;
+
+import com.googlecode.hibernate.memcached.MemcachedProperties;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClientFactory;
+
+/**
+ * A {@link HibernateMemcachedClientFactory} that creates 
+ * {@link HibernateMemcachedClient}s backed by a small non-blocking client
+ * speaking the memcached binary protocol.
+ * <p>
+ * Clients created by this class are configured with 
+ * {@link NioMemcachedProperties}.
+ *
+ * @see NioMemcache
+ */
+public class NioMemcacheClientFactory implements HibernateMemcachedClientFactory {
+
+    private final NioMemcachedProperties properties;
+
+    public NioMemcacheClientFactory(MemcachedProperties properties) {
+        this.properties = new NioMemcachedProperties(properties);
+    }
+
+    @Override
+    public HibernateMemcachedClient createMemcacheClient() {
+        try {
+            return new NioMemcache(properties);
+        } catch (IOException e) {
+            throw new CacheException("Could not create cache client", e);
+        }
+    }
+}
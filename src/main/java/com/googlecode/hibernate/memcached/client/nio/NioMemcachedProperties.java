@@ -0,0 +1,166 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import net.spy.memcached.DefaultHashAlgorithm;
+
+import com.googlecode.hibernate.memcached.MemcachedProperties;
+
+/**
+ * A class for reading the properties of the NIO client.
+ * <p/>
+ * <b>Client properties</b>
+ * <table border='1'>
+ * <tr><th>Property</th><th>Default</th><th>Description</th></tr>
+ * <tr>
+ * <td>hibernate.memcached.servers</td>
+ * <td>localhost:11211</td>
+ * <td>A string containing whitespace or comma separated host or IP addresses and port numbers of the form "host:port host2:port" or "host:port,host2:port".</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.operationTimeout</td>
+ * <td>2500</td>
+ * <td>Default operation timeout in milliseconds.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.connectTimeout</td>
+ * <td>1000</td>
+ * <td>Connect timeout in milliseconds.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.reconnectDelay</td>
+ * <td>1000</td>
+ * <td>The time in milliseconds to wait before reconnecting to a failed server.
+ * The delay doubles with every failed attempt, up to 30 seconds.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.ioThreads</td>
+ * <td>1</td>
+ * <td>The number of selector threads shared by the server connections.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.bufferSize</td>
+ * <td>16384</td>
+ * <td>The size in bytes of the pooled direct buffers. Requests are encoded
+ * into these buffers and each connection reads its responses into one.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.bufferPoolSize</td>
+ * <td>256</td>
+ * <td>The maximum number of idle buffers kept in the pool.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.daemonMode</td>
+ * <td>false</td>
+ * <td>If true, the IO threads should be daemon threads.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.hashAlgorithm</td>
+ * <td>KETAMA_HASH</td>
+ * <td>The algorithm used to map keys to servers, as with the spymemcached client. <b>Note:</b> Must be a {@link DefaultHashAlgorithm}.</td>
+ * </tr>
+ * </table>
+ */
+public class NioMemcachedProperties extends MemcachedProperties {
+
+    private static final long serialVersionUID = 1L;
+
+    // Keys
+    protected static final String SERVERS = "servers";
+    protected static final String OPERATION_TIMEOUT = "operationTimeout";
+    protected static final String CONNECT_TIMEOUT = "connectTimeout";
+    protected static final String RECONNECT_DELAY = "reconnectDelay";
+    protected static final String IO_THREADS = "ioThreads";
+    protected static final String BUFFER_SIZE = "bufferSize";
+    protected static final String BUFFER_POOL_SIZE = "bufferPoolSize";
+    protected static final String DAEMON_MODE = "daemonMode";
+    protected static final String HASH_ALGORITHM = "hashAlgorithm";
+
+    // Defaults
+    protected static final String DEFAULT_SERVERS = "localhost:11211";
+    protected static final long DEFAULT_OPERATION_TIMEOUT = 2500;
+    protected static final long DEFAULT_CONNECT_TIMEOUT = 1000;
+    protected static final long DEFAULT_RECONNECT_DELAY = 1000;
+    protected static final int DEFAULT_IO_THREADS = 1;
+    protected static final int DEFAULT_BUFFER_SIZE = 16384;
+    protected static final int DEFAULT_BUFFER_POOL_SIZE = 256;
+    protected static final boolean DEFAULT_DAEMON_MODE = false;
+    protected static final DefaultHashAlgorithm DEFAULT_HASH_ALGORITHM = DefaultHashAlgorithm.KETAMA_HASH;
+
+    public NioMemcachedProperties(Properties properties) {
+        super(properties);
+    }
+
+    public String getServerList() {
+        String key = toKey(SERVERS);
+        return get(key, DEFAULT_SERVERS);
+    }
+
+    /**
+     * Parses the configured server list.
+     * 
+     * @return the addresses of the configured servers, in configuration order
+     */
+    public List<InetSocketAddress> getServerAddresses() {
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        for (String server : getServerList().split("[\\s,]+")) {
+            if (server.length() == 0) {
+                continue;
+            }
+            int colon = server.lastIndexOf(':');
+            if (colon < 1) {
+                throw new IllegalArgumentException("Invalid server '" + server + "', expected host:port");
+            }
+            String host = server.substring(0, colon);
+            int port = Integer.parseInt(server.substring(colon + 1));
+            addresses.add(new InetSocketAddress(host, port));
+        }
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("No servers configured");
+        }
+        return addresses;
+    }
+
+    public long getOperationTimeoutMillis() {
+        String key = toKey(OPERATION_TIMEOUT);
+        return getLong(key, DEFAULT_OPERATION_TIMEOUT);
+    }
+
+    public long getConnectTimeoutMillis() {
+        String key = toKey(CONNECT_TIMEOUT);
+        return getLong(key, DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    public long getReconnectDelayMillis() {
+        String key = toKey(RECONNECT_DELAY);
+        return getLong(key, DEFAULT_RECONNECT_DELAY);
+    }
+
+    public int getIoThreads() {
+        String key = toKey(IO_THREADS);
+        return getInt(key, DEFAULT_IO_THREADS);
+    }
+
+    public int getBufferSize() {
+        String key = toKey(BUFFER_SIZE);
+        return getInt(key, DEFAULT_BUFFER_SIZE);
+    }
+
+    public int getBufferPoolSize() {
+        String key = toKey(BUFFER_POOL_SIZE);
+        return getInt(key, DEFAULT_BUFFER_POOL_SIZE);
+    }
+
+    public boolean isDaemonMode() {
+        String key = toKey(DAEMON_MODE);
+        return getBoolean(key, DEFAULT_DAEMON_MODE);
+    }
+
+    public DefaultHashAlgorithm getHashAlgorithm() {
+        String key = toKey(HASH_ALGORITHM);
+        return getEnum(key, DefaultHashAlgorithm.class, DEFAULT_HASH_ALGORITHM);
+    }
+}
@@ -0,0 +1,156 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A request sent to a single server, and the {@link Future} of its result.
+ * <p>
+ * The request is encoded by the calling thread into a pooled buffer, which is
+ * handed back to the pool as soon as it has been written. Responses are
+ * matched to operations by their opaque value; an operation may be made of
+ * several requests, each using the next opaque value.
+ *
+ * @param <T> the result type
+ */
+abstract class Operation<T> implements Future<T> {
+
+    private final int opaque;
+    private final int opaqueCount;
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile T result;
+    private volatile Exception failure;
+    private volatile boolean cancelled;
+
+    private ByteBuffer request;
+
+    /**
+     * The time the request was completely written, in nanoseconds. Only
+     * accessed by the IO thread.
+     */
+    long writtenAt;
+
+    Operation(int opaque, int opaqueCount) {
+        this.opaque = opaque;
+        this.opaqueCount = opaqueCount;
+    }
+
+    /**
+     * Writes the request(s) of this operation.
+     */
+    protected abstract void encode(ByteBufferOutputStream out) throws IOException;
+
+    /**
+     * Handles a response to this operation.
+     * 
+     * @return <code>true</code> if the operation is complete and expects no
+     *         further responses
+     */
+    protected abstract boolean handle(Response response);
+
+    final int getOpaque() {
+        return opaque;
+    }
+
+    final void encode(BufferPool pool) throws IOException {
+        ByteBufferOutputStream out = new ByteBufferOutputStream(pool);
+        try {
+            encode(out);
+        } catch (IOException e) {
+            out.discard();
+            throw e;
+        } catch (RuntimeException e) {
+            out.discard();
+            throw e;
+        }
+        request = out.toBuffer();
+    }
+
+    final ByteBuffer getRequest() {
+        return request;
+    }
+
+    final void releaseRequest(BufferPool pool) {
+        pool.release(request);
+        request = null;
+    }
+
+    final boolean matches(int responseOpaque) {
+        int offset = responseOpaque - opaque;
+        return offset >= 0 && offset < opaqueCount;
+    }
+
+    final void complete(T value) {
+        if (done.compareAndSet(false, true)) {
+            result = value;
+            latch.countDown();
+        }
+    }
+
+    final void fail(Exception e) {
+        if (done.compareAndSet(false, true)) {
+            failure = e;
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Fails with the error status of the given response.
+     */
+    final void fail(Response response) {
+        fail(new IOException("Server returned " + response.getErrorMessage()));
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (done.compareAndSet(false, true)) {
+            cancelled = true;
+            latch.countDown();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return report();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException("Timed out waiting for operation after " + timeout + " " + unit);
+        }
+        return report();
+    }
+
+    private T report() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure.getMessage(), failure);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sets or deletes several values on one server using the quiet commands
+ * followed by a no-op. The server only answers the commands that failed, so
+ * the whole batch costs a single reply when everything succeeds.
+ */
+final class QuietBatchOperation extends Operation<Boolean> {
+
+    private final Transcoder transcoder;
+    private final int opcode;
+    private final List<String> keys;
+    private final List<Object> values;
+    private final int exp;
+    private boolean success = true;
+
+    /**
+     * @param values the values to set, or <code>null</code> for deletes
+     */
+    QuietBatchOperation(Transcoder transcoder, int opcode, List<String> keys, List<Object> values, int exp, int opaque) {
+        super(opaque, keys.size() + 1);
+        this.transcoder = transcoder;
+        this.opcode = opcode;
+        this.keys = keys;
+        this.values = values;
+        this.exp = exp;
+    }
+
+    @Override
+    protected void encode(ByteBufferOutputStream out) throws IOException {
+        int opaque = getOpaque();
+        for (int i = 0; i < keys.size(); i++) {
+            if (values == null) {
+                BinaryProtocol.writeDelete(out, opcode, keys.get(i), opaque + i);
+            } else {
+                BinaryProtocol.writeStore(out, transcoder, opcode, keys.get(i), exp, values.get(i), opaque + i, 0);
+            }
+        }
+        BinaryProtocol.writeNoop(out, opaque + keys.size());
+    }
+
+    @Override
+    protected boolean handle(Response response) {
+        if (response.opaque - getOpaque() == keys.size()) {
+            complete(success);
+            return true;
+        }
+        success = false;
+        return false;
+    }
+}
@@ -0,0 +1,62 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A response read from a server. Instances are reused by their connection,
+ * the body is a view of the connection's read buffer and is only valid while
+ * the response is being handled.
+ */
+final class Response {
+
+    int opcode;
+    int keyLength;
+    int extrasLength;
+    int status;
+    int bodyLength;
+    int opaque;
+    long cas;
+
+    /**
+     * The body of the response, positioned at the first byte of the extras
+     * and limited to the end of the value.
+     */
+    ByteBuffer body;
+
+    /**
+     * Gets the flags stored with a value, or <code>0</code>.
+     */
+    int getFlags() {
+        return extrasLength >= 4 ? body.getInt(body.position()) : 0;
+    }
+
+    /**
+     * Positions the body at the first byte of the value.
+     */
+    ByteBuffer getValue() {
+        body.position(body.position() + extrasLength + keyLength);
+        return body;
+    }
+
+    /**
+     * Gets the 64 bit value returned by increment and decrement.
+     */
+    long getLongValue() {
+        return body.getLong(body.position() + extrasLength + keyLength);
+    }
+
+    /**
+     * Gets the error message sent along with an error status.
+     */
+    String getErrorMessage() {
+        ByteBuffer value = getValue();
+        StringBuilder message = new StringBuilder("status 0x").append(Integer.toHexString(status));
+        if (value.hasRemaining()) {
+            message.append(": ");
+            while (value.hasRemaining()) {
+                message.append((char) (value.get() & 0xff));
+            }
+        }
+        return message.toString();
+    }
+}
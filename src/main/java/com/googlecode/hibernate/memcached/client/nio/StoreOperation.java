@@ -0,0 +1,48 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.IOException;
+
+/**
+ * Stores a single value with set, add or (given a CAS identifier) cas.
+ */
+final class StoreOperation extends Operation<Boolean> {
+
+    private final Transcoder transcoder;
+    private final int opcode;
+    private final String key;
+    private final int exp;
+    private final Object value;
+    private final long cas;
+
+    StoreOperation(Transcoder transcoder, int opcode, String key, int exp, Object value, long cas, int opaque) {
+        super(opaque, 1);
+        this.transcoder = transcoder;
+        this.opcode = opcode;
+        this.key = key;
+        this.exp = exp;
+        this.value = value;
+        this.cas = cas;
+    }
+
+    @Override
+    protected void encode(ByteBufferOutputStream out) throws IOException {
+        BinaryProtocol.writeStore(out, transcoder, opcode, key, exp, value, getOpaque(), cas);
+    }
+
+    @Override
+    protected boolean handle(Response response) {
+        switch (response.status) {
+        case BinaryProtocol.STATUS_OK:
+            complete(true);
+            break;
+        case BinaryProtocol.STATUS_KEY_NOT_FOUND:
+        case BinaryProtocol.STATUS_KEY_EXISTS:
+        case BinaryProtocol.STATUS_ITEM_NOT_STORED:
+            complete(false);
+            break;
+        default:
+            fail(response);
+        }
+        return true;
+    }
+}
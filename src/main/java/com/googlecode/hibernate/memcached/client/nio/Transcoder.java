@@ -0,0 +1,285 @@
+package com.googlecode.hibernate.memcached.client.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+import com.googlecode.hibernate.memcached.codec.CompressibleValue;
+import com.googlecode.hibernate.memcached.codec.CompressionPolicy;
+import com.googlecode.hibernate.memcached.strategy.LockableCodec;
+
+/**
+ * Converts values to and from their stored form. The flags are those of the
+ * spymemcached <code>SerializingTranscoder</code>, so both clients can share
+ * cached values: strings are stored as UTF-8, primitive wrappers in a
+ * compact binary form and everything else is Java serialized.
+ * <p>
+ * Values are never gzip compressed when stored, but gzip compressed values
+ * written by spymemcached are read. {@link CompressibleValue}s are
+ * compressed as their {@link CompressionPolicy} decides, like the
+ * spymemcached client does.
+ * <p>
+ * Cache entries are stored with a {@link LockableCodec} if compact entries
+ * are enabled, as with the spymemcached client. Entries stored with the
+ * codec are always read.
+ */
+final class Transcoder {
+
+    static final int SERIALIZED = 1;
+    static final int COMPRESSED = 2;
+
+    static final int SPECIAL_MASK = 0xff00;
+    static final int SPECIAL_BOOLEAN = 1 << 8;
+    static final int SPECIAL_INT = 2 << 8;
+    static final int SPECIAL_LONG = 3 << 8;
+    static final int SPECIAL_DATE = 4 << 8;
+    static final int SPECIAL_BYTE = 5 << 8;
+    static final int SPECIAL_FLOAT = 6 << 8;
+    static final int SPECIAL_DOUBLE = 7 << 8;
+    static final int SPECIAL_BYTEARRAY = 8 << 8;
+
+    private final LockableCodec codec;
+    private final boolean encodeEntries;
+
+    /**
+     * Creates a new {@link Transcoder}.
+     * 
+     * @param codec         the codec of cache entries
+     * @param encodeEntries <code>true</code> to store entries with the codec,
+     *                      <code>false</code> to Java serialize them
+     */
+    Transcoder(LockableCodec codec, boolean encodeEntries) {
+        this.codec = codec;
+        this.encodeEntries = encodeEntries;
+    }
+
+    /**
+     * Writes the given value to the stream.
+     * 
+     * @return the flags to store with the value
+     */
+    int encode(Object o, ByteBufferOutputStream out) throws IOException {
+        if (o instanceof CompressibleValue) {
+            return encodeCompressible((CompressibleValue) o, out);
+        }
+        if (encodeEntries && LockableCodec.isEntry(o)) {
+            byte[] bytes = codec.encode(o);
+            out.write(bytes, 0, bytes.length);
+            return LockableCodec.FLAGS;
+        }
+        if (o instanceof String) {
+            out.writeString((String) o);
+            return 0;
+        }
+        if (o instanceof Long) {
+            out.writeLong((Long) o);
+            return SPECIAL_LONG;
+        }
+        if (o instanceof Integer) {
+            out.writeInt((Integer) o);
+            return SPECIAL_INT;
+        }
+        if (o instanceof Boolean) {
+            out.writeByte((Boolean) o ? '1' : '0');
+            return SPECIAL_BOOLEAN;
+        }
+        if (o instanceof Date) {
+            out.writeLong(((Date) o).getTime());
+            return SPECIAL_DATE;
+        }
+        if (o instanceof Byte) {
+            out.writeByte((Byte) o);
+            return SPECIAL_BYTE;
+        }
+        if (o instanceof Float) {
+            out.writeInt(Float.floatToRawIntBits((Float) o));
+            return SPECIAL_FLOAT;
+        }
+        if (o instanceof Double) {
+            out.writeLong(Double.doubleToRawLongBits((Double) o));
+            return SPECIAL_DOUBLE;
+        }
+        if (o instanceof byte[]) {
+            byte[] bytes = (byte[]) o;
+            out.write(bytes, 0, bytes.length);
+            return SPECIAL_BYTEARRAY;
+        }
+
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(o);
+        oos.flush();
+        return SERIALIZED;
+    }
+
+    /**
+     * Writes the given value to the stream, then replaces it with its
+     * compressed form if the value's policy allows it.
+     */
+    private int encodeCompressible(CompressibleValue compressible, ByteBufferOutputStream out) throws IOException {
+        int start = out.position();
+        int flags = encode(compressible.getValue(), out);
+        if ((flags & COMPRESSED) != 0) {
+            return flags;
+        }
+        byte[] bytes = out.copyFrom(start);
+        byte[] compressed = compressible.getPolicy().compress(bytes, 0, bytes.length);
+        if (compressed == null) {
+            return flags;
+        }
+        out.truncate(start);
+        out.write(compressed, 0, compressed.length);
+        return flags | CompressionPolicy.FLAG;
+    }
+
+    /**
+     * Reads a value from the remaining bytes of the given buffer.
+     */
+    Object decode(int flags, ByteBuffer value) throws IOException {
+        if (CompressionPolicy.isCompressed(flags)) {
+            byte[] compressed = new byte[value.remaining()];
+            value.get(compressed);
+            byte[] bytes = CompressionPolicy.decompress(compressed, 0, compressed.length);
+            flags &= ~CompressionPolicy.FLAG;
+            if (LockableCodec.isEncoded(flags)) {
+                // the decompressed bytes are not reused, so they need no copy
+                return codec.decode(bytes, 0, bytes.length);
+            }
+            value = ByteBuffer.wrap(bytes);
+        }
+        if (LockableCodec.isEncoded(flags)) {
+            return decodeEntry(value);
+        }
+        if ((flags & COMPRESSED) != 0) {
+            InputStream in = new GZIPInputStream(new ByteBufferInputStream(value));
+            if ((flags & SERIALIZED) != 0) {
+                return deserialize(in);
+            }
+            return decodeSpecial(flags, ByteBuffer.wrap(readFully(in)));
+        }
+        if ((flags & SERIALIZED) != 0) {
+            return deserialize(new ByteBufferInputStream(value));
+        }
+        return decodeSpecial(flags, value);
+    }
+
+    /**
+     * Decodes an entry from a copy of the given buffer, as the codec keeps
+     * the bytes of item values and read buffers are reused.
+     */
+    private Object decodeEntry(ByteBuffer value) throws IOException {
+        int length = value.remaining();
+        byte[] bytes = new byte[length];
+        value.get(bytes);
+        return codec.decode(bytes, 0, length);
+    }
+
+    private Object decodeSpecial(int flags, ByteBuffer value) throws UnsupportedEncodingException {
+        switch (flags & SPECIAL_MASK) {
+        case 0:
+            return decodeString(value);
+        case SPECIAL_BOOLEAN:
+            return value.hasRemaining() && value.get() == '1';
+        case SPECIAL_INT:
+            return (int) decodeNumber(value);
+        case SPECIAL_LONG:
+            return decodeNumber(value);
+        case SPECIAL_DATE:
+            return new Date(decodeNumber(value));
+        case SPECIAL_BYTE:
+            return value.get();
+        case SPECIAL_FLOAT:
+            return Float.intBitsToFloat((int) decodeNumber(value));
+        case SPECIAL_DOUBLE:
+            return Double.longBitsToDouble(decodeNumber(value));
+        default:
+            byte[] bytes = new byte[value.remaining()];
+            value.get(bytes);
+            return bytes;
+        }
+    }
+
+    private String decodeString(ByteBuffer value) throws UnsupportedEncodingException {
+        int length = value.remaining();
+        if (value.hasArray()) {
+            String s = new String(value.array(), value.arrayOffset() + value.position(), length, "UTF-8");
+            value.position(value.limit());
+            return s;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            byte b = value.get(value.position() + i);
+            if (b < 0) {
+                byte[] bytes = new byte[length];
+                value.get(bytes);
+                return new String(bytes, "UTF-8");
+            }
+            chars[i] = (char) b;
+        }
+        value.position(value.limit());
+        return new String(chars);
+    }
+
+    /**
+     * Decodes a big endian number. spymemcached strips leading zero bytes, so
+     * the length varies.
+     */
+    private long decodeNumber(ByteBuffer value) {
+        long result = 0;
+        while (value.hasRemaining()) {
+            result = (result << 8) | (value.get() & 0xff);
+        }
+        return result;
+    }
+
+    private Object deserialize(InputStream in) throws IOException {
+        ObjectInputStream ois = new ContextObjectInputStream(in);
+        try {
+            return ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not deserialize value: " + e.getMessage());
+        } finally {
+            ois.close();
+        }
+    }
+
+    private byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Resolves classes with the context class loader of the IO thread, which
+     * is inherited from the thread that created the client.
+     */
+    private static final class ContextObjectInputStream extends ObjectInputStream {
+
+        ContextObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default lookup
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.googlecode.hibernate.memcached.client.spymemcached;
+
+import java.io.IOException;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.Transcoder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.codec.CompressibleValue;
+import com.googlecode.hibernate.memcached.codec.CompressionPolicy;
+
+/**
+ * A spymemcached {@link Transcoder} that compresses the
+ * {@link CompressibleValue}s written by regions as their
+ * {@link CompressionPolicy} decides, after another transcoder has encoded
+ * them. Values already gzip compressed by the other transcoder are left as
+ * they are.
+ * <p>
+ * Compressed values are decompressed before they are passed to the other
+ * transcoder. Values that cannot be decompressed are logged and read as
+ * misses.
+ */
+public class CompressingTranscoder implements Transcoder<Object> {
+
+    private static final Logger log = LoggerFactory.getLogger(CompressingTranscoder.class);
+
+    private static final int GZIP_COMPRESSED = 2;
+
+    private final Transcoder<Object> transcoder;
+
+    /**
+     * Creates a new {@link CompressingTranscoder}.
+     *
+     * @param transcoder the transcoder encoding the values
+     */
+    public CompressingTranscoder(Transcoder<Object> transcoder) {
+        this.transcoder = transcoder;
+    }
+
+    @Override
+    public boolean asyncDecode(CachedData d) {
+        return transcoder.asyncDecode(d);
+    }
+
+    @Override
+    public CachedData encode(Object o) {
+        if (!(o instanceof CompressibleValue)) {
+            return transcoder.encode(o);
+        }
+        CompressibleValue compressible = (CompressibleValue) o;
+        CachedData d = transcoder.encode(compressible.getValue());
+        if ((d.getFlags() & (GZIP_COMPRESSED | CompressionPolicy.FLAG)) != 0) {
+            return d;
+        }
+        byte[] data = d.getData();
+        byte[] compressed = compressible.getPolicy().compress(data, 0, data.length);
+        if (compressed == null) {
+            return d;
+        }
+        return new CachedData(d.getFlags() | CompressionPolicy.FLAG, compressed, getMaxSize());
+    }
+
+    @Override
+    public Object decode(CachedData d) {
+        if (!CompressionPolicy.isCompressed(d.getFlags())) {
+            return transcoder.decode(d);
+        }
+        byte[] data = d.getData();
+        byte[] decompressed;
+        try {
+            decompressed = CompressionPolicy.decompress(data, 0, data.length);
+        } catch (IOException e) {
+            log.warn("Could not decompress value of " + data.length + " bytes", e);
+            return null;
+        }
+        return transcoder.decode(new CachedData(d.getFlags() & ~CompressionPolicy.FLAG, decompressed, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public int getMaxSize() {
+        return transcoder.getMaxSize();
+    }
+}
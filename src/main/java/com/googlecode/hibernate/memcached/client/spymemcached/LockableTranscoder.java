@@ -0,0 +1,91 @@
+package com.googlecode.hibernate.memcached.client.spymemcached;
+
+import java.io.IOException;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.Transcoder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.strategy.LockableCodec;
+
+/**
+ * A spymemcached {@link Transcoder} that stores cache entries with a
+ * {@link LockableCodec} and passes all other values to another transcoder.
+ * Entries stored with the codec are always read, even if new entries are
+ * passed to the other transcoder, so that nodes can switch to the codec one
+ * at a time.
+ * <p>
+ * Entries that cannot be decoded are logged and read as misses, the way
+ * spymemcached's own transcoders treat values they cannot decode.
+ */
+public class LockableTranscoder implements Transcoder<Object> {
+
+    private static final Logger log = LoggerFactory.getLogger(LockableTranscoder.class);
+
+    private final Transcoder<Object> transcoder;
+    private final LockableCodec codec;
+    private final boolean encodeEntries;
+
+    /**
+     * Creates a new {@link LockableTranscoder} that stores entries with the
+     * given codec.
+     *
+     * @param transcoder the transcoder of all other values
+     * @param codec      the codec of the entries
+     */
+    public LockableTranscoder(Transcoder<Object> transcoder, LockableCodec codec) {
+        this(transcoder, codec, true);
+    }
+
+    /**
+     * Creates a new {@link LockableTranscoder}.
+     *
+     * @param transcoder    the transcoder of all other values
+     * @param codec         the codec of the entries
+     * @param encodeEntries <code>true</code> to store entries with the codec,
+     *                      <code>false</code> to only read them with it
+     */
+    public LockableTranscoder(Transcoder<Object> transcoder, LockableCodec codec, boolean encodeEntries) {
+        this.transcoder = transcoder;
+        this.codec = codec;
+        this.encodeEntries = encodeEntries;
+    }
+
+    @Override
+    public boolean asyncDecode(CachedData d) {
+        return !LockableCodec.isEncoded(d.getFlags()) && transcoder.asyncDecode(d);
+    }
+
+    @Override
+    public CachedData encode(Object o) {
+        if (!encodeEntries || !LockableCodec.isEntry(o)) {
+            return transcoder.encode(o);
+        }
+        try {
+            return new CachedData(LockableCodec.FLAGS, codec.encode(o), getMaxSize());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not encode " + o, e);
+        }
+    }
+
+    @Override
+    public Object decode(CachedData d) {
+        if (!LockableCodec.isEncoded(d.getFlags())) {
+            return transcoder.decode(d);
+        }
+        byte[] data = d.getData();
+        try {
+            return codec.decode(data, 0, data.length);
+        } catch (IOException e) {
+            log.warn("Could not decode entry of " + data.length + " bytes", e);
+            return null;
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return transcoder.getMaxSize();
+    }
+}
@@ -1,33 +1,75 @@
 package com.googlecode.hibernate.memcached.client.spymemcached;
 
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.DefaultConnectionFactory;
 import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.NodeLocator;
+import net.spy.memcached.internal.BulkFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.googlecode.hibernate.memcached.LoggingMemcacheExceptionHandler;
 import com.googlecode.hibernate.memcached.MemcacheExceptionHandler;
+import com.googlecode.hibernate.memcached.client.CasValue;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.ServerAwareClient;
+import com.googlecode.hibernate.memcached.concurrent.FutureAdapter;
+import com.googlecode.hibernate.memcached.concurrent.ImmediateFuture;
 import com.googlecode.hibernate.memcached.utils.StringUtils;
 
 /**
- * DOCUMENT ME!
+ * A {@link HibernateMemcachedClient} backed by the SpyMemcached client.
+ * <p>
+ * <b>Multi gets:</b> Multi gets of more keys than the chunk size are split by
+ * server into chunks of at most that many keys. All chunks are sent at once
+ * and waited for until the multi get timeout has passed. The keys of chunks
+ * that are not complete by then are returned as misses, so a slow server
+ * does not fail the whole multi get.
  *
  * @author Ray Krueger
+ * 
+ * @see SpyMemcachedProperties
  */
-public class SpyMemcache implements HibernateMemcachedClient {
+public class SpyMemcache implements ServerAwareClient {
 
     private static final Logger log = LoggerFactory.getLogger(SpyMemcache.class);
     private MemcacheExceptionHandler exceptionHandler = new LoggingMemcacheExceptionHandler();
 
     private final MemcachedClient memcachedClient;
+    private final int chunkSize;
+    private final long getMultiTimeoutMillis;
+    private volatile NodeLocator locator;
 
     public SpyMemcache(MemcachedClient memcachedClient) {
+        this(memcachedClient, SpyMemcachedProperties.DEFAULT_GET_MULTI_CHUNK_SIZE,
+                DefaultConnectionFactory.DEFAULT_OPERATION_TIMEOUT);
+    }
+
+    /**
+     * Creates a new {@link SpyMemcache}.
+     *
+     * @param memcachedClient       the client used to access Memcached
+     * @param chunkSize             the maximum number of keys sent to a
+     *                              server in one bulk get
+     * @param getMultiTimeoutMillis the time to wait for the chunks of a multi
+     *                              get
+     */
+    public SpyMemcache(MemcachedClient memcachedClient, int chunkSize, long getMultiTimeoutMillis) {
         this.memcachedClient = memcachedClient;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.getMultiTimeoutMillis = getMultiTimeoutMillis;
     }
 
     public Object get(String key) {
@@ -43,13 +85,35 @@ public class SpyMemcache implements HibernateMemcachedClient {
     public Map<String, Object> getMulti(String... keys) {
         Map<String, Object> result = null;
         try {
-            result = memcachedClient.getBulk(keys);
+            result = getMultiAsync(keys).get();
         } catch (Exception e) {
             exceptionHandler.handleErrorOnGet(StringUtils.join(", ", keys), e);
         }
         return result == null ? new HashMap<String,Object>(0) : result;
     }
 
+    public CasValue gets(String key) {
+        try {
+            log.debug("MemcachedClient.gets({})", key);
+            CASValue<Object> value = memcachedClient.gets(key);
+            return value == null ? null : new CasValue(value.getCas(), value.getValue());
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnGet(key, e);
+        }
+        return null;
+    }
+
+    public boolean cas(String key, long casId, int cacheTimeSeconds, Object o) {
+        log.debug("MemcachedClient.cas({})", key);
+        try {
+            CASResponse response = memcachedClient.cas(key, casId, cacheTimeSeconds, o, memcachedClient.getTranscoder());
+            return response == CASResponse.OK;
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnSet(key, cacheTimeSeconds, o, e);
+        }
+        return false;
+    }
+
     public boolean set(String key, int cacheTimeSeconds, Object o) {
         log.debug("MemcachedClient.set({})", key);
         try {
@@ -61,16 +125,13 @@ public class SpyMemcache implements HibernateMemcachedClient {
         return false;
     }
     
-    // TODO: implement correctly
     public boolean add(String key, int exp, Object o) {
+        log.debug("MemcachedClient.add({})", key);
         try {
             return memcachedClient.add(key, exp, o).get();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } catch (ExecutionException e) {
-            e.printStackTrace();
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnSet(key, exp, o, e);
         }
-        
         return false;
     }
 
@@ -83,6 +144,51 @@ public class SpyMemcache implements HibernateMemcachedClient {
         return false;
     }
 
+    /**
+     * {@inheritDoc}<br>
+     * Like {@link #set(String, int, Object)} this does not wait for the
+     * replies; the writes are queued back to back on the connections of their
+     * nodes, which pipeline them onto the wire. <code>true</code> means every
+     * write was queued.
+     */
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds) {
+        log.debug("MemcachedClient.setMulti({})", values.keySet());
+        boolean result = true;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            try {
+                memcachedClient.set(entry.getKey(), cacheTimeSeconds, entry.getValue());
+            } catch (Exception e) {
+                exceptionHandler.handleErrorOnSet(entry.getKey(), cacheTimeSeconds, entry.getValue(), e);
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * All deletes are queued before the first reply is awaited, so the
+     * batch completes in about one round trip per node.
+     */
+    public boolean deleteMulti(String... keys) {
+        log.debug("MemcachedClient.deleteMulti({})", (Object) keys);
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(keys.length);
+        for (String key : keys) {
+            futures.add(deleteAsync(key));
+        }
+        
+        boolean result = true;
+        for (Future<Boolean> future : futures) {
+            try {
+                result &= future.get();
+            } catch (Exception e) {
+                // deleteAsync futures report their own failures
+                result = false;
+            }
+        }
+        return result;
+    }
+
     public long incr(String key, long factor, long startingValue) {
         try {
             return memcachedClient.incr(key, factor, startingValue);
@@ -102,6 +208,134 @@ public class SpyMemcache implements HibernateMemcachedClient {
         return -1;
     }
 
+    public Future<Object> getAsync(final String key) {
+        log.debug("MemcachedClient.asyncGet({})", key);
+        try {
+            return new HandledFuture<Object>(memcachedClient.asyncGet(key)) {
+                @Override
+                protected Object onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnGet(key, e);
+                    return null;
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnGet(key, e);
+        }
+        return new ImmediateFuture<Object>(null);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * The returned {@link Future} waits no longer than the multi get timeout
+     * and returns the keys of chunks that are not complete by then as misses.
+     */
+    public Future<Map<String, Object>> getMultiAsync(final String... keys) {
+        log.debug("MemcachedClient.asyncGetBulk({})", (Object) keys);
+        try {
+            return new ChunkedBulkFuture(split(keys));
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnGet(StringUtils.join(", ", keys), e);
+        }
+        return new ImmediateFuture<Map<String, Object>>(new HashMap<String, Object>(0));
+    }
+
+    public Future<Boolean> setAsync(final String key, final int cacheTimeSeconds, final Object o) {
+        log.debug("MemcachedClient.set({})", key);
+        try {
+            return new HandledFuture<Boolean>(memcachedClient.set(key, cacheTimeSeconds, o)) {
+                @Override
+                protected Boolean onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnSet(key, cacheTimeSeconds, o, e);
+                    return false;
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnSet(key, cacheTimeSeconds, o, e);
+        }
+        return new ImmediateFuture<Boolean>(false);
+    }
+
+    public Future<Boolean> addAsync(final String key, final int exp, final Object o) {
+        log.debug("MemcachedClient.add({})", key);
+        try {
+            return new HandledFuture<Boolean>(memcachedClient.add(key, exp, o)) {
+                @Override
+                protected Boolean onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnSet(key, exp, o, e);
+                    return false;
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnSet(key, exp, o, e);
+        }
+        return new ImmediateFuture<Boolean>(false);
+    }
+
+    public Future<Boolean> deleteAsync(final String key) {
+        try {
+            return new HandledFuture<Boolean>(memcachedClient.delete(key)) {
+                @Override
+                protected Boolean onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnDelete(key, e);
+                    return false;
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnDelete(key, e);
+        }
+        return new ImmediateFuture<Boolean>(false);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * With a {@link SpyMemcachedClient}, as created by
+     * {@link SpyMemcacheClientFactory}, the counter is only created if the
+     * increment misses, see {@link SpyMemcachedClient#asyncIncr(String, long, long)}.
+     * Other clients have no asynchronous increment with a starting value, so
+     * an add of the starting value is queued right behind every increment:
+     * two operations, and a failed add on the server whenever the counter
+     * exists. Only if another client created the key between the two is the
+     * increment sent again, when the returned {@link Future} is read.
+     */
+    public Future<Long> incrAsync(final String key, final long factor, final long startingValue) {
+        log.debug("MemcachedClient.asyncIncr({})", key);
+        try {
+            if (memcachedClient instanceof SpyMemcachedClient) {
+                return new HandledFuture<Long>(((SpyMemcachedClient) memcachedClient).asyncIncr(key, factor, startingValue)) {
+                    @Override
+                    protected Long onFailure(Exception e) {
+                        exceptionHandler.handleErrorOnIncr(key, factor, startingValue, e);
+                        return -1L;
+                    }
+                };
+            }
+            Future<Long> increment = memcachedClient.asyncIncr(key, factor);
+            final Future<Boolean> add = memcachedClient.add(key, 0, String.valueOf(startingValue));
+            return new FutureAdapter<Long, Long>(increment) {
+                @Override
+                protected Long convert(Long value) {
+                    if (value != null && value != -1) {
+                        return value;
+                    }
+                    try {
+                        return add.get() ? startingValue : memcachedClient.asyncIncr(key, factor).get();
+                    } catch (Exception e) {
+                        return onFailure(e);
+                    }
+                }
+
+                @Override
+                protected Long onFailure(Exception e) {
+                    exceptionHandler.handleErrorOnIncr(key, factor, startingValue, e);
+                    return -1L;
+                }
+            };
+        } catch (Exception e) {
+            exceptionHandler.handleErrorOnIncr(key, factor, startingValue, e);
+        }
+        return new ImmediateFuture<Long>(-1L);
+    }
+
     public void shutdown() {
         log.debug("Shutting down spy MemcachedClient");
         memcachedClient.shutdown();
@@ -110,4 +344,162 @@ public class SpyMemcache implements HibernateMemcachedClient {
     public void setExceptionHandler(MemcacheExceptionHandler exceptionHandler) {
         this.exceptionHandler = exceptionHandler;
     }
+
+    public String getServer(String key) {
+        return String.valueOf(getLocator().getPrimary(key).getSocketAddress());
+    }
+
+    /**
+     * Gets a read only copy of the client's node locator. The copy is made
+     * once, since the servers of a client do not change.
+     */
+    private NodeLocator getLocator() {
+        NodeLocator result = locator;
+        if (result == null) {
+            result = memcachedClient.getNodeLocator();
+            locator = result;
+        }
+        return result;
+    }
+
+    /**
+     * Splits the given keys into the chunks of a multi get.
+     */
+    List<List<String>> split(String... keys) {
+        if (keys.length <= chunkSize) {
+            return Collections.singletonList(Arrays.asList(keys));
+        }
+        return split(getLocator(), chunkSize, keys);
+    }
+
+    /**
+     * Splits the given keys by server into chunks of at most the given size.
+     *
+     * @param locator   the locator used to find the server of a key
+     * @param chunkSize the maximum number of keys in a chunk
+     * @param keys      the keys to split
+     * @return          the chunks, each holding keys of a single server
+     */
+    static List<List<String>> split(NodeLocator locator, int chunkSize, String... keys) {
+        Map<SocketAddress, List<String>> open = new HashMap<SocketAddress, List<String>>();
+        List<List<String>> chunks = new ArrayList<List<String>>();
+        for (String key : keys) {
+            SocketAddress server = locator.getPrimary(key).getSocketAddress();
+            List<String> chunk = open.get(server);
+            if (chunk == null || chunk.size() >= chunkSize) {
+                chunk = new ArrayList<String>(chunkSize);
+                open.put(server, chunk);
+                chunks.add(chunk);
+            }
+            chunk.add(key);
+        }
+        return chunks;
+    }
+
+    /**
+     * The chunks of a multi get, sent in parallel. Reading the result merges
+     * whatever the chunks returned before the deadline.
+     */
+    private final class ChunkedBulkFuture implements Future<Map<String, Object>> {
+
+        private final List<List<String>> chunks;
+        private final List<BulkFuture<Map<String, Object>>> futures;
+        private final long deadline;
+
+        ChunkedBulkFuture(List<List<String>> chunks) {
+            this.chunks = chunks;
+            this.futures = new ArrayList<BulkFuture<Map<String, Object>>>(chunks.size());
+            for (List<String> chunk : chunks) {
+                futures.add(memcachedClient.asyncGetBulk(chunk));
+            }
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getMultiTimeoutMillis);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = false;
+            for (BulkFuture<Map<String, Object>> future : futures) {
+                cancelled |= future.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            for (BulkFuture<Map<String, Object>> future : futures) {
+                if (future.isCancelled()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            for (BulkFuture<Map<String, Object>> future : futures) {
+                if (!future.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Map<String, Object> get() {
+            return gather(deadline);
+        }
+
+        @Override
+        public Map<String, Object> get(long timeout, TimeUnit unit) {
+            long until = System.nanoTime() + unit.toNanos(timeout);
+            return gather(until - deadline < 0 ? until : deadline);
+        }
+
+        private Map<String, Object> gather(long until) {
+            Map<String, Object> result = new HashMap<String, Object>();
+            int timedOut = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                BulkFuture<Map<String, Object>> future = futures.get(i);
+                try {
+                    Map<String, Object> values = future.getSome(
+                            Math.max(0, until - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (values != null) {
+                        result.putAll(values);
+                    }
+                    if (future.isTimeout()) {
+                        timedOut++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    exceptionHandler.handleErrorOnGet(StringUtils.join(", ", chunks.get(i).toArray()), e);
+                }
+            }
+            if (timedOut > 0) {
+                log.warn("{} of {} multi get chunks timed out, their keys are returned as misses",
+                        timedOut, futures.size());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A {@link FutureAdapter} that passes results through unchanged and 
+     * reports failures to the {@link MemcacheExceptionHandler}.
+     */
+    private static abstract class HandledFuture<T> extends FutureAdapter<T, T> {
+
+        HandledFuture(Future<T> source) {
+            super(source);
+        }
+
+        @Override
+        protected T convert(T value) {
+            return value;
+        }
+
+        @Override
+        protected abstract T onFailure(Exception e);
+    }
 }
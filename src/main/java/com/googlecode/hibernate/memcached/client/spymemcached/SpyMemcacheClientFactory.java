@@ -10,6 +10,8 @@ import net.spy.memcached.KetamaConnectionFactory;
 import net.spy.memcached.MemcachedClient;
 import net.spy.memcached.auth.AuthDescriptor;
 import net.spy.memcached.auth.PlainCallbackHandler;
+import net.spy.memcached.transcoders.BaseSerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
 
 import org.hibernate.cache.CacheException;
 
@@ -43,12 +45,12 @@ public class SpyMemcacheClientFactory implements HibernateMemcachedClientFactory
         
         try {
             ConnectionFactory connectionFactory = getConnectionFactory();
-            client = new MemcachedClient(connectionFactory, AddrUtil.getAddresses(properties.getServerList()));
+            client = new SpyMemcachedClient(connectionFactory, AddrUtil.getAddresses(properties.getServerList()));
         } catch (IOException e) {
             throw new CacheException("Could not create cache client", e);
         }
         
-        return new SpyMemcache(client);
+        return new SpyMemcache(client, properties.getGetMultiChunkSize(), properties.getGetMultiTimeoutMillis());
     }
 
     protected ConnectionFactory getConnectionFactory() {
@@ -89,6 +91,11 @@ public class SpyMemcacheClientFactory implements HibernateMemcachedClientFactory
             public AuthDescriptor getAuthDescriptor() {
                 return createAuthDescriptor();
             }
+
+            @Override
+            public Transcoder<Object> getDefaultTranscoder() {
+                return createTranscoder(super.getDefaultTranscoder());
+            }
         };
     }
 
@@ -108,6 +115,11 @@ public class SpyMemcacheClientFactory implements HibernateMemcachedClientFactory
             public AuthDescriptor getAuthDescriptor() {
                 return createAuthDescriptor();
             }
+
+            @Override
+            public Transcoder<Object> getDefaultTranscoder() {
+                return createTranscoder(super.getDefaultTranscoder());
+            }
         };
     }
 
@@ -128,6 +140,11 @@ public class SpyMemcacheClientFactory implements HibernateMemcachedClientFactory
             public AuthDescriptor getAuthDescriptor() {
                 return createAuthDescriptor();
             }
+
+            @Override
+            public Transcoder<Object> getDefaultTranscoder() {
+                return createTranscoder(super.getDefaultTranscoder());
+            }
         };
     }
 
@@ -140,5 +157,24 @@ public class SpyMemcacheClientFactory implements HibernateMemcachedClientFactory
         return new AuthDescriptor(new String[] { "PLAIN" },
                 new PlainCallbackHandler(username, password));
     }
+
+    /**
+     * Creates the transcoder of the client. Cache entries are read with a
+     * {@link LockableTranscoder}, and stored with it if compact entries are
+     * enabled. Values are compressed by a {@link CompressingTranscoder}. If
+     * compression is enabled for all regions, the gzip compression of the
+     * given transcoder is turned off.
+     * 
+     * @param transcoder the default transcoder of the connection factory
+     * @return           the transcoder to use
+     */
+    protected Transcoder<Object> createTranscoder(Transcoder<Object> transcoder) {
+        if (properties.isCompressionEnabled() && transcoder instanceof BaseSerializingTranscoder) {
+            ((BaseSerializingTranscoder) transcoder).setCompressionThreshold(Integer.MAX_VALUE);
+        }
+        transcoder = new LockableTranscoder(transcoder, properties.createLockableCodec(),
+                properties.isCompactEntriesEnabled());
+        return new CompressingTranscoder(transcoder);
+    }
     
 }
@@ -0,0 +1,143 @@
+package com.googlecode.hibernate.memcached.client.spymemcached;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import net.spy.memcached.ConnectionFactory;
+import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.internal.OperationFuture;
+import net.spy.memcached.ops.Mutator;
+import net.spy.memcached.ops.Operation;
+import net.spy.memcached.ops.OperationCallback;
+import net.spy.memcached.ops.OperationStatus;
+import net.spy.memcached.ops.StoreType;
+
+/**
+ * A {@link MemcachedClient} with an asynchronous increment that creates a
+ * missing counter, which the spymemcached client only offers synchronously.
+ * <p>
+ * The increment is sent with its starting value. The binary protocol creates a
+ * missing counter in the same operation. The text protocol cannot, so when its
+ * increment misses (but not if it fails), an add of the starting value is sent
+ * from the I/O thread as soon as the miss is received, and if another client
+ * created the counter in between, the increment is sent once more. An existing
+ * counter costs a single operation, and no thread waits for the follow ups.
+ *
+ * @see SpyMemcache#incrAsync(String, long, long)
+ */
+public class SpyMemcachedClient extends MemcachedClient {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final String NOT_FOUND = "NOT_FOUND";
+
+    public SpyMemcachedClient(ConnectionFactory connectionFactory, List<InetSocketAddress> addresses) throws IOException {
+        super(connectionFactory, addresses);
+    }
+
+    /**
+     * Increments the given counter, creating it with the starting value if it
+     * does not exist.
+     *
+     * @param key           the key of the counter
+     * @param by            the amount to increment by
+     * @param startingValue the value of a counter that does not exist
+     * @return              a {@link Future} holding the new value, or -1 if
+     *                      the counter could not be incremented
+     */
+    public Future<Long> asyncIncr(String key, long by, long startingValue) {
+        CountDownLatch latch = new CountDownLatch(1);
+        OperationFuture<Long> future = new OperationFuture<Long>(key, latch, operationTimeout);
+        Operation op = opFact.mutate(Mutator.incr, key, by, startingValue, 0,
+                new IncrCallback(key, by, startingValue, future, latch, true));
+        future.setOperation(op);
+        mconn.enqueueOperation(key, op);
+        return future;
+    }
+
+    private void send(String key, Operation op, OperationFuture<Long> future, CountDownLatch latch) {
+        try {
+            mconn.enqueueOperation(key, op);
+        } catch (RuntimeException e) {
+            getLogger().warn("Could not send the follow up of incrementing " + key, e);
+            future.set(-1L, new OperationStatus(false, e.getMessage()));
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Completes the future of an increment, or creates the counter if the
+     * increment missed and may still do so.
+     */
+    private class IncrCallback implements OperationCallback {
+        private final String key;
+        private final long by;
+        private final long startingValue;
+        private final OperationFuture<Long> future;
+        private final CountDownLatch latch;
+        private final boolean create;
+        private OperationStatus status;
+
+        IncrCallback(String key, long by, long startingValue, OperationFuture<Long> future, CountDownLatch latch,
+                boolean create) {
+            this.key = key;
+            this.by = by;
+            this.startingValue = startingValue;
+            this.future = future;
+            this.latch = latch;
+            this.create = create;
+        }
+
+        @Override
+        public void receivedStatus(OperationStatus status) {
+            this.status = status;
+        }
+
+        @Override
+        public void complete() {
+            if (status != null && status.isSuccess()) {
+                future.set(Long.valueOf(status.getMessage().trim()), status);
+                latch.countDown();
+            } else if (create && status != null && NOT_FOUND.equals(status.getMessage())) {
+                byte[] value = String.valueOf(startingValue).getBytes(ASCII);
+                send(key, opFact.store(StoreType.add, key, 0, 0, value, new AddCallback(this)), future, latch);
+            } else {
+                future.set(-1L, status);
+                latch.countDown();
+            }
+        }
+    }
+
+    /**
+     * Completes the future of an increment with the starting value if the
+     * counter was created, or increments it again if another client created it
+     * first.
+     */
+    private class AddCallback implements OperationCallback {
+        private final IncrCallback incr;
+        private OperationStatus status;
+
+        AddCallback(IncrCallback incr) {
+            this.incr = incr;
+        }
+
+        @Override
+        public void receivedStatus(OperationStatus status) {
+            this.status = status;
+        }
+
+        @Override
+        public void complete() {
+            if (status != null && status.isSuccess()) {
+                incr.future.set(incr.startingValue, status);
+                incr.latch.countDown();
+            } else {
+                IncrCallback retry = new IncrCallback(incr.key, incr.by, incr.startingValue, incr.future, incr.latch, false);
+                send(incr.key, opFact.mutate(Mutator.incr, incr.key, incr.by, 0, -1, retry), incr.future, incr.latch);
+            }
+        }
+    }
+}
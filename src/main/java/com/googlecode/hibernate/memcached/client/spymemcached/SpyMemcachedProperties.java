@@ -40,6 +40,16 @@ import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrat
  * <td>Default operation timeout in milliseconds.</td>
  * </tr>
  * <tr>
+ * <td>hibernate.memcached.getMulti.chunkSize</td>
+ * <td>100</td>
+ * <td>The maximum number of keys sent to a server in one bulk get. Larger multi gets are split by server into chunks of this size, which are sent in parallel.</td>
+ * </tr>
+ * <tr>
+ * <td>hibernate.memcached.getMulti.timeout</td>
+ * <td>The operation timeout</td>
+ * <td>The time in milliseconds to wait for the chunks of a multi get. Keys of chunks that are not complete by then are returned as misses.</td>
+ * </tr>
+ * <tr>
  * <td>hibernate.memcached.daemonMode</td>
  * <td>false</td>
  * <td>If true, the IO thread should be a daemon thread.</td>
@@ -76,6 +86,8 @@ public class SpyMemcachedProperties extends MemcachedProperties {
     protected static final String OPERATION_QUEUE_LENGTH = "operationQueueLength";
     protected static final String READ_BUFFER_SIZE = "readBufferSize";
     protected static final String OPERATION_TIMEOUT = "operationTimeout";
+    protected static final String GET_MULTI_CHUNK_SIZE = "getMulti.chunkSize";
+    protected static final String GET_MULTI_TIMEOUT = "getMulti.timeout";
     protected static final String DAEMON_MODE = "daemonMode";
     protected static final String HASH_ALGORITHM = "hashAlgorithm";
     protected static final String CONNECTION_FACTORY = "connectionFactory";
@@ -87,6 +99,7 @@ public class SpyMemcachedProperties extends MemcachedProperties {
     protected static final int DEFAULT_OPERATION_QUEUE_LENGTH = DefaultConnectionFactory.DEFAULT_OP_QUEUE_LEN;
     protected static final int DEFAULT_READ_BUFFER_SIZE = DefaultConnectionFactory.DEFAULT_READ_BUFFER_SIZE;
     protected static final long DEFAULT_OPERATION_TIMEOUT = DefaultConnectionFactory.DEFAULT_OPERATION_TIMEOUT;
+    protected static final int DEFAULT_GET_MULTI_CHUNK_SIZE = 100;
     protected static final boolean DEFAULT_DAEMON_MODE = false;
     protected static final DefaultHashAlgorithm DEFAULT_HASH_ALGORITHM = DefaultHashAlgorithm.KETAMA_HASH;
     protected static final String DEFAULT_CONNECTION_FACTORY_NAME = DefaultConnectionFactory.class.getSimpleName();
@@ -117,6 +130,16 @@ public class SpyMemcachedProperties extends MemcachedProperties {
         return getLong(key, DEFAULT_OPERATION_TIMEOUT);
     }
 
+    public int getGetMultiChunkSize() {
+        String key = toKey(GET_MULTI_CHUNK_SIZE);
+        return getInt(key, DEFAULT_GET_MULTI_CHUNK_SIZE);
+    }
+
+    public long getGetMultiTimeoutMillis() {
+        String key = toKey(GET_MULTI_TIMEOUT);
+        return getLong(key, getOperationTimeoutMillis());
+    }
+
     public boolean isDaemonMode() {
         String key = toKey(HASH_ALGORITHM);
         return getBoolean(key, DEFAULT_DAEMON_MODE);
@@ -0,0 +1,47 @@
+package com.googlecode.hibernate.memcached.codec;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * A value written by a region that compresses its values, passed to the
+ * Memcached client so its transcoder can apply the region's
+ * {@link CompressionPolicy}. The wrapper itself is never stored: clients
+ * without a compressing transcoder Java serialize the wrapped value in its
+ * place.
+ */
+public final class CompressibleValue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object value;
+    private final transient CompressionPolicy policy;
+
+    /**
+     * Creates a new {@link CompressibleValue}.
+     *
+     * @param value  the value to store
+     * @param policy the compression policy of the region
+     */
+    public CompressibleValue(Object value, CompressionPolicy policy) {
+        this.value = value;
+        this.policy = policy;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public CompressionPolicy getPolicy() {
+        return policy;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressibleValue[" + value + "]";
+    }
+}
@@ -0,0 +1,119 @@
+package com.googlecode.hibernate.memcached.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.googlecode.hibernate.memcached.stats.RegionStatistics;
+import com.googlecode.hibernate.memcached.strategy.LockableCodec;
+
+/**
+ * Decides which values of a region are stored compressed with {@link Lz4}.
+ * <p>
+ * Values smaller than the region's minimum size are stored as they are.
+ * Larger values are compressed, but the compressed form is only stored if it
+ * is at least the region's minimum share smaller; otherwise the time spent
+ * compressing is lost but reading the value costs nothing extra.
+ * <p>
+ * The compressed form is the length of the value as a big endian int
+ * followed by the LZ4 block. It is stored with the {@link #FLAG} bit added to
+ * the flags of the value.
+ */
+public class CompressionPolicy {
+
+    /**
+     * The flag added to the flags of compressed values. spymemcached uses
+     * bit 0 for serialized and bit 1 for gzip compressed values, and leaves
+     * the rest of the low byte unused.
+     */
+    public static final int FLAG = 4;
+
+    private static final int HEADER = 4;
+
+    private final int minBytes;
+    private final int minSavingsPercent;
+    private final RegionStatistics statistics;
+
+    /**
+     * Creates a new {@link CompressionPolicy}.
+     *
+     * @param minBytes          the size below which values are not compressed
+     * @param minSavingsPercent the percentage of its size the compressed form
+     *                          of a value must save to be stored
+     * @param statistics        the statistics of the region, or
+     *                          <code>null</code> if they are not kept
+     */
+    public CompressionPolicy(int minBytes, int minSavingsPercent, RegionStatistics statistics) {
+        this.minBytes = minBytes;
+        this.minSavingsPercent = minSavingsPercent;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Determines if a value stored with the given flags is compressed.
+     */
+    public static boolean isCompressed(int flags) {
+        return (flags & FLAG) != 0;
+    }
+
+    /**
+     * Compresses the given value if this policy allows it.
+     *
+     * @param data   the buffer holding the stored form of the value
+     * @param offset the position of the first byte of the value
+     * @param length the number of bytes of the value
+     * @return       the compressed form of the value, or <code>null</code> if
+     *               it should be stored uncompressed
+     */
+    public byte[] compress(byte[] data, int offset, int length) {
+        if (length < minBytes) {
+            return null;
+        }
+        long start = System.nanoTime();
+        byte[] compressed = new byte[HEADER + Lz4.maxCompressedLength(length)];
+        compressed[0] = (byte) (length >>> 24);
+        compressed[1] = (byte) (length >>> 16);
+        compressed[2] = (byte) (length >>> 8);
+        compressed[3] = (byte) length;
+        int compressedLength = HEADER + Lz4.compress(data, offset, length, compressed, HEADER);
+
+        boolean stored = (long) (length - compressedLength) * 100 >= (long) length * minSavingsPercent;
+        if (statistics != null) {
+            statistics.compression(length, compressedLength, stored, start);
+        }
+        return stored ? Arrays.copyOf(compressed, compressedLength) : null;
+    }
+
+    /**
+     * Decompresses a value written by {@link #compress(byte[], int, int)}.
+     *
+     * @param data   the buffer holding the compressed form of the value
+     * @param offset the position of the first byte of the compressed form
+     * @param length the number of bytes of the compressed form
+     * @return       the stored form of the value
+     * @throws IOException if the compressed form is malformed
+     */
+    public static byte[] decompress(byte[] data, int offset, int length) throws IOException {
+        if (length < HEADER) {
+            throw new IOException("Truncated compressed value of " + length + " bytes");
+        }
+        long start = System.nanoTime();
+        int originalLength = (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16
+                | (data[offset + 2] & 0xff) << 8 | (data[offset + 3] & 0xff);
+        // LZ4 cannot expand a byte to more than 255 bytes
+        if (originalLength < 0 || (long) originalLength > 255L * length) {
+            throw new IOException("Invalid length " + originalLength + " of compressed value of " + length + " bytes");
+        }
+        byte[] result = new byte[originalLength];
+        Lz4.decompress(data, offset + HEADER, length - HEADER, result, 0, originalLength);
+        LockableCodec.getStatistics().decompressed(start);
+        return result;
+    }
+
+    public int getMinBytes() {
+        return minBytes;
+    }
+
+    public int getMinSavingsPercent() {
+        return minSavingsPercent;
+    }
+}
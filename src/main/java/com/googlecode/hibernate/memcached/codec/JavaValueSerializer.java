@@ -0,0 +1,61 @@
+package com.googlecode.hibernate.memcached.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * A {@link ValueSerializer} using Java serialization, so it works for any
+ * <code>Serializable</code> value.
+ * <p>
+ * Classes are resolved with the context class loader of the reading thread
+ * first, as application classes may not be visible to this library's class
+ * loader.
+ */
+public class JavaValueSerializer implements ValueSerializer {
+
+    @Override
+    public byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] data, int offset, int length) throws IOException {
+        ObjectInputStream in = new ContextObjectInputStream(new ByteArrayInputStream(data, offset, length));
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not deserialize value: " + e.getMessage());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static final class ContextObjectInputStream extends ObjectInputStream {
+
+        ContextObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default lookup
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.googlecode.hibernate.memcached.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressor and decompressor for the LZ4 block format, a byte oriented
+ * LZ77 format that trades compression ratio for speed: it compresses several
+ * times faster than gzip and decompresses faster still.
+ * <p>
+ * The compressor finds matches with a single hash table probe per position
+ * and skips ahead faster through data without matches, like the reference
+ * <code>LZ4_compress_fast</code>. Its output can be read by any LZ4 block
+ * decompressor.
+ *
+ * {@link https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md}
+ */
+public final class Lz4 {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int RUN_MASK = 15;
+    private static final int SKIP_STRENGTH = 6;
+
+    private static final int HASH_LOG = 12;
+
+    private static final ThreadLocal<int[]> HASH_TABLES = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1 << HASH_LOG];
+        }
+    };
+
+    private Lz4() { }
+
+    /**
+     * Gets the maximum size of the compressed form of the given number of
+     * bytes.
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses the given bytes.
+     *
+     * @param src     the buffer holding the bytes to compress
+     * @param srcOff  the position of the first byte to compress
+     * @param srcLen  the number of bytes to compress
+     * @param dest    the buffer to write the compressed bytes to, with room
+     *                for at least {@link #maxCompressedLength(int)} bytes
+     * @param destOff the position to write the first compressed byte to
+     * @return        the number of compressed bytes written
+     */
+    public static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+        int srcEnd = srcOff + srcLen;
+        int anchor = srcOff;
+        int dOff = destOff;
+
+        if (srcLen > MF_LIMIT) {
+            int mfLimit = srcEnd - MF_LIMIT;
+            int matchLimit = srcEnd - LAST_LITERALS;
+            int[] table = HASH_TABLES.get();
+            Arrays.fill(table, srcOff);
+
+            int sOff = srcOff + 1;
+            int searches = 1 << SKIP_STRENGTH;
+            while (sOff <= mfLimit) {
+                int sequence = readInt(src, sOff);
+                int h = hash(sequence);
+                int ref = table[h];
+                table[h] = sOff;
+                if (sOff - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    sOff += searches++ >>> SKIP_STRENGTH;
+                    continue;
+                }
+                searches = 1 << SKIP_STRENGTH;
+
+                while (sOff > anchor && ref > srcOff && src[sOff - 1] == src[ref - 1]) {
+                    sOff--;
+                    ref--;
+                }
+                int matchLen = MIN_MATCH;
+                while (sOff + matchLen < matchLimit && src[sOff + matchLen] == src[ref + matchLen]) {
+                    matchLen++;
+                }
+
+                dOff = writeSequence(src, anchor, sOff - anchor, sOff - ref, matchLen, dest, dOff);
+                sOff += matchLen;
+                anchor = sOff;
+                if (sOff <= mfLimit) {
+                    table[hash(readInt(src, sOff - 2))] = sOff - 2;
+                }
+            }
+        }
+
+        int literals = srcEnd - anchor;
+        dOff = writeLength(dest, dOff, literals);
+        System.arraycopy(src, anchor, dest, dOff, literals);
+        return dOff + literals - destOff;
+    }
+
+    /**
+     * Decompresses the given bytes.
+     *
+     * @param src     the buffer holding the compressed bytes
+     * @param srcOff  the position of the first compressed byte
+     * @param srcLen  the number of compressed bytes
+     * @param dest    the buffer to write the decompressed bytes to
+     * @param destOff the position to write the first decompressed byte to
+     * @param destLen the number of bytes the compressed bytes decompress to
+     * @throws IOException if the compressed bytes are malformed or do not
+     *                     decompress to exactly <code>destLen</code> bytes
+     */
+    public static void decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen) throws IOException {
+        int sOff = srcOff;
+        int srcEnd = srcOff + srcLen;
+        int dOff = destOff;
+        int destEnd = destOff + destLen;
+        try {
+            while (true) {
+                int token = src[sOff++] & 0xff;
+
+                int literals = token >>> 4;
+                if (literals == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[sOff++] & 0xff;
+                        literals += b;
+                    } while (b == 255 && literals > 0);
+                }
+                if (literals < 0 || literals > srcEnd - sOff || literals > destEnd - dOff) {
+                    throw new IOException("Malformed LZ4 block: literals out of bounds at " + (sOff - srcOff));
+                }
+                System.arraycopy(src, sOff, dest, dOff, literals);
+                sOff += literals;
+                dOff += literals;
+                if (sOff == srcEnd) {
+                    break;
+                }
+                if (srcEnd - sOff < 3) {
+                    throw new IOException("Malformed LZ4 block: truncated match at " + (sOff - srcOff));
+                }
+
+                int offset = (src[sOff++] & 0xff) | ((src[sOff++] & 0xff) << 8);
+                int ref = dOff - offset;
+                if (offset == 0 || ref < destOff) {
+                    throw new IOException("Malformed LZ4 block: match offset out of bounds at " + (sOff - srcOff));
+                }
+                int matchLen = token & RUN_MASK;
+                if (matchLen == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[sOff++] & 0xff;
+                        matchLen += b;
+                    } while (b == 255 && matchLen > 0);
+                }
+                matchLen += MIN_MATCH;
+                if (matchLen < MIN_MATCH || matchLen > destEnd - dOff) {
+                    throw new IOException("Malformed LZ4 block: match out of bounds at " + (sOff - srcOff));
+                }
+                if (offset >= matchLen) {
+                    System.arraycopy(dest, ref, dest, dOff, matchLen);
+                    dOff += matchLen;
+                } else {
+                    // overlapping matches repeat the bytes being written
+                    for (int end = dOff + matchLen; dOff < end; ) {
+                        dest[dOff++] = dest[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed LZ4 block: truncated after " + (sOff - srcOff) + " bytes");
+        }
+        if (dOff != destEnd) {
+            throw new IOException("Malformed LZ4 block: " + (dOff - destOff) + " bytes instead of " + destLen);
+        }
+    }
+
+    private static int writeSequence(byte[] src, int anchor, int literals, int offset, int matchLen, byte[] dest, int dOff) {
+        int token = dOff;
+        dOff = writeLength(dest, dOff, literals);
+        System.arraycopy(src, anchor, dest, dOff, literals);
+        dOff += literals;
+
+        dest[dOff++] = (byte) offset;
+        dest[dOff++] = (byte) (offset >>> 8);
+
+        int length = matchLen - MIN_MATCH;
+        if (length >= RUN_MASK) {
+            dest[token] |= RUN_MASK;
+            length -= RUN_MASK;
+            while (length >= 255) {
+                dest[dOff++] = (byte) 255;
+                length -= 255;
+            }
+            dest[dOff++] = (byte) length;
+        } else {
+            dest[token] |= length;
+        }
+        return dOff;
+    }
+
+    /**
+     * Writes a token with the given literal length, followed by the extra
+     * length bytes if the length does not fit in the token.
+     *
+     * @return the position after the length
+     */
+    private static int writeLength(byte[] dest, int dOff, int literals) {
+        if (literals < RUN_MASK) {
+            dest[dOff++] = (byte) (literals << 4);
+            return dOff;
+        }
+        dest[dOff++] = (byte) (RUN_MASK << 4);
+        int length = literals - RUN_MASK;
+        while (length >= 255) {
+            dest[dOff++] = (byte) 255;
+            length -= 255;
+        }
+        dest[dOff++] = (byte) length;
+        return dOff;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8
+                | (data[offset + 2] & 0xff) << 16 | (data[offset + 3] & 0xff) << 24;
+    }
+}
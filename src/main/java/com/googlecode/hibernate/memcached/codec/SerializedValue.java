@@ -0,0 +1,60 @@
+package com.googlecode.hibernate.memcached.codec;
+
+import java.io.IOException;
+
+/**
+ * The bytes of a value as written by a {@link ValueSerializer}, kept until
+ * the value is needed.
+ * <p>
+ * The bytes are not copied; the buffer they are in must not be changed
+ * afterwards.
+ */
+public final class SerializedValue {
+
+    private final ValueSerializer serializer;
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Creates a new {@link SerializedValue}.
+     *
+     * @param serializer the serializer that wrote the value
+     * @param data       the buffer holding the bytes of the value
+     * @param offset     the position of the first byte of the value
+     * @param length     the number of bytes of the value
+     */
+    public SerializedValue(ValueSerializer serializer, byte[] data, int offset, int length) {
+        this.serializer = serializer;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Deserializes the value. Every call deserializes it again.
+     */
+    public Object deserialize() throws IOException {
+        return serializer.deserialize(data, offset, length);
+    }
+
+    /**
+     * Determines if the value was written by the given serializer, so its
+     * bytes can be stored again as they are.
+     */
+    public boolean isSerializedBy(ValueSerializer serializer) {
+        return this.serializer == serializer;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+}
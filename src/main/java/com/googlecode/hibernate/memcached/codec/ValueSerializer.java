@@ -0,0 +1,36 @@
+package com.googlecode.hibernate.memcached.codec;
+
+import java.io.IOException;
+
+import com.googlecode.hibernate.memcached.strategy.LockableCodec;
+
+/**
+ * Turns the values wrapped by cache entries (e.g. Hibernate's
+ * <code>CacheEntry</code>) into bytes and back.
+ * <p>
+ * Implementations must be thread safe and have a public no-argument
+ * constructor, so they can be configured by class name.
+ *
+ * @see LockableCodec
+ * @see JavaValueSerializer
+ */
+public interface ValueSerializer {
+
+    /**
+     * Serializes the given value.
+     *
+     * @param value the value, never <code>null</code>
+     * @return      the bytes of the value
+     */
+    byte[] serialize(Object value) throws IOException;
+
+    /**
+     * Deserializes a value.
+     *
+     * @param data   the buffer holding the bytes of the value
+     * @param offset the position of the first byte of the value
+     * @param length the number of bytes of the value
+     * @return       the value
+     */
+    Object deserialize(byte[] data, int offset, int length) throws IOException;
+}
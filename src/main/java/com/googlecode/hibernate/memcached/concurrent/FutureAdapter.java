@@ -0,0 +1,112 @@
+package com.googlecode.hibernate.memcached.concurrent;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Future} that converts the result of another <code>Future</code>
+ * once it is retrieved. The conversion happens on the thread calling
+ * <code>get</code>, not when the underlying operation completes.
+ * <p>
+ * Failures of the underlying <code>Future</code> (including timeouts) are
+ * passed to {@link #onFailure(Exception)}, which rethrows them by default.
+ * Implementations can override it to turn failures into fallback values,
+ * mirroring how the synchronous client operations report errors.
+ *
+ * @param <S> the result type of the underlying future
+ * @param <T> the result type of this future
+ */
+public abstract class FutureAdapter<S, T> implements Future<T> {
+
+    private final Future<S> source;
+
+    /**
+     * Creates a new adapter around the given future.
+     * 
+     * @param source the future whose result will be converted
+     */
+    protected FutureAdapter(Future<S> source) {
+        this.source = source;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return source.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return source.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return source.isDone();
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        S value;
+        try {
+            value = source.get();
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            try {
+                return failure(e);
+            } catch (TimeoutException timeout) {
+                throw new ExecutionException(timeout.getMessage(), timeout);
+            }
+        }
+        return convert(value);
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        S value;
+        try {
+            value = source.get(timeout, unit);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            return failure(e);
+        }
+        return convert(value);
+    }
+
+    /**
+     * Converts the result of the underlying future.
+     * 
+     * @param value the result of the underlying future
+     * @return      the result of this future
+     */
+    protected abstract T convert(S value) throws ExecutionException;
+
+    /**
+     * Handles a failure of the underlying future. The default implementation
+     * rethrows the given exception.
+     * 
+     * @param e the failure, usually an {@link ExecutionException} or a
+     *          {@link TimeoutException}
+     * @return  a fallback result
+     */
+    protected T onFailure(Exception e) throws Exception {
+        throw e;
+    }
+
+    private T failure(Exception e) throws ExecutionException, TimeoutException {
+        try {
+            return onFailure(e);
+        } catch (ExecutionException rethrown) {
+            throw rethrown;
+        } catch (TimeoutException rethrown) {
+            throw rethrown;
+        } catch (RuntimeException rethrown) {
+            throw rethrown;
+        } catch (Exception rethrown) {
+            throw new ExecutionException(rethrown.getMessage(), rethrown);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.googlecode.hibernate.memcached.concurrent;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Future} that is already complete when it is created. Useful for
+ * clients that can only perform an operation synchronously but still need to
+ * satisfy an asynchronous interface, or to return a fallback value when an
+ * asynchronous operation could not be started.
+ *
+ * @param <V> the type of the value held by this future
+ */
+public class ImmediateFuture<V> implements Future<V> {
+
+    private final V value;
+
+    /**
+     * Creates a completed future holding the given value.
+     * 
+     * @param value the value returned by {@link #get()}, may be <code>null</code>
+     */
+    public ImmediateFuture(V value) {
+        this.value = value;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return true;
+    }
+
+    @Override
+    public V get() {
+        return value;
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) {
+        return value;
+    }
+}
@@ -0,0 +1,45 @@
+package com.googlecode.hibernate.memcached.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Timestamper} with the layout of Hibernate's own
+ * <code>Timestamper</code>: the current time in milliseconds shifted left by
+ * {@link #SEQUENCE_BITS}, with a sequence number in the low-order bits. Every
+ * call returns a larger timestamp than the one before, so an item written in
+ * the same millisecond as a transaction started is still ordered after it.
+ * <p>
+ * If more than 4096 timestamps are taken within a millisecond, or the clock is
+ * set back, the sequence runs ahead of the clock until the clock catches up.
+ */
+public class MonotonicTimestamper implements Timestamper {
+
+    /**
+     * The number of low-order bits holding the sequence number.
+     */
+    public static final int SEQUENCE_BITS = 12;
+
+    /**
+     * The length of a millisecond, in timestamp units.
+     */
+    public static final long ONE_MS = 1L << SEQUENCE_BITS;
+
+    private final AtomicLong last = new AtomicLong();
+
+    @Override
+    public long next() {
+        while (true) {
+            long base = System.currentTimeMillis() << SEQUENCE_BITS;
+            long previous = last.get();
+            long next = base > previous ? base : previous + 1;
+            if (last.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public long fromMillis(long millis) {
+        return millis << SEQUENCE_BITS;
+    }
+}
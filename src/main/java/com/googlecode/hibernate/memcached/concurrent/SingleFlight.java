@@ -0,0 +1,175 @@
+package com.googlecode.hibernate.memcached.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.cache.CacheException;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
+
+/**
+ * Coalesces concurrent reads of the same key within a JVM (request
+ * coalescing, or "single flight").
+ * <p>
+ * The first thread to read a key (the leader) makes the actual request; threads
+ * that ask for the same key while the request is in flight wait for it and
+ * share its result instead of making their own. A write of the key ends the
+ * flight early, so reads started after a write never get a value read before
+ * it.
+ * <p>
+ * <b>Shared misses:</b> If a shared read finds nothing, every thread that
+ * shared it is about to load the value from the database and put it into the
+ * cache. Only the first of these puts is needed, see
+ * {@link #claimLoad(String)}; the others are dropped for a short time.
+ * <p>
+ * One instance is shared by all clients of a region.
+ *
+ * @see MemcachedRegionSettings#getSingleFlight()
+ */
+public class SingleFlight {
+
+    private static final int MAX_SHARED_MISSES = 10000;
+    private static final long SHARED_MISS_MILLIS = 1000;
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+    private final ConcurrentMap<String, SharedMiss> sharedMisses = new ConcurrentHashMap<String, SharedMiss>();
+
+    /**
+     * A read that can be shared.
+     */
+    public interface Loader {
+
+        /**
+         * Makes the actual request.
+         *
+         * @return the value read, or <code>null</code>
+         */
+        Object load();
+    }
+
+    /**
+     * Reads a value, sharing the request with concurrent reads of the same
+     * key.
+     *
+     * @param flightKey the key identifying the request, usually the full
+     *                  Memcached key
+     * @param loadKey   the key that will be used to claim a load after a
+     *                  shared miss
+     * @param loader    the request to make if none is in flight
+     * @return          the value read
+     */
+    public Object get(String flightKey, String loadKey, Loader loader) {
+        Flight flight = new Flight(loader);
+        Flight existing = flights.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            existing.followers.incrementAndGet();
+            return existing.await();
+        }
+
+        try {
+            flight.run();
+        } finally {
+            flights.remove(flightKey, flight);
+        }
+
+        Object value = flight.await();
+        if (value == null && flight.followers.get() > 0) {
+            if (sharedMisses.size() >= MAX_SHARED_MISSES) {
+                sharedMisses.clear();
+            }
+            sharedMisses.put(loadKey, new SharedMiss());
+        }
+        return value;
+    }
+
+    /**
+     * Claims the right to put a value loaded after a miss into the cache.
+     *
+     * @param loadKey the key of the loaded value
+     * @return        <code>false</code> if the miss was shared and another
+     *                thread already claimed the put, <code>true</code>
+     *                otherwise
+     */
+    public boolean claimLoad(String loadKey) {
+        SharedMiss miss = sharedMisses.get(loadKey);
+        if (miss == null) {
+            return true;
+        }
+        if (miss.isExpired()) {
+            sharedMisses.remove(loadKey, miss);
+            return true;
+        }
+        return miss.claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * Ends the flight of a key that is about to be written.
+     *
+     * @param flightKey the key identifying the request
+     */
+    public void written(String flightKey) {
+        flights.remove(flightKey);
+    }
+
+    /**
+     * Ends the flight of a key that is about to be deleted, and forgets any
+     * shared miss of it.
+     *
+     * @param flightKey the key identifying the request
+     * @param loadKey   the key used to claim loads
+     */
+    public void deleted(String flightKey, String loadKey) {
+        flights.remove(flightKey);
+        sharedMisses.remove(loadKey);
+    }
+
+    private static final class Flight extends FutureTask<Object> {
+        final AtomicInteger followers = new AtomicInteger();
+
+        Flight(final Loader loader) {
+            super(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return loader.load();
+                }
+            });
+        }
+
+        Object await() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new CacheException(e.getCause());
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static final class SharedMiss {
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHARED_MISS_MILLIS);
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.googlecode.hibernate.memcached.concurrent;
+
+import org.hibernate.cache.spi.Region;
+import org.hibernate.cache.spi.RegionFactory;
+
+/**
+ * The source of the timestamps returned by {@link RegionFactory#nextTimestamp()}
+ * and {@link Region#nextTimestamp()}. Hibernate takes the timestamp of a
+ * transaction when it starts, and a cached item is only readable by
+ * transactions that started after the item was written, so the resolution of
+ * the timestamps decides how long a freshly written item is missed.
+ * <p>
+ * Timeouts handed to Hibernate ({@link Region#getTimeout()}) and soft lock
+ * timeouts are in the units of the timestamps, see {@link #fromMillis(long)}.
+ * <p>
+ * Implementations must be thread safe and have a public no-argument
+ * constructor, so they can be configured by class name.
+ *
+ * @see MonotonicTimestamper
+ */
+public interface Timestamper {
+
+    /**
+     * Gets the next timestamp. Timestamps returned by the same instance never
+     * decrease, even if the system clock is set back.
+     *
+     * @return the next timestamp
+     */
+    long next();
+
+    /**
+     * Converts a duration to the units of the timestamps.
+     *
+     * @param millis the duration in milliseconds
+     * @return       the duration in the units of {@link #next()}
+     */
+    long fromMillis(long millis);
+}
@@ -1,13 +1,18 @@
 package com.googlecode.hibernate.memcached.concurrent.keylock;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
-import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrategy;
-import com.googlecode.hibernate.memcached.utils.MemcachedRegionSettingsUtils;
-import com.googlecode.hibernate.memcached.utils.StringUtils;
+import com.googlecode.hibernate.memcached.strategy.key.KeyBuilder;
+import com.googlecode.hibernate.memcached.strategy.key.RegionKeys;
 
 /**
  * Provides Read/Write locking to Memcached on a per key basis (for a given
@@ -28,6 +33,16 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * caller. In order to release it's lock a reader will decrement the reader 
  * count, a writer will delete the write lock.
  * <p>
+ * {@link #getReadBlockedKeys(Collection)} reads all write lock keys with one
+ * multi get. A key whose write lock is held, even briefly by a reader taking
+ * its read lock, is reported as blocked.
+ * <p>
+ * Contended locks are retried as described by the region's
+ * {@link KeyLockPolicy}. A writer shares the policy's maximum wait between
+ * acquiring the write lock and waiting for the readers; if it runs out it
+ * releases the write lock again and gives up. Lock keys expire after the
+ * policy's lock timeout.
+ * <p>
  * Can locks be pushed out of memcached if there is too much usage? maybe
  * there is some way to have a separate memcached server for locks?
  * <p>
@@ -36,9 +51,7 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * This implementation mostly assumes that that the requested lock must be
  * acquired before returning (though it isn't really guaranteed), maybe just
  * don't grant read access when write lock exists? Reads would be faster this
- * way (if there are few writes). Is it faster to sleep and retry or go to the db?
- * (maybe db would be faster, but would increase load unnecessarily?)
- * I should probably make this a region parameter.
+ * way (if there are few writes).
  */
 public class ConcurrentReadBlockingWriteKeyLockProvider implements MemcachedReadWriteKeyLockProvider {
 
@@ -47,10 +60,10 @@ public class ConcurrentReadBlockingWriteKeyLockProvider implements MemcachedRead
     private HibernateMemcachedClient client;
     private MemcachedRegionSettings settings;
     private long clearIndex;
+    private KeyLockPolicy policy;
     
-    private String fullReadLockKeyPrefix;
-    private String fullWriteLockKeyPrefix;
-    private KeyEncodingStrategy keyEncodingStrategy;
+    private KeyBuilder readLockKeys;
+    private KeyBuilder writeLockKeys;
 
     /* Make default constructor private, or could add getters/setters */
     @SuppressWarnings("unused")
@@ -66,13 +79,11 @@ public class ConcurrentReadBlockingWriteKeyLockProvider implements MemcachedRead
         this.client = client;
         this.settings = settings;
         this.clearIndex = clearIndex;
+        this.policy = getKeyLockPolicy(settings);
 
-        this.fullReadLockKeyPrefix = 
-                MemcachedRegionSettingsUtils.getFullReadLockKeyPrefix(settings);
-        this.fullWriteLockKeyPrefix = 
-                MemcachedRegionSettingsUtils.getFullWriteLockKeyPrefix(settings);
-        this.keyEncodingStrategy = 
-                MemcachedRegionSettingsUtils.getValidatedMemcachedKeyEncodingStrategy(settings);
+        RegionKeys regionKeys = RegionKeys.get(settings, clearIndex);
+        this.readLockKeys = regionKeys.getReadLockKeys();
+        this.writeLockKeys = regionKeys.getWriteLockKeys();
     }
 
     @Override
@@ -82,13 +93,12 @@ public class ConcurrentReadBlockingWriteKeyLockProvider implements MemcachedRead
         String wKey = getWriteLockKey(key);
         String rKey = getReadLockKey(key);
 
-        // Add a counter of some kind?
-        while(!client.add(wKey, 60, 1)) { // should probably parameterize cache and sleep time
-            log.info("could not acquire read lock for key {}.", key);
-            sleep(1000);
+        if (!acquire(wKey)) {
+            log.info("could not acquire read lock for key {} within {} ms.", key, policy.getMaxWaitMillis());
+            return false;
         }
 
-        client.incr(rKey, 1, 0);
+        client.incr(rKey, 1, 1);
         result = true;
         client.delete(wKey); // only want to delete if still mine // set wKey to uuid then get before delete? safe, but adds another get... // maybe use thread name?
         
@@ -105,25 +115,48 @@ public class ConcurrentReadBlockingWriteKeyLockProvider implements MemcachedRead
         return true;
     }
 
+    @Override
+    public Set<String> getReadBlockedKeys(Collection<String> keys) {
+        Map<String, String> wKeys = new HashMap<String, String>(keys.size() * 2);
+        for (String key : keys) {
+            wKeys.put(getWriteLockKey(key), key);
+        }
+        Map<String, Object> locks = client.getMulti(wKeys.keySet().toArray(new String[wKeys.size()]));
+        Set<String> blocked = new HashSet<String>();
+        for (String wKey : locks.keySet()) {
+            String key = wKeys.get(wKey);
+            if (key != null) {
+                blocked.add(key);
+            }
+        }
+        return blocked;
+    }
+
     @Override
     public boolean acquireWriteLock(String key) {
-        boolean result = false;
+        long start = System.nanoTime();
         String wKey = getWriteLockKey(key);
-        String rKey = getReadLockKey(key);
+        final String rKey = getReadLockKey(key);
         
-        while (!client.add(wKey, 60, 1)) {
-            log.info("could not acquire write lock for key {}.", key);
-            sleep(1000);
+        if (!acquire(wKey, start)) {
+            log.info("could not acquire write lock for key {} within {} ms.", key, policy.getMaxWaitMillis());
+            return false;
         }
         
         log.trace("acquired write lock for key {}.", key);
         
-        result = true;
-        while (((Integer) client.get(rKey)) > 0) {
-            log.info("waiting for reads to finish."); // do i really need to do this?
-            sleep(1000);
+        boolean readsFinished = policy.acquire(new KeyLockPolicy.Attempt() {
+            @Override
+            public boolean tryAcquire() {
+                return getReaderCount(rKey) <= 0;
+            }
+        }, start);
+        
+        if (!readsFinished) {
+            log.info("reads on key {} did not finish within {} ms.", key, policy.getMaxWaitMillis());
+            client.delete(wKey);
         }
-        return result;
+        return readsFinished;
     }
 
     @Override
@@ -134,6 +167,34 @@ public class ConcurrentReadBlockingWriteKeyLockProvider implements MemcachedRead
         return true;
     }
     
+    private boolean acquire(String wKey) {
+        return acquire(wKey, System.nanoTime());
+    }
+
+    private boolean acquire(final String wKey, long start) {
+        return policy.acquire(new KeyLockPolicy.Attempt() {
+            @Override
+            public boolean tryAcquire() {
+                return client.add(wKey, policy.getLockTimeoutSeconds(), 1);
+            }
+        }, start);
+    }
+
+    /**
+     * Reads the reader count for a read lock key. Counters are stored as
+     * strings by Memcached's incr/decr, so both numbers and strings are
+     * accepted. A missing counter means that there are no readers.
+     */
+    private long getReaderCount(String rKey) {
+        Object value = client.get(rKey);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            return Long.parseLong(((String) value).trim());
+        }
+        return 0;
+    }
+
     /**
      * Generates a read lock key for the given object key. In this case the
      * key will map to a counter that will be incremented and decremented.
@@ -142,7 +203,7 @@ public class ConcurrentReadBlockingWriteKeyLockProvider implements MemcachedRead
      * @return    a key for the read lock
      */
     private String getReadLockKey(String key) {
-        return keyEncodingStrategy.encode(concatenateKey(fullReadLockKeyPrefix, key));
+        return readLockKeys.build(key);
     }
     
     /**
@@ -153,24 +214,12 @@ public class ConcurrentReadBlockingWriteKeyLockProvider implements MemcachedRead
      * @return    a key for the write lock
      */
     private String getWriteLockKey(String key) {
-        return keyEncodingStrategy.encode(concatenateKey(fullWriteLockKeyPrefix, key));
+        return writeLockKeys.build(key);
     }
     
-    private String concatenateKey(String prefix, String key) {
-        return StringUtils.join(settings.getNamespaceSeparator(), prefix, clearIndex, key);
+    private static KeyLockPolicy getKeyLockPolicy(MemcachedRegionSettings settings) {
+        KeyLockPolicy policy = settings.getKeyLockPolicy();
+        return policy != null ? policy : new KeyLockPolicy(settings);
     }
 
-    /**
-     * Puts the thread to sleep for some number of milliseconds.
-     * 
-     * @param millis the number of milliseconds to sleep.
-     */
-    private void sleep(long millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } 
-    }
-    
 }
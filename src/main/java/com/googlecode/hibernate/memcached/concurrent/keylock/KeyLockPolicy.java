@@ -0,0 +1,169 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
+
+/**
+ * Decides how long and how often a {@link MemcachedReadWriteKeyLockProvider}
+ * retries to acquire a contended key lock.
+ * <p>
+ * The first few retries are made immediately (spinning), after that the
+ * requester sleeps between retries. The sleep starts at the initial backoff
+ * and doubles after every retry up to the maximum backoff; a random jitter of
+ * up to half the backoff keeps waiting requesters from retrying in lock step.
+ * Once the maximum wait has passed the acquisition gives up and the caller is
+ * expected to carry on without the cache (a cache miss, or a skipped cache
+ * write) instead of blocking the request.
+ * <p>
+ * The policy also holds the time to live of the lock keys, so that a lock
+ * held by a crashed requester does not block others for longer than that.
+ * <p>
+ * One policy is shared by all lock providers of a region and counts the
+ * number of acquisitions that timed out.
+ *
+ * @see MemcachedRegionSettings#getKeyLockPolicy()
+ */
+public class KeyLockPolicy {
+
+    private static final Random random = new Random();
+
+    private final int spinAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long maxWaitMillis;
+    private final int lockTimeoutSeconds;
+
+    private final AtomicLong lockTimeouts = new AtomicLong();
+
+    /**
+     * An attempt to acquire a lock.
+     */
+    public interface Attempt {
+
+        /**
+         * Tries to acquire the lock once.
+         *
+         * @return <code>true</code> if the lock was acquired,
+         *         <code>false</code> otherwise
+         */
+        boolean tryAcquire();
+    }
+
+    /**
+     * Creates a policy using the key lock settings of the given region.
+     *
+     * @param settings the settings of the region
+     */
+    public KeyLockPolicy(MemcachedRegionSettings settings) {
+        this(settings.getKeyLockSpinAttempts(), settings.getKeyLockInitialBackoffMillis(),
+                settings.getKeyLockMaxBackoffMillis(), settings.getKeyLockMaxWaitMillis(),
+                settings.getKeyLockTimeoutSeconds());
+    }
+
+    /**
+     * Creates a new {@link KeyLockPolicy}.
+     *
+     * @param spinAttempts         the number of retries made without sleeping
+     * @param initialBackoffMillis the first sleep between retries
+     * @param maxBackoffMillis     the longest sleep between retries
+     * @param maxWaitMillis        the time after which acquisition gives up
+     * @param lockTimeoutSeconds   the time to live of lock keys
+     */
+    public KeyLockPolicy(int spinAttempts, long initialBackoffMillis, long maxBackoffMillis,
+            long maxWaitMillis, int lockTimeoutSeconds) {
+        this.spinAttempts = spinAttempts;
+        this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+        this.maxWaitMillis = maxWaitMillis;
+        this.lockTimeoutSeconds = lockTimeoutSeconds;
+    }
+
+    /**
+     * Repeats the given attempt until it succeeds or the maximum wait has
+     * passed.
+     *
+     * @param attempt the attempt to make
+     * @return        <code>true</code> if the lock was acquired,
+     *                <code>false</code> if the acquisition timed out or the
+     *                thread was interrupted
+     */
+    public boolean acquire(Attempt attempt) {
+        return acquire(attempt, System.nanoTime());
+    }
+
+    /**
+     * Repeats the given attempt until it succeeds or the maximum wait, counted
+     * from the given start time, has passed. Used when a lock is acquired in
+     * several steps that share one maximum wait.
+     *
+     * @param attempt    the attempt to make
+     * @param startNanos the {@link System#nanoTime()} the acquisition started
+     * @return           <code>true</code> if the lock was acquired,
+     *                   <code>false</code> if the acquisition timed out or the
+     *                   thread was interrupted
+     */
+    public boolean acquire(Attempt attempt, long startNanos) {
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        long backoff = initialBackoffMillis;
+
+        for (int retries = 0; ; retries++) {
+            if (attempt.tryAcquire()) {
+                return true;
+            }
+
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                timedOut();
+                return false;
+            }
+
+            if (retries >= spinAttempts) {
+                long sleep = Math.min(remainingMillis, backoff / 2 + nextJitter(backoff / 2 + 1));
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    timedOut();
+                    return false;
+                }
+                backoff = Math.min(maxBackoffMillis, backoff * 2);
+            }
+        }
+    }
+
+    /**
+     * Gets the time to live of lock keys.
+     *
+     * @return the lock time to live, in seconds
+     */
+    public int getLockTimeoutSeconds() {
+        return lockTimeoutSeconds;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Gets the number of lock acquisitions that gave up since this policy was
+     * created.
+     */
+    public long getLockTimeouts() {
+        return lockTimeouts.get();
+    }
+
+    /**
+     * Counts a lock acquisition that gave up outside of
+     * {@link #acquire(Attempt)}.
+     */
+    void timedOut() {
+        lockTimeouts.incrementAndGet();
+    }
+
+    private static long nextJitter(long bound) {
+        return (long) (random.nextDouble() * bound);
+    }
+}
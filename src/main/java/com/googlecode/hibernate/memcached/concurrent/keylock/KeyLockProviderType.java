@@ -0,0 +1,37 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock;
+
+/**
+ * The kinds of {@link MemcachedReadWriteKeyLockProvider} a region can use,
+ * see {@link com.googlecode.hibernate.memcached.MemcachedRegionSettings#getKeyLockProviderType()}.
+ */
+public enum KeyLockProviderType {
+
+    /**
+     * Locks stored in Memcached, reads are never blocked.
+     * 
+     * @see UnBlockedReadBlockedWriteKeyLockProvider
+     */
+    UNBLOCKED_READ_BLOCKED_WRITE,
+
+    /**
+     * Locks stored in Memcached, writes wait for reads to finish.
+     * 
+     * @see ConcurrentReadBlockingWriteKeyLockProvider
+     */
+    CONCURRENT_READ_BLOCKING_WRITE,
+
+    /**
+     * Locks held in this JVM only. Only safe if a single JVM writes to the
+     * region.
+     * 
+     * @see LocalReadWriteKeyLockProvider
+     */
+    LOCAL,
+
+    /**
+     * No locking at all.
+     * 
+     * @see NoLockKeyLockProvider
+     */
+    NONE
+}
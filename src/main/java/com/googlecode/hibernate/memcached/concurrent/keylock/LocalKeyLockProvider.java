@@ -0,0 +1,86 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link MemcachedReadWriteKeyLockProvider} that takes a JVM local lock on
+ * a key before it asks another provider for the write lock in Memcached.
+ * <p>
+ * Threads of the same JVM writing the same key queue up on the
+ * {@link LocalKeyLocks} of the region, so at most one of them polls Memcached
+ * for the lock at any time. When it releases the lock the next local waiter
+ * is woken immediately instead of at its next retry.
+ * <p>
+ * The local wait is bounded by the maximum wait of the region's
+ * {@link KeyLockPolicy}; a timed out local wait is counted like a timed out
+ * Memcached lock. Read locks are passed to the wrapped provider unchanged.
+ */
+public class LocalKeyLockProvider implements MemcachedReadWriteKeyLockProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalKeyLockProvider.class);
+
+    private final MemcachedReadWriteKeyLockProvider provider;
+    private final LocalKeyLocks localKeyLocks;
+    private final KeyLockPolicy policy;
+
+    /**
+     * Creates a new {@link LocalKeyLockProvider}.
+     *
+     * @param provider      the provider of the Memcached locks
+     * @param localKeyLocks the local locks of the region
+     * @param policy        the key lock policy of the region
+     */
+    public LocalKeyLockProvider(MemcachedReadWriteKeyLockProvider provider, LocalKeyLocks localKeyLocks,
+            KeyLockPolicy policy) {
+        this.provider = provider;
+        this.localKeyLocks = localKeyLocks;
+        this.policy = policy;
+    }
+
+    @Override
+    public boolean acquireReadLock(String key) {
+        return provider.acquireReadLock(key);
+    }
+
+    @Override
+    public boolean releaseReadLock(String key) {
+        return provider.releaseReadLock(key);
+    }
+
+    @Override
+    public Set<String> getReadBlockedKeys(Collection<String> keys) {
+        return provider.getReadBlockedKeys(keys);
+    }
+
+    @Override
+    public boolean acquireWriteLock(String key) {
+        if (!localKeyLocks.lock(key, policy.getMaxWaitMillis())) {
+            log.info("could not acquire local write lock for key {} within {} ms.", key, policy.getMaxWaitMillis());
+            policy.timedOut();
+            return false;
+        }
+
+        boolean success = false;
+        try {
+            success = provider.acquireWriteLock(key);
+        } finally {
+            if (!success) {
+                localKeyLocks.unlock(key);
+            }
+        }
+        return success;
+    }
+
+    @Override
+    public boolean releaseWriteLock(String key) {
+        try {
+            return provider.releaseWriteLock(key);
+        } finally {
+            localKeyLocks.unlock(key);
+        }
+    }
+}
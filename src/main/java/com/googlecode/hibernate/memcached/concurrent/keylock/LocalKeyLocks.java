@@ -0,0 +1,128 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
+
+/**
+ * Exclusive per key locks that are local to this JVM, see
+ * {@link LocalKeyLockProvider}.
+ * <p>
+ * Keys are hashed onto a fixed number of stripes. Each stripe has a mutex, a
+ * condition and the set of its keys that are currently locked. The mutex is
+ * only held while the set is checked or changed, so keys sharing a stripe do
+ * not block each other. Threads waiting for a key sleep on the stripe's
+ * condition and are woken as soon as a key of that stripe is unlocked.
+ * <p>
+ * One instance is shared by all lock providers of a region.
+ *
+ * @see MemcachedRegionSettings#getLocalKeyLocks()
+ */
+public class LocalKeyLocks {
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    /**
+     * Creates a new {@link LocalKeyLocks}.
+     *
+     * @param stripes the number of stripes, rounded up to a power of two
+     */
+    public LocalKeyLocks(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("The number of stripes must be positive");
+        }
+
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.stripeMask = size - 1;
+    }
+
+    /**
+     * Locks the given key, waiting at most the given time if another thread
+     * holds it.
+     *
+     * @param key           the key to lock
+     * @param maxWaitMillis the maximum time to wait, in milliseconds
+     * @return              <code>true</code> if the key was locked,
+     *                      <code>false</code> if the wait timed out or the
+     *                      thread was interrupted
+     */
+    public boolean lock(String key, long maxWaitMillis) {
+        return stripeFor(key).lock(key, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+    }
+
+    /**
+     * Unlocks the given key and wakes up the threads waiting for it.
+     *
+     * @param key the key to unlock, must have been locked by
+     *            {@link #lock(String, long)}
+     */
+    public void unlock(String key) {
+        stripeFor(key).unlock(key);
+    }
+
+    /**
+     * Gets the number of stripes.
+     */
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return stripes[h & stripeMask];
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock mutex = new ReentrantLock();
+        private final Condition released = mutex.newCondition();
+        private final Set<String> locked = new HashSet<String>();
+
+        boolean lock(String key, long maxWaitNanos) {
+            mutex.lock();
+            try {
+                long remaining = maxWaitNanos;
+                while (locked.contains(key)) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    try {
+                        remaining = released.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                locked.add(key);
+                return true;
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        void unlock(String key) {
+            mutex.lock();
+            try {
+                if (locked.remove(key)) {
+                    released.signalAll();
+                }
+            } finally {
+                mutex.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides Read/Write locking on a per key basis using locks held in this JVM
+ * only. Keys are hashed onto a fixed number of {@link ReentrantReadWriteLock}s,
+ * so reads of a key run concurrently and a write excludes all other reads and
+ * writes of the keys sharing its stripe.
+ * <p>
+ * No round trips to Memcached are made to lock a key. This is only safe if a
+ * single JVM ever writes to the region, e.g. in a single node deployment.
+ * <p>
+ * Locks must be released by the thread that acquired them. Waiting for a lock
+ * is bounded by the maximum wait of the region's {@link KeyLockPolicy}.
+ * <p>
+ * Unlike the Memcached based providers, one instance is shared by all users
+ * of a region and survives region clears.
+ */
+public class LocalReadWriteKeyLockProvider implements MemcachedReadWriteKeyLockProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalReadWriteKeyLockProvider.class);
+
+    private final ReentrantReadWriteLock[] locks;
+    private final int lockMask;
+    private final KeyLockPolicy policy;
+
+    /**
+     * Creates a new {@link LocalReadWriteKeyLockProvider}.
+     * 
+     * @param stripes the number of locks, rounded up to a power of two
+     * @param policy  the key lock policy of the region
+     */
+    public LocalReadWriteKeyLockProvider(int stripes, KeyLockPolicy policy) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+
+        this.locks = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            this.locks[i] = new ReentrantReadWriteLock();
+        }
+        this.lockMask = size - 1;
+        this.policy = policy;
+    }
+
+    @Override
+    public boolean acquireReadLock(String key) {
+        return acquire(lockFor(key).readLock(), key);
+    }
+
+    @Override
+    public boolean releaseReadLock(String key) {
+        lockFor(key).readLock().unlock();
+        return true;
+    }
+
+    @Override
+    public Set<String> getReadBlockedKeys(Collection<String> keys) {
+        Set<String> blocked = new HashSet<String>();
+        for (String key : keys) {
+            ReentrantReadWriteLock lock = lockFor(key);
+            if (lock.isWriteLocked() && !lock.isWriteLockedByCurrentThread()) {
+                blocked.add(key);
+            }
+        }
+        return blocked;
+    }
+
+    @Override
+    public boolean acquireWriteLock(String key) {
+        return acquire(lockFor(key).writeLock(), key);
+    }
+
+    @Override
+    public boolean releaseWriteLock(String key) {
+        lockFor(key).writeLock().unlock();
+        return true;
+    }
+
+    private boolean acquire(Lock lock, String key) {
+        try {
+            if (lock.tryLock(policy.getMaxWaitMillis(), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("could not acquire lock for key {} within {} ms.", key, policy.getMaxWaitMillis());
+        policy.timedOut();
+        return false;
+    }
+
+    private ReentrantReadWriteLock lockFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return locks[h & lockMask];
+    }
+}
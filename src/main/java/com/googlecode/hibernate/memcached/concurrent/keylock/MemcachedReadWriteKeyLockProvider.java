@@ -1,5 +1,8 @@
 package com.googlecode.hibernate.memcached.concurrent.keylock;
 
+import java.util.Collection;
+import java.util.Set;
+
 /**
  * An interface for adding Read/Write locking to Memcached on a per key basis.
  * <p>
@@ -46,4 +49,14 @@ public interface MemcachedReadWriteKeyLockProvider {
      */
     public boolean releaseWriteLock(String key);
 
+    /**
+     * Finds the keys that a read lock could not be granted on right now,
+     * without waiting and without taking any lock. Bulk reads treat these
+     * keys as misses instead of taking a read lock on every key.
+     * 
+     * @param keys the keys to check
+     * @return     the given keys that are locked against reads
+     */
+    public Set<String> getReadBlockedKeys(Collection<String> keys);
+
 }
@@ -0,0 +1,68 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock;
+
+import java.util.Collection;
+import java.util.Set;
+
+import com.googlecode.hibernate.memcached.stats.RegionStatistics;
+
+/**
+ * A {@link MemcachedReadWriteKeyLockProvider} that records the time taken to
+ * acquire locks from another provider, and whether they were acquired, in the
+ * {@link RegionStatistics} of the region. Releases and bulk checks are passed
+ * on unchanged.
+ */
+public class MeteredKeyLockProvider implements MemcachedReadWriteKeyLockProvider {
+
+    private final MemcachedReadWriteKeyLockProvider provider;
+    private final RegionStatistics statistics;
+
+    /**
+     * Creates a new {@link MeteredKeyLockProvider}.
+     *
+     * @param provider   the provider of the locks
+     * @param statistics the statistics of the region
+     */
+    public MeteredKeyLockProvider(MemcachedReadWriteKeyLockProvider provider, RegionStatistics statistics) {
+        this.provider = provider;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public boolean acquireReadLock(String key) {
+        long start = System.nanoTime();
+        boolean acquired = false;
+        try {
+            acquired = provider.acquireReadLock(key);
+        } finally {
+            statistics.lock(acquired, start);
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean releaseReadLock(String key) {
+        return provider.releaseReadLock(key);
+    }
+
+    @Override
+    public Set<String> getReadBlockedKeys(Collection<String> keys) {
+        return provider.getReadBlockedKeys(keys);
+    }
+
+    @Override
+    public boolean acquireWriteLock(String key) {
+        long start = System.nanoTime();
+        boolean acquired = false;
+        try {
+            acquired = provider.acquireWriteLock(key);
+        } finally {
+            statistics.lock(acquired, start);
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean releaseWriteLock(String key) {
+        return provider.releaseWriteLock(key);
+    }
+}
@@ -0,0 +1,38 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A {@link MemcachedReadWriteKeyLockProvider} that grants every lock
+ * immediately. Useful for regions where concurrent writes to the same key
+ * can not happen, or do not matter.
+ */
+public class NoLockKeyLockProvider implements MemcachedReadWriteKeyLockProvider {
+
+    @Override
+    public boolean acquireReadLock(String key) {
+        return true;
+    }
+
+    @Override
+    public boolean releaseReadLock(String key) {
+        return true;
+    }
+
+    @Override
+    public boolean acquireWriteLock(String key) {
+        return true;
+    }
+
+    @Override
+    public boolean releaseWriteLock(String key) {
+        return true;
+    }
+
+    @Override
+    public Set<String> getReadBlockedKeys(Collection<String> keys) {
+        return Collections.emptySet();
+    }
+}
@@ -1,13 +1,16 @@
 package com.googlecode.hibernate.memcached.concurrent.keylock;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
-import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrategy;
-import com.googlecode.hibernate.memcached.utils.MemcachedRegionSettingsUtils;
-import com.googlecode.hibernate.memcached.utils.StringUtils;
+import com.googlecode.hibernate.memcached.strategy.key.KeyBuilder;
+import com.googlecode.hibernate.memcached.strategy.key.RegionKeys;
 
 /**
  * Provides Read/Write locking to Memcached on a per key basis (for a given
@@ -21,9 +24,11 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * In order to obtain the write lock on a given key Memcached's add 
  * functionality is used. The first requester to successfully add the full lock
  * key to Memcached will be the one to have the write lock for that key. 
- * Requesters that fail to acquire the lock will sleep and try again (could lead
- * to starvation?). In order to release it's lock a writer will delete the 
- * full lock key from Memcached.
+ * Requesters that fail to acquire the lock retry as described by the region's
+ * {@link KeyLockPolicy}, and give up once its maximum wait has passed. In order
+ * to release it's lock a writer will delete the full lock key from Memcached.
+ * Lock keys expire after the policy's lock timeout, so a lock held by a
+ * crashed requester is eventually released.
  * <p>
  * Can locks be pushed out of memcached if there is too much usage? maybe
  * there is some way to have a separate memcached server for locks?
@@ -31,9 +36,7 @@ import com.googlecode.hibernate.memcached.utils.StringUtils;
  * Does this implementation make sense for what is needed? Would is it safe
  * to allow all read requests to proceed while there was a write request?
  * This implementation mostly assumes that that the requested lock must be
- * acquired before returning (though it isn't really guaranteed). Is it faster
- * to sleep and retry or go to the db? (maybe db would be faster, but would
- * increase load unnecessarily?) I should probably make this a region parameter.
+ * acquired before returning (though it isn't really guaranteed).
  */
 public class UnBlockedReadBlockedWriteKeyLockProvider implements MemcachedReadWriteKeyLockProvider {
 
@@ -42,9 +45,9 @@ public class UnBlockedReadBlockedWriteKeyLockProvider implements MemcachedReadWr
     private HibernateMemcachedClient client;
     private MemcachedRegionSettings settings;
     private long clearIndex;
+    private KeyLockPolicy policy;
     
-    private String fullWriteLockKeyPrefix;
-    private KeyEncodingStrategy keyEncodingStrategy;
+    private KeyBuilder writeLockKeys;
 
     /* Make default constructor private, or could add getters/setters */
     @SuppressWarnings("unused")
@@ -60,11 +63,9 @@ public class UnBlockedReadBlockedWriteKeyLockProvider implements MemcachedReadWr
         this.client = client;
         this.settings = settings;
         this.clearIndex = clearIndex;
+        this.policy = getKeyLockPolicy(settings);
 
-        this.fullWriteLockKeyPrefix = 
-                MemcachedRegionSettingsUtils.getFullWriteLockKeyPrefix(settings);
-        this.keyEncodingStrategy = 
-                MemcachedRegionSettingsUtils.getValidatedMemcachedKeyEncodingStrategy(settings);
+        this.writeLockKeys = RegionKeys.get(settings, clearIndex).getWriteLockKeys();
     }
 
     @Override
@@ -77,18 +78,27 @@ public class UnBlockedReadBlockedWriteKeyLockProvider implements MemcachedReadWr
         return true;
     }
 
+    @Override
+    public Set<String> getReadBlockedKeys(Collection<String> keys) {
+        return Collections.emptySet();
+    }
+
     @Override
     public boolean acquireWriteLock(String key) {
-        String wKey = getWriteLockKey(key);
+        final String wKey = getWriteLockKey(key);
         
-        boolean success = client.add(wKey, 60, 1);
-        while (!success) {
-            log.info("could not acquire write lock for key {}.", key);
-            sleep(1000);
-            success = client.add(wKey, 60, 1);
-        }
+        boolean success = policy.acquire(new KeyLockPolicy.Attempt() {
+            @Override
+            public boolean tryAcquire() {
+                return client.add(wKey, policy.getLockTimeoutSeconds(), 1);
+            }
+        });
         
-        log.trace("acquired write lock for key {}.", key);
+        if (success) {
+            log.trace("acquired write lock for key {}.", key);
+        } else {
+            log.info("could not acquire write lock for key {} within {} ms.", key, policy.getMaxWaitMillis());
+        }
         return success;
     }
 
@@ -109,24 +119,12 @@ public class UnBlockedReadBlockedWriteKeyLockProvider implements MemcachedReadWr
      * @return    a key for the write lock
      */
     private String getWriteLockKey(String key) {
-        return keyEncodingStrategy.encode(concatenateKey(fullWriteLockKeyPrefix, key));
+        return writeLockKeys.build(key);
     }
     
-    private String concatenateKey(String prefix, String key) {
-        return StringUtils.join(settings.getNamespaceSeparator(), prefix, clearIndex, key);
+    private static KeyLockPolicy getKeyLockPolicy(MemcachedRegionSettings settings) {
+        KeyLockPolicy policy = settings.getKeyLockPolicy();
+        return policy != null ? policy : new KeyLockPolicy(settings);
     }
 
-    /**
-     * Puts the thread to sleep for some number of milliseconds.
-     * 
-     * @param millis the number of milliseconds to sleep.
-     */
-    private void sleep(long millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } 
-    }
-    
 }
@@ -35,7 +35,7 @@ public abstract class AbstractGeneralDataRegion extends AbstractMemcachedRegion
 
     @Override
     public void put(Object key, Object value) throws CacheException {
-        createComponentFactory().createMemcacheClient().set(toKey(key), getTimeout(), value);
+        createComponentFactory().createMemcacheClient().set(toKey(key), getCacheTimeSeconds(), value);
     }
 
     @Override
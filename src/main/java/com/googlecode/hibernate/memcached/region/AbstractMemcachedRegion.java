@@ -24,9 +24,17 @@ import org.slf4j.LoggerFactory;
 import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedRegionClient;
+import com.googlecode.hibernate.memcached.client.near.NearCache;
+import com.googlecode.hibernate.memcached.client.near.NearCacheRegionClient;
 import com.googlecode.hibernate.memcached.concurrent.keylock.ConcurrentReadBlockingWriteKeyLockProvider;
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockPolicy;
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockProviderType;
+import com.googlecode.hibernate.memcached.concurrent.keylock.LocalKeyLockProvider;
+import com.googlecode.hibernate.memcached.concurrent.keylock.LocalKeyLocks;
 import com.googlecode.hibernate.memcached.concurrent.keylock.MemcachedReadWriteKeyLockProvider;
+import com.googlecode.hibernate.memcached.concurrent.keylock.MeteredKeyLockProvider;
 import com.googlecode.hibernate.memcached.concurrent.keylock.UnBlockedReadBlockedWriteKeyLockProvider;
+import com.googlecode.hibernate.memcached.stats.RegionStatistics;
 import com.googlecode.hibernate.memcached.strategy.clear.MemcachedRegionClearStrategy;
 
 /**
@@ -34,9 +42,16 @@ import com.googlecode.hibernate.memcached.strategy.clear.MemcachedRegionClearStr
  * <p>
  * This implementation supports region clearing
  * ({@link MemcachedRegionClearStrategy}) and dogpile prevention (stampeding
- * herd prevention?) if enabled in the settings. It also supports key locking
+ * herd prevention?) if enabled in the settings, as well as a local
+ * {@link NearCache} in front of Memcached. It also supports key locking
  * ({@link MemcachedReadWriteKeyLockProvider}), though locks must be enforced
- * by clients.
+ * by clients. The kind of locks is chosen per region, see
+ * {@link KeyLockProviderType}. Memcached write locks are first taken locally
+ * ({@link LocalKeyLocks}) if the region has local key locks.
+ * <p>
+ * If the region records {@link RegionStatistics}, lock acquisitions are
+ * recorded by a {@link MeteredKeyLockProvider}. The element count and size in
+ * memory reported to Hibernate's statistics are those of the near cache.
  * <p>
  * Clients of this region can access the underling Memcached client and lock
  * provider using the {@link #createComponentFactory()} method.
@@ -72,7 +87,12 @@ public abstract class AbstractMemcachedRegion implements MemcachedRegion {
     @Override
     public boolean clear() throws CacheException {
         if (settings.isClearSupported()) {
-            return settings.getClearStrategy().clear();
+            boolean cleared = settings.getClearStrategy().clear();
+            if (cleared && settings.getNearCache() != null) {
+                // the old entries can no longer be read, so free the memory now
+                settings.getNearCache().clear();
+            }
+            return cleared;
         } else {
             return false;
         }
@@ -92,12 +112,37 @@ public abstract class AbstractMemcachedRegion implements MemcachedRegion {
 
             @Override
             public HibernateMemcachedClient createMemcacheClient() {
-                return new HibernateMemcachedRegionClient(client, settings, clearIndex);
+                HibernateMemcachedClient regionClient = new HibernateMemcachedRegionClient(client, settings, clearIndex);
+                NearCache nearCache = settings.getNearCache();
+                return nearCache == null ? regionClient
+                        : new NearCacheRegionClient(regionClient, nearCache, clearIndex, settings.getStatistics());
             }
 
             @Override
             public MemcachedReadWriteKeyLockProvider createMemcachedReadWriteKeyLockProvider() {
-                return new UnBlockedReadBlockedWriteKeyLockProvider(client, settings, clearIndex);
+                MemcachedReadWriteKeyLockProvider provider = createUnmeteredProvider();
+                RegionStatistics statistics = settings.getStatistics();
+                return statistics == null ? provider : new MeteredKeyLockProvider(provider, statistics);
+            }
+
+            private MemcachedReadWriteKeyLockProvider createUnmeteredProvider() {
+                MemcachedReadWriteKeyLockProvider provider = settings.getReadWriteKeyLockProvider();
+                if (provider != null) {
+                    return provider;
+                }
+
+                if (settings.getKeyLockProviderType() == KeyLockProviderType.CONCURRENT_READ_BLOCKING_WRITE) {
+                    provider = new ConcurrentReadBlockingWriteKeyLockProvider(client, settings, clearIndex);
+                } else {
+                    provider = new UnBlockedReadBlockedWriteKeyLockProvider(client, settings, clearIndex);
+                }
+                LocalKeyLocks localKeyLocks = settings.getLocalKeyLocks();
+                if (localKeyLocks == null) {
+                    return provider;
+                }
+                KeyLockPolicy policy = settings.getKeyLockPolicy();
+                return new LocalKeyLockProvider(provider, localKeyLocks,
+                        policy != null ? policy : new KeyLockPolicy(settings));
             }
         };
     }
@@ -121,12 +166,14 @@ public abstract class AbstractMemcachedRegion implements MemcachedRegion {
 
     @Override
     public long getSizeInMemory() {
-        return -1;
+        NearCache nearCache = settings.getNearCache();
+        return nearCache == null ? -1 : nearCache.getBytes();
     }
 
     @Override
     public long getElementCountInMemory() {
-        return -1;
+        NearCache nearCache = settings.getNearCache();
+        return nearCache == null ? -1 : nearCache.size();
     }
 
     @Override
@@ -141,12 +188,28 @@ public abstract class AbstractMemcachedRegion implements MemcachedRegion {
 
     @Override
     public long nextTimestamp() {
-        // why not keep in millis? // is nextTimestamp == now?
-        return System.currentTimeMillis() / 100;
+        return settings.getTimestamper().next();
     }
 
+    /**
+     * Gets the cache time of the region in the units of
+     * {@link #nextTimestamp()}, as Hibernate adds it to timestamps. Timeouts
+     * longer than an <code>int</code> can hold (about 524 seconds with the
+     * default timestamps) are cut short; soft locks use the full
+     * {@link #getLockTimeout()} instead.
+     */
     @Override
     public int getTimeout() {
+        return (int) Math.min(getLockTimeout(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getLockTimeout() {
+        return settings.getTimestamper().fromMillis(settings.getCacheTimeSeconds() * 1000L);
+    }
+
+    @Override
+    public int getCacheTimeSeconds() {
         return settings.getCacheTimeSeconds();
     }
     
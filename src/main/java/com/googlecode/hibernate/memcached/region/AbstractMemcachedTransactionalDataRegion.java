@@ -11,6 +11,8 @@ import org.slf4j.LoggerFactory;
 
 import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.near.NearCache;
+import com.googlecode.hibernate.memcached.concurrent.SingleFlight;
 import com.googlecode.hibernate.memcached.strategy.TransactionalDataRegionAccessStrategyFactory;
 
 /**
@@ -64,6 +66,8 @@ public abstract class AbstractMemcachedTransactionalDataRegion <S extends Region
             if (!metadata.isMutable()) {
                 log.warn("{} cache configured for imutable entity [{}]", AccessType.READ_WRITE, getName());
             }
+            disableNearCache();
+            disableSingleFlight();
             return getReadWriteRegionAccessStrategy();
             
         case NONSTRICT_READ_WRITE:
@@ -83,6 +87,35 @@ public abstract class AbstractMemcachedTransactionalDataRegion <S extends Region
         }
     }
 
+    /**
+     * Drops the {@link NearCache} of this region, if it has one. Read/write
+     * strategies must see a soft lock written by another JVM as soon as it is
+     * in Memcached, which a local copy would hide for up to its time to live.
+     */
+    private void disableNearCache() {
+        MemcachedRegionSettings settings = getSettings();
+        if (settings.getNearCache() != null) {
+            log.warn("Near cache is not supported by {} regions, disabling it for region [{}]",
+                    AccessType.READ_WRITE, getName());
+            settings.setNearCache(null);
+        }
+    }
+
+    /**
+     * Drops the {@link SingleFlight} table of this region, if it has one.
+     * Threads that share a read get the same
+     * {@link com.googlecode.hibernate.memcached.strategy.Lockable} instance,
+     * and read/write strategies lock and unlock these instances in place.
+     */
+    private void disableSingleFlight() {
+        MemcachedRegionSettings settings = getSettings();
+        if (settings.getSingleFlight() != null) {
+            log.info("Single flight is not supported by {} regions, disabling it for region [{}]",
+                    AccessType.READ_WRITE, getName());
+            settings.setSingleFlight(null);
+        }
+    }
+
     @Override
     public boolean isTransactionAware() {
         return false;
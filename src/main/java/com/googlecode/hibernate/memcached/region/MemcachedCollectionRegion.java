@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 
 import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.strategy.CasReadWriteMemcachedCollectionRegionAccessStrategy;
 import com.googlecode.hibernate.memcached.strategy.NonStrictReadWriteMemcachedCollectionRegionAccessStrategy;
 import com.googlecode.hibernate.memcached.strategy.ReadOnlyMemcachedCollectionRegionAccessStrategy;
 import com.googlecode.hibernate.memcached.strategy.ReadWriteMemcachedCollectionRegionAccessStrategy;
@@ -56,6 +57,9 @@ public class MemcachedCollectionRegion
 
     @Override
     public CollectionRegionAccessStrategy getReadWriteRegionAccessStrategy() {
+        if (getSettings().isCasReadWriteEnabled()) {
+            return new CasReadWriteMemcachedCollectionRegionAccessStrategy(this);
+        }
         return new ReadWriteMemcachedCollectionRegionAccessStrategy(this);
     }
 
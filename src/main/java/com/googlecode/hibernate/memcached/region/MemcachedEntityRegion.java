@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 
 import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.strategy.CasReadWriteMemcachedEntityRegionAccessStrategy;
 import com.googlecode.hibernate.memcached.strategy.NonStrictReadWriteMemcachedEntityRegionAccessStrategy;
 import com.googlecode.hibernate.memcached.strategy.ReadOnlyMemcachedEntityRegionAccessStrategy;
 import com.googlecode.hibernate.memcached.strategy.ReadWriteMemcachedEntityRegionAccessStrategy;
@@ -57,6 +58,9 @@ public class MemcachedEntityRegion
 
     @Override
     public EntityRegionAccessStrategy getReadWriteRegionAccessStrategy() {
+        if (getSettings().isCasReadWriteEnabled()) {
+            return new CasReadWriteMemcachedEntityRegionAccessStrategy(this);
+        }
         return new ReadWriteMemcachedEntityRegionAccessStrategy(this);
     }
 
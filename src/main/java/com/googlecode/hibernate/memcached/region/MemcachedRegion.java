@@ -33,6 +33,25 @@ public interface MemcachedRegion extends Region, KeyStrategy {
      * @return the settings for this region
      */
     public MemcachedRegionSettings getSettings();
+
+    /**
+     * Gets the number of seconds Memcached should keep the entries of this
+     * region. Unlike {@link #getTimeout()}, which is in the units of
+     * {@link #nextTimestamp()}, this is the expiry passed to Memcached.
+     * 
+     * @return the cache time of this region, in seconds
+     */
+    public int getCacheTimeSeconds();
+
+    /**
+     * Gets the time a soft lock on an entry of this region is held at most,
+     * in the units of {@link #nextTimestamp()}. This is the cache time of the
+     * region, which {@link #getTimeout()} has to cut short if it does not fit
+     * into an <code>int</code>.
+     * 
+     * @return the soft lock timeout of this region, in timestamp units
+     */
+    public long getLockTimeout();
     
     /**
      * Creates a new {@link MemcachedRegionComponentFactory}.
@@ -0,0 +1,167 @@
+package com.googlecode.hibernate.memcached.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.googlecode.hibernate.memcached.strategy.LockableCodec;
+
+/**
+ * The number and size of the cache entries written by a
+ * {@link LockableCodec}, and how much smaller they are than the same entries
+ * Java serialized.
+ * <p>
+ * Java serializing an entry costs about as much as the encoding saves, so
+ * only one in every {@value #SAMPLE_INTERVAL} encoded entries (starting with
+ * the first) is also Java serialized to measure the savings.
+ * <p>
+ * The values decompressed by
+ * {@link com.googlecode.hibernate.memcached.codec.CompressionPolicy} are
+ * counted here as well, since reading a value does not tell which region it
+ * belongs to. Compressions are counted per region by {@link RegionStatistics}.
+ *
+ * @see StatisticsRegistry
+ */
+public class CodecStatistics implements CodecStatisticsMBean {
+
+    public static final int SAMPLE_INTERVAL = 1024;
+
+    private final AtomicLong sampleClock = new AtomicLong();
+
+    private final StripedCounter encoded = new StripedCounter();
+    private final StripedCounter encodedBytes = new StripedCounter();
+    private final StripedCounter decoded = new StripedCounter();
+    private final StripedCounter sampled = new StripedCounter();
+    private final StripedCounter sampledBytes = new StripedCounter();
+    private final StripedCounter sampledJavaBytes = new StripedCounter();
+    private final StripedCounter decompressNanos = new StripedCounter();
+
+    private final LatencyHistogram decompressTime = new LatencyHistogram();
+
+    // Recording
+
+    /**
+     * Records an encoded entry.
+     *
+     * @param bytes the size of the entry
+     * @return      <code>true</code> if the entry should be sampled
+     */
+    public boolean encoded(int bytes) {
+        encoded.increment();
+        encodedBytes.add(bytes);
+        return sampleClock.getAndIncrement() % SAMPLE_INTERVAL == 0;
+    }
+
+    /**
+     * Records the size of a sampled entry.
+     *
+     * @param bytes     the size of the encoded entry
+     * @param javaBytes the size of the entry when Java serialized
+     */
+    public void sampled(int bytes, int javaBytes) {
+        sampled.increment();
+        sampledBytes.add(bytes);
+        sampledJavaBytes.add(javaBytes);
+    }
+
+    /**
+     * Records a decoded entry.
+     */
+    public void decoded() {
+        decoded.increment();
+    }
+
+    /**
+     * Records a decompressed value.
+     *
+     * @param startNanos the {@link System#nanoTime()} the decompression
+     *                   started
+     */
+    public void decompressed(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        decompressTime.record(nanos);
+        decompressNanos.add(nanos);
+    }
+
+    // CodecStatisticsMBean
+
+    @Override
+    public long getEncodedCount() {
+        return encoded.sum();
+    }
+
+    @Override
+    public long getEncodedBytes() {
+        return encodedBytes.sum();
+    }
+
+    @Override
+    public double getMeanEncodedBytes() {
+        long n = encoded.sum();
+        return n == 0 ? 0 : (double) encodedBytes.sum() / n;
+    }
+
+    @Override
+    public long getDecodedCount() {
+        return decoded.sum();
+    }
+
+    @Override
+    public long getSampledCount() {
+        return sampled.sum();
+    }
+
+    @Override
+    public double getMeanJavaSerializedBytes() {
+        long n = sampled.sum();
+        return n == 0 ? 0 : (double) sampledJavaBytes.sum() / n;
+    }
+
+    @Override
+    public double getMeanSavedBytesPerEntry() {
+        long n = sampled.sum();
+        return n == 0 ? 0 : (double) (sampledJavaBytes.sum() - sampledBytes.sum()) / n;
+    }
+
+    @Override
+    public double getSizeRatio() {
+        long javaBytes = sampledJavaBytes.sum();
+        return javaBytes == 0 ? 0 : (double) sampledBytes.sum() / javaBytes;
+    }
+
+    @Override
+    public long getDecompressedCount() {
+        return decompressTime.getCount();
+    }
+
+    @Override
+    public double getDecompressTimeMeanMicros() {
+        long n = decompressTime.getCount();
+        return n == 0 ? 0 : decompressNanos.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public long getDecompressTime99thPercentileMicros() {
+        return decompressTime.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getDecompressTimeTotalMicros() {
+        return decompressNanos.sum() / 1000;
+    }
+
+    @Override
+    public void reset() {
+        encoded.reset();
+        encodedBytes.reset();
+        decoded.reset();
+        sampled.reset();
+        sampledBytes.reset();
+        sampledJavaBytes.reset();
+        decompressNanos.reset();
+        decompressTime.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CodecStatistics";
+    }
+}
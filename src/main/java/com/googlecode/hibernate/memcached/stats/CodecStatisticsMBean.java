@@ -0,0 +1,53 @@
+package com.googlecode.hibernate.memcached.stats;
+
+/**
+ * The JMX management interface of {@link CodecStatistics}.
+ */
+public interface CodecStatisticsMBean {
+
+    long getEncodedCount();
+
+    long getEncodedBytes();
+
+    double getMeanEncodedBytes();
+
+    long getDecodedCount();
+
+    long getSampledCount();
+
+    /**
+     * Gets the mean size of the sampled entries when Java serialized.
+     */
+    double getMeanJavaSerializedBytes();
+
+    /**
+     * Gets the mean number of bytes saved per sampled entry compared to Java
+     * serialization.
+     */
+    double getMeanSavedBytesPerEntry();
+
+    /**
+     * Gets the size of the sampled entries as a share of their Java
+     * serialized size.
+     */
+    double getSizeRatio();
+
+    long getDecompressedCount();
+
+    /**
+     * Gets the mean time spent decompressing a value.
+     */
+    double getDecompressTimeMeanMicros();
+
+    long getDecompressTime99thPercentileMicros();
+
+    /**
+     * Gets the total time spent decompressing values.
+     */
+    long getDecompressTimeTotalMicros();
+
+    /**
+     * Sets all counters back to zero.
+     */
+    void reset();
+}
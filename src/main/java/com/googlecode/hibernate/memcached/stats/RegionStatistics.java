@@ -0,0 +1,380 @@
+package com.googlecode.hibernate.memcached.stats;
+
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedRegionClient;
+import com.googlecode.hibernate.memcached.concurrent.keylock.MeteredKeyLockProvider;
+import com.googlecode.hibernate.memcached.strategy.clear.MemcachedRegionClearStrategy;
+
+/**
+ * The operation counters and latency histograms of a single region.
+ * <p>
+ * Reads and writes are recorded by the {@link HibernateMemcachedRegionClient}s
+ * of the region, lock acquisitions by a {@link MeteredKeyLockProvider}. Reads
+ * answered by the region's near cache count as hits without a latency. A
+ * multi get counts one hit or miss per key and one read latency.
+ * <p>
+ * Evictions are deletes of region keys, as made when Hibernate evicts or
+ * removes an entry. Errors are exceptions thrown by the Memcached client;
+ * failures that the client reports to its exception handler instead of
+ * throwing are not counted.
+ * <p>
+ * Compressions are recorded by the region's
+ * {@link com.googlecode.hibernate.memcached.codec.CompressionPolicy}. A value
+ * whose compressed form did not save enough is stored uncompressed and counts
+ * as skipped; the time spent compressing it is recorded all the same.
+ * <p>
+ * The refresh lag of the clear index is read from the region's
+ * {@link MemcachedRegionClearStrategy} when it is requested.
+ *
+ * @see StatisticsRegistry
+ */
+public class RegionStatistics implements RegionStatisticsMBean {
+
+    private final String regionName;
+
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final StripedCounter nearCacheHits = new StripedCounter();
+    private final StripedCounter puts = new StripedCounter();
+    private final StripedCounter evictions = new StripedCounter();
+    private final StripedCounter errors = new StripedCounter();
+    private final StripedCounter lockAcquisitions = new StripedCounter();
+    private final StripedCounter lockTimeouts = new StripedCounter();
+    private final StripedCounter compressions = new StripedCounter();
+    private final StripedCounter compressionsSkipped = new StripedCounter();
+    private final StripedCounter uncompressedBytes = new StripedCounter();
+    private final StripedCounter compressedBytes = new StripedCounter();
+    private final StripedCounter compressNanos = new StripedCounter();
+
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LatencyHistogram compressTime = new LatencyHistogram();
+
+    private volatile MemcachedRegionClearStrategy clearStrategy;
+
+    /**
+     * Creates a new {@link RegionStatistics}.
+     *
+     * @param regionName the name of the region
+     */
+    public RegionStatistics(String regionName) {
+        this.regionName = regionName;
+    }
+
+    /**
+     * Sets the clear strategy whose refresh lag is reported.
+     *
+     * @param clearStrategy the clear strategy of the region
+     */
+    public void setClearStrategy(MemcachedRegionClearStrategy clearStrategy) {
+        this.clearStrategy = clearStrategy;
+    }
+
+    // Recording
+
+    /**
+     * Records a read from Memcached.
+     *
+     * @param hits       the number of keys found
+     * @param misses     the number of keys not found
+     * @param startNanos the {@link System#nanoTime()} the read started, or
+     *                   <code>-1</code> if its latency is unknown
+     */
+    public void read(int hits, int misses, long startNanos) {
+        if (hits > 0) {
+            this.hits.add(hits);
+        }
+        if (misses > 0) {
+            this.misses.add(misses);
+        }
+        if (startNanos != -1) {
+            readLatency.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Records a read answered by the near cache.
+     */
+    public void nearCacheHit() {
+        hits.increment();
+        nearCacheHits.increment();
+    }
+
+    /**
+     * Records a write of the given number of keys to Memcached.
+     *
+     * @param count      the number of keys written
+     * @param startNanos the {@link System#nanoTime()} the write started, or
+     *                   <code>-1</code> if its latency is unknown
+     */
+    public void put(int count, long startNanos) {
+        puts.add(count);
+        if (startNanos != -1) {
+            writeLatency.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Records a delete of the given number of keys from Memcached.
+     *
+     * @param count      the number of keys deleted
+     * @param startNanos the {@link System#nanoTime()} the delete started, or
+     *                   <code>-1</code> if its latency is unknown
+     */
+    public void evict(int count, long startNanos) {
+        evictions.add(count);
+        if (startNanos != -1) {
+            writeLatency.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Records an exception thrown by the Memcached client.
+     */
+    public void error() {
+        errors.increment();
+    }
+
+    /**
+     * Records an attempt to acquire a key lock.
+     *
+     * @param acquired   <code>true</code> if the lock was acquired,
+     *                   <code>false</code> if the attempt gave up
+     * @param startNanos the {@link System#nanoTime()} the attempt started
+     */
+    public void lock(boolean acquired, long startNanos) {
+        if (acquired) {
+            lockAcquisitions.increment();
+        } else {
+            lockTimeouts.increment();
+        }
+        lockWait.recordSince(startNanos);
+    }
+
+    /**
+     * Records the compression of a value.
+     *
+     * @param bytes           the size of the value
+     * @param compressedBytes the size of its compressed form
+     * @param stored          <code>true</code> if the compressed form is
+     *                        stored, <code>false</code> if it did not save
+     *                        enough
+     * @param startNanos      the {@link System#nanoTime()} the compression
+     *                        started
+     */
+    public void compression(int bytes, int compressedBytes, boolean stored, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        compressTime.record(nanos);
+        compressNanos.add(nanos);
+        if (stored) {
+            compressions.increment();
+            uncompressedBytes.add(bytes);
+            this.compressedBytes.add(compressedBytes);
+        } else {
+            compressionsSkipped.increment();
+        }
+    }
+
+    // RegionStatisticsMBean
+
+    @Override
+    public String getRegionName() {
+        return regionName;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public long getNearCacheHitCount() {
+        return nearCacheHits.sum();
+    }
+
+    @Override
+    public long getPutCount() {
+        return puts.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getLockAcquisitionCount() {
+        return lockAcquisitions.sum();
+    }
+
+    @Override
+    public long getLockTimeoutCount() {
+        return lockTimeouts.sum();
+    }
+
+    @Override
+    public double getReadLatencyMeanMicros() {
+        return readLatency.getMeanMicros();
+    }
+
+    @Override
+    public long getReadLatency50thPercentileMicros() {
+        return readLatency.getPercentileMicros(50);
+    }
+
+    @Override
+    public long getReadLatency99thPercentileMicros() {
+        return readLatency.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getReadLatencyMaxMicros() {
+        return readLatency.getMaxMicros();
+    }
+
+    @Override
+    public double getWriteLatencyMeanMicros() {
+        return writeLatency.getMeanMicros();
+    }
+
+    @Override
+    public long getWriteLatency50thPercentileMicros() {
+        return writeLatency.getPercentileMicros(50);
+    }
+
+    @Override
+    public long getWriteLatency99thPercentileMicros() {
+        return writeLatency.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getWriteLatencyMaxMicros() {
+        return writeLatency.getMaxMicros();
+    }
+
+    @Override
+    public double getLockWaitMeanMicros() {
+        return lockWait.getMeanMicros();
+    }
+
+    @Override
+    public long getLockWait50thPercentileMicros() {
+        return lockWait.getPercentileMicros(50);
+    }
+
+    @Override
+    public long getLockWait99thPercentileMicros() {
+        return lockWait.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getLockWaitMaxMicros() {
+        return lockWait.getMaxMicros();
+    }
+
+    @Override
+    public long getCompressedCount() {
+        return compressions.sum();
+    }
+
+    @Override
+    public long getCompressionSkippedCount() {
+        return compressionsSkipped.sum();
+    }
+
+    @Override
+    public long getCompressionSavedBytes() {
+        return uncompressedBytes.sum() - compressedBytes.sum();
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        long bytes = uncompressedBytes.sum();
+        return bytes == 0 ? 0 : (double) compressedBytes.sum() / bytes;
+    }
+
+    @Override
+    public double getCompressTimeMeanMicros() {
+        long n = compressions.sum() + compressionsSkipped.sum();
+        return n == 0 ? 0 : compressNanos.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public long getCompressTime99thPercentileMicros() {
+        return compressTime.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getCompressTimeTotalMicros() {
+        return compressNanos.sum() / 1000;
+    }
+
+    @Override
+    public long getClearIndexRefreshLagMillis() {
+        MemcachedRegionClearStrategy strategy = clearStrategy;
+        if (strategy == null || !strategy.isCached()) {
+            return -1;
+        }
+        long lag = strategy.getRefreshLagMillis();
+        return lag == Long.MAX_VALUE ? -1 : lag;
+    }
+
+    @Override
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        nearCacheHits.reset();
+        puts.reset();
+        evictions.reset();
+        errors.reset();
+        lockAcquisitions.reset();
+        lockTimeouts.reset();
+        compressions.reset();
+        compressionsSkipped.reset();
+        uncompressedBytes.reset();
+        compressedBytes.reset();
+        compressNanos.reset();
+        readLatency.reset();
+        writeLatency.reset();
+        lockWait.reset();
+        compressTime.reset();
+    }
+
+    public LatencyHistogram getReadLatency() {
+        return readLatency;
+    }
+
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    public LatencyHistogram getCompressTime() {
+        return compressTime;
+    }
+
+    @Override
+    public String toString() {
+        return "RegionStatistics (" + regionName + ")";
+    }
+}
@@ -0,0 +1,100 @@
+package com.googlecode.hibernate.memcached.stats;
+
+/**
+ * The JMX management interface of {@link RegionStatistics}.
+ * <p>
+ * Latencies are given in microseconds. Percentiles are accurate to about
+ * 6%, see {@link LatencyHistogram}.
+ */
+public interface RegionStatisticsMBean {
+
+    String getRegionName();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRatio();
+
+    long getNearCacheHitCount();
+
+    long getPutCount();
+
+    long getEvictionCount();
+
+    long getErrorCount();
+
+    long getLockAcquisitionCount();
+
+    long getLockTimeoutCount();
+
+    double getReadLatencyMeanMicros();
+
+    long getReadLatency50thPercentileMicros();
+
+    long getReadLatency99thPercentileMicros();
+
+    long getReadLatencyMaxMicros();
+
+    double getWriteLatencyMeanMicros();
+
+    long getWriteLatency50thPercentileMicros();
+
+    long getWriteLatency99thPercentileMicros();
+
+    long getWriteLatencyMaxMicros();
+
+    double getLockWaitMeanMicros();
+
+    long getLockWait50thPercentileMicros();
+
+    long getLockWait99thPercentileMicros();
+
+    long getLockWaitMaxMicros();
+
+    long getCompressedCount();
+
+    /**
+     * Gets the number of values compressed but stored uncompressed, as their
+     * compressed form did not save enough.
+     */
+    long getCompressionSkippedCount();
+
+    /**
+     * Gets the number of bytes saved by storing values compressed.
+     */
+    long getCompressionSavedBytes();
+
+    /**
+     * Gets the size of the values stored compressed as a share of their
+     * uncompressed size.
+     */
+    double getCompressionRatio();
+
+    /**
+     * Gets the mean time spent compressing a value, whether it was stored
+     * compressed or not.
+     */
+    double getCompressTimeMeanMicros();
+
+    long getCompressTime99thPercentileMicros();
+
+    /**
+     * Gets the total time spent compressing values.
+     */
+    long getCompressTimeTotalMicros();
+
+    /**
+     * Gets the time since the region's locally cached clear index was last
+     * read from (or written to) Memcached.
+     *
+     * @return the refresh lag in milliseconds, or <code>-1</code> if the
+     *         region has no cached clear index
+     */
+    long getClearIndexRefreshLagMillis();
+
+    /**
+     * Sets all counters and latency histograms back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,143 @@
+package com.googlecode.hibernate.memcached.stats;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionFactory;
+import com.googlecode.hibernate.memcached.strategy.clear.ClearIndexRefresher;
+
+/**
+ * Holds the {@link RegionStatistics} of all regions of a
+ * {@link MemcachedRegionFactory} and registers them as MBeans with the
+ * platform {@link MBeanServer}, named
+ * <code>com.googlecode.hibernate.memcached:type=RegionStatistics,name=[region-name]</code>.
+ * The {@link CodecStatistics} are registered as
+ * <code>com.googlecode.hibernate.memcached:type=CodecStatistics</code>, and
+ * the {@link ClearIndexRefresher} as
+ * <code>com.googlecode.hibernate.memcached:type=ClearIndexRefresher</code>.
+ * <p>
+ * A region that is built again (e.g. by a second session factory using the
+ * same region names) shares the statistics of the first. Failing to register
+ * an MBean is logged and does not stop the region from being used.
+ */
+public class StatisticsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(StatisticsRegistry.class);
+
+    public static final String DOMAIN = "com.googlecode.hibernate.memcached";
+
+    private final ConcurrentMap<String, RegionStatistics> regions = new ConcurrentHashMap<String, RegionStatistics>();
+    private final Map<String, ObjectName> registered = new ConcurrentHashMap<String, ObjectName>();
+    private final MBeanServer mbeanServer;
+
+    /**
+     * Creates a registry that registers MBeans with the platform
+     * {@link MBeanServer}.
+     */
+    public StatisticsRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Creates a new {@link StatisticsRegistry}.
+     *
+     * @param mbeanServer the server to register MBeans with, or
+     *                    <code>null</code> to not register them
+     */
+    public StatisticsRegistry(MBeanServer mbeanServer) {
+        this.mbeanServer = mbeanServer;
+    }
+
+    /**
+     * Gets the statistics of the given region, creating and registering them
+     * if necessary.
+     *
+     * @param regionName the name of the region
+     * @return           the statistics of the region
+     */
+    public RegionStatistics getRegionStatistics(String regionName) {
+        RegionStatistics statistics = regions.get(regionName);
+        if (statistics != null) {
+            return statistics;
+        }
+
+        statistics = new RegionStatistics(regionName);
+        RegionStatistics existing = regions.putIfAbsent(regionName, statistics);
+        if (existing != null) {
+            return existing;
+        }
+        register(regionName, statistics);
+        return statistics;
+    }
+
+    /**
+     * Gets the statistics of all regions built so far.
+     */
+    public Collection<RegionStatistics> getRegionStatistics() {
+        return Collections.unmodifiableCollection(regions.values());
+    }
+
+    /**
+     * Registers the statistics of the codec used to store cache entries.
+     *
+     * @param statistics the statistics of the codec
+     */
+    public void registerCodecStatistics(CodecStatistics statistics) {
+        register(DOMAIN + ":type=CodecStatistics", statistics);
+    }
+
+    /**
+     * Registers the refresher of the locally cached clear indices.
+     *
+     * @param refresher the refresher of the clear indices
+     */
+    public void registerClearIndexRefresher(ClearIndexRefresher refresher) {
+        register(DOMAIN + ":type=ClearIndexRefresher", refresher);
+    }
+
+    /**
+     * Unregisters all MBeans registered by this registry.
+     */
+    public void shutdown() {
+        for (ObjectName name : registered.values()) {
+            try {
+                mbeanServer.unregisterMBean(name);
+            } catch (JMException e) {
+                log.warn("Unable to unregister MBean " + name, e);
+            }
+        }
+        registered.clear();
+    }
+
+    private void register(String regionName, RegionStatistics statistics) {
+        register(DOMAIN + ":type=RegionStatistics,name=" + ObjectName.quote(regionName), statistics);
+    }
+
+    private void register(String objectName, Object mbean) {
+        if (mbeanServer == null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(objectName);
+            mbeanServer.registerMBean(mbean, name);
+            registered.put(objectName, name);
+            log.debug("Registered MBean {}", name);
+        } catch (InstanceAlreadyExistsException e) {
+            log.warn("{} is already registered by another region factory, not registering it again", objectName);
+        } catch (JMException e) {
+            log.warn("Unable to register " + objectName, e);
+        }
+    }
+}
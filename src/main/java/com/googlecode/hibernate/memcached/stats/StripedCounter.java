@@ -0,0 +1,74 @@
+package com.googlecode.hibernate.memcached.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that is cheap to update from many threads at once.
+ * <p>
+ * Updates are spread over a number of cells, picked by the id of the
+ * updating thread, so that threads on different cores rarely touch the same
+ * cache line. Each cell is padded to its own cache line. Reading the counter
+ * sums all cells; a sum taken while the counter is updated may miss the
+ * updates in flight.
+ */
+public class StripedCounter {
+
+    private static final int PADDING = 8;
+    private static final int CELLS = cellCount(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray cells = new AtomicLongArray(CELLS * PADDING);
+
+    /**
+     * Adds one to this counter.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Adds the given amount to this counter.
+     *
+     * @param amount the amount to add
+     */
+    public void add(long amount) {
+        cells.addAndGet(cellIndex(), amount);
+    }
+
+    /**
+     * Gets the sum of all updates made since the counter was created or last
+     * reset.
+     *
+     * @return the current value of the counter
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < CELLS; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * Sets the counter back to zero. Updates made while the counter is reset
+     * may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < CELLS; i++) {
+            cells.set(i * PADDING, 0);
+        }
+    }
+
+    private static int cellIndex() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash >>> 16) & (CELLS - 1)) * PADDING;
+    }
+
+    private static int cellCount(int processors) {
+        int cells = 1;
+        while (cells < processors * 2 && cells < 64) {
+            cells <<= 1;
+        }
+        return cells;
+    }
+}
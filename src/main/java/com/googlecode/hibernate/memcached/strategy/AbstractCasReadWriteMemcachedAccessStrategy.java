@@ -0,0 +1,354 @@
+/* Copyright 2008 Ray Krueger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.hibernate.memcached.strategy;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.access.RegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.client.CasValue;
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockPolicy;
+import com.googlecode.hibernate.memcached.region.MemcachedRegion;
+
+/**
+ * An abstract read/write {@link RegionAccessStrategy} that uses memcached's
+ * CAS (check and set) support instead of key locks.
+ * <p>
+ * Every write reads the current {@link Lockable} with
+ * {@link HibernateMemcachedClient#gets(String)}, decides what the new value
+ * should be and stores it with {@link HibernateMemcachedClient#cas(String, long, int, Object)}
+ * (or {@link HibernateMemcachedClient#add(String, int, Object)} if nothing is
+ * stored yet). If another writer modified the entry in the meantime the
+ * operation is retried against the new value, backing off between attempts
+ * as the region's {@link KeyLockPolicy} does between lock attempts. A write
+ * costs about two round trips and no lock keys are created.
+ *
+ * @param <T> the underling {@link MemcachedRegion} implementation type
+ *
+ * @see AbstractReadWriteMemcachedAccessStrategy
+ */
+public class AbstractCasReadWriteMemcachedAccessStrategy <T extends MemcachedRegion>
+    extends AbstractMemcachedRegionAccessStrategy<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractCasReadWriteMemcachedAccessStrategy.class);
+
+    /**
+     * The number of times a write is attempted before giving up.
+     */
+    protected static final int MAX_CAS_ATTEMPTS = 10;
+
+    private final AtomicLong nextLockId = new AtomicLong();
+    private final UUID uuid = UUID.randomUUID();
+
+    private final Comparator<?> versionComparator;
+
+    /**
+     * Creates a CAS based read/write cache access strategy around the given
+     * cache region.
+     */
+    public AbstractCasReadWriteMemcachedAccessStrategy(T region, CacheDataDescription cacheDataDescription) {
+        super(region);
+        this.versionComparator = cacheDataDescription.getVersionComparator();
+    }
+
+    /**
+     * {@inheritDoc}</br>
+     * Returns <code>null</code> if the item is not readable.
+     * Locked items are not readable, nor are items created
+     * after the start of this transaction.
+     */
+    @Override
+    public final Object get(Object key, long txTimestamp) throws CacheException {
+        String objectKey = toKey(key);
+        Lockable item = (Lockable) createMemcacheClient().get(objectKey);
+
+        if (item != null && item.isReadable(txTimestamp)) {
+            return item.getValue();
+        }
+
+        log.debug("Could not get item for key {}", objectKey);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}</br>
+     * All keys are read with a single request. Items that are not readable
+     * are left out.
+     */
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys, long txTimestamp) throws CacheException {
+        Map<Object, Object> result = getMulti(createMemcacheClient(), toKeys(keys));
+        for (Iterator<Map.Entry<Object, Object>> it = result.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Object, Object> entry = it.next();
+            Lockable item = (Lockable) entry.getValue();
+            Object value = item.isReadable(txTimestamp) ? item.getValue() : null;
+            if (value != null) {
+                entry.setValue(value);
+            } else {
+                it.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}</br>
+     * Soft-lock a cache item. If the lock can not be stored the item is
+     * removed from the cache instead, so that no stale value can be read.
+     */
+    @Override
+    public final SoftLock lockItem(Object key, Object version) throws CacheException {
+        CasUpdate<Lock> update = new CasUpdate<Lock>(version) {
+            @Override
+            public Lockable apply(Lockable item, MemcachedRegion region) {
+                Object version = args[0];
+                long timeout = region.nextTimestamp() + region.getLockTimeout();
+                result = (item == null) ? new Lock(timeout, uuid, nextLockId(), version) : item.lock(timeout, uuid, nextLockId());
+                return result;
+            }
+        };
+
+        String objectKey = toKey(key);
+        HibernateMemcachedClient client = createMemcacheClient();
+        if (!casUpdate(client, objectKey, update)) {
+            log.info("Could not lockItem for key {}, removing it", objectKey);
+            client.delete(objectKey);
+            return null;
+        }
+
+        return update.result();
+    }
+
+    /**
+     * {@inheritDoc}</br>
+     * Returns <code>false</code> and fails to put the value if there is an
+     * existing un-writeable item mapped to this key.
+     */
+    @Override
+    public final boolean putFromLoad(Object key, Object value, long txTimestamp, Object version, boolean minimalPutOverride) throws CacheException {
+        CasUpdate<Boolean> update = new CasUpdate<Boolean>(value, txTimestamp, version) {
+            @Override
+            public Lockable apply(Lockable item, MemcachedRegion region) {
+                Object value = args[0];    long txTimestamp = (Long) args[1];
+                Object version = args[2];
+
+                boolean writeable = item == null || item.isWriteable(txTimestamp, version, versionComparator);
+                return writeable ? new Item(value, version, region.nextTimestamp()) : null;
+            }
+        };
+
+        String objectKey = toKey(key);
+        boolean success = casUpdate(createMemcacheClient(), objectKey, update);
+
+        if (!success) {
+            log.debug("Could not putFromLoad item for key {}", objectKey);
+        }
+
+        return success;
+    }
+
+    @Override
+    public void remove(Object key) throws CacheException {
+        String objectKey = toKey(key);
+
+        if (!createMemcacheClient().delete(objectKey)) {
+            log.warn("Could not remove item for key {}", objectKey);
+        }
+    }
+
+    /**
+     * {@inheritDoc}</br>
+     * Soft-unlock a cache item.
+     */
+    @Override
+    public final void unlockItem(Object key, SoftLock lock) throws CacheException {
+        CasUpdate<Boolean> update = new CasUpdate<Boolean>(lock) {
+            @Override
+            public Lockable apply(Lockable item, MemcachedRegion region) {
+                SoftLock lock = (SoftLock) args[0];
+
+                if (item != null && item.isUnlockable(lock)) {
+                    return decrementLock((Lock) item);
+                } else {
+                    return handleLockExpiry(item);
+                }
+            }
+        };
+
+        String objectKey = toKey(key);
+        if (!casUpdate(createMemcacheClient(), objectKey, update)) {
+            log.info("Could not unlockItem for key {}", objectKey);
+        }
+    }
+
+    /**
+     * Unlocks the given lock.
+     *
+     * @param lock the lock to unlock
+     * @return     the unlocked lock, to be stored in place of the given one
+     */
+    protected Lock decrementLock(Lock lock) {
+        lock.unlock(getRegion().nextTimestamp());
+        return lock;
+    }
+
+    /**
+     * Handles the timeout of a previous lock mapped to this key.
+     *
+     * @param lock the current entry for the key, may be <code>null</code>
+     * @return     a new lock that times out immediately, to be stored in place
+     *             of the given entry
+     */
+    protected Lock handleLockExpiry(Lockable lock) {
+        log.warn("Cache " + getRegion().getName() + " Lockable : " + lock + "\n"
+                + "A soft-locked cache entry was expired by the underlying Memcache. "
+                + "If this happens regularly you should consider increasing the cache timeouts and/or capacity limits");
+        long now = getRegion().nextTimestamp();
+        // create new lock that times out immediately
+        Lock newLock = new Lock(now, uuid, nextLockId(), null);
+        newLock.unlock(now);
+        return newLock;
+    }
+
+    /**
+     * Applies the given update to the entry stored under the given key. The
+     * entry is read with {@link HibernateMemcachedClient#gets(String)} and the
+     * new value is written with {@link HibernateMemcachedClient#cas(String, long, int, Object)},
+     * or with {@link HibernateMemcachedClient#add(String, int, Object)} when
+     * there was no entry. If the entry was modified concurrently the update is
+     * applied again to the new entry, up to {@link #MAX_CAS_ATTEMPTS} times
+     * and within the maximum wait of the region's {@link KeyLockPolicy},
+     * which also decides how long to back off between attempts.
+     *
+     * @param client    the client used to access memcached
+     * @param objectKey the key of the entry to update
+     * @param update    the update to apply
+     * @return          <code>true</code> if the new value was stored,
+     *                  <code>false</code> if the update declined to write or
+     *                  all attempts failed
+     */
+    protected boolean casUpdate(HibernateMemcachedClient client, String objectKey, CasUpdate<?> update) {
+        CasAttempt attempt = new CasAttempt(client, objectKey, update);
+        getKeyLockPolicy().acquire(attempt);
+
+        if (!attempt.stored && !attempt.declined) {
+            log.info("Gave up updating key {} after {} attempts", objectKey, attempt.attempts);
+        }
+        return attempt.stored;
+    }
+
+    private KeyLockPolicy getKeyLockPolicy() {
+        KeyLockPolicy policy = getRegion().getSettings().getKeyLockPolicy();
+        return policy != null ? policy : new KeyLockPolicy(getRegion().getSettings());
+    }
+
+    protected HibernateMemcachedClient createMemcacheClient() {
+        return getRegion().createComponentFactory().createMemcacheClient();
+    }
+
+    private long nextLockId() {
+        return nextLockId.getAndIncrement();
+    }
+
+    /**
+     * A single read and conditional write of
+     * {@link AbstractCasReadWriteMemcachedAccessStrategy#casUpdate(HibernateMemcachedClient, String, CasUpdate)}.
+     * It reports success once the update was stored or declined to write, or
+     * once {@link AbstractCasReadWriteMemcachedAccessStrategy#MAX_CAS_ATTEMPTS}
+     * attempts were made, so the policy stops retrying.
+     */
+    private final class CasAttempt implements KeyLockPolicy.Attempt {
+        private final HibernateMemcachedClient client;
+        private final String objectKey;
+        private final CasUpdate<?> update;
+
+        private int attempts;
+        private boolean stored;
+        private boolean declined;
+
+        CasAttempt(HibernateMemcachedClient client, String objectKey, CasUpdate<?> update) {
+            this.client = client;
+            this.objectKey = objectKey;
+            this.update = update;
+        }
+
+        @Override
+        public boolean tryAcquire() {
+            if (attempts == MAX_CAS_ATTEMPTS) {
+                return true;
+            }
+            attempts++;
+
+            MemcachedRegion region = getRegion();
+            CasValue current = client.gets(objectKey);
+            Lockable item = current == null ? null : (Lockable) current.getValue();
+
+            Lockable next = update.apply(item, region);
+            if (next == null) {
+                declined = true;
+                return true;
+            }
+
+            stored = (current == null)
+                    ? client.add(objectKey, region.getCacheTimeSeconds(), next)
+                    : client.cas(objectKey, current.getCas(), region.getCacheTimeSeconds(), next);
+            if (!stored) {
+                log.debug("Concurrent modification of key {}, retrying", objectKey);
+            }
+            return stored;
+        }
+    }
+
+    /**
+     * An update of a single cache entry, applied by
+     * {@link AbstractCasReadWriteMemcachedAccessStrategy#casUpdate(HibernateMemcachedClient, String, CasUpdate)}.
+     * It may be applied several times if the entry is modified concurrently,
+     * so it should not have side effects other than on the given entry.
+     */
+    @SuppressWarnings("hiding")
+    protected abstract class CasUpdate<T extends Object> {
+        protected Object[] args;
+        protected T result;
+
+        public CasUpdate(Object ... args) {
+            this.args = args;
+        }
+
+        /**
+         * Computes the new value of an entry.
+         *
+         * @param item   the current entry, or <code>null</code>
+         * @param region the region the entry belongs to
+         * @return       the value to store, or <code>null</code> to leave the
+         *               entry unchanged
+         */
+        public abstract Lockable apply(Lockable item, MemcachedRegion region);
+
+        public T result() {
+            return result;
+        }
+    }
+}
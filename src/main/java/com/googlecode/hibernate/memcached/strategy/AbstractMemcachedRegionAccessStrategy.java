@@ -14,22 +14,32 @@
  */
 package com.googlecode.hibernate.memcached.strategy;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.hibernate.cache.CacheException;
 import org.hibernate.cache.spi.access.RegionAccessStrategy;
 import org.hibernate.cache.spi.access.SoftLock;
 import org.hibernate.cfg.Settings;
 
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.client.near.NearCache;
 import com.googlecode.hibernate.memcached.region.MemcachedRegion;
 
 /**
  * An abstract implementation of the {@link RegionAccessStrategy} interface.
+ * <p>
+ * By default {@link #getAll(Collection, long)} reads one key at a time;
+ * subclasses that can read a batch of keys in one request override it.
  * 
  * @author kcarlson
  *
  * @param <T> the underling {@link MemcachedRegion} implementation type
  */
 public abstract class AbstractMemcachedRegionAccessStrategy<T extends MemcachedRegion>
-    implements RegionAccessStrategy {
+    implements BulkRegionAccessStrategy {
 
     private T region;
     private Settings settings;
@@ -44,6 +54,18 @@ public abstract class AbstractMemcachedRegionAccessStrategy<T extends MemcachedR
         this.settings = region.getSettings().getHibernateSettings();
     }
 
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys, long txTimestamp) throws CacheException {
+        Map<Object, Object> result = new HashMap<Object, Object>(keys.size() * 2);
+        for (Object key : keys) {
+            Object value = get(key, txTimestamp);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
     @Override
     public void evict(Object key) throws CacheException {
         region.createComponentFactory().createMemcacheClient().delete(toKey(key));
@@ -88,6 +110,58 @@ public abstract class AbstractMemcachedRegionAccessStrategy<T extends MemcachedR
         //throw new UnsupportedOperationException("Region level locking is not supported.");
     }
     
+    /**
+     * Removes the local copy of the given key from the region's
+     * {@link NearCache}, if it has one. Called before reading an entry that
+     * is about to be modified, so the decision is based on the value stored
+     * in Memcached.
+     * 
+     * @param objectKey the key of the entry
+     */
+    protected void invalidateNearCache(String objectKey) {
+        NearCache nearCache = region.getSettings().getNearCache();
+        if (nearCache != null) {
+            nearCache.invalidate(objectKey);
+        }
+    }
+
+    /**
+     * Turns the given keys into object keys.
+     * 
+     * @param keys the keys as given by Hibernate
+     * @return     a {@link Map} of each object key to the key it was made of,
+     *             in the order of the given keys
+     */
+    protected Map<String, Object> toKeys(Collection<?> keys) {
+        Map<String, Object> objectKeys = new LinkedHashMap<String, Object>(keys.size() * 2);
+        for (Object key : keys) {
+            objectKeys.put(toKey(key), key);
+        }
+        return objectKeys;
+    }
+
+    /**
+     * Reads the given object keys with a single
+     * {@link HibernateMemcachedClient#getMulti(String...)}.
+     * 
+     * @param client     the client to read with
+     * @param objectKeys a {@link Map} of each object key to its original key,
+     *                   see {@link #toKeys(Collection)}
+     * @return           a {@link Map} of each original key to the object
+     *                   stored under its object key, if there is one
+     */
+    protected Map<Object, Object> getMulti(HibernateMemcachedClient client, Map<String, Object> objectKeys) {
+        Map<String, Object> values = client.getMulti(objectKeys.keySet().toArray(new String[objectKeys.size()]));
+        Map<Object, Object> result = new HashMap<Object, Object>(values.size() * 2);
+        for (Map.Entry<String, Object> entry : objectKeys.entrySet()) {
+            Object value = values.get(entry.getKey());
+            if (value != null) {
+                result.put(entry.getValue(), value);
+            }
+        }
+        return result;
+    }
+
     /**
      * Convenience method for turning an object into a key.
      * 
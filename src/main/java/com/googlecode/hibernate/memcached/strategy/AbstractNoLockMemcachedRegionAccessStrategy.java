@@ -1,10 +1,14 @@
 package com.googlecode.hibernate.memcached.strategy;
 
+import java.util.Collection;
+import java.util.Map;
+
 import org.hibernate.cache.CacheException;
 import org.hibernate.cache.spi.access.RegionAccessStrategy;
 import org.hibernate.cache.spi.access.SoftLock;
 
 import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+import com.googlecode.hibernate.memcached.concurrent.SingleFlight;
 import com.googlecode.hibernate.memcached.region.MemcachedRegion;
 import com.googlecode.hibernate.memcached.region.MemcachedRegionComponentFactory;
 
@@ -30,6 +34,11 @@ public class AbstractNoLockMemcachedRegionAccessStrategy<T extends MemcachedRegi
         return getRegion().createComponentFactory().createMemcacheClient().get(toKey(key));
     }
 
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys, long txTimestamp) throws CacheException {
+        return getMulti(getRegion().createComponentFactory().createMemcacheClient(), toKeys(keys));
+    }
+
     @Override
     public SoftLock lockItem(Object key, Object version) throws CacheException {
         return null;
@@ -40,12 +49,18 @@ public class AbstractNoLockMemcachedRegionAccessStrategy<T extends MemcachedRegi
         MemcachedRegion region = getRegion();
         MemcachedRegionComponentFactory componentFactory = region.createComponentFactory();
         HibernateMemcachedClient client = componentFactory.createMemcacheClient();
+        String objectKey = toKey(key);
+        
+        if (minimalPutOverride && client.get(objectKey) != null) {
+            return false;
+        }
         
-        if (minimalPutOverride && client.get(toKey(key)) != null) {
+        SingleFlight singleFlight = region.getSettings().getSingleFlight();
+        if (singleFlight != null && !singleFlight.claimLoad(objectKey)) {
+            // another thread that shared the same miss already put the value
             return false;
-        } else {
-            return client.set(toKey(key), region.getTimeout(), value);
         }
+        return client.set(objectKey, region.getCacheTimeSeconds(), value);
     }
     
     @Override
@@ -14,7 +14,12 @@
  */
 package com.googlecode.hibernate.memcached.strategy;
 
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -92,6 +97,43 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
     
         return execution.result();
     }
+
+    /**
+     * {@inheritDoc}</br>
+     * No read locks are taken. The key lock provider is asked once, without
+     * waiting, which keys are locked against reads; those are treated as
+     * misses, and all other keys are read with a single request.
+     */
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys, long txTimestamp) throws CacheException {
+        MemcachedRegion region = getRegion();
+        MemcachedRegionComponentFactory componentFactory = region.createComponentFactory();
+        HibernateMemcachedClient client = componentFactory.createMemcacheClient();
+        MemcachedReadWriteKeyLockProvider lockProvider = componentFactory.createMemcachedReadWriteKeyLockProvider();
+
+        Map<String, Object> objectKeys = toKeys(keys);
+        Set<String> blocked = lockProvider.getReadBlockedKeys(objectKeys.keySet());
+        if (!blocked.isEmpty()) {
+            log.info("Keys {} are locked, not reading them", blocked);
+            objectKeys.keySet().removeAll(blocked);
+        }
+        if (objectKeys.isEmpty()) {
+            return new HashMap<Object, Object>();
+        }
+
+        Map<Object, Object> result = getMulti(client, objectKeys);
+        for (Iterator<Map.Entry<Object, Object>> it = result.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Object, Object> entry = it.next();
+            Lockable item = (Lockable) entry.getValue();
+            Object value = item.isReadable(txTimestamp) ? item.getValue() : null;
+            if (value != null) {
+                entry.setValue(value);
+            } else {
+                it.remove();
+            }
+        }
+        return result;
+    }
  
     /**
      * {@inheritDoc}</br>
@@ -105,9 +147,14 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
             public void exec(String objectKey, HibernateMemcachedClient client, MemcachedRegion region) {
                 Object version = args[0];
                 Lockable item = (Lockable) client.get(objectKey);
-                long timeout = region.nextTimestamp() + region.getTimeout();
+                long timeout = region.nextTimestamp() + region.getLockTimeout();
                 lock = (item == null) ? new Lock(timeout, uuid, nextLockId(), version) : item.lock(timeout, uuid, nextLockId());
-                client.set(objectKey, region.getTimeout(), lock);
+                client.set(objectKey, region.getCacheTimeSeconds(), lock);
+            }
+
+            @Override
+            public void lockTimedOut(String objectKey, HibernateMemcachedClient client, MemcachedRegion region) {
+                client.delete(objectKey);
             }
 
             @Override
@@ -144,7 +191,7 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
                 Lockable item = (Lockable) client.get(objectKey);
                 boolean writeable = item == null || item.isWriteable(txTimestamp, version, versionComparator);
                 if (writeable) {
-                    success = client.set(objectKey, region.getTimeout(), new Item(value, version, region.nextTimestamp()));
+                    success = client.set(objectKey, region.getCacheTimeSeconds(), new Item(value, version, region.nextTimestamp()));
                 }
             }
 
@@ -174,6 +221,11 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
                 success = client.delete(objectKey);
             }
 
+            @Override
+            public void lockTimedOut(String objectKey, HibernateMemcachedClient client, MemcachedRegion region) {
+                client.delete(objectKey);
+            }
+
             @Override
             public Boolean result() {
                 return success;
@@ -208,6 +260,11 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
                 }
             }
 
+            @Override
+            public void lockTimedOut(String objectKey, HibernateMemcachedClient client, MemcachedRegion region) {
+                client.delete(objectKey);
+            }
+
             @Override
             public Boolean result() {
                 return success;
@@ -227,7 +284,7 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
      */
     protected boolean decrementLock(HibernateMemcachedClient client, String objectKey, Lock lock) {
         lock.unlock(getRegion().nextTimestamp());
-        return client.set(objectKey, getRegion().getTimeout(), lock);
+        return client.set(objectKey, getRegion().getCacheTimeSeconds(), lock);
     }
  
     /**
@@ -241,7 +298,7 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
         // create new lock that times out immediately
         Lock newLock = new Lock(now, uuid, nextLockId(), null);
         newLock.unlock(now);
-        return client.set(objectKey, getRegion().getTimeout(), newLock);
+        return client.set(objectKey, getRegion().getCacheTimeSeconds(), newLock);
     }
 
     private long nextLockId() {
@@ -262,6 +319,7 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
             }
         } else {
             log.info("Fail to acquire read lock for {}", objectKey);
+            exec.lockTimedOut(objectKey, client, region);
         }
     }
     
@@ -273,12 +331,14 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
 
         if (lockProvider.acquireWriteLock(objectKey)) {
             try {
+                invalidateNearCache(objectKey);
                 exec.exec(objectKey, client, region);
             } finally {
                 lockProvider.releaseWriteLock(objectKey);
             }
         } else {
             log.info("Fail to acquire write lock for {}", objectKey);
+            exec.lockTimedOut(objectKey, client, region);
         }
     }
     
@@ -291,6 +351,15 @@ public class AbstractReadWriteMemcachedAccessStrategy <T extends MemcachedRegion
         
         public abstract void exec(String objectKey, HibernateMemcachedClient client, MemcachedRegion region);
         public abstract T result();
+
+        /**
+         * Called instead of {@link #exec} if the key lock could not be
+         * acquired in time. By default nothing is done, so reads miss the
+         * cache and writes are skipped. Executions that would otherwise leave
+         * a stale readable item behind should evict it.
+         */
+        public void lockTimedOut(String objectKey, HibernateMemcachedClient client, MemcachedRegion region) {
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.googlecode.hibernate.memcached.strategy;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.access.RegionAccessStrategy;
+
+import com.googlecode.hibernate.memcached.utils.RegionAccessStrategyUtils;
+
+/**
+ * A {@link RegionAccessStrategy} that can read many keys in a single request
+ * to Memcached. Used to resolve batch fetches and multi loads without one
+ * round trip per key.
+ *
+ * @see RegionAccessStrategyUtils#getAll(RegionAccessStrategy, Collection, long)
+ */
+public interface BulkRegionAccessStrategy extends RegionAccessStrategy {
+
+    /**
+     * Attempt to retrieve many objects from the cache. The same rules as for
+     * {@link #get(Object, long)} apply to every key.
+     *
+     * @param keys        the keys of the items to be retrieved
+     * @param txTimestamp a timestamp prior to the transaction start time
+     * @return            a {@link Map} of each key to its cached object, keys
+     *                    that were not found or are not readable are left out
+     * @throws CacheException propagated from underlying {@link org.hibernate.cache.spi.Region}
+     */
+    public Map<Object, Object> getAll(Collection<?> keys, long txTimestamp) throws CacheException;
+}
@@ -0,0 +1,111 @@
+/* Copyright 2008 Ray Krueger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.hibernate.memcached.strategy;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.region.MemcachedEntityRegion;
+import com.googlecode.hibernate.memcached.region.MemcachedRegion;
+
+/**
+ * CAS based variant of {@link ReadWriteMemcachedEntityRegionAccessStrategy}.
+ *
+ * @see AccessType#READ_WRITE
+ */
+public class CasReadWriteMemcachedEntityRegionAccessStrategy
+    extends AbstractCasReadWriteMemcachedAccessStrategy<MemcachedEntityRegion>
+    implements EntityRegionAccessStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(CasReadWriteMemcachedEntityRegionAccessStrategy.class);
+
+    public CasReadWriteMemcachedEntityRegionAccessStrategy(MemcachedEntityRegion region) {
+        super(region, region.getCacheDataDescription());
+    }
+
+    @Override
+    public boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+        CasUpdate<Boolean> update = new CasUpdate<Boolean>(value, version) {
+            @Override
+            public Lockable apply(Lockable item, MemcachedRegion region) {
+                Object value = args[0];
+                Object version = args[1];
+
+                return (item == null) ? new Item(value, version, region.nextTimestamp()) : null;
+            }
+        };
+
+        String objectKey = toKey(key);
+        boolean success = casUpdate(createMemcacheClient(), objectKey, update);
+
+        if (!success) {
+            log.warn("Could not afterInsert item for key {}", objectKey);
+        }
+
+        return success;
+    }
+
+    @Override
+    public boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion, SoftLock lock) throws CacheException {
+        CasUpdate<Boolean> update = new CasUpdate<Boolean>(value, currentVersion, lock) {
+            @Override
+            public Lockable apply(Lockable item, MemcachedRegion region) {
+                Object value = args[0];    Object currentVersion = args[1];
+                SoftLock lock = (SoftLock) args[2];
+
+                boolean unlockable = item != null && item.isUnlockable(lock);
+                if (unlockable) {
+                    Lock lockItem = (Lock) item;
+                    if (lockItem.wasLockedConcurrently()) {
+                        return decrementLock(lockItem);
+                    } else {
+                        return new Item(value, currentVersion, region.nextTimestamp());
+                    }
+                } else {
+                    return handleLockExpiry(null);
+                }
+            }
+        };
+
+        String objectKey = toKey(key);
+        boolean success = casUpdate(createMemcacheClient(), objectKey, update);
+
+        if (!success) {
+            log.warn("Could not afterUpdate item for key {}", objectKey);
+        }
+
+        return success;
+    }
+
+    /**
+     * {@inheritDoc}</br>
+     * Only want to insert after the transaction completes.
+     * This cache is asynchronous hence a no-op.
+     */
+    @Override
+    public boolean insert(Object key, Object value, Object version) throws CacheException {
+        return false;
+    }
+
+    @Override
+    public boolean update(Object key, Object value, Object currentVersion, Object previousVersion) throws CacheException {
+        return false;
+    }
+
+}
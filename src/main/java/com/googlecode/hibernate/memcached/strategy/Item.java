@@ -1,20 +1,34 @@
 package com.googlecode.hibernate.memcached.strategy;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Comparator;
 import java.util.UUID;
 
 import org.hibernate.cache.spi.access.SoftLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.codec.SerializedValue;
 
 /**
  * Wrapper type representing unlocked items.
+ * <p>
+ * Items read by a {@link LockableCodec} keep their value serialized until
+ * {@link #getValue()} is called, so items that are not readable, or are
+ * only locked or replaced, never have their value deserialized.
  */
 public final class Item implements Serializable, Lockable {
 
     private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(Item.class);
+
     private final long timestamp;
-    private final Object value;
+    private Object value;
     private final Object version;
+    private transient volatile SerializedValue serializedValue;
 
     /**
      * Creates an unlocked item wrapping the given value with a version and creation timestamp.
@@ -25,10 +39,34 @@ public final class Item implements Serializable, Lockable {
         this.timestamp = timestamp;
     }
 
+    /**
+     * Creates an unlocked item wrapping the given serialized value, which is
+     * deserialized when first asked for.
+     */
+    Item(SerializedValue serializedValue, Object version, long timestamp) {
+        this.serializedValue = serializedValue;
+        this.version = version;
+        this.timestamp = timestamp;
+    }
+
     /**
      * {@inheritDoc}
+     * <p>
+     * A value that cannot be deserialized is logged and returned as
+     * <code>null</code>, so it is treated as a miss.
      */
     public Object getValue() {
+        SerializedValue serialized = serializedValue;
+        if (serialized != null) {
+            try {
+                value = serialized.deserialize();
+            } catch (IOException e) {
+                log.warn("Could not deserialize the value of an item, ignoring it", e);
+                return null;
+            }
+            // publishes the value to threads sharing this item (e.g. through the near cache)
+            serializedValue = null;
+        }
         return value;
     }
 
@@ -59,4 +97,27 @@ public final class Item implements Serializable, Lockable {
     public Lock lock(long timeout, UUID uuid, long lockId) {
         return new Lock(timeout, uuid, lockId, version);
     }
+
+    /**
+     * Gets the value of this item if it has not been deserialized yet.
+     *
+     * @return the serialized value, or <code>null</code> if the value is
+     *         deserialized
+     */
+    public SerializedValue getSerializedValue() {
+        return serializedValue;
+    }
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    Object getVersion() {
+        return version;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getValue();
+        out.defaultWriteObject();
+    }
 }
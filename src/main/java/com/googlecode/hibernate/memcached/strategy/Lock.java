@@ -32,6 +32,17 @@ public final class Lock implements Serializable, Lockable, SoftLock {
         this.sourceUuid = sourceUuid;
     }
 
+    /**
+     * Creates a locked item in the given state, as read by {@link LockableCodec}.
+     */
+    Lock(long timeout, UUID sourceUuid, long lockId, Object version,
+            boolean concurrent, int multiplicity, long unlockTimestamp) {
+        this(timeout, sourceUuid, lockId, version);
+        this.concurrent = concurrent;
+        this.multiplicity = multiplicity;
+        this.unlockTimestamp = unlockTimestamp;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -129,4 +140,28 @@ public final class Lock implements Serializable, Lockable, SoftLock {
     public boolean wasLockedConcurrently() {
         return concurrent;
     }
+
+    long getLockId() {
+        return lockId;
+    }
+
+    int getMultiplicity() {
+        return multiplicity;
+    }
+
+    UUID getSourceUuid() {
+        return sourceUuid;
+    }
+
+    long getTimeout() {
+        return timeout;
+    }
+
+    long getUnlockTimestamp() {
+        return unlockTimestamp;
+    }
+
+    Object getVersion() {
+        return version;
+    }
 }
@@ -0,0 +1,303 @@
+package com.googlecode.hibernate.memcached.strategy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import com.googlecode.hibernate.memcached.client.dogpile.DogpileEnvelope;
+import com.googlecode.hibernate.memcached.codec.JavaValueSerializer;
+import com.googlecode.hibernate.memcached.codec.SerializedValue;
+import com.googlecode.hibernate.memcached.codec.ValueSerializer;
+import com.googlecode.hibernate.memcached.stats.CodecStatistics;
+
+/**
+ * Writes the {@link Item}, {@link Lock} and {@link DogpileEnvelope} wrappers
+ * of cache entries in a fixed binary layout, instead of Java serializing
+ * them with their class descriptors, field names and boxed fields.
+ * <p>
+ * The layout, big endian:
+ * <pre>
+ * entry    := format(byte = 1) body
+ * body     := ITEM(1)     timestamp(long) version:value value:value
+ *           | LOCK(2)     state(byte) lockId(long) multiplicity(int)
+ *                         [uuidMsb(long) uuidLsb(long)] timeout(long)
+ *                         unlockTimestamp(long) version:value
+ *           | ENVELOPE(3) softExpiresAt(long) recomputeMillis(int) value:value
+ * value    := NULL(0) | INTEGER(1) int | LONG(2) long | SHORT(3) short
+ *           | TIMESTAMP(4) millis(long) nanos(int) | BYTES(5) length(int) bytes
+ *           | ENTRY(6) body | SERIALIZED(7) length(int) bytes
+ * </pre>
+ * The lock state holds whether the lock was taken concurrently (bit 0) and
+ * whether it has a source UUID (bit 1). Versions of the types Hibernate uses
+ * for version properties are written without the serializer; everything
+ * else, including the cached value, is written by the {@link ValueSerializer}.
+ * <p>
+ * The value of an item comes after its fixed header, so it is not
+ * deserialized when an item is read: the item keeps the value's bytes until
+ * {@link Item#getValue()} is called. An item whose value was never
+ * deserialized is written back with the same bytes.
+ * <p>
+ * Entries are stored with the flags {@link #FLAGS}, which fall in the range
+ * the spymemcached <code>SerializingTranscoder</code> reserves for special
+ * types. Clients without the codec log such entries as undecodable and treat
+ * them as misses.
+ */
+public final class LockableCodec {
+
+    /**
+     * The flags stored with encoded entries.
+     */
+    public static final int FLAGS = 0x4000;
+
+    private static final int SPECIAL_MASK = 0xff00;
+
+    private static final byte FORMAT = 1;
+
+    private static final byte ITEM = 1;
+    private static final byte LOCK = 2;
+    private static final byte ENVELOPE = 3;
+
+    private static final byte NULL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte SHORT = 3;
+    private static final byte TIMESTAMP = 4;
+    private static final byte BYTES = 5;
+    private static final byte ENTRY = 6;
+    private static final byte SERIALIZED = 7;
+
+    private static final int CONCURRENT = 1;
+    private static final int HAS_UUID = 2;
+
+    private static final CodecStatistics STATISTICS = new CodecStatistics();
+    private static final ValueSerializer JAVA = new JavaValueSerializer();
+
+    private final ValueSerializer serializer;
+
+    /**
+     * Creates a new {@link LockableCodec}.
+     *
+     * @param serializer the serializer of the cached values
+     */
+    public LockableCodec(ValueSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * Gets the statistics of all codecs.
+     */
+    public static CodecStatistics getStatistics() {
+        return STATISTICS;
+    }
+
+    /**
+     * Determines if a value stored with the given flags was written by this
+     * codec.
+     */
+    public static boolean isEncoded(int flags) {
+        return (flags & SPECIAL_MASK) == FLAGS;
+    }
+
+    /**
+     * Determines if the given value is an entry written by this codec.
+     */
+    public static boolean isEntry(Object o) {
+        return o instanceof Item || o instanceof Lock || o instanceof DogpileEnvelope;
+    }
+
+    /**
+     * Encodes an entry.
+     *
+     * @param entry an {@link Item}, {@link Lock} or {@link DogpileEnvelope}
+     * @return      the bytes of the entry
+     */
+    public byte[] encode(Object entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT);
+        writeBody(out, entry);
+        out.flush();
+        byte[] result = bytes.toByteArray();
+
+        if (STATISTICS.encoded(result.length)) {
+            try {
+                STATISTICS.sampled(result.length, JAVA.serialize(entry).length);
+            } catch (IOException e) {
+                // only the sample is lost
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes an entry. The values of items are not deserialized and keep a
+     * reference to the given buffer, which must not be changed afterwards.
+     *
+     * @param data   the buffer holding the bytes of the entry
+     * @param offset the position of the first byte of the entry
+     * @param length the number of bytes of the entry
+     * @return       the entry
+     */
+    public Object decode(byte[] data, int offset, int length) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(data, offset, length);
+        try {
+            byte format = in.get();
+            if (format != FORMAT) {
+                throw new IOException("Unsupported entry format " + format);
+            }
+            Object entry = readBody(in);
+            STATISTICS.decoded();
+            return entry;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated entry of " + length + " bytes");
+        }
+    }
+
+    private void writeBody(DataOutputStream out, Object entry) throws IOException {
+        if (entry instanceof Item) {
+            Item item = (Item) entry;
+            out.writeByte(ITEM);
+            out.writeLong(item.getTimestamp());
+            writeValue(out, item.getVersion());
+            SerializedValue serialized = item.getSerializedValue();
+            if (serialized != null && serialized.isSerializedBy(serializer)) {
+                out.writeByte(SERIALIZED);
+                out.writeInt(serialized.getLength());
+                out.write(serialized.getData(), serialized.getOffset(), serialized.getLength());
+            } else {
+                writeValue(out, item.getValue());
+            }
+        } else if (entry instanceof Lock) {
+            Lock lock = (Lock) entry;
+            UUID uuid = lock.getSourceUuid();
+            out.writeByte(LOCK);
+            out.writeByte((lock.wasLockedConcurrently() ? CONCURRENT : 0) | (uuid != null ? HAS_UUID : 0));
+            out.writeLong(lock.getLockId());
+            out.writeInt(lock.getMultiplicity());
+            if (uuid != null) {
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+            out.writeLong(lock.getTimeout());
+            out.writeLong(lock.getUnlockTimestamp());
+            writeValue(out, lock.getVersion());
+        } else if (entry instanceof DogpileEnvelope) {
+            DogpileEnvelope envelope = (DogpileEnvelope) entry;
+            out.writeByte(ENVELOPE);
+            out.writeLong(envelope.getSoftExpiresAt());
+            out.writeInt(envelope.getRecomputeMillis());
+            writeValue(out, envelope.getValue());
+        } else {
+            throw new IllegalArgumentException("Not an entry: " + entry);
+        }
+    }
+
+    private Object readBody(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        switch (type) {
+        case ITEM:
+            long timestamp = in.getLong();
+            Object version = readValue(in);
+            if (in.hasRemaining() && in.get(in.position()) == SERIALIZED) {
+                in.get();
+                int length = readLength(in);
+                int position = in.position();
+                in.position(position + length);
+                return new Item(new SerializedValue(serializer, in.array(), in.arrayOffset() + position, length),
+                        version, timestamp);
+            }
+            return new Item(readValue(in), version, timestamp);
+        case LOCK:
+            int state = in.get();
+            long lockId = in.getLong();
+            int multiplicity = in.getInt();
+            UUID uuid = (state & HAS_UUID) != 0 ? new UUID(in.getLong(), in.getLong()) : null;
+            long timeout = in.getLong();
+            long unlockTimestamp = in.getLong();
+            return new Lock(timeout, uuid, lockId, readValue(in),
+                    (state & CONCURRENT) != 0, multiplicity, unlockTimestamp);
+        case ENVELOPE:
+            long softExpiresAt = in.getLong();
+            int recomputeMillis = in.getInt();
+            return new DogpileEnvelope(readValue(in), softExpiresAt, recomputeMillis);
+        default:
+            throw new IOException("Unknown entry type " + type);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value.getClass() == Timestamp.class) {
+            Timestamp timestamp = (Timestamp) value;
+            out.writeByte(TIMESTAMP);
+            out.writeLong(timestamp.getTime());
+            out.writeInt(timestamp.getNanos());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (isEntry(value)) {
+            out.writeByte(ENTRY);
+            writeBody(out, value);
+        } else {
+            byte[] bytes = serializer.serialize(value);
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private Object readValue(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        switch (type) {
+        case NULL:
+            return null;
+        case INTEGER:
+            return in.getInt();
+        case LONG:
+            return in.getLong();
+        case SHORT:
+            return in.getShort();
+        case TIMESTAMP:
+            Timestamp timestamp = new Timestamp(in.getLong());
+            timestamp.setNanos(in.getInt());
+            return timestamp;
+        case BYTES:
+            byte[] bytes = new byte[readLength(in)];
+            in.get(bytes);
+            return bytes;
+        case ENTRY:
+            return readBody(in);
+        case SERIALIZED:
+            int length = readLength(in);
+            int position = in.position();
+            in.position(position + length);
+            return serializer.deserialize(in.array(), in.arrayOffset() + position, length);
+        default:
+            throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static int readLength(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+}
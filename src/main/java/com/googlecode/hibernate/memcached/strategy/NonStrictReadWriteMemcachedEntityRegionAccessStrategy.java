@@ -50,7 +50,7 @@ public class NonStrictReadWriteMemcachedEntityRegionAccessStrategy
         MemcachedRegionComponentFactory componentFactory = region.createComponentFactory();
         HibernateMemcachedClient client = componentFactory.createMemcacheClient();
         
-        return client.set(toKey(key), region.getTimeout(), value);
+        return client.set(toKey(key), region.getCacheTimeSeconds(), value);
     }
 
     /**
@@ -63,7 +63,7 @@ public class NonStrictReadWriteMemcachedEntityRegionAccessStrategy
         MemcachedRegionComponentFactory componentFactory = region.createComponentFactory();
         HibernateMemcachedClient client = componentFactory.createMemcacheClient();
         
-        return client.set(toKey(key), region.getTimeout(), value);
+        return client.set(toKey(key), region.getCacheTimeSeconds(), value);
     }
 
     /**
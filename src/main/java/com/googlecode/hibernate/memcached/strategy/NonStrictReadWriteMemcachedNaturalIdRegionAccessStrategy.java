@@ -34,7 +34,7 @@ public class NonStrictReadWriteMemcachedNaturalIdRegionAccessStrategy
         MemcachedRegionComponentFactory componentFactory = region.createComponentFactory();
         HibernateMemcachedClient client = componentFactory.createMemcacheClient();
         
-        return client.set(toKey(key), region.getTimeout(), value);
+        return client.set(toKey(key), region.getCacheTimeSeconds(), value);
     }
 
     /**
@@ -47,7 +47,7 @@ public class NonStrictReadWriteMemcachedNaturalIdRegionAccessStrategy
         MemcachedRegionComponentFactory componentFactory = region.createComponentFactory();
         HibernateMemcachedClient client = componentFactory.createMemcacheClient();
         
-        return client.set(toKey(key), region.getTimeout(), value);
+        return client.set(toKey(key), region.getCacheTimeSeconds(), value);
     }
 
     /**
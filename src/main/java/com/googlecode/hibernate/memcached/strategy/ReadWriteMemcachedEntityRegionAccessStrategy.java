@@ -53,7 +53,7 @@ public class ReadWriteMemcachedEntityRegionAccessStrategy
 
                 Lockable item = (Lockable) client.get(objectKey);
                 if (item == null) {
-                    success = client.set(objectKey, region.getTimeout(), new Item(value, version, region.nextTimestamp()));
+                    success = client.set(objectKey, region.getCacheTimeSeconds(), new Item(value, version, region.nextTimestamp()));
                 }
             }
 
@@ -90,13 +90,18 @@ public class ReadWriteMemcachedEntityRegionAccessStrategy
                     if (lockItem.wasLockedConcurrently()) {
                         success = decrementLock(client, objectKey, lockItem);
                     } else {
-                        success = client.set(objectKey, region.getTimeout(), new Item(value, currentVersion, region.nextTimestamp()));
+                        success = client.set(objectKey, region.getCacheTimeSeconds(), new Item(value, currentVersion, region.nextTimestamp()));
                     }
                 } else {
                     success = handleLockExpiry(client, objectKey, null);
                 }
             }
 
+            @Override
+            public void lockTimedOut(String objectKey, HibernateMemcachedClient client, MemcachedRegion region) {
+                client.delete(objectKey);
+            }
+
             @Override
             public Boolean result() {
                 return success;
@@ -0,0 +1,129 @@
+package com.googlecode.hibernate.memcached.strategy.clear;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient;
+
+/**
+ * Refreshes the locally cached clear indices of all
+ * {@link MemcachedRegionClearStrategy}s registered with it. All clear index
+ * keys are read with a single {@link HibernateMemcachedClient#getMulti(String...)}
+ * from a background thread, at half the configured staleness bound.
+ * <p>
+ * One refresher is shared by all regions of a
+ * {@link com.googlecode.hibernate.memcached.MemcachedRegionFactory}. With
+ * statistics enabled it is registered as an MBean, see
+ * {@link com.googlecode.hibernate.memcached.stats.StatisticsRegistry}.
+ */
+public class ClearIndexRefresher implements ClearIndexRefresherMBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ClearIndexRefresher.class);
+
+    private final HibernateMemcachedClient client;
+    private final long maxStalenessMillis;
+    private final List<MemcachedRegionClearStrategy> strategies = new CopyOnWriteArrayList<MemcachedRegionClearStrategy>();
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Creates and starts a new {@link ClearIndexRefresher}.
+     *
+     * @param client             the client used to read the clear indices
+     * @param maxStalenessMillis the maximum age of a cached clear index
+     */
+    public ClearIndexRefresher(HibernateMemcachedClient client, long maxStalenessMillis) {
+        this.client = client;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "hibernate-memcached-clear-index-refresher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long period = Math.max(1, maxStalenessMillis / 2);
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the maximum age of a cached clear index. Older indices are read
+     * from Memcached before they are used.
+     */
+    @Override
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+    /**
+     * Adds a strategy to the ones refreshed in the background.
+     */
+    public void register(MemcachedRegionClearStrategy strategy) {
+        strategies.add(strategy);
+    }
+
+    /**
+     * Gets the largest refresh lag of all registered strategies.
+     *
+     * @return the time since the least recently refreshed clear index was
+     *         read, in milliseconds
+     * @see MemcachedRegionClearStrategy#getRefreshLagMillis()
+     */
+    @Override
+    public long getMaxRefreshLagMillis() {
+        long lag = 0;
+        for (MemcachedRegionClearStrategy strategy : strategies) {
+            lag = Math.max(lag, strategy.getRefreshLagMillis());
+        }
+        return lag;
+    }
+
+    /**
+     * Reads the clear indices of all registered strategies in one request.
+     */
+    public void refresh() {
+        if (strategies.isEmpty()) {
+            return;
+        }
+
+        List<MemcachedRegionClearStrategy> batch = new ArrayList<MemcachedRegionClearStrategy>(strategies);
+        String[] keys = new String[batch.size()];
+        long[] generations = new long[batch.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = batch.get(i).getEncodedClearIndexKey();
+            generations[i] = batch.get(i).getGeneration();
+        }
+
+        try {
+            Map<String, Object> values = client.getMulti(keys.clone());
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < keys.length; i++) {
+                batch.get(i).refreshed(values.get(keys[i]), generations[i], now);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh clear indices", e);
+        }
+    }
+
+    /**
+     * Stops refreshing.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
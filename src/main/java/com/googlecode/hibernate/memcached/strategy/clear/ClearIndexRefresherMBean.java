@@ -0,0 +1,15 @@
+package com.googlecode.hibernate.memcached.strategy.clear;
+
+/**
+ * The JMX management interface of {@link ClearIndexRefresher}.
+ */
+public interface ClearIndexRefresherMBean {
+
+    long getMaxStalenessMillis();
+
+    /**
+     * Gets the largest refresh lag of all regions with a locally cached clear
+     * index, in milliseconds.
+     */
+    long getMaxRefreshLagMillis();
+}
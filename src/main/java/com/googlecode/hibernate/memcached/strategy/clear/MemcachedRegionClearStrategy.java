@@ -1,5 +1,7 @@
 package com.googlecode.hibernate.memcached.strategy.clear;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.hibernate.cache.CacheException;
 
 import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
@@ -13,32 +15,71 @@ import com.googlecode.hibernate.memcached.utils.MemcachedRegionSettingsUtils;
  * part of their key generation strategy.
  * <p>
  * This implementation uses Memcached to store clear indices.
- * 
+ * <p>
+ * When created with a {@link ClearIndexRefresher} the clear index is cached
+ * locally and refreshed in the background, so reading it does not cost a
+ * round trip. Once a cached index is older than
+ * {@link ClearIndexRefresher#getMaxStalenessMillis()}, the first thread to
+ * notice reads it from Memcached; other threads keep using the cached index
+ * until that read completes, instead of all reading it at once. An index that
+ * was never read is read by every thread that asks for it. A local
+ * {@link #clear()} updates the cached index immediately. A clear made by
+ * another JVM is seen within the staleness bound, plus the time of one read.
+ * <p>
+ * If the clear index key is missing when the index is refreshed (e.g. it was
+ * evicted) the cached value is kept.
+ *
  * @see ClearStrategy
  */
 public class MemcachedRegionClearStrategy implements ClearStrategy {
 
     private HibernateMemcachedClient client;
     private MemcachedRegionSettings settings;
-    
+    private final ClearIndexRefresher refresher;
+
     private final String encodedClearIndexKey;
-    
+
+    private volatile long clearIndex;
+    private volatile long refreshedAt = Long.MIN_VALUE;
+    private long generation;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
     /**
-     * Creates a new {@link MemcachedRegionClearStrategy}.
-     * 
+     * Creates a new {@link MemcachedRegionClearStrategy} that reads the clear
+     * index from Memcached every time it is requested.
+     *
      * @param client   the client used to store clear indices
      * @param settings the settings for this {@link ClearStrategy}s region
      */
     public MemcachedRegionClearStrategy(HibernateMemcachedClient client, MemcachedRegionSettings settings) {
+        this(client, settings, null);
+    }
+
+    /**
+     * Creates a new {@link MemcachedRegionClearStrategy}.
+     *
+     * @param client    the client used to store clear indices
+     * @param settings  the settings for this {@link ClearStrategy}s region
+     * @param refresher the refresher used to keep a locally cached clear
+     *                  index up to date, or <code>null</code> to read the
+     *                  clear index from Memcached every time
+     */
+    public MemcachedRegionClearStrategy(HibernateMemcachedClient client, MemcachedRegionSettings settings,
+            ClearIndexRefresher refresher) {
         this.client = client;
         this.settings = settings;
-        
+        this.refresher = refresher;
+
         KeyEncodingStrategy keyEncodingStrategy =
                 MemcachedRegionSettingsUtils.getValidatedMemcachedKeyEncodingStrategy(settings);
         this.encodedClearIndexKey = keyEncodingStrategy.encode(
                 MemcachedRegionSettingsUtils.getFullClearIndexKeyPrefix(settings));
+
+        if (refresher != null && settings.isClearSupported()) {
+            refresher.register(this);
+        }
     }
-    
+
     /**
      * {@inheritDoc}<br>
      * If clear functionality is disabled for this region it will always
@@ -50,7 +91,16 @@ public class MemcachedRegionClearStrategy implements ClearStrategy {
     @Override
     public boolean clear() throws CacheException {
         if (settings.isClearSupported()) {
-            return client.incr(encodedClearIndexKey, 1, 1) != -1;
+            long newIndex = client.incr(encodedClearIndexKey, 1, 1);
+            if (newIndex == -1) {
+                return false;
+            }
+            synchronized (this) {
+                generation++;
+                clearIndex = newIndex;
+                refreshedAt = System.currentTimeMillis();
+            }
+            return true;
         }
         return false;
     }
@@ -66,22 +116,93 @@ public class MemcachedRegionClearStrategy implements ClearStrategy {
     @Override
     public long getClearIndex() throws CacheException {
         if (settings.isClearSupported()) {
-            Object value = client.get(encodedClearIndexKey);
-            
-            if (value != null) {
-                if (value instanceof String) {
-                    return Long.valueOf((String) value);
-                } else if (value instanceof Long) {
-                    return (Long) value;
-                } else {
-                    throw new IllegalArgumentException(String.format(
-                        "Unsupported type [%s] found for clear index at cache key [%s]",
-                        value.getClass(), encodedClearIndexKey));
+            if (refresher == null) {
+                return parseClearIndex(client.get(encodedClearIndexKey), 0);
+            }
+
+            long lag = getRefreshLagMillis();
+            if (lag > refresher.getMaxStalenessMillis()) {
+                if (lag == Long.MAX_VALUE) {
+                    // there is no cached index to fall back to
+                    refresh();
+                } else if (refreshing.compareAndSet(false, true)) {
+                    try {
+                        refresh();
+                    } finally {
+                        refreshing.set(false);
+                    }
                 }
             }
+            return clearIndex;
         }
 
         return 0;
     }
 
+    /**
+     * Gets the time since the clear index was last read from (or written to)
+     * Memcached.
+     *
+     * @return the refresh lag in milliseconds, or {@link Long#MAX_VALUE} if
+     *         the clear index was never read
+     */
+    public long getRefreshLagMillis() {
+        long last = refreshedAt;
+        return last == Long.MIN_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() - last;
+    }
+
+    private void refresh() {
+        long expectedGeneration = getGeneration();
+        refreshed(client.get(encodedClearIndexKey), expectedGeneration, System.currentTimeMillis());
+    }
+
+    /**
+     * Determines if the clear index is cached locally.
+     *
+     * @return <code>true</code> if the clear index is cached and refreshed in
+     *         the background, <code>false</code> if it is read every time
+     */
+    public boolean isCached() {
+        return refresher != null && settings.isClearSupported();
+    }
+
+    String getEncodedClearIndexKey() {
+        return encodedClearIndexKey;
+    }
+
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Updates the cached clear index with a value read from Memcached, unless
+     * the index was cleared locally since the read started.
+     *
+     * @param value              the value read from Memcached
+     * @param expectedGeneration the generation before the read started
+     * @param now                the time of the read
+     */
+    synchronized void refreshed(Object value, long expectedGeneration, long now) {
+        if (generation != expectedGeneration) {
+            return;
+        }
+        clearIndex = parseClearIndex(value, clearIndex);
+        refreshedAt = now;
+    }
+
+    private long parseClearIndex(Object value, long defaultValue) {
+        if (value != null) {
+            if (value instanceof String) {
+                return Long.valueOf(((String) value).trim());
+            } else if (value instanceof Long) {
+                return (Long) value;
+            } else {
+                throw new IllegalArgumentException(String.format(
+                    "Unsupported type [%s] found for clear index at cache key [%s]",
+                    value.getClass(), encodedClearIndexKey));
+            }
+        }
+        return defaultValue;
+    }
+
 }
@@ -0,0 +1,59 @@
+package com.googlecode.hibernate.memcached.strategy.key;
+
+import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrategy;
+import com.googlecode.hibernate.memcached.utils.StringUtils;
+
+/**
+ * Builds encoded Memcached keys of the form
+ * <code>[prefix][separator][clearIndex][separator][key]</code>.
+ * <p>
+ * The part in front of the key is joined once, when the builder is created,
+ * so building a key only appends the key and encodes the result. The keys
+ * built are the same as those built by
+ * {@link StringUtils#join(String, Object...)} followed by the encoding
+ * strategy.
+ *
+ * @see RegionKeys
+ */
+public final class KeyBuilder {
+
+    private final String prefix;
+    private final KeyEncodingStrategy keyEncodingStrategy;
+
+    /**
+     * Creates a new {@link KeyBuilder}.
+     *
+     * @param prefix              the prefix of the keys
+     * @param separator           the namespace separator
+     * @param clearIndex          the clear index of the keys
+     * @param keyEncodingStrategy the strategy used to encode the full keys
+     */
+    public KeyBuilder(String prefix, String separator, long clearIndex, KeyEncodingStrategy keyEncodingStrategy) {
+        this.prefix = StringUtils.join(separator, prefix, clearIndex, "");
+        this.keyEncodingStrategy = keyEncodingStrategy;
+    }
+
+    /**
+     * Builds the encoded key for the given key.
+     *
+     * @param key the key as given by the caller
+     * @return    the encoded full key
+     */
+    public String build(String key) {
+        return keyEncodingStrategy.encode(key == null ? prefix : prefix.concat(key));
+    }
+
+    /**
+     * Builds the encoded keys for the given keys.
+     *
+     * @param keys the keys as given by the caller
+     * @return     the encoded full keys, in the same order
+     */
+    public String[] build(String... keys) {
+        String[] fullKeys = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            fullKeys[i] = build(keys[i]);
+        }
+        return fullKeys;
+    }
+}
@@ -0,0 +1,84 @@
+package com.googlecode.hibernate.memcached.strategy.key;
+
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
+import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrategy;
+import com.googlecode.hibernate.memcached.utils.MemcachedRegionSettingsUtils;
+
+/**
+ * The {@link KeyBuilder}s of a region at a particular clear index: object
+ * keys, dogpile token keys, chunk keys, and read and write lock keys.
+ * <p>
+ * Region clients and lock providers are created for every operation, so the
+ * builders are kept in the region's settings and only replaced when the
+ * clear index changes.
+ *
+ * @see MemcachedRegionSettings#getRegionKeys()
+ */
+public final class RegionKeys {
+
+    private final long clearIndex;
+    private final KeyBuilder objectKeys;
+    private final KeyBuilder dogpileTokenKeys;
+    private final KeyBuilder chunkKeys;
+    private final KeyBuilder readLockKeys;
+    private final KeyBuilder writeLockKeys;
+
+    private RegionKeys(MemcachedRegionSettings settings, long clearIndex) {
+        KeyEncodingStrategy keyEncodingStrategy =
+                MemcachedRegionSettingsUtils.getValidatedMemcachedKeyEncodingStrategy(settings);
+        String separator = settings.getNamespaceSeparator();
+
+        this.clearIndex = clearIndex;
+        this.objectKeys = new KeyBuilder(settings.getName(), separator, clearIndex, keyEncodingStrategy);
+        this.dogpileTokenKeys = new KeyBuilder(MemcachedRegionSettingsUtils.getFullDogpileTokenKeyPrefix(settings),
+                separator, clearIndex, keyEncodingStrategy);
+        this.chunkKeys = new KeyBuilder(MemcachedRegionSettingsUtils.getFullChunkKeyPrefix(settings),
+                separator, clearIndex, keyEncodingStrategy);
+        this.readLockKeys = new KeyBuilder(MemcachedRegionSettingsUtils.getFullReadLockKeyPrefix(settings),
+                separator, clearIndex, keyEncodingStrategy);
+        this.writeLockKeys = new KeyBuilder(MemcachedRegionSettingsUtils.getFullWriteLockKeyPrefix(settings),
+                separator, clearIndex, keyEncodingStrategy);
+    }
+
+    /**
+     * Gets the key builders of the given region at the given clear index,
+     * creating them if the region's current builders are for another clear
+     * index.
+     *
+     * @param settings   the settings of the region
+     * @param clearIndex the clear index
+     * @return           the key builders
+     */
+    public static RegionKeys get(MemcachedRegionSettings settings, long clearIndex) {
+        RegionKeys keys = settings.getRegionKeys();
+        if (keys == null || keys.clearIndex != clearIndex) {
+            keys = new RegionKeys(settings, clearIndex);
+            settings.setRegionKeys(keys);
+        }
+        return keys;
+    }
+
+    public long getClearIndex() {
+        return clearIndex;
+    }
+
+    public KeyBuilder getObjectKeys() {
+        return objectKeys;
+    }
+
+    public KeyBuilder getDogpileTokenKeys() {
+        return dogpileTokenKeys;
+    }
+
+    public KeyBuilder getChunkKeys() {
+        return chunkKeys;
+    }
+
+    public KeyBuilder getReadLockKeys() {
+        return readLockKeys;
+    }
+
+    public KeyBuilder getWriteLockKeys() {
+        return writeLockKeys;
+    }
+}
@@ -0,0 +1,62 @@
+package com.googlecode.hibernate.memcached.strategy.key.encoding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.utils.StringUtils;
+
+/**
+ * Leaves keys that are valid Memcached keys as they are, and encodes all
+ * other keys using the 128-bit MurmurHash3 hashing algorithm (see
+ * {@link Murmur3KeyEncodingStrategy}).
+ * <p>
+ * A key is left as it is if it is at most 250 bytes long in UTF-8 and has no
+ * whitespace or control characters, so most keys stay readable in Memcached
+ * tools. Where {@link ValidMemcachedKeyEncodingStrategy} would remove
+ * whitespace (making <code>"a b"</code> and <code>"ab"</code> the same key)
+ * or throw on a long key, this strategy hashes the key instead.
+ * <p>
+ * A readable key could in theory equal the hash of another key; that takes
+ * a readable key of exactly 22 base64url characters matching a hash.
+ */
+public class HybridKeyEncodingStrategy implements KeyEncodingStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridKeyEncodingStrategy.class);
+    
+    private static final int MAX_KEY_LENGTH = 250;
+    
+    @Override
+    public String encode(String key) {
+        String result = isValid(key) ? key : StringUtils.murmur3Base64Url(key);
+        log.debug("encode({}) -> {}", key, result);
+        return result;
+    }
+
+    /**
+     * Determines if the given key can be used as it is, without allocating
+     * its UTF-8 bytes.
+     */
+    private static boolean isValid(String key) {
+        int length = key.length();
+        if (length > MAX_KEY_LENGTH) {
+            return false;
+        }
+
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (c <= ' ' || c == 0x7F) {
+                return false;
+            } else if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800 || (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+                // a surrogate pair is 4 bytes
+                bytes += 2;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes <= MAX_KEY_LENGTH;
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.googlecode.hibernate.memcached.strategy.key.encoding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.googlecode.hibernate.memcached.utils.StringUtils;
+
+/**
+ * Encodes keys using the 128-bit MurmurHash3 hashing algorithm.
+ * <p>
+ * MurmurHash3 is not a cryptographic hash, so it is much cheaper to compute
+ * than {@link Sha1KeyEncodingStrategy} or {@link Md5KeyEncodingStrategy},
+ * and its 128 bits are written as 22 base64url characters instead of 40 or
+ * 32 hex characters. Unlike {@link HashCodeKeyEncodingStrategy}, collisions
+ * are as unlikely as with MD5 for keys that are not chosen to collide.
+ * <p>
+ * Switching a running cache to this strategy changes all keys, so existing
+ * entries are missed rather than misread.
+ */
+public class Murmur3KeyEncodingStrategy implements KeyEncodingStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(Murmur3KeyEncodingStrategy.class);
+    
+    @Override
+    public String encode(String key) {
+        String result = StringUtils.murmur3Base64Url(key);
+        log.debug("encode({}) -> {}", key, result);
+        return result;
+    }
+
+}
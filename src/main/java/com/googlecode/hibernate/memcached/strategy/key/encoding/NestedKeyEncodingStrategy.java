@@ -25,8 +25,8 @@ public class NestedKeyEncodingStrategy implements KeyEncodingStrategy {
     @Override
     public String encode(String key) {
         String result = key;
-        for (KeyEncodingStrategy strategy : keyEncodingStrategies) {
-            result = strategy.encode(result);
+        for (int i = 0; i < keyEncodingStrategies.size(); i++) {
+            result = keyEncodingStrategies.get(i).encode(result);
         }
         log.debug("nested encode({}) -> {}", key, result);
         return result;
@@ -1,7 +1,5 @@
 package com.googlecode.hibernate.memcached.strategy.key.encoding;
 
-import java.util.regex.Pattern;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,6 +7,10 @@ import org.slf4j.LoggerFactory;
  * Class for transforming a <code>String</code> into a valid Memcached key by
  * removing any illegal characters.
  * <p>
+ * Whitespace (as matched by the regular expression <code>\s</code>) is
+ * removed by scanning the key once; keys without whitespace are returned as
+ * they are.
+ * <p>
  * TODO: add control character removal
  * {@link https://github.com/memcached/memcached/blob/master/doc/protocol.txt}
  */
@@ -16,12 +18,11 @@ public class ValidMemcachedKeyEncodingStrategy implements KeyEncodingStrategy {
 
     private static final Logger log = LoggerFactory.getLogger(ValidMemcachedKeyEncodingStrategy.class);
     
-    private static final Pattern CLEAN_PATTERN = Pattern.compile("\\s");
     private static final int MAX_KEY_LENGTH = 250;
     
     @Override
     public String encode(String key) {
-        String result = CLEAN_PATTERN.matcher(key).replaceAll("");
+        String result = removeWhitespace(key);
         
         if (result.length() > MAX_KEY_LENGTH) {
             throw new IllegalArgumentException(String.format(
@@ -33,4 +34,29 @@ public class ValidMemcachedKeyEncodingStrategy implements KeyEncodingStrategy {
         return result;
     }
 
+    private static String removeWhitespace(String key) {
+        int length = key.length();
+        int i = 0;
+        while (i < length && !isWhitespace(key.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return key;
+        }
+
+        StringBuilder result = new StringBuilder(length - 1);
+        result.append(key, 0, i);
+        for (i++; i < length; i++) {
+            char c = key.charAt(i);
+            if (!isWhitespace(c)) {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
 }
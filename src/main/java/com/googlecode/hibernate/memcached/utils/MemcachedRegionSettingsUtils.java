@@ -1,6 +1,7 @@
 package com.googlecode.hibernate.memcached.utils;
 
 import com.googlecode.hibernate.memcached.MemcachedRegionSettings;
+import com.googlecode.hibernate.memcached.client.chunk.ValueChunker;
 import com.googlecode.hibernate.memcached.region.MemcachedRegion;
 import com.googlecode.hibernate.memcached.strategy.clear.ClearStrategy;
 import com.googlecode.hibernate.memcached.strategy.key.encoding.KeyEncodingStrategy;
@@ -39,6 +40,20 @@ public class MemcachedRegionSettingsUtils {
                 settings.getDogpileTokenKeyPrefix(), settings.getName());
     }
     
+    /**
+     * Creates the full chunk key prefix using given settings settings
+     * {@link MemcachedRegionSettings#getNamespaceSeparator()}, 
+     * {@link ValueChunker#KEY_PREFIX},
+     * and {@link MemcachedRegionSettings#getName()}.
+     * 
+     * @param settings {@link MemcachedRegionSettings}
+     * @return         the full chunk key prefix
+     */
+    public static String getFullChunkKeyPrefix(MemcachedRegionSettings settings) {
+        return StringUtils.join(settings.getNamespaceSeparator(),
+                ValueChunker.KEY_PREFIX, settings.getName());
+    }
+    
     /**
      * Creates the full read lock key prefix using given settings settings
      * {@link MemcachedRegionSettings#getNamespaceSeparator()}, 
@@ -0,0 +1,124 @@
+package com.googlecode.hibernate.memcached.utils;
+
+/**
+ * The 128-bit x64 variant of Austin Appleby's MurmurHash3, a fast
+ * non-cryptographic hash function.
+ * <p>
+ * The result is the same as that of the reference implementation
+ * (<code>MurmurHash3_x64_128</code>), with the two 64-bit halves written
+ * little-endian.
+ *
+ * {@link https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp}
+ */
+public final class MurmurHash3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private MurmurHash3() { }
+
+    /**
+     * Hashes the given bytes.
+     *
+     * @param data the bytes to hash
+     * @param seed the seed of the hash
+     * @return     the 16 bytes of the hash
+     */
+    public static byte[] hash128(byte[] data, int seed) {
+        int length = data.length;
+        int blocks = length >>> 4;
+        long h1 = seed & 0xffffffffL;
+        long h2 = seed & 0xffffffffL;
+
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(data, i << 4);
+            long k2 = getLong(data, (i << 4) + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int tail = blocks << 4;
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15: k2 ^= (data[tail + 14] & 0xffL) << 48;
+            case 14: k2 ^= (data[tail + 13] & 0xffL) << 40;
+            case 13: k2 ^= (data[tail + 12] & 0xffL) << 32;
+            case 12: k2 ^= (data[tail + 11] & 0xffL) << 24;
+            case 11: k2 ^= (data[tail + 10] & 0xffL) << 16;
+            case 10: k2 ^= (data[tail + 9] & 0xffL) << 8;
+            case 9:  k2 ^= (data[tail + 8] & 0xffL);
+                     h2 ^= mixK2(k2);
+            case 8:  k1 ^= (data[tail + 7] & 0xffL) << 56;
+            case 7:  k1 ^= (data[tail + 6] & 0xffL) << 48;
+            case 6:  k1 ^= (data[tail + 5] & 0xffL) << 40;
+            case 5:  k1 ^= (data[tail + 4] & 0xffL) << 32;
+            case 4:  k1 ^= (data[tail + 3] & 0xffL) << 24;
+            case 3:  k1 ^= (data[tail + 2] & 0xffL) << 16;
+            case 2:  k1 ^= (data[tail + 1] & 0xffL) << 8;
+            case 1:  k1 ^= (data[tail] & 0xffL);
+                     h1 ^= mixK1(k1);
+            default:
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        byte[] result = new byte[16];
+        putLong(result, 0, h1);
+        putLong(result, 8, h2);
+        return result;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        long result = 0;
+        for (int i = 7; i >= 0; i--) {
+            result = (result << 8) | (data[offset + i] & 0xffL);
+        }
+        return result;
+    }
+
+    private static void putLong(byte[] data, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            data[offset + i] = (byte) (value >>> (i << 3));
+        }
+    }
+}
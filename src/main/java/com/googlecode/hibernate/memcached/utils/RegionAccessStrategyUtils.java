@@ -0,0 +1,45 @@
+package com.googlecode.hibernate.memcached.utils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.access.RegionAccessStrategy;
+
+import com.googlecode.hibernate.memcached.strategy.BulkRegionAccessStrategy;
+
+/**
+ * A utility class for {@link RegionAccessStrategy}s.
+ */
+public class RegionAccessStrategyUtils {
+
+    /**
+     * Reads many keys from the given strategy. Hooks resolving a batch of keys
+     * at once (batch fetching, multi loads) should use this method, so a
+     * {@link BulkRegionAccessStrategy} can read all keys in one request. Other
+     * strategies are asked for one key at a time.
+     *
+     * @param strategy    the strategy to read from
+     * @param keys        the keys of the items to be retrieved
+     * @param txTimestamp a timestamp prior to the transaction start time
+     * @return            a {@link Map} of each key to its cached object, keys
+     *                    that were not found are left out
+     * @throws CacheException propagated from the strategy
+     */
+    public static Map<Object, Object> getAll(RegionAccessStrategy strategy, Collection<?> keys, long txTimestamp)
+            throws CacheException {
+        if (strategy instanceof BulkRegionAccessStrategy) {
+            return ((BulkRegionAccessStrategy) strategy).getAll(keys, txTimestamp);
+        }
+
+        Map<Object, Object> result = new HashMap<Object, Object>(keys.size() * 2);
+        for (Object key : keys) {
+            Object value = strategy.get(key, txTimestamp);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+}
@@ -2,6 +2,7 @@ package com.googlecode.hibernate.memcached.utils;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -25,6 +26,16 @@ public class StringUtils {
             '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
     };
 
+    private static final char[] BASE64_URL_DIGITS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // MessageDigest.getInstance looks up the provider on every call
+    private static final ThreadLocal<MessageDigest> MD5 = newDigestCache("MD5");
+    private static final ThreadLocal<MessageDigest> SHA1 = newDigestCache("SHA1");
+    private static final ThreadLocal<MessageDigest> SHA256 = newDigestCache("SHA256");
+
     /**
      * Joins a collection of objects together as a <code>String</code> delimited
      * by the given separator. <code>Object</code>s are converted to 
@@ -78,7 +89,7 @@ public class StringUtils {
             throw new IllegalArgumentException("data must not be null");
         }
 
-        byte[] bytes = digest("MD5", data);
+        byte[] bytes = digest(MD5, data);
 
         return toHexString(bytes);
     }
@@ -94,7 +105,7 @@ public class StringUtils {
             throw new IllegalArgumentException("data must not be null");
         }
 
-        byte[] bytes = digest("SHA1", data);
+        byte[] bytes = digest(SHA1, data);
 
         return toHexString(bytes);
     }
@@ -110,11 +121,31 @@ public class StringUtils {
             throw new IllegalArgumentException("data must not be null");
         }
 
-        byte[] bytes = digest("SHA256", data);
+        byte[] bytes = digest(SHA256, data);
 
         return toHexString(bytes);
     }
     
+    /**
+     * Encodes a <code>String</code> using the 128-bit MurmurHash3 hashing
+     * algorithm. The <code>String</code> is hashed as UTF-8, so the result
+     * does not depend on the platform's default charset.
+     * 
+     * @param data the <code>String</code> to encode
+     * @return     the hashed data expressed as an unpadded base64url
+     *             <code>String</code> of 22 characters
+     * @see        MurmurHash3
+     */
+    public static String murmur3Base64Url(String data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data must not be null");
+        }
+
+        byte[] bytes = MurmurHash3.hash128(data.getBytes(UTF_8), 0);
+
+        return toBase64UrlString(bytes);
+    }
+
     /**
      * Creates a new instance of a class with the given name, instantiated with
      * the given arguments.
@@ -186,22 +217,62 @@ public class StringUtils {
     }
 
     /**
-     * Converts a <code>String</code> into a <code>byte[]</code> using the
-     * given algorithm.
+     * Converts a <code>byte[]</code> into an unpadded base64url
+     * <code>String</code> (RFC 4648, section 5).
      * 
-     * @param algorithm the name of the digest algorithm
-     * @param data      the data to convert
-     * @return          the resulting <code>byte[]</code>
-     * @see             MessageDigest
+     * @param bytes the bytes to turn into a base64url <code>String</code>
+     * @return      a base64url <code>String</code>
      */
-    private static byte[] digest(String algorithm, String data) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance(algorithm);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+    private static String toBase64UrlString(byte[] bytes) {
+        int l = bytes.length;
+
+        char[] out = new char[(l * 4 + 2) / 3];
+
+        int i = 0;
+        int j = 0;
+        for (; i + 2 < l; i += 3) {
+            int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+            out[j++] = BASE64_URL_DIGITS[bits >>> 18];
+            out[j++] = BASE64_URL_DIGITS[(bits >>> 12) & 0x3F];
+            out[j++] = BASE64_URL_DIGITS[(bits >>> 6) & 0x3F];
+            out[j++] = BASE64_URL_DIGITS[bits & 0x3F];
+        }
+        if (i < l) {
+            int bits = (bytes[i] & 0xFF) << 16 | (i + 1 < l ? (bytes[i + 1] & 0xFF) << 8 : 0);
+            out[j++] = BASE64_URL_DIGITS[bits >>> 18];
+            out[j++] = BASE64_URL_DIGITS[(bits >>> 12) & 0x3F];
+            if (i + 1 < l) {
+                out[j++] = BASE64_URL_DIGITS[(bits >>> 6) & 0x3F];
+            }
         }
 
-        return digest.digest(data.getBytes());
+        return new String(out);
+    }
+
+    /**
+     * Converts a <code>String</code> into a <code>byte[]</code> using the
+     * given thread's digest.
+     * 
+     * @param digests the digests of the algorithm, one per thread
+     * @param data    the data to convert
+     * @return        the resulting <code>byte[]</code>
+     * @see           MessageDigest
+     */
+    private static byte[] digest(ThreadLocal<MessageDigest> digests, String data) {
+        // digest() resets the digest, so it can be reused
+        return digests.get().digest(data.getBytes());
+    }
+
+    private static ThreadLocal<MessageDigest> newDigestCache(final String algorithm) {
+        return new ThreadLocal<MessageDigest>() {
+            @Override
+            protected MessageDigest initialValue() {
+                try {
+                    return MessageDigest.getInstance(algorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
     }
 }
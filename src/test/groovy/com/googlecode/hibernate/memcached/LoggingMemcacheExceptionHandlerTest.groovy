@@ -22,6 +22,10 @@ class LoggingMemcacheExceptionHandlerTest extends BaseTestCase {
         logger.detachAndStopAllAppenders()
     }
 
+    protected void tearDown() {
+        logger.detachAndStopAllAppenders()
+    }
+
     void testDelete() {
         Exception exception = new Exception("blah")
         def appender = new MockAppender("Cache 'delete' failed for key [blah]", exception)
@@ -3,7 +3,9 @@ package com.googlecode.hibernate.memcached;
 import com.googlecode.hibernate.memcached.strategy.key.*
 import com.googlecode.hibernate.memcached.strategy.key.encoding.*
 import com.googlecode.hibernate.memcached.region.*
+import com.googlecode.hibernate.memcached.concurrent.keylock.*
 import org.hibernate.cache.spi.CacheDataDescription
+import org.hibernate.cache.spi.access.AccessType
 import org.hibernate.cache.internal.CacheDataDescriptionImpl
 import org.hibernate.cfg.Settings
 import java.util.Properties
@@ -42,6 +44,27 @@ class MemcachedRegionFactoryTest extends BaseTestCase {
         assertEquals Sha1KeyEncodingStrategy.class, region.getSettings().getKeyEncodingStrategy().class
     }
 
+    void test_timestamps_and_timeout_share_units() {
+        regionFactory.start(settings, properties)
+        MemcachedQueryResultsRegion region = (MemcachedQueryResultsRegion) regionFactory.buildQueryResultsRegion("test", properties)
+
+        long factoryTimestamp = regionFactory.nextTimestamp()
+        long regionTimestamp = region.nextTimestamp()
+        assertTrue regionTimestamp > factoryTimestamp
+        assertEquals 300, region.getCacheTimeSeconds()
+        assertEquals 300000 * 4096, region.getTimeout()
+    }
+
+    void test_long_cache_time() {
+        properties.setProperty "hibernate.memcached.test.cacheTimeSeconds", "86400"
+        regionFactory.start(settings, properties)
+        MemcachedQueryResultsRegion region = (MemcachedQueryResultsRegion) regionFactory.buildQueryResultsRegion("test", properties)
+
+        assertEquals 86400, region.getCacheTimeSeconds()
+        assertEquals Integer.MAX_VALUE, region.getTimeout()
+        assertEquals 86400000L * 4096, region.getLockTimeout()
+    }
+
     void test_region_properties() {
         properties.setProperty "hibernate.memcached.serverList", "127.0.0.1:11211"
         properties.setProperty "hibernate.memcached.test.cacheTimeSeconds", "500"
@@ -69,6 +92,61 @@ class MemcachedRegionFactoryTest extends BaseTestCase {
         assertEquals NonEncodingKeyEncodingStrategy.class, region.getSettings().getKeyEncodingStrategy().class
     }
 
+    void test_key_lock_provider_type() {
+        properties.setProperty("hibernate.memcached.local.keyLockProvider", "LOCAL")
+        properties.setProperty("hibernate.memcached.none.keyLockProvider", "NONE")
+
+        regionFactory.start(settings, properties)
+
+        MemcachedRegion region = (MemcachedRegion) regionFactory.buildQueryResultsRegion("local", properties)
+        def provider = region.createComponentFactory().createMemcachedReadWriteKeyLockProvider()
+        assertEquals LocalReadWriteKeyLockProvider.class, provider.class
+        assertSame provider, region.createComponentFactory().createMemcachedReadWriteKeyLockProvider()
+
+        region = (MemcachedRegion) regionFactory.buildQueryResultsRegion("none", properties)
+        assertEquals NoLockKeyLockProvider.class, region.createComponentFactory().createMemcachedReadWriteKeyLockProvider().class
+
+        region = (MemcachedRegion) regionFactory.buildQueryResultsRegion("test", properties)
+        assertEquals LocalKeyLockProvider.class, region.createComponentFactory().createMemcachedReadWriteKeyLockProvider().class
+    }
+
+    void test_read_write_regions_do_not_use_a_near_cache() {
+        properties.setProperty("hibernate.memcached.nearCache", "true")
+        properties.setProperty("hibernate.memcached.casRegion.casReadWrite", "true")
+
+        regionFactory.start(settings, properties)
+
+        MemcachedEntityRegion region = (MemcachedEntityRegion) regionFactory.buildEntityRegion("nonStrict", properties, metadata)
+        region.buildAccessStrategy(AccessType.NONSTRICT_READ_WRITE)
+        assertNotNull region.getSettings().getNearCache()
+
+        ["readWrite", "casRegion"].each { String name ->
+            region = (MemcachedEntityRegion) regionFactory.buildEntityRegion(name, properties, metadata)
+            assertNotNull region.getSettings().getNearCache()
+            region.buildAccessStrategy(AccessType.READ_WRITE)
+            assertNull region.getSettings().getNearCache()
+        }
+    }
+
+    void test_single_flight_is_opt_in_and_not_used_by_read_write_regions() {
+        properties.setProperty("hibernate.memcached.shared.singleFlight", "true")
+        properties.setProperty("hibernate.memcached.sharedReadWrite.singleFlight", "true")
+
+        regionFactory.start(settings, properties)
+
+        MemcachedEntityRegion region = (MemcachedEntityRegion) regionFactory.buildEntityRegion("test", properties, metadata)
+        assertNull region.getSettings().getSingleFlight()
+
+        region = (MemcachedEntityRegion) regionFactory.buildEntityRegion("shared", properties, metadata)
+        region.buildAccessStrategy(AccessType.NONSTRICT_READ_WRITE)
+        assertNotNull region.getSettings().getSingleFlight()
+
+        region = (MemcachedEntityRegion) regionFactory.buildEntityRegion("sharedReadWrite", properties, metadata)
+        assertNotNull region.getSettings().getSingleFlight()
+        region.buildAccessStrategy(AccessType.READ_WRITE)
+        assertNull region.getSettings().getSingleFlight()
+    }
+
     void tearDown() {
         regionFactory.stop()
     }
@@ -3,6 +3,7 @@ package com.googlecode.hibernate.memcached
 import com.googlecode.hibernate.memcached.MemcachedRegionProperties;
 import com.googlecode.hibernate.memcached.client.spymemcached.*;
 import com.googlecode.hibernate.memcached.client.dangamemcached.DangaMemcacheClientFactory;
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockProviderType
 import com.googlecode.hibernate.memcached.strategy.key.*
 import com.googlecode.hibernate.memcached.strategy.key.encoding.*
 /**
@@ -85,4 +86,57 @@ class MemcachedRegionPropertiesTest extends BaseTestCase {
 
 
     }
+
+    void test_near_cache() {
+
+        Properties p = new Properties()
+        p["hibernate.memcached.nearCache"] = "true"
+        p["hibernate.memcached.nearCache.maxEntries"] = "100"
+        p["hibernate.memcached.REGION.nearCache"] = "false"
+        p["hibernate.memcached.REGION.nearCache.timeToLiveMillis"] = "50"
+
+        MemcachedRegionProperties regionProperties = newRegionProperties(p)
+        assertTrue regionProperties.isNearCacheEnabled(null)
+        assertFalse regionProperties.isNearCacheEnabled("REGION")
+        assertEquals 100, regionProperties.getNearCacheMaxEntries("REGION")
+        assertEquals 1000, regionProperties.getNearCacheTimeToLiveMillis(null)
+        assertEquals 50, regionProperties.getNearCacheTimeToLiveMillis("REGION")
+    }
+
+    void test_compression() {
+
+        Properties p = new Properties()
+        p["hibernate.memcached.REGION.compression"] = "true"
+        p["hibernate.memcached.compression.minBytes"] = "4096"
+        p["hibernate.memcached.REGION.compression.minSavingsPercent"] = "25"
+
+        MemcachedRegionProperties regionProperties = newRegionProperties(p)
+        assertFalse regionProperties.isCompressionEnabled(null)
+        assertTrue regionProperties.isCompressionEnabled("REGION")
+        assertEquals 4096, regionProperties.getCompressionMinBytes("REGION")
+        assertEquals 10, regionProperties.getCompressionMinSavingsPercent(null)
+        assertEquals 25, regionProperties.getCompressionMinSavingsPercent("REGION")
+    }
+
+    void test_chunking() {
+
+        Properties p = new Properties()
+        p["hibernate.memcached.chunking"] = "true"
+        p["hibernate.memcached.REGION.chunking.chunkBytes"] = "500000"
+
+        MemcachedRegionProperties regionProperties = newRegionProperties(p)
+        assertTrue regionProperties.isChunkingEnabled("REGION")
+        assertEquals 1000000, regionProperties.getChunkingChunkBytes(null)
+        assertEquals 500000, regionProperties.getChunkingChunkBytes("REGION")
+    }
+
+    void test_key_lock_provider() {
+
+        Properties p = new Properties()
+        p["hibernate.memcached.REGION.keyLockProvider"] = "LOCAL"
+
+        MemcachedRegionProperties regionProperties = newRegionProperties(p)
+        assertEquals KeyLockProviderType.UNBLOCKED_READ_BLOCKED_WRITE, regionProperties.getKeyLockProviderType(null)
+        assertEquals KeyLockProviderType.LOCAL, regionProperties.getKeyLockProviderType("REGION")
+    }
 }
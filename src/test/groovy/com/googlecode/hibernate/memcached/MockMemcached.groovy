@@ -1,6 +1,8 @@
 package com.googlecode.hibernate.memcached
 
 import com.googlecode.hibernate.memcached.client.*;
+import com.googlecode.hibernate.memcached.concurrent.ImmediateFuture
+import java.util.concurrent.Future
 
 /**
  * DOCUMENT ME!
@@ -20,7 +22,28 @@ class MockMemcached implements HibernateMemcachedClient {
     }
 
     public boolean add(String key, int exp, Object o) {
-        return false;
+        if (cache.containsKey(key)) {
+            return false
+        }
+        cache[key] = o
+        return true
+    }
+
+    public boolean setMulti(Map<String, Object> values, int cacheTimeSeconds) {
+        cache.putAll(values)
+        return true
+    }
+
+    public CasValue gets(String key) {
+        cache.containsKey(key) ? new CasValue(System.identityHashCode(cache[key]), cache[key]) : null
+    }
+
+    public boolean cas(String key, long casId, int cacheTimeSeconds, Object o) {
+        if (!cache.containsKey(key) || System.identityHashCode(cache[key]) != casId) {
+            return false
+        }
+        cache[key] = o
+        return true
     }
 
     public boolean delete(String key) {
@@ -28,18 +51,23 @@ class MockMemcached implements HibernateMemcachedClient {
         return true
     }
 
+    public boolean deleteMulti(String[] keys) {
+        keys.each { cache.remove it }
+        return true
+    }
+
     public long incr(String key, long factor, long startingValue) {
         Long counter = (Long) cache[key]
-        if (counter != null) {
-            cache[key] = counter + 1
-        } else {
-            cache[key] = counter
-        }
+        counter = (counter != null) ? counter + factor : startingValue
+        cache[key] = counter
         return counter
     }
 
     public long decr(String key, long by, long startingValue) {
-        // implement
+        Long counter = (Long) cache[key]
+        counter = (counter != null) ? Math.max(0, counter - by) : startingValue
+        cache[key] = counter
+        return counter
     }
 
     public void shutdown() {
@@ -50,4 +78,28 @@ class MockMemcached implements HibernateMemcachedClient {
   public Map<String, Object> getMulti(String[] keys) {
     return cache.findAll {key, value -> keys.toList().contains(key)}
   }
+
+    public Future<Object> getAsync(String key) {
+        new ImmediateFuture<Object>(get(key))
+    }
+
+    public Future<Map<String, Object>> getMultiAsync(String[] keys) {
+        new ImmediateFuture<Map<String, Object>>(getMulti(keys))
+    }
+
+    public Future<Boolean> setAsync(String key, int cacheTimeSeconds, Object o) {
+        new ImmediateFuture<Boolean>(set(key, cacheTimeSeconds, o))
+    }
+
+    public Future<Boolean> addAsync(String key, int exp, Object o) {
+        new ImmediateFuture<Boolean>(add(key, exp, o))
+    }
+
+    public Future<Boolean> deleteAsync(String key) {
+        new ImmediateFuture<Boolean>(delete(key))
+    }
+
+    public Future<Long> incrAsync(String key, long factor, long startingValue) {
+        new ImmediateFuture<Long>(incr(key, factor, startingValue))
+    }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.googlecode.hibernate.memcached.client
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcachedRegionProperties
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings
+import com.googlecode.hibernate.memcached.MockMemcached
+import com.googlecode.hibernate.memcached.client.chunk.ChunkManifest
+import com.googlecode.hibernate.memcached.client.chunk.ValueChunker
+import com.googlecode.hibernate.memcached.codec.JavaValueSerializer
+import com.googlecode.hibernate.memcached.strategy.key.RegionKeys
+
+class HibernateMemcachedRegionClientTest extends BaseTestCase {
+
+    void test_get_multi_is_keyed_by_caller_keys() {
+        HibernateMemcachedRegionClient client = createClient(new Properties())
+        client.set("a", 60, "1")
+        client.set("b", 60, "2")
+
+        String[] keys = ["a", "b", "c"]
+        assertEquals([a: "1", b: "2"], client.getMulti(keys))
+        assertEquals([a: "1", b: "2"], client.getMultiAsync(keys).get())
+        assertEquals(["a", "b", "c"], keys as List)
+    }
+
+    void test_get_multi_with_dogpile_tokens() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.dogpilePrevention"] = "true"
+        HibernateMemcachedRegionClient client = createClient(properties)
+        client.set("a", 60, "1")
+
+        String[] keys = ["a", "b"]
+        assertEquals([a: "1"], client.getMulti(keys))
+        assertEquals([a: "1"], client.getMultiAsync(keys).get())
+        assertEquals "1", client.get("a")
+        assertEquals "1", client.getAsync("a").get()
+        assertEquals(["a", "b"], keys as List)
+    }
+
+    void test_set_multi_prefixes_keys_and_sets_dogpile_tokens() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.dogpilePrevention"] = "true"
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+        MockMemcached memcached = new MockMemcached()
+        HibernateMemcachedRegionClient client = new HibernateMemcachedRegionClient(memcached, settings, 0)
+
+        assertTrue client.setMulti([a: "1", b: "2"], 60)
+
+        RegionKeys keys = RegionKeys.get(settings, 0)
+        assertEquals([
+                (keys.objectKeys.build("a")): "1",
+                (keys.objectKeys.build("b")): "2",
+                (keys.dogpileTokenKeys.build("a")): 0,
+                (keys.dogpileTokenKeys.build("b")): 0
+        ], memcached.cache)
+        assertFalse memcached.cache.containsKey("a")
+
+        String[] callerKeys = ["a", "b"]
+        assertEquals([a: "1", b: "2"], client.getMulti(callerKeys))
+    }
+
+    void test_large_values_are_chunked() {
+        MockMemcached memcached = new MockMemcached()
+        HibernateMemcachedRegionClient client = createChunkingClient(memcached)
+        String value = "x" * 1000
+        client.set("a", 60, value)
+        client.set("b", 60, "small")
+
+        assertTrue memcached.cache.size() > 2
+        assertTrue memcached.cache.values().any { it instanceof ChunkManifest }
+        assertEquals value, client.get("a")
+        assertEquals value, client.getAsync("a").get()
+        assertEquals value, client.gets("a").value
+        String[] keys = ["a", "b"]
+        assertEquals([a: value, b: "small"], client.getMulti(keys))
+    }
+
+    void test_partially_overwritten_chunks_are_a_miss() {
+        MockMemcached memcached = new MockMemcached()
+        HibernateMemcachedRegionClient client = createChunkingClient(memcached)
+        client.set("a", 60, "x" * 1000)
+
+        String chunkKey = memcached.cache.keySet().find { memcached.cache[it] instanceof byte[] }
+        memcached.cache[chunkKey] = new ValueChunker(100, new JavaValueSerializer()).split("x" * 1000).chunks[0]
+
+        assertNull client.get("a")
+        assertNull client.gets("a").value
+    }
+
+    void test_deleting_a_chunked_value_deletes_its_chunks() {
+        MockMemcached memcached = new MockMemcached()
+        HibernateMemcachedRegionClient client = createChunkingClient(memcached)
+        client.set("a", 60, "x" * 1000)
+        client.set("b", 60, "y" * 1000)
+        client.set("c", 60, "z" * 1000)
+        client.set("d", 60, "small")
+
+        assertTrue client.delete("a")
+        assertNull client.get("a")
+        assertEquals 2, memcached.cache.values().findAll { it instanceof ChunkManifest }.size()
+
+        String[] keys = ["b", "d"]
+        assertTrue client.deleteMulti(keys)
+        assertEquals 1, memcached.cache.values().findAll { !(it instanceof byte[]) }.size()
+
+        // deleteAsync does not wait for a read, the chunks expire
+        assertTrue client.deleteAsync("c").get()
+        assertNull client.get("c")
+        assertTrue memcached.cache.values().every { it instanceof byte[] }
+    }
+
+    void test_losing_write_leaves_chunked_value_readable() {
+        MockMemcached memcached = new MockMemcached()
+        HibernateMemcachedRegionClient client = createChunkingClient(memcached)
+        String value = "x" * 1000
+        client.set("a", 60, value)
+
+        assertFalse client.add("a", 60, "y" * 1000)
+        assertEquals value, client.get("a")
+
+        long casId = client.gets("a").cas
+        client.set("a", 60, "z" * 1000)
+        assertFalse client.cas("a", casId, 60, "w" * 1000)
+        assertEquals "z" * 1000, client.get("a")
+    }
+
+    private HibernateMemcachedRegionClient createChunkingClient(MockMemcached memcached) {
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(new Properties()))
+        settings.valueChunker = new ValueChunker(100, new JavaValueSerializer())
+        new HibernateMemcachedRegionClient(memcached, settings, 0)
+    }
+
+    private HibernateMemcachedRegionClient createClient(Properties properties) {
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+        new HibernateMemcachedRegionClient(new MockMemcached(), settings, 0)
+    }
+}
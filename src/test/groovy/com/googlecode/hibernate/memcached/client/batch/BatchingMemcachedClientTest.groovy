@@ -0,0 +1,67 @@
+package com.googlecode.hibernate.memcached.client.batch
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MockMemcached
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient
+
+class BatchingMemcachedClientTest extends BaseTestCase {
+
+    AtomicInteger gets = new AtomicInteger()
+    AtomicInteger multiGets = new AtomicInteger()
+    MockMemcached memcached = new MockMemcached()
+    HibernateMemcachedClient counting = [
+        get: { String key -> gets.incrementAndGet(); memcached.get(key) },
+        getMulti: { String[] keys -> multiGets.incrementAndGet(); memcached.getMulti(keys) }
+    ] as HibernateMemcachedClient
+    def executor = Executors.newFixedThreadPool(8)
+
+    protected void tearDown() {
+        executor.shutdownNow()
+    }
+
+    void test_single_get() {
+        memcached.set("a", 0, "A")
+        BatchingMemcachedClient client = new BatchingMemcachedClient(counting, 100, 64)
+
+        assertEquals "A", client.get("a")
+        assertNull client.get("missing")
+        assertEquals 2, gets.get()
+        assertEquals 0, multiGets.get()
+    }
+
+    void test_concurrent_gets_are_batched() {
+        (1..8).each { memcached.set("key" + it, 0, "value" + it) }
+        // a long window so that all threads make it into one batch
+        BatchingMemcachedClient client = new BatchingMemcachedClient(counting, 500000, 8)
+
+        CyclicBarrier barrier = new CyclicBarrier(8)
+        def results = (1..8).collect { i ->
+            executor.submit({ barrier.await(); client.get("key" + i) } as Callable)
+        }
+
+        (1..8).each { i -> assertEquals "value" + i, results[i - 1].get() }
+        assertEquals 0, gets.get()
+        assertEquals 1, multiGets.get()
+    }
+
+    void test_full_batch_is_sent_early() {
+        (1..4).each { memcached.set("key" + it, 0, "value" + it) }
+        // the window is never reached, the batch is sent once it holds two keys
+        BatchingMemcachedClient client = new BatchingMemcachedClient(counting, 60000000, 2)
+
+        CyclicBarrier barrier = new CyclicBarrier(4)
+        long start = System.currentTimeMillis()
+        def results = (1..4).collect { i ->
+            executor.submit({ barrier.await(); client.get("key" + i) } as Callable)
+        }
+
+        (1..4).each { i -> assertEquals "value" + i, results[i - 1].get() }
+        assertTrue System.currentTimeMillis() - start < 10000
+        assertEquals 2, multiGets.get()
+    }
+}
@@ -0,0 +1,129 @@
+package com.googlecode.hibernate.memcached.client.breaker
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcacheExceptionHandler
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedClient
+import com.googlecode.hibernate.memcached.client.ServerAwareClient
+
+class CircuitBreakingMemcachedClientTest extends BaseTestCase {
+
+    AtomicInteger calls = new AtomicInteger()
+    boolean failing = true
+    MemcacheExceptionHandler handler
+
+    // fails by reporting to its exception handler, like the real clients
+    ServerAwareClient memcached = [
+        setExceptionHandler: { handler = it },
+        getServer: { String key -> key.startsWith("a") ? "server-a" : "server-b" },
+        get: { String key ->
+            calls.incrementAndGet()
+            if (failing) {
+                handler.handleErrorOnGet(key, new IOException("down"))
+                return null
+            }
+            return "value"
+        },
+        getMulti: { String[] keys ->
+            calls.incrementAndGet()
+            keys.collectEntries { [it, "value"] }
+        }
+    ] as ServerAwareClient
+
+    void test_breaker_opens_after_consecutive_failures() {
+        CircuitBreakingMemcachedClient client = new CircuitBreakingMemcachedClient(memcached, 3, 60000, 0, 60000)
+
+        3.times { assertNull client.get("a1") }
+        assertEquals 3, calls.get()
+
+        assertNull client.get("a2")
+        assertEquals 3, calls.get()
+
+        CircuitBreaker breaker = client.circuitBreakers.find { it.server == "server-a" }
+        assertEquals CircuitBreaker.State.OPEN, breaker.state
+        assertEquals 1, breaker.rejections
+        assertEquals 1, breaker.opened
+        assertEquals 2, client.suppressedFailures
+    }
+
+    void test_breakers_are_per_server() {
+        CircuitBreakingMemcachedClient client = new CircuitBreakingMemcachedClient(memcached, 1, 60000, 0, 60000)
+        client.get("a1")
+        failing = false
+
+        assertNull client.get("a1")
+        assertEquals "value", client.get("b1")
+        assertEquals([b1: "value"], client.getMulti("a1", "b1"))
+    }
+
+    void test_successful_trial_closes_breaker() {
+        CircuitBreakingMemcachedClient client = new CircuitBreakingMemcachedClient(memcached, 1, 50, 0, 60000)
+        client.get("a1")
+        CircuitBreaker breaker = client.circuitBreakers.iterator().next()
+        assertEquals CircuitBreaker.State.OPEN, breaker.state
+
+        Thread.sleep(100)
+        client.get("a1")
+        assertEquals 2, calls.get()
+        assertEquals CircuitBreaker.State.OPEN, breaker.state
+
+        Thread.sleep(100)
+        failing = false
+        assertEquals "value", client.get("a1")
+        assertEquals CircuitBreaker.State.CLOSED, breaker.state
+        assertEquals "value", client.get("a2")
+    }
+
+    void test_thrown_exceptions_count_as_failures() {
+        HibernateMemcachedClient throwing = [get: { String key -> throw new IllegalStateException("down") }] as HibernateMemcachedClient
+        CircuitBreakingMemcachedClient client = new CircuitBreakingMemcachedClient(throwing, 2, 60000, 0, 60000)
+
+        assertNull client.get("a")
+        assertNull client.get("b")
+        assertEquals CircuitBreaker.State.OPEN, client.circuitBreakers.iterator().next().state
+    }
+
+    void test_multi_key_failures_count_against_every_server() {
+        ServerAwareClient reporting = [
+            setExceptionHandler: { handler = it },
+            getServer: { String key -> key.startsWith("a") ? "server-a" : "server-b" },
+            getMulti: { String[] keys ->
+                handler.handleErrorOnGet(keys.join(", "), new IOException("down"))
+                [:]
+            },
+            deleteMulti: { String[] keys -> throw new IllegalStateException("down") }
+        ] as ServerAwareClient
+
+        CircuitBreakingMemcachedClient client = new CircuitBreakingMemcachedClient(reporting, 1, 60000, 0, 60000)
+        assertEquals([:], client.getMulti("a1", "b1"))
+        assertEquals 2, client.circuitBreakers.size()
+        assertTrue client.circuitBreakers.every { it.state == CircuitBreaker.State.OPEN }
+
+        client = new CircuitBreakingMemcachedClient(reporting, 2, 60000, 0, 60000)
+        assertFalse client.deleteMulti("a1", "b1")
+        assertTrue client.circuitBreakers.every { it.state == CircuitBreaker.State.CLOSED }
+        assertFalse client.deleteMulti("a2", "b2")
+        assertTrue client.circuitBreakers.every { it.state == CircuitBreaker.State.OPEN }
+    }
+
+    void test_slow_multi_key_calls_count_against_every_server() {
+        ServerAwareClient slow = [
+            setExceptionHandler: { handler = it },
+            getServer: { String key -> key.startsWith("a") ? "server-a" : "server-b" },
+            getMulti: { String[] keys ->
+                calls.incrementAndGet()
+                Thread.sleep(50)
+                keys.collectEntries { [it, "value"] }
+            }
+        ] as ServerAwareClient
+
+        CircuitBreakingMemcachedClient client = new CircuitBreakingMemcachedClient(slow, 1, 60000, 10, 60000)
+        assertEquals([a1: "value", b1: "value"], client.getMulti("a1", "b1"))
+        assertEquals 2, client.circuitBreakers.size()
+        assertTrue client.circuitBreakers.every { it.state == CircuitBreaker.State.OPEN }
+
+        assertEquals([:], client.getMulti("a1", "b1"))
+        assertEquals 1, calls.get()
+    }
+}
@@ -0,0 +1,42 @@
+package com.googlecode.hibernate.memcached.client.chunk
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.codec.JavaValueSerializer
+
+class ValueChunkerTest extends BaseTestCase {
+
+    ValueChunker chunker = new ValueChunker(100, new JavaValueSerializer())
+
+    void test_large_values_are_split_and_joined() {
+        String value = "x" * 1000
+
+        ChunkedValue chunked = chunker.split(value)
+
+        assertTrue chunked.manifest.chunkCount > 1
+        assertEquals chunked.manifest.chunkCount, chunked.chunks.length
+        assertEquals value, chunker.join(chunked.manifest, chunked.chunks)
+    }
+
+    void test_small_values_are_not_split() {
+        assertNull chunker.split("x" * 10)
+        assertNull chunker.split(42L)
+    }
+
+    void test_missing_chunk_is_a_miss() {
+        ChunkedValue chunked = chunker.split("x" * 1000)
+        Object[] chunks = chunked.chunks
+        chunks[1] = null
+
+        assertNull chunker.join(chunked.manifest, chunks)
+    }
+
+    void test_chunk_of_another_write_is_a_miss() {
+        ChunkedValue chunked = chunker.split("x" * 1000)
+        ChunkedValue other = chunker.split("y" * 1000)
+        Object[] chunks = chunked.chunks
+        chunks[2] = other.chunks[2]
+
+        assertNull chunker.join(chunked.manifest, chunks)
+        assertNull chunker.join(chunked.manifest, chunked.chunks[0..1] as Object[])
+    }
+}
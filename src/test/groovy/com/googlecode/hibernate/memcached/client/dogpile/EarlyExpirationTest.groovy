@@ -0,0 +1,89 @@
+package com.googlecode.hibernate.memcached.client.dogpile
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcachedRegionProperties
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings
+import com.googlecode.hibernate.memcached.MockMemcached
+import com.googlecode.hibernate.memcached.client.HibernateMemcachedRegionClient
+
+class EarlyExpirationTest extends BaseTestCase {
+
+    void test_fresh_value_is_returned() {
+        EarlyExpiration expiration = new EarlyExpiration(1.0)
+        DogpileEnvelope envelope = expiration.wrap("key", "value", 60)
+
+        100.times {
+            assertEquals "value", expiration.unwrap("key", envelope)
+        }
+    }
+
+    void test_value_cached_forever_is_never_refreshed() {
+        EarlyExpiration expiration = new EarlyExpiration(1.0)
+        DogpileEnvelope envelope = expiration.wrap("key", "value", 0)
+        assertEquals Long.MAX_VALUE, envelope.softExpiresAt
+        assertEquals Long.MAX_VALUE, expiration.wrap("key", "value", -1).softExpiresAt
+
+        DogpileEnvelope expensive = new DogpileEnvelope("value", envelope.softExpiresAt, Integer.MAX_VALUE)
+        1000.times {
+            assertFalse expiration.isExpired(expensive, System.currentTimeMillis())
+            assertEquals "value", expiration.unwrap("key", envelope)
+        }
+    }
+
+    void test_single_refresher_after_soft_expiry() {
+        EarlyExpiration expiration = new EarlyExpiration(1.0)
+        DogpileEnvelope envelope = new DogpileEnvelope("value", System.currentTimeMillis() - 1, 10)
+
+        assertNull expiration.unwrap("key", envelope)
+        assertEquals "value", expiration.unwrap("key", envelope)
+        assertEquals "value", expiration.unwrap("key", envelope)
+
+        // writing the refreshed value ends the refresh
+        Thread.sleep(20)
+        DogpileEnvelope refreshed = expiration.wrap("key", "new value", 60)
+        assertTrue refreshed.recomputeMillis >= 20
+        assertEquals "new value", expiration.unwrap("key", refreshed)
+    }
+
+    void test_expensive_values_refresh_early() {
+        EarlyExpiration expiration = new EarlyExpiration(1.0)
+        long now = System.currentTimeMillis()
+        DogpileEnvelope cheap = new DogpileEnvelope("value", now + 10000, 1)
+        DogpileEnvelope expensive = new DogpileEnvelope("value", now + 10000, 100000)
+
+        int cheapRefreshes = 0
+        int expensiveRefreshes = 0
+        1000.times {
+            if (expiration.isExpired(cheap, now)) cheapRefreshes++
+            if (expiration.isExpired(expensive, now)) expensiveRefreshes++
+        }
+        assertEquals 0, cheapRefreshes
+        assertTrue expensiveRefreshes > 0
+    }
+
+    void test_unwrapped_values_are_passed_through() {
+        EarlyExpiration expiration = new EarlyExpiration(1.0)
+        assertNull expiration.unwrap("key", null)
+        assertEquals 5L, expiration.unwrap("key", 5L)
+    }
+
+    void test_region_client_stores_one_item_per_value() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.dogpilePrevention"] = "true"
+        properties["hibernate.memcached.dogpilePrevention.mode"] = "ENVELOPE"
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+        settings.earlyExpiration = new EarlyExpiration(1.0)
+
+        MockMemcached memcached = new MockMemcached()
+        HibernateMemcachedRegionClient client = new HibernateMemcachedRegionClient(memcached, settings, 0)
+
+        assertTrue client.set("key", 60, "value")
+        assertEquals 1, memcached.cache.size()
+        assertTrue memcached.cache.values().iterator().next() instanceof DogpileEnvelope
+
+        assertEquals "value", client.get("key")
+        assertEquals "value", client.gets("key").value
+        assertEquals(["value"], new ArrayList(client.getMulti("key").values()))
+        assertEquals "value", client.getAsync("key").get()
+    }
+}
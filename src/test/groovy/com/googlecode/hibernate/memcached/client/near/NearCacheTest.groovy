@@ -0,0 +1,90 @@
+package com.googlecode.hibernate.memcached.client.near
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MockMemcached
+
+class NearCacheTest extends BaseTestCase {
+
+    void test_get_put_invalidate() {
+        NearCache cache = new NearCache(100, 1024 * 1024, 60000)
+        assertNull cache.get("key", 0)
+
+        cache.put("key", 0, "value", cache.getStamp("key"))
+        assertEquals "value", cache.get("key", 0)
+
+        cache.invalidate("key")
+        assertNull cache.get("key", 0)
+    }
+
+    void test_clear_index() {
+        NearCache cache = new NearCache(100, 1024 * 1024, 60000)
+        cache.put("key", 1, "value", cache.getStamp("key"))
+
+        assertNull cache.get("key", 0)
+        assertEquals "value", cache.get("key", 1)
+        assertNull cache.get("key", 2)
+        assertEquals 0, cache.size()
+    }
+
+    void test_stale_load_is_discarded() {
+        NearCache cache = new NearCache(100, 1024 * 1024, 60000)
+        long stamp = cache.getStamp("key")
+        cache.invalidate("key")
+
+        cache.put("key", 0, "old value", stamp)
+        assertNull cache.get("key", 0)
+    }
+
+    void test_time_to_live() {
+        NearCache cache = new NearCache(100, 1024 * 1024, 20)
+        cache.put("key", 0, "value", cache.getStamp("key"))
+        Thread.sleep(50)
+        assertNull cache.get("key", 0)
+    }
+
+    void test_frequent_entries_are_kept() {
+        NearCache cache = new NearCache(10, 1024 * 1024, 60000)
+        (0..<10).each { i ->
+            5.times { cache.get("hot" + i, 0) }
+            cache.put("hot" + i, 0, "value", cache.getStamp("hot" + i))
+        }
+
+        (0..<100).each { i ->
+            cache.get("cold" + i, 0)
+            cache.put("cold" + i, 0, "value", cache.getStamp("cold" + i))
+        }
+
+        assertEquals 10, cache.size()
+        (0..<10).each { i -> assertNotNull cache.get("hot" + i, 0) }
+    }
+
+    void test_bytes_are_bounded() {
+        NearCache cache = new NearCache(1000, 4096, 60000)
+        (0..<100).each { i ->
+            cache.get("key" + i, 0)
+            cache.get("key" + i, 0)
+            cache.put("key" + i, 0, new byte[500], cache.getStamp("key" + i))
+        }
+
+        assertTrue cache.getBytes() <= 4096
+        assertTrue cache.size() > 0
+    }
+
+    void test_region_client() {
+        MockMemcached memcached = new MockMemcached()
+        NearCache cache = new NearCache(100, 1024 * 1024, 60000)
+        NearCacheRegionClient client = new NearCacheRegionClient(memcached, cache, 0)
+
+        memcached.set("key", 0, "value")
+        assertEquals "value", client.get("key")
+
+        memcached.cache["key"] = "changed elsewhere"
+        assertEquals "value", client.get("key")
+
+        client.set("key", 0, "changed here")
+        assertEquals "changed here", client.get("key")
+
+        client.delete("key")
+        assertNull client.get("key")
+    }
+}
@@ -0,0 +1,154 @@
+package com.googlecode.hibernate.memcached.client.nio
+
+import net.spy.memcached.AddrUtil
+import net.spy.memcached.DefaultConnectionFactory
+import net.spy.memcached.DefaultHashAlgorithm
+import net.spy.memcached.MemcachedClient
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcacheExceptionHandler
+import com.googlecode.hibernate.memcached.client.spymemcached.SpyMemcache
+import com.googlecode.hibernate.memcached.server.EmbeddedMemcachedServer
+import com.googlecode.hibernate.memcached.server.EmbeddedMemcachedServer.Failure
+
+class NioMemcacheTest extends BaseTestCase {
+
+    EmbeddedMemcachedServer server
+    NioMemcache client
+    List<String> errors = []
+
+    protected void setUp() {
+        server = new EmbeddedMemcachedServer()
+        server.start()
+
+        Properties properties = new Properties()
+        properties.setProperty("hibernate.memcached.servers", server.servers)
+        properties.setProperty("hibernate.memcached.operationTimeout", "500")
+        properties.setProperty("hibernate.memcached.reconnectDelay", "50")
+        client = new NioMemcache(new NioMemcachedProperties(properties))
+        client.exceptionHandler = [
+                handleErrorOnGet: { key, e -> errors << key },
+                handleErrorOnSet: { key, exp, o, e -> errors << key },
+                handleErrorOnDelete: { key, e -> errors << key },
+                handleErrorOnIncr: { key, factor, start, e -> errors << key }
+        ] as MemcacheExceptionHandler
+    }
+
+    protected void tearDown() {
+        client.shutdown()
+        server.stop()
+    }
+
+    void test_set_get_delete() {
+        assertTrue client.set("test", 0, "value")
+        assertEquals "value", client.get("test")
+        assertTrue client.delete("test")
+        assertNull client.get("test")
+        assertFalse client.delete("test")
+    }
+
+    void test_add() {
+        assertTrue client.add("test", 0, "first")
+        assertFalse client.add("test", 0, "second")
+        assertEquals "first", client.get("test")
+    }
+
+    void test_gets_cas() {
+        client.set("test", 0, "first")
+        def value = client.gets("test")
+        assertEquals "first", value.value
+
+        assertTrue client.cas("test", value.cas, 0, "second")
+        assertFalse client.cas("test", value.cas, 0, "third")
+        assertEquals "second", client.get("test")
+    }
+
+    void test_multi() {
+        assertTrue client.setMulti([a: "1", b: "2", c: "3"], 0)
+        assertEquals([a: "1", b: "2", c: "3"], client.getMulti("a", "b", "c", "d"))
+
+        assertTrue client.deleteMulti("a", "b")
+        assertEquals([c: "3"], client.getMulti("a", "b", "c"))
+    }
+
+    void test_incr_decr() {
+        assertEquals 5, client.incr("counter", 1, 5)
+        assertEquals 6, client.incr("counter", 1, 5)
+        assertEquals 2, client.decr("counter", 4, 5)
+    }
+
+    void test_error_falls_back() {
+        // set does not wait for the reply, make sure it is stored before the failure
+        assertTrue client.setAsync("test", 0, "value").get()
+        server.injectFailure(Failure.ERROR, 1.0)
+        assertNull client.get("test")
+        assertEquals(["test"], errors)
+        server.clearFaults()
+        assertEquals "value", client.get("test")
+    }
+
+    void test_reconnects_after_disconnect() {
+        assertTrue client.setAsync("test", 0, "value").get()
+        server.disconnectAll()
+
+        def value = null
+        for (int i = 0; i < 50 && value == null; i++) {
+            value = client.get("test")
+            if (value == null) {
+                Thread.sleep(20)
+            }
+        }
+        assertEquals "value", value
+    }
+
+    void test_async_operations() {
+        assertTrue client.setAsync("test", 0, "value").get()
+        assertEquals "value", client.getAsync("test").get()
+        assertFalse client.addAsync("test", 0, "other").get()
+        assertTrue client.deleteAsync("test").get()
+        assertNull client.getAsync("test").get()
+        assertEquals 5, client.incrAsync("counter", 1, 5).get()
+        assertEquals 6, client.incrAsync("counter", 1, 5).get()
+        assertTrue errors.isEmpty()
+    }
+
+    void test_keys_map_to_servers_like_spymemcached() {
+        EmbeddedMemcachedServer other = new EmbeddedMemcachedServer()
+        other.start()
+        String servers = server.servers + " " + other.servers
+        try {
+            [DefaultHashAlgorithm.KETAMA_HASH, DefaultHashAlgorithm.FNV1_64_HASH].each { DefaultHashAlgorithm algorithm ->
+                Properties properties = new Properties()
+                properties.setProperty("hibernate.memcached.servers", servers)
+                properties.setProperty("hibernate.memcached.hashAlgorithm", algorithm.name())
+                NioMemcache nio = new NioMemcache(new NioMemcachedProperties(properties))
+                MemcachedClient memcachedClient = new MemcachedClient(new DefaultConnectionFactory(
+                        DefaultConnectionFactory.DEFAULT_OP_QUEUE_LEN, DefaultConnectionFactory.DEFAULT_READ_BUFFER_SIZE, algorithm),
+                        AddrUtil.getAddresses(servers))
+                SpyMemcache spy = new SpyMemcache(memcachedClient)
+                try {
+                    Set used = [] as Set
+                    (1..50).each {
+                        assertEquals spy.getServer("key" + it), nio.getServer("key" + it)
+                        used << nio.getServer("key" + it)
+                    }
+                    assertEquals 2, used.size()
+                } finally {
+                    nio.shutdown()
+                    memcachedClient.shutdown()
+                }
+            }
+        } finally {
+            other.stop()
+        }
+    }
+
+    void test_unknown_hash_algorithm_is_rejected() {
+        Properties properties = new Properties()
+        properties.setProperty("hibernate.memcached.servers", server.servers)
+        properties.setProperty("hibernate.memcached.hashAlgorithm", "MD5")
+        shouldFail(IllegalArgumentException) {
+            new NioMemcache(new NioMemcachedProperties(properties))
+        }
+    }
+}
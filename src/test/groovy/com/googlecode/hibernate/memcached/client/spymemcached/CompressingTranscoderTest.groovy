@@ -0,0 +1,66 @@
+package com.googlecode.hibernate.memcached.client.spymemcached
+
+import net.spy.memcached.CachedData
+import net.spy.memcached.transcoders.SerializingTranscoder
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.client.dogpile.DogpileEnvelope
+import com.googlecode.hibernate.memcached.codec.CompressibleValue
+import com.googlecode.hibernate.memcached.codec.CompressionPolicy
+import com.googlecode.hibernate.memcached.codec.JavaValueSerializer
+import com.googlecode.hibernate.memcached.strategy.LockableCodec
+
+class CompressingTranscoderTest extends BaseTestCase {
+
+    CompressionPolicy policy = new CompressionPolicy(100, 10, null)
+    CompressingTranscoder transcoder = new CompressingTranscoder(
+            new LockableTranscoder(new SerializingTranscoder(), new LockableCodec(new JavaValueSerializer())))
+
+    void test_compressible_values_are_compressed() {
+        List value = (1..500).collect { "customer " + it % 10 }
+
+        CachedData data = transcoder.encode(new CompressibleValue(value, policy))
+
+        assertTrue CompressionPolicy.isCompressed(data.flags)
+        assertEquals value, transcoder.decode(data)
+    }
+
+    void test_entries_are_compressed() {
+        DogpileEnvelope envelope = new DogpileEnvelope("customer " * 100, 42L, 7)
+
+        CachedData data = transcoder.encode(new CompressibleValue(envelope, policy))
+
+        assertTrue CompressionPolicy.isCompressed(data.flags)
+        assertTrue LockableCodec.isEncoded(data.flags & ~CompressionPolicy.FLAG)
+        assertEquals envelope.value, transcoder.decode(data).value
+    }
+
+    void test_other_values_are_not_compressed() {
+        String value = "customer " * 100
+
+        CachedData data = transcoder.encode(value)
+
+        assertFalse CompressionPolicy.isCompressed(data.flags)
+        assertEquals value, transcoder.decode(data)
+    }
+
+    void test_undecompressable_values_are_misses() {
+        CachedData data = new CachedData(CompressionPolicy.FLAG, [0, 0, 1, 0, 15] as byte[], CachedData.MAX_SIZE)
+
+        assertNull transcoder.decode(data)
+    }
+
+    void test_entries_are_read_but_not_written_when_compact_entries_are_disabled() {
+        LockableTranscoder writing = new LockableTranscoder(new SerializingTranscoder(), new LockableCodec(new JavaValueSerializer()))
+        LockableTranscoder reading = new LockableTranscoder(new SerializingTranscoder(), new LockableCodec(new JavaValueSerializer()), false)
+        DogpileEnvelope envelope = new DogpileEnvelope("customer", 42L, 7)
+
+        CachedData serialized = reading.encode(envelope)
+        assertFalse LockableCodec.isEncoded(serialized.flags)
+        assertEquals envelope.value, writing.decode(serialized).value
+
+        CachedData compact = writing.encode(envelope)
+        assertTrue LockableCodec.isEncoded(compact.flags)
+        assertEquals envelope.value, reading.decode(compact).value
+    }
+}
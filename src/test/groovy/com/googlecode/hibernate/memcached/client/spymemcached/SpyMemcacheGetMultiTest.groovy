@@ -0,0 +1,43 @@
+package com.googlecode.hibernate.memcached.client.spymemcached
+
+import net.spy.memcached.AddrUtil
+import net.spy.memcached.MemcachedClient
+import net.spy.memcached.NodeLocator
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+
+class SpyMemcacheGetMultiTest extends BaseTestCase {
+
+    MemcachedClient memcachedClient
+
+    protected void setUp() {
+        memcachedClient = new MemcachedClient(AddrUtil.getAddresses("localhost:11211 localhost:11212"))
+    }
+
+    protected void tearDown() {
+        memcachedClient.shutdown()
+    }
+
+    void test_small_multi_get_is_one_chunk() {
+        SpyMemcache client = new SpyMemcache(memcachedClient, 10, 1000)
+        assertEquals([["a", "b", "c"]], client.split("a", "b", "c"))
+    }
+
+    void test_large_multi_get_is_split_by_server() {
+        NodeLocator locator = memcachedClient.nodeLocator
+        String[] keys = (1..50).collect { "key" + it }
+
+        List<List<String>> chunks = SpyMemcache.split(locator, 4, keys)
+
+        assertEquals(keys as Set, chunks.flatten() as Set)
+        assertEquals 50, chunks.flatten().size()
+        Set servers = [] as Set
+        chunks.each { chunk ->
+            assertTrue chunk.size() <= 4
+            Set chunkServers = chunk.collect { locator.getPrimary(it).socketAddress } as Set
+            assertEquals 1, chunkServers.size()
+            servers.addAll(chunkServers)
+        }
+        assertEquals 2, servers.size()
+    }
+}
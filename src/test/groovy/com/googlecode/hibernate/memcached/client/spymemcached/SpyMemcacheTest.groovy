@@ -1,7 +1,11 @@
 package com.googlecode.hibernate.memcached.client.spymemcached
 
 import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcacheExceptionHandler
+import com.googlecode.hibernate.memcached.server.EmbeddedMemcachedServer
+import com.googlecode.hibernate.memcached.server.EmbeddedMemcachedServer.Failure
 import net.spy.memcached.AddrUtil
+import net.spy.memcached.ConnectionFactoryBuilder
 import net.spy.memcached.MemcachedClient
 
 /**
@@ -38,4 +42,123 @@ class SpyMemcacheTest extends BaseTestCase {
         assertNull(cache.get("test"))
     }
 */
+
+    EmbeddedMemcachedServer server
+    MemcachedClient memcachedClient
+    SpyMemcache client
+    List<String> errors = []
+
+    protected void setUp() {
+        server = new EmbeddedMemcachedServer()
+        server.start()
+
+        memcachedClient = new SpyMemcachedClient(new ConnectionFactoryBuilder().setOpTimeout(500).build(),
+                AddrUtil.getAddresses(server.servers))
+        client = new SpyMemcache(memcachedClient, 100, 500)
+        client.exceptionHandler = [
+                handleErrorOnGet: { key, e -> errors << key },
+                handleErrorOnSet: { key, exp, o, e -> errors << key },
+                handleErrorOnDelete: { key, e -> errors << key },
+                handleErrorOnIncr: { key, factor, start, e -> errors << key }
+        ] as MemcacheExceptionHandler
+    }
+
+    protected void tearDown() {
+        memcachedClient.shutdown()
+        server.stop()
+    }
+
+    void test_async_operations() {
+        assertTrue client.setAsync("test", 0, "value").get()
+        assertEquals "value", client.getAsync("test").get()
+        assertFalse client.addAsync("test", 0, "other").get()
+        assertTrue client.deleteAsync("test").get()
+        assertNull client.getAsync("test").get()
+        assertTrue client.addAsync("test", 0, "other").get()
+        assertEquals "other", client.getAsync("test").get()
+        assertTrue errors.isEmpty()
+    }
+
+    void test_incr_async_starts_missing_counters() {
+        assertEquals 5, client.incrAsync("counter", 1, 5).get()
+        assertEquals 6, client.incrAsync("counter", 1, 5).get()
+        assertEquals 8, client.incr("counter", 2, 5)
+        assertEquals 10, client.incrAsync("counter", 2, 5).get()
+        assertTrue errors.isEmpty()
+    }
+
+    void test_incr_async_of_an_existing_counter_sends_no_add() {
+        assertEquals 5, client.incrAsync("counter", 1, 5).get()
+        long sets = setCount()
+        assertEquals 6, client.incrAsync("counter", 1, 5).get()
+        assertEquals 8, client.incrAsync("counter", 2, 5).get()
+        assertEquals sets, setCount()
+    }
+
+    void test_incr_async_with_a_plain_client() {
+        MemcachedClient plain = new MemcachedClient(new ConnectionFactoryBuilder().setOpTimeout(500).build(),
+                AddrUtil.getAddresses(server.servers))
+        try {
+            SpyMemcache plainClient = new SpyMemcache(plain, 100, 500)
+            assertEquals 5, plainClient.incrAsync("counter", 1, 5).get()
+            assertEquals 6, plainClient.incrAsync("counter", 1, 5).get()
+        } finally {
+            plain.shutdown()
+        }
+    }
+
+    void test_set_multi() {
+        assertTrue client.setMulti([a: "1", b: "2", c: "3"], 0)
+        assertEquals([a: "1", b: "2", c: "3"], client.getMulti("a", "b", "c", "d"))
+        assertTrue errors.isEmpty()
+    }
+
+    void test_delete_multi() {
+        client.setMulti([a: "1", b: "2", c: "3"], 0)
+
+        assertTrue client.deleteMulti("a", "b")
+        assertEquals([c: "3"], client.getMulti("a", "b", "c"))
+        assertTrue errors.isEmpty()
+    }
+
+    void test_delete_multi_of_a_missing_key() {
+        client.setMulti([c: "3"], 0)
+
+        // a key that is already gone is reported, the others are still deleted
+        assertFalse client.deleteMulti("a", "c")
+        assertEquals([:], client.getMulti("a", "b", "c"))
+        assertTrue errors.isEmpty()
+    }
+
+    void test_async_failures_are_handled() {
+        server.injectFailure(Failure.ERROR, 1.0)
+
+        assertNull client.getAsync("get").get()
+        assertFalse client.setAsync("set", 0, "value").get()
+        assertFalse client.deleteAsync("delete").get()
+        assertEquals(-1L, client.incrAsync("incr", 1, 5).get())
+        assertEquals(["get", "set", "delete", "incr"], errors)
+    }
+
+    void test_delete_multi_failure_is_handled() {
+        server.injectFailure(Failure.ERROR, 1.0)
+
+        assertFalse client.deleteMulti("a", "b")
+        assertTrue errors.contains("a")
+        assertTrue errors.contains("b")
+    }
+
+    void test_operations_on_a_shut_down_client_are_handled() {
+        memcachedClient.shutdown()
+
+        assertFalse client.setMulti([a: "1", b: "2"], 0)
+        assertFalse client.deleteMulti("e")
+        assertNull client.getAsync("c").get()
+        assertEquals(-1L, client.incrAsync("d", 1, 1).get())
+        assertEquals(["a", "b", "c", "d", "e"] as Set, errors as Set)
+    }
+
+    private long setCount() {
+        Long.parseLong(server.store.stats["cmd_set"])
+    }
 }
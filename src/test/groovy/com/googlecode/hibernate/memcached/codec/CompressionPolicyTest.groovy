@@ -0,0 +1,67 @@
+package com.googlecode.hibernate.memcached.codec
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.stats.RegionStatistics
+
+class CompressionPolicyTest extends BaseTestCase {
+
+    RegionStatistics statistics = new RegionStatistics("region")
+    CompressionPolicy policy = new CompressionPolicy(100, 10, statistics)
+
+    void test_lz4_round_trip() {
+        Random random = new Random(42)
+        [0, 1, 12, 13, 100, 5000, 70000].each { int length ->
+            byte[] data = new byte[length]
+            for (int i = 0; i < length; i++) {
+                data[i] = (byte) (i % 7 < 4 ? 97 : random.nextInt(256))
+            }
+            byte[] compressed = new byte[Lz4.maxCompressedLength(length)]
+            int compressedLength = Lz4.compress(data, 0, length, compressed, 0)
+
+            byte[] decompressed = new byte[length]
+            Lz4.decompress(compressed, 0, compressedLength, decompressed, 0, length)
+            assertTrue Arrays.equals(data, decompressed)
+        }
+    }
+
+    void test_repetitive_values_are_compressed() {
+        byte[] data = ("customer " * 200).getBytes("UTF-8")
+
+        byte[] compressed = policy.compress(data, 0, data.length)
+
+        assertTrue compressed.length < data.length / 10
+        assertTrue Arrays.equals(data, CompressionPolicy.decompress(compressed, 0, compressed.length))
+        assertEquals 1, statistics.compressedCount
+        assertTrue statistics.compressionRatio < 0.1
+    }
+
+    void test_small_values_are_not_compressed() {
+        byte[] data = ("a" * 99).getBytes("UTF-8")
+
+        assertNull policy.compress(data, 0, data.length)
+        assertEquals 0, statistics.compressedCount
+        assertEquals 0, statistics.compressionSkippedCount
+    }
+
+    void test_values_saving_too_little_are_not_compressed() {
+        byte[] data = new byte[1000]
+        new Random(1).nextBytes(data)
+
+        assertNull policy.compress(data, 0, data.length)
+        assertEquals 0, statistics.compressedCount
+        assertEquals 1, statistics.compressionSkippedCount
+    }
+
+    void test_malformed_values_fail() {
+        byte[] data = ("customer " * 200).getBytes("UTF-8")
+        byte[] compressed = policy.compress(data, 0, data.length)
+
+        shouldFail(IOException) {
+            CompressionPolicy.decompress(compressed, 0, compressed.length - 1)
+        }
+        compressed[1] = 0x7f
+        shouldFail(IOException) {
+            CompressionPolicy.decompress(compressed, 0, compressed.length)
+        }
+    }
+}
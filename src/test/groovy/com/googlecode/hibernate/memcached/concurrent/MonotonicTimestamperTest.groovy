@@ -0,0 +1,25 @@
+package com.googlecode.hibernate.memcached.concurrent
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+
+class MonotonicTimestamperTest extends BaseTestCase {
+
+    MonotonicTimestamper timestamper = new MonotonicTimestamper()
+
+    void test_timestamps_increase_within_a_millisecond() {
+        long previous = timestamper.next()
+        10000.times {
+            long next = timestamper.next()
+            assertTrue next > previous
+            previous = next
+        }
+    }
+
+    void test_timestamps_follow_the_clock() {
+        long before = System.currentTimeMillis()
+        long timestamp = timestamper.next()
+
+        assertTrue timestamp >= before * MonotonicTimestamper.ONE_MS
+        assertEquals 60000 * MonotonicTimestamper.ONE_MS, timestamper.fromMillis(60000)
+    }
+}
@@ -0,0 +1,100 @@
+package com.googlecode.hibernate.memcached.concurrent
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+
+class SingleFlightTest extends BaseTestCase {
+
+    SingleFlight singleFlight = new SingleFlight()
+    def executor = Executors.newFixedThreadPool(4)
+
+    protected void tearDown() {
+        executor.shutdownNow()
+    }
+
+    void test_concurrent_reads_share_one_request() {
+        AtomicInteger loads = new AtomicInteger()
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        SingleFlight.Loader loader = {
+            loads.incrementAndGet()
+            started.countDown()
+            release.await(5, TimeUnit.SECONDS)
+            "value"
+        } as SingleFlight.Loader
+
+        def leader = executor.submit({ singleFlight.get("full", "key", loader) } as Callable)
+        assertTrue started.await(5, TimeUnit.SECONDS)
+        def followers = (1..3).collect { executor.submit({ singleFlight.get("full", "key", loader) } as Callable) }
+
+        Thread.sleep(50)
+        release.countDown()
+
+        assertEquals "value", leader.get()
+        followers.each { assertEquals "value", it.get() }
+        assertEquals 1, loads.get()
+    }
+
+    void test_shared_miss_allows_one_put() {
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        SingleFlight.Loader loader = {
+            started.countDown()
+            release.await(5, TimeUnit.SECONDS)
+            null
+        } as SingleFlight.Loader
+
+        def leader = executor.submit({ singleFlight.get("full", "key", loader) } as Callable)
+        assertTrue started.await(5, TimeUnit.SECONDS)
+        def follower = executor.submit({ singleFlight.get("full", "key", loader) } as Callable)
+        Thread.sleep(50)
+        release.countDown()
+
+        assertNull leader.get()
+        assertNull follower.get()
+        assertTrue singleFlight.claimLoad("key")
+        assertFalse singleFlight.claimLoad("key")
+
+        singleFlight.deleted("full", "key")
+        assertTrue singleFlight.claimLoad("key")
+    }
+
+    void test_unshared_miss_does_not_suppress_puts() {
+        assertNull singleFlight.get("full", "key", { null } as SingleFlight.Loader)
+        assertTrue singleFlight.claimLoad("key")
+        assertTrue singleFlight.claimLoad("key")
+    }
+
+    void test_write_ends_flight() {
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        def leader = executor.submit({
+            singleFlight.get("full", "key", {
+                started.countDown()
+                release.await(5, TimeUnit.SECONDS)
+                "old"
+            } as SingleFlight.Loader)
+        } as Callable)
+        assertTrue started.await(5, TimeUnit.SECONDS)
+
+        singleFlight.written("full")
+        assertEquals "new", singleFlight.get("full", "key", { "new" } as SingleFlight.Loader)
+
+        release.countDown()
+        assertEquals "old", leader.get()
+    }
+
+    void test_failure_is_passed_to_all_readers() {
+        try {
+            singleFlight.get("full", "key", { throw new IllegalStateException("down") } as SingleFlight.Loader)
+            fail()
+        } catch (IllegalStateException expected) {
+            assertEquals "down", expected.message
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcachedRegionProperties
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings
+import com.googlecode.hibernate.memcached.MockMemcached
+
+class ConcurrentReadBlockingWriteKeyLockProviderTest extends BaseTestCase {
+
+    CountingMemcached memcached = new CountingMemcached()
+    ConcurrentReadBlockingWriteKeyLockProvider provider
+
+    protected void setUp() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.keyLock.maxWaitMillis"] = "10"
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+        provider = new ConcurrentReadBlockingWriteKeyLockProvider(memcached, settings, 0)
+    }
+
+    void test_read_blocked_keys_are_read_in_one_request() {
+        assertTrue provider.acquireWriteLock("a")
+        int gets = memcached.getMultiCalls
+
+        assertEquals(["a"] as Set, provider.getReadBlockedKeys(["a", "b", "c"]))
+        assertEquals gets + 1, memcached.getMultiCalls
+        assertFalse provider.acquireReadLock("a")
+
+        assertTrue provider.releaseWriteLock("a")
+        assertTrue provider.getReadBlockedKeys(["a", "b", "c"]).isEmpty()
+    }
+
+    static class CountingMemcached extends MockMemcached {
+        int getMultiCalls
+
+        public Map<String, Object> getMulti(String[] keys) {
+            getMultiCalls++
+            super.getMulti(keys)
+        }
+    }
+}
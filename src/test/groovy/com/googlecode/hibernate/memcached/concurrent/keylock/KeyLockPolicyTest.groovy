@@ -0,0 +1,82 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcachedRegionProperties
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings
+import com.googlecode.hibernate.memcached.MockMemcached
+
+class KeyLockPolicyTest extends BaseTestCase {
+
+    void test_immediate_success() {
+        KeyLockPolicy policy = new KeyLockPolicy(2, 5, 200, 1000, 10)
+        int attempts = 0
+        assertTrue policy.acquire({ attempts++; true } as KeyLockPolicy.Attempt)
+        assertEquals 1, attempts
+        assertEquals 0, policy.getLockTimeouts()
+    }
+
+    void test_succeeds_after_retries() {
+        KeyLockPolicy policy = new KeyLockPolicy(2, 1, 2, 1000, 10)
+        int attempts = 0
+        assertTrue policy.acquire({ ++attempts >= 5 } as KeyLockPolicy.Attempt)
+        assertEquals 5, attempts
+        assertEquals 0, policy.getLockTimeouts()
+    }
+
+    void test_gives_up_after_max_wait() {
+        KeyLockPolicy policy = new KeyLockPolicy(2, 5, 20, 100, 10)
+        long start = System.currentTimeMillis()
+        assertFalse policy.acquire({ false } as KeyLockPolicy.Attempt)
+        long elapsed = System.currentTimeMillis() - start
+
+        assertTrue "gave up after ${elapsed} ms", elapsed >= 90
+        assertTrue "gave up after ${elapsed} ms", elapsed < 1000
+        assertEquals 1, policy.getLockTimeouts()
+
+        assertFalse policy.acquire({ false } as KeyLockPolicy.Attempt)
+        assertEquals 2, policy.getLockTimeouts()
+    }
+
+    void test_shared_start_time() {
+        KeyLockPolicy policy = new KeyLockPolicy(0, 5, 20, 100, 10)
+        long start = System.nanoTime() - 200 * 1000 * 1000L
+        assertFalse policy.acquire({ false } as KeyLockPolicy.Attempt, start)
+        assertEquals 1, policy.getLockTimeouts()
+    }
+
+    void test_provider_gives_up_on_held_lock() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.keyLock.maxWaitMillis"] = "50"
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+        KeyLockPolicy policy = new KeyLockPolicy(settings)
+        settings.keyLockPolicy = policy
+
+        MockMemcached memcached = new MockMemcached()
+        UnBlockedReadBlockedWriteKeyLockProvider first = new UnBlockedReadBlockedWriteKeyLockProvider(memcached, settings, 0)
+        UnBlockedReadBlockedWriteKeyLockProvider second = new UnBlockedReadBlockedWriteKeyLockProvider(memcached, settings, 0)
+
+        assertTrue first.acquireWriteLock("key")
+        assertFalse second.acquireWriteLock("key")
+        assertEquals 1, policy.lockTimeouts
+
+        assertTrue first.releaseWriteLock("key")
+        assertTrue second.acquireWriteLock("key")
+    }
+
+    void test_writer_gives_up_while_reads_are_in_progress() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.keyLock.maxWaitMillis"] = "50"
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+
+        MockMemcached memcached = new MockMemcached()
+        ConcurrentReadBlockingWriteKeyLockProvider provider = new ConcurrentReadBlockingWriteKeyLockProvider(memcached, settings, 0)
+
+        assertTrue provider.acquireReadLock("key")
+        assertFalse provider.acquireWriteLock("key")
+        assertTrue provider.acquireReadLock("key")
+
+        provider.releaseReadLock("key")
+        provider.releaseReadLock("key")
+        assertTrue provider.acquireWriteLock("key")
+    }
+}
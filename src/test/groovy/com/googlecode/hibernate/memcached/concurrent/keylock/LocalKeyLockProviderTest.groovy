@@ -0,0 +1,69 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+
+class LocalKeyLockProviderTest extends BaseTestCase {
+
+    AtomicInteger remoteAttempts = new AtomicInteger()
+    Set<String> remoteLocks = Collections.synchronizedSet(new HashSet<String>())
+
+    MemcachedReadWriteKeyLockProvider remote = [
+        acquireReadLock: { String key -> true },
+        releaseReadLock: { String key -> true },
+        acquireWriteLock: { String key -> remoteAttempts.incrementAndGet(); remoteLocks.add(key) },
+        releaseWriteLock: { String key -> remoteLocks.remove(key) }
+    ] as MemcachedReadWriteKeyLockProvider
+
+    void test_local_waiter_is_woken_on_release() {
+        KeyLockPolicy policy = new KeyLockPolicy(0, 5, 200, 5000, 10)
+        LocalKeyLocks locks = new LocalKeyLocks(4)
+        LocalKeyLockProvider first = new LocalKeyLockProvider(remote, locks, policy)
+        LocalKeyLockProvider second = new LocalKeyLockProvider(remote, locks, policy)
+
+        assertTrue first.acquireWriteLock("key")
+
+        CountDownLatch acquired = new CountDownLatch(1)
+        Thread.start {
+            if (second.acquireWriteLock("key")) {
+                acquired.countDown()
+            }
+        }
+
+        assertFalse acquired.await(100, TimeUnit.MILLISECONDS)
+        assertEquals "only one thread may ask Memcached for the lock", 1, remoteAttempts.get()
+
+        long start = System.currentTimeMillis()
+        first.releaseWriteLock("key")
+        assertTrue acquired.await(1, TimeUnit.SECONDS)
+        assertTrue System.currentTimeMillis() - start < 500
+        assertEquals 2, remoteAttempts.get()
+        assertEquals 0, policy.lockTimeouts
+    }
+
+    void test_other_keys_are_not_blocked() {
+        KeyLockPolicy policy = new KeyLockPolicy(0, 5, 200, 50, 10)
+        LocalKeyLocks locks = new LocalKeyLocks(1)
+        LocalKeyLockProvider provider = new LocalKeyLockProvider(remote, locks, policy)
+
+        assertTrue provider.acquireWriteLock("a")
+        assertTrue provider.acquireWriteLock("b")
+        assertFalse provider.acquireWriteLock("a")
+        assertEquals 1, policy.lockTimeouts
+        assertEquals 2, remoteAttempts.get()
+    }
+
+    void test_local_lock_released_when_remote_fails() {
+        KeyLockPolicy policy = new KeyLockPolicy(0, 5, 200, 50, 10)
+        LocalKeyLocks locks = new LocalKeyLocks(4)
+        MemcachedReadWriteKeyLockProvider failing = [
+            acquireWriteLock: { String key -> false }
+        ] as MemcachedReadWriteKeyLockProvider
+
+        assertFalse new LocalKeyLockProvider(failing, locks, policy).acquireWriteLock("key")
+        assertTrue locks.lock("key", 0)
+    }
+}
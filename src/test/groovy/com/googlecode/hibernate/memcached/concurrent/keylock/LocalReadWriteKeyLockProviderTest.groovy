@@ -0,0 +1,48 @@
+package com.googlecode.hibernate.memcached.concurrent.keylock
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+
+class LocalReadWriteKeyLockProviderTest extends BaseTestCase {
+
+    KeyLockPolicy policy = new KeyLockPolicy(0, 5, 200, 50, 10)
+    LocalReadWriteKeyLockProvider provider = new LocalReadWriteKeyLockProvider(16, policy)
+    def executor = Executors.newSingleThreadExecutor()
+
+    protected void tearDown() {
+        executor.shutdownNow()
+    }
+
+    boolean inOtherThread(Closure closure) {
+        executor.submit(closure as Callable).get()
+    }
+
+    void test_reads_are_shared() {
+        assertTrue provider.acquireReadLock("key")
+        assertTrue inOtherThread { provider.acquireReadLock("key") && provider.releaseReadLock("key") }
+        assertTrue provider.releaseReadLock("key")
+    }
+
+    void test_write_excludes_others() {
+        assertTrue provider.acquireWriteLock("key")
+        assertFalse inOtherThread { provider.acquireWriteLock("key") }
+        assertFalse inOtherThread { provider.acquireReadLock("key") }
+        assertEquals 2, policy.lockTimeouts
+
+        assertTrue provider.releaseWriteLock("key")
+        assertTrue inOtherThread { provider.acquireWriteLock("key") && provider.releaseWriteLock("key") }
+    }
+
+    void test_read_blocked_keys() {
+        assertTrue provider.acquireWriteLock("key")
+        assertTrue provider.getReadBlockedKeys(["key"]).isEmpty()
+        Set<String> blocked = executor.submit({ provider.getReadBlockedKeys(["key"]) } as Callable).get()
+        assertEquals(["key"] as Set, blocked)
+
+        assertTrue provider.releaseWriteLock("key")
+        blocked = executor.submit({ provider.getReadBlockedKeys(["key"]) } as Callable).get()
+        assertTrue blocked.isEmpty()
+    }
+}
@@ -0,0 +1,96 @@
+package com.googlecode.hibernate.memcached.server
+
+import java.util.concurrent.TimeUnit
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.server.EmbeddedMemcachedServer.Failure
+
+class EmbeddedMemcachedServerTest extends BaseTestCase {
+
+    EmbeddedMemcachedServer server
+    Socket socket
+    BufferedReader reader
+    Writer writer
+
+    protected void setUp() {
+        server = new EmbeddedMemcachedServer(1024, 256)
+        server.start()
+        socket = new Socket("127.0.0.1", server.port)
+        socket.soTimeout = 2000
+        reader = new BufferedReader(new InputStreamReader(socket.inputStream, "ISO-8859-1"))
+        writer = new OutputStreamWriter(socket.outputStream, "ISO-8859-1")
+    }
+
+    protected void tearDown() {
+        socket.close()
+        server.stop()
+    }
+
+    void test_set_get_delete() {
+        assertEquals "STORED", send("set test 5 0 5\r\nvalue")
+        assertEquals "VALUE test 5 5", send("get test")
+        assertEquals "value", reader.readLine()
+        assertEquals "END", reader.readLine()
+
+        assertEquals "DELETED", send("delete test")
+        assertEquals "END", send("get test")
+    }
+
+    void test_add_and_cas() {
+        assertEquals "STORED", send("add test 0 0 1\r\na")
+        assertEquals "NOT_STORED", send("add test 0 0 1\r\nb")
+
+        String[] value = send("gets test").split(" ")
+        reader.readLine(); reader.readLine()
+        long cas = Long.parseLong(value[4])
+
+        assertEquals "STORED", send("cas test 0 0 1 ${cas}\r\nc")
+        assertEquals "EXISTS", send("cas test 0 0 1 ${cas}\r\nd")
+        assertEquals "NOT_FOUND", send("cas missing 0 0 1 ${cas}\r\nd")
+    }
+
+    void test_incr_decr() {
+        assertEquals "NOT_FOUND", send("incr counter 1")
+        send("set counter 0 0 1\r\n9")
+        assertEquals "10", send("incr counter 1")
+        assertEquals "0", send("decr counter 20")
+    }
+
+    void test_expiry() {
+        send("set test 0 10 1\r\na")
+        server.store.advanceTime(9, TimeUnit.SECONDS)
+        assertNotNull server.store.get("test")
+        server.store.advanceTime(1, TimeUnit.SECONDS)
+        assertNull server.store.get("test")
+    }
+
+    void test_lru_eviction() {
+        MemcachedStore store = server.store
+        (0..<10).each { store.store(MemcachedStore.StoreMode.SET, "key" + it, 0, 0, new byte[100], 0) }
+
+        assertTrue store.bytes <= 1024
+        assertTrue store.evictions > 0
+        assertNull store.get("key0")
+        assertNotNull store.get("key9")
+        assertEquals MemcachedStore.StoreResult.TOO_LARGE,
+                store.store(MemcachedStore.StoreMode.SET, "big", 0, 0, new byte[512], 0)
+    }
+
+    void test_injected_error() {
+        server.injectFailure(Failure.ERROR, 1.0)
+        assertEquals "SERVER_ERROR injected failure", send("get test")
+        server.clearFaults()
+        assertEquals "END", send("get test")
+    }
+
+    void test_injected_disconnect() {
+        server.injectFailure(Failure.DISCONNECT, 1.0)
+        assertNull send("version")
+    }
+
+    private String send(String command) {
+        writer.write(command + "\r\n")
+        writer.flush()
+        return reader.readLine()
+    }
+}
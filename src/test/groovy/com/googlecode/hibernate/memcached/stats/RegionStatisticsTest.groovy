@@ -0,0 +1,90 @@
+package com.googlecode.hibernate.memcached.stats
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.TimeUnit
+
+import javax.management.ObjectName
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcachedRegionProperties
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings
+import com.googlecode.hibernate.memcached.MockMemcached
+import com.googlecode.hibernate.memcached.strategy.clear.ClearIndexRefresher
+import com.googlecode.hibernate.memcached.strategy.clear.MemcachedRegionClearStrategy
+
+class RegionStatisticsTest extends BaseTestCase {
+
+    void test_percentiles_are_within_bucket_precision() {
+        LatencyHistogram histogram = new LatencyHistogram()
+        (1..1000).each { histogram.record(TimeUnit.MICROSECONDS.toNanos(it)) }
+
+        assertEquals 1000, histogram.getCount()
+        assertEquals 500.5d, histogram.getMeanMicros(), 0.001d
+        assertEquals 1000, histogram.getMaxMicros()
+        long median = histogram.getPercentileMicros(50)
+        assertTrue median >= 500 && median <= 535
+        long p99 = histogram.getPercentileMicros(99)
+        assertTrue p99 >= 990 && p99 <= 1000
+    }
+
+    void test_counts_hits_misses_and_near_cache_hits() {
+        RegionStatistics statistics = new RegionStatistics("region")
+        statistics.read(3, 1, System.nanoTime())
+        statistics.nearCacheHit()
+        statistics.put(2, -1)
+        statistics.lock(false, System.nanoTime())
+
+        assertEquals 4, statistics.getHitCount()
+        assertEquals 1, statistics.getMissCount()
+        assertEquals 0.8d, statistics.getHitRatio(), 0.001d
+        assertEquals 1, statistics.getNearCacheHitCount()
+        assertEquals 2, statistics.getPutCount()
+        assertEquals 0, statistics.getWriteLatency().getCount()
+        assertEquals 1, statistics.getLockTimeoutCount()
+
+        statistics.reset()
+        assertEquals 0, statistics.getHitCount()
+        assertEquals 0, statistics.getReadLatency().getCount()
+    }
+
+    void test_registers_region_mbeans() {
+        def server = ManagementFactory.getPlatformMBeanServer()
+        StatisticsRegistry registry = new StatisticsRegistry(server)
+        RegionStatistics statistics = registry.getRegionStatistics("test.Region")
+        assertSame statistics, registry.getRegionStatistics("test.Region")
+
+        ObjectName name = new ObjectName(StatisticsRegistry.DOMAIN + ":type=RegionStatistics,name="
+                + ObjectName.quote("test.Region"))
+        statistics.read(1, 0, -1)
+        assertEquals 1L, server.getAttribute(name, "HitCount")
+
+        registry.shutdown()
+        assertFalse server.isRegistered(name)
+    }
+
+    void test_clear_index_refresh_lag() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.clearSupported"] = "true"
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+        MockMemcached memcached = new MockMemcached()
+        RegionStatistics statistics = new RegionStatistics("region")
+        assertEquals(-1L, statistics.getClearIndexRefreshLagMillis())
+
+        statistics.setClearStrategy(new MemcachedRegionClearStrategy(memcached, settings))
+        assertEquals(-1L, statistics.getClearIndexRefreshLagMillis())
+
+        ClearIndexRefresher refresher = new ClearIndexRefresher(memcached, 60000)
+        try {
+            MemcachedRegionClearStrategy strategy = new MemcachedRegionClearStrategy(memcached, settings, refresher)
+            statistics.setClearStrategy(strategy)
+            assertEquals(-1L, statistics.getClearIndexRefreshLagMillis())
+
+            strategy.clear()
+            long lag = statistics.getClearIndexRefreshLagMillis()
+            assertTrue lag >= 0 && lag < 60000
+            assertEquals lag, refresher.getMaxRefreshLagMillis(), 1000
+        } finally {
+            refresher.shutdown()
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.googlecode.hibernate.memcached.strategy
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcachedRegionProperties
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings
+import com.googlecode.hibernate.memcached.MockMemcached
+import com.googlecode.hibernate.memcached.client.CasValue
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockPolicy
+import com.googlecode.hibernate.memcached.region.MemcachedEntityRegion
+import com.googlecode.hibernate.memcached.strategy.clear.MemcachedRegionClearStrategy
+import org.hibernate.cache.internal.CacheDataDescriptionImpl
+import org.hibernate.cache.spi.access.SoftLock
+
+class CasReadWriteMemcachedEntityRegionAccessStrategyTest extends BaseTestCase {
+
+    ConflictingMemcached memcached = new ConflictingMemcached()
+    MemcachedEntityRegion region
+    CasReadWriteMemcachedEntityRegionAccessStrategy strategy
+
+    protected void setUp() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.casReadWrite"] = "true"
+        properties["hibernate.memcached.keyLock.initialBackoffMillis"] = "1"
+        properties["hibernate.memcached.keyLock.maxBackoffMillis"] = "2"
+        properties["hibernate.memcached.keyLock.maxWaitMillis"] = "1000"
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+        settings.clearStrategy = new MemcachedRegionClearStrategy(memcached, settings)
+        settings.keyLockPolicy = new KeyLockPolicy(settings)
+        region = new MemcachedEntityRegion(memcached, settings, new CacheDataDescriptionImpl(true, false, null))
+        strategy = (CasReadWriteMemcachedEntityRegionAccessStrategy) region.getReadWriteRegionAccessStrategy()
+    }
+
+    void test_put_from_load_adds_missing_item() {
+        assertTrue strategy.putFromLoad("key", "value", region.nextTimestamp(), null, false)
+        assertEquals 1, memcached.adds
+        assertEquals 0, memcached.casCalls
+        assertEquals "value", strategy.get("key", region.nextTimestamp())
+
+        // an item that is already there is not overwritten by an older load
+        assertFalse strategy.putFromLoad("key", "other", 0, null, false)
+        assertEquals "value", strategy.get("key", region.nextTimestamp())
+    }
+
+    void test_lock_retries_after_concurrent_modification() {
+        strategy.putFromLoad("key", "value", region.nextTimestamp(), null, false)
+        memcached.conflicts = 1
+
+        SoftLock lock = strategy.lockItem("key", null)
+        assertNotNull lock
+        assertEquals 2, memcached.casCalls
+        assertNull strategy.get("key", region.nextTimestamp())
+
+        assertTrue strategy.afterUpdate("key", "updated", null, null, lock)
+        assertEquals "updated", strategy.get("key", region.nextTimestamp())
+    }
+
+    void test_lock_gives_up_and_removes_item() {
+        strategy.putFromLoad("key", "value", region.nextTimestamp(), null, false)
+        memcached.conflicts = Integer.MAX_VALUE
+
+        assertNull strategy.lockItem("key", null)
+        assertEquals AbstractCasReadWriteMemcachedAccessStrategy.MAX_CAS_ATTEMPTS, memcached.casCalls
+        assertTrue memcached.cache.isEmpty()
+    }
+
+    void test_lock_is_held_for_long_cache_times() {
+        region.getSettings().setCacheTimeSeconds(3600)
+        strategy.putFromLoad("key", "value", region.nextTimestamp(), null, false)
+        assertNotNull strategy.lockItem("key", null)
+
+        // ten minutes later the lock still holds, although getTimeout() is cut short
+        long later = region.nextTimestamp() + region.getSettings().getTimestamper().fromMillis(600000)
+        assertTrue later - region.nextTimestamp() > region.getTimeout()
+        assertFalse strategy.putFromLoad("key", "stale", later, null, false)
+
+        long expired = region.nextTimestamp() + region.getLockTimeout() + 1
+        assertTrue strategy.putFromLoad("key", "fresh", expired, null, false)
+    }
+
+    void test_unlock_of_expired_lock() {
+        strategy.putFromLoad("key", "value", region.nextTimestamp(), null, false)
+        SoftLock lock = strategy.lockItem("key", null)
+        assertNotNull lock
+
+        // memcached evicted the lock before the transaction completed
+        memcached.cache.clear()
+        long beforeUnlock = region.nextTimestamp()
+        strategy.unlockItem("key", lock)
+
+        assertEquals 1, memcached.cache.size()
+        assertNull strategy.get("key", region.nextTimestamp())
+        // loads that started before the unlock must not cache their value
+        assertFalse strategy.putFromLoad("key", "stale", beforeUnlock, null, false)
+        assertTrue strategy.putFromLoad("key", "fresh", region.nextTimestamp(), null, false)
+        assertEquals "fresh", strategy.get("key", region.nextTimestamp())
+    }
+
+    void test_get_all_leaves_out_unreadable_items() {
+        long beforePuts = region.nextTimestamp()
+        strategy.putFromLoad("a", "1", region.nextTimestamp(), null, false)
+        strategy.putFromLoad("b", "2", region.nextTimestamp(), null, false)
+        assertNotNull strategy.lockItem("b", null)
+
+        assertEquals([a: "1"], strategy.getAll(["a", "b", "c"], region.nextTimestamp()))
+        assertTrue strategy.getAll(["a"], beforePuts).isEmpty()
+    }
+
+    /**
+     * Replaces the stored value before failing the next <code>conflicts</code>
+     * CAS writes, as a concurrent writer would.
+     */
+    static class ConflictingMemcached extends MockMemcached {
+        int conflicts
+        int casCalls
+        int adds
+
+        public boolean add(String key, int exp, Object o) {
+            adds++
+            super.add(key, exp, o)
+        }
+
+        public boolean cas(String key, long casId, int cacheTimeSeconds, Object o) {
+            casCalls++
+            if (conflicts > 0) {
+                conflicts--
+                CasValue current = gets(key)
+                if (current != null) {
+                    cache[key] = new Item("concurrent", null, 0)
+                }
+                return false
+            }
+            super.cas(key, casId, cacheTimeSeconds, o)
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.googlecode.hibernate.memcached.strategy
+
+import java.sql.Timestamp
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.client.dogpile.DogpileEnvelope
+import com.googlecode.hibernate.memcached.codec.JavaValueSerializer
+
+class LockableCodecTest extends BaseTestCase {
+
+    LockableCodec codec = new LockableCodec(new JavaValueSerializer())
+
+    void test_item_round_trip() {
+        Item item = new Item(["a", 1L] as Object[], 7, 123456789L)
+
+        Item decoded = roundTrip(item)
+
+        assertEquals 123456789L, decoded.timestamp
+        assertEquals 7, decoded.version
+        assertEquals(["a", 1L], decoded.value as List)
+    }
+
+    void test_lock_round_trip() {
+        Lock lock = new Lock(99, UUID.randomUUID(), 5, new Timestamp(1000))
+        lock.lock(100, null, 6)
+        lock.unlock(50)
+
+        Lock decoded = roundTrip(lock)
+
+        assertEquals lock, decoded
+        assertTrue decoded.wasLockedConcurrently()
+        assertEquals 1, decoded.multiplicity
+        assertEquals 100L, decoded.timeout
+        assertEquals new Timestamp(1000), decoded.version
+    }
+
+    void test_envelope_round_trip() {
+        DogpileEnvelope envelope = new DogpileEnvelope(new Item("value", null, 1L), 42L, 7)
+
+        DogpileEnvelope decoded = roundTrip(envelope)
+
+        assertEquals 42L, decoded.softExpiresAt
+        assertEquals 7, decoded.recomputeMillis
+        assertEquals "value", decoded.value.value
+    }
+
+    void test_entries_are_smaller_than_java_serialized() {
+        Lock lock = new Lock(99, UUID.randomUUID(), 5, 3)
+        assertTrue codec.encode(lock).length < new JavaValueSerializer().serialize(lock).length / 4
+    }
+
+    void test_truncated_entries_fail() {
+        byte[] bytes = codec.encode(new Item("value", 1, 1L))
+        shouldFail(IOException) {
+            codec.decode(bytes, 0, bytes.length - 1)
+        }
+    }
+
+    void test_item_values_are_deserialized_on_first_use() {
+        CountingSerializer serializer = new CountingSerializer()
+        LockableCodec lazyCodec = new LockableCodec(serializer)
+        byte[] bytes = lazyCodec.encode(new Item("value", 3, 10L))
+
+        Item decoded = lazyCodec.decode(bytes, 0, bytes.length)
+        assertFalse decoded.isReadable(5L)
+        decoded.lock(100L, UUID.randomUUID(), 1L)
+        assertEquals 0, serializer.deserialized
+
+        assertEquals "value", decoded.value
+        assertEquals "value", decoded.value
+        assertEquals 1, serializer.deserialized
+    }
+
+    void test_undeserialized_items_are_written_back_unchanged() {
+        CountingSerializer serializer = new CountingSerializer()
+        LockableCodec lazyCodec = new LockableCodec(serializer)
+        byte[] bytes = lazyCodec.encode(new Item("value", 3, 10L))
+
+        Item decoded = lazyCodec.decode(bytes, 0, bytes.length)
+        assertEquals bytes as List, lazyCodec.encode(decoded) as List
+        assertEquals 0, serializer.deserialized
+    }
+
+    void test_values_that_cannot_be_deserialized_are_misses() {
+        CountingSerializer serializer = new CountingSerializer(fail: true)
+        LockableCodec failingCodec = new LockableCodec(serializer)
+        byte[] bytes = failingCodec.encode(new Item("value", 3, 10L))
+
+        Item decoded = failingCodec.decode(bytes, 0, bytes.length)
+        assertNull decoded.value
+    }
+
+    void test_flags() {
+        assertTrue LockableCodec.isEncoded(LockableCodec.FLAGS)
+        assertFalse LockableCodec.isEncoded(1)
+        assertFalse LockableCodec.isEncoded(0)
+    }
+
+    private def roundTrip(Object entry) {
+        byte[] bytes = codec.encode(entry)
+        return codec.decode(bytes, 0, bytes.length)
+    }
+
+    static class CountingSerializer extends JavaValueSerializer {
+        int deserialized
+        boolean fail
+
+        Object deserialize(byte[] data, int offset, int length) {
+            deserialized++
+            if (fail) {
+                throw new IOException("Incompatible class")
+            }
+            return super.deserialize(data, offset, length)
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.googlecode.hibernate.memcached.strategy
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcachedRegionProperties
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings
+import com.googlecode.hibernate.memcached.MockMemcached
+import com.googlecode.hibernate.memcached.region.MemcachedEntityRegion
+import com.googlecode.hibernate.memcached.strategy.clear.MemcachedRegionClearStrategy
+import org.hibernate.cache.internal.CacheDataDescriptionImpl
+
+class NonStrictReadWriteMemcachedEntityRegionAccessStrategyTest extends BaseTestCase {
+
+    MockMemcached memcached = new MockMemcached()
+    MemcachedEntityRegion region
+    NonStrictReadWriteMemcachedEntityRegionAccessStrategy strategy
+
+    protected void setUp() {
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(new Properties()))
+        settings.clearStrategy = new MemcachedRegionClearStrategy(memcached, settings)
+        region = new MemcachedEntityRegion(memcached, settings, new CacheDataDescriptionImpl(false, false, null))
+        strategy = (NonStrictReadWriteMemcachedEntityRegionAccessStrategy) region.getNonStrictReadWriteRegionAccessStrategy()
+    }
+
+    void test_get_all_returns_stored_values() {
+        strategy.putFromLoad("a", "1", 0, null, false)
+        strategy.putFromLoad("b", "2", 0, null, false)
+
+        assertEquals([a: "1", b: "2"], strategy.getAll(["a", "b", "c"], 0))
+        assertTrue strategy.getAll([], 0).isEmpty()
+
+        strategy.remove("a")
+        assertEquals([b: "2"], strategy.getAll(["a", "b"], 0))
+    }
+}
@@ -0,0 +1,82 @@
+package com.googlecode.hibernate.memcached.strategy
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcachedRegionProperties
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings
+import com.googlecode.hibernate.memcached.MockMemcached
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockPolicy
+import com.googlecode.hibernate.memcached.concurrent.keylock.KeyLockProviderType
+import com.googlecode.hibernate.memcached.concurrent.keylock.MemcachedReadWriteKeyLockProvider
+import com.googlecode.hibernate.memcached.region.MemcachedEntityRegion
+import com.googlecode.hibernate.memcached.strategy.clear.MemcachedRegionClearStrategy
+import org.hibernate.cache.internal.CacheDataDescriptionImpl
+
+class ReadWriteMemcachedEntityRegionAccessStrategyTest extends BaseTestCase {
+
+    CountingMemcached memcached = new CountingMemcached()
+    MemcachedEntityRegion region
+    ReadWriteMemcachedEntityRegionAccessStrategy strategy
+
+    protected void setUp() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.keyLock.initialBackoffMillis"] = "1"
+        properties["hibernate.memcached.keyLock.maxBackoffMillis"] = "2"
+        properties["hibernate.memcached.keyLock.maxWaitMillis"] = "1000"
+        MemcachedRegionSettings settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+        settings.keyLockProviderType = KeyLockProviderType.CONCURRENT_READ_BLOCKING_WRITE
+        settings.clearStrategy = new MemcachedRegionClearStrategy(memcached, settings)
+        settings.keyLockPolicy = new KeyLockPolicy(settings)
+        region = new MemcachedEntityRegion(memcached, settings, new CacheDataDescriptionImpl(true, false, null))
+        strategy = (ReadWriteMemcachedEntityRegionAccessStrategy) region.getReadWriteRegionAccessStrategy()
+    }
+
+    void test_get_all_leaves_out_unreadable_items() {
+        long beforePuts = region.nextTimestamp()
+        assertTrue strategy.putFromLoad("a", "1", region.nextTimestamp(), null, false)
+        assertTrue strategy.putFromLoad("b", "2", region.nextTimestamp(), null, false)
+        assertTrue strategy.putFromLoad("c", "3", region.nextTimestamp(), null, false)
+        assertNotNull strategy.lockItem("c", null)
+
+        assertEquals([a: "1", b: "2"], strategy.getAll(["a", "b", "c", "d"], region.nextTimestamp()))
+        // items created after the start of the transaction are not readable
+        assertTrue strategy.getAll(["a", "b"], beforePuts).isEmpty()
+    }
+
+    void test_get_all_treats_write_locked_keys_as_misses() {
+        strategy.putFromLoad("a", "1", region.nextTimestamp(), null, false)
+        strategy.putFromLoad("b", "2", region.nextTimestamp(), null, false)
+        MemcachedReadWriteKeyLockProvider lockProvider = region.createComponentFactory().createMemcachedReadWriteKeyLockProvider()
+        assertTrue lockProvider.acquireWriteLock(strategy.toKey("b"))
+
+        memcached.getMultiCalls = 0
+        memcached.incrCalls = 0
+        long start = System.currentTimeMillis()
+        assertEquals([a: "1"], strategy.getAll(["a", "b"], region.nextTimestamp()))
+        assertTrue System.currentTimeMillis() - start < 1000
+
+        // one check of the locks and one read, without taking read locks
+        assertEquals 2, memcached.getMultiCalls
+        assertEquals 0, memcached.incrCalls
+
+        assertTrue lockProvider.releaseWriteLock(strategy.toKey("b"))
+        assertEquals([a: "1", b: "2"], strategy.getAll(["a", "b"], region.nextTimestamp()))
+        // no read locks were left behind to block writers
+        assertTrue lockProvider.acquireWriteLock(strategy.toKey("a"))
+        assertTrue lockProvider.releaseWriteLock(strategy.toKey("a"))
+    }
+
+    static class CountingMemcached extends MockMemcached {
+        int getMultiCalls
+        int incrCalls
+
+        public Map<String, Object> getMulti(String[] keys) {
+            getMultiCalls++
+            super.getMulti(keys)
+        }
+
+        public long incr(String key, long factor, long startingValue) {
+            incrCalls++
+            super.incr(key, factor, startingValue)
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.googlecode.hibernate.memcached.strategy.clear
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.MemcachedRegionProperties
+import com.googlecode.hibernate.memcached.MemcachedRegionSettings
+import com.googlecode.hibernate.memcached.MockMemcached
+
+class MemcachedRegionClearStrategyTest extends BaseTestCase {
+
+    MockMemcached memcached = new MockMemcached()
+    ClearIndexRefresher refresher
+    MemcachedRegionSettings settings
+
+    protected void setUp() {
+        Properties properties = new Properties()
+        properties["hibernate.memcached.clearSupported"] = "true"
+        settings = new MemcachedRegionSettings("region", new MemcachedRegionProperties(properties))
+    }
+
+    protected void tearDown() {
+        refresher?.shutdown()
+    }
+
+    void test_uncached() {
+        MemcachedRegionClearStrategy strategy = new MemcachedRegionClearStrategy(memcached, settings)
+        assertEquals 0, strategy.clearIndex
+
+        assertTrue strategy.clear()
+        assertEquals 1, strategy.clearIndex
+    }
+
+    void test_local_clear_is_seen_immediately() {
+        refresher = new ClearIndexRefresher(memcached, 60000)
+        MemcachedRegionClearStrategy strategy = new MemcachedRegionClearStrategy(memcached, settings, refresher)
+        assertEquals 0, strategy.clearIndex
+
+        assertTrue strategy.clear()
+        assertEquals 1, strategy.clearIndex
+        assertTrue strategy.refreshLagMillis < 60000
+    }
+
+    void test_remote_clear_is_seen_after_refresh() {
+        refresher = new ClearIndexRefresher(memcached, 60000)
+        MemcachedRegionClearStrategy strategy = new MemcachedRegionClearStrategy(memcached, settings, refresher)
+        MemcachedRegionClearStrategy other = new MemcachedRegionClearStrategy(memcached, settings)
+        assertEquals 0, strategy.clearIndex
+
+        other.clear()
+        other.clear()
+        assertEquals 0, strategy.clearIndex
+
+        refresher.refresh()
+        assertEquals 2, strategy.clearIndex
+    }
+
+    void test_stale_index_is_read_again() {
+        refresher = new ClearIndexRefresher(memcached, 20)
+        MemcachedRegionClearStrategy strategy = new MemcachedRegionClearStrategy(memcached, settings, refresher)
+        MemcachedRegionClearStrategy other = new MemcachedRegionClearStrategy(memcached, settings)
+        assertEquals 0, strategy.clearIndex
+
+        other.clear()
+        Thread.sleep(50)
+        assertEquals 1, strategy.clearIndex
+    }
+
+    void test_missing_key_keeps_cached_index() {
+        refresher = new ClearIndexRefresher(memcached, 60000)
+        MemcachedRegionClearStrategy strategy = new MemcachedRegionClearStrategy(memcached, settings, refresher)
+        strategy.clear()
+
+        memcached.cache.clear()
+        refresher.refresh()
+        assertEquals 1, strategy.clearIndex
+    }
+
+    void test_only_one_thread_reads_a_stale_index() {
+        CountDownLatch reading = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        AtomicInteger reads = new AtomicInteger()
+        MockMemcached slow = new MockMemcached() {
+            Object get(String key) {
+                reads.incrementAndGet()
+                reading.countDown()
+                release.await(5, TimeUnit.SECONDS)
+                super.get(key)
+            }
+        }
+        refresher = new ClearIndexRefresher(slow, 20)
+        MemcachedRegionClearStrategy strategy = new MemcachedRegionClearStrategy(slow, settings, refresher)
+        strategy.clear()
+        refresher.shutdown()
+        // cleared by another JVM, and the cached index went stale
+        slow.cache[strategy.encodedClearIndexKey] = 2L
+        Thread.sleep(50)
+
+        def executor = Executors.newFixedThreadPool(4)
+        try {
+            def leader = executor.submit({ strategy.clearIndex } as Callable)
+            assertTrue reading.await(5, TimeUnit.SECONDS)
+            def followers = (1..3).collect { executor.submit({ strategy.clearIndex } as Callable) }
+            followers.each { assertEquals 1L, it.get(5, TimeUnit.SECONDS) }
+
+            release.countDown()
+            assertEquals 2L, leader.get(5, TimeUnit.SECONDS)
+            assertEquals 1, reads.get()
+            assertTrue strategy.refreshLagMillis < 20
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.googlecode.hibernate.memcached.strategy.key
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.strategy.key.encoding.NestedKeyEncodingStrategy
+import com.googlecode.hibernate.memcached.strategy.key.encoding.Sha1KeyEncodingStrategy
+import com.googlecode.hibernate.memcached.strategy.key.encoding.ValidMemcachedKeyEncodingStrategy
+import com.googlecode.hibernate.memcached.utils.StringUtils
+
+class KeyBuilderTest extends BaseTestCase {
+
+    void test_keys_match_join_and_encode() {
+        def encoding = new NestedKeyEncodingStrategy()
+        encoding.addStrategy(new ValidMemcachedKeyEncodingStrategy())
+        encoding.addStrategy(new Sha1KeyEncodingStrategy())
+        def builder = new KeyBuilder("region", ":", 3, encoding)
+
+        ["key", "key with spaces", "", null].each { key ->
+            assertEquals encoding.encode(StringUtils.join(":", "region", 3, key)), builder.build(key)
+        }
+    }
+
+    void test_multiple_keys() {
+        def builder = new KeyBuilder("region", ":", 0, new ValidMemcachedKeyEncodingStrategy())
+        assertEquals(["region:0:a", "region:0:b"], builder.build("a", "b") as List)
+    }
+
+    void test_whitespace_is_removed() {
+        def builder = new KeyBuilder("region", ":", 0, new ValidMemcachedKeyEncodingStrategy())
+        assertEquals "region:0:abc", builder.build(" a\tb\r\nc ")
+    }
+}
@@ -0,0 +1,29 @@
+package com.googlecode.hibernate.memcached.strategy.key.encoding
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.utils.StringUtils
+
+class HybridKeyEncodingStrategyTest extends BaseTestCase {
+
+    HybridKeyEncodingStrategy strategy = new HybridKeyEncodingStrategy()
+
+    void test_valid_keys_are_readable() {
+        assertEquals "region:0:com.example.Contact#12", strategy.encode("region:0:com.example.Contact#12")
+        assertEquals "x" * 250, strategy.encode("x" * 250)
+    }
+
+    void test_long_keys_are_hashed() {
+        assertEquals StringUtils.murmur3Base64Url("x" * 251), strategy.encode("x" * 251)
+    }
+
+    void test_length_is_measured_in_utf8_bytes() {
+        assertEquals "é" * 125, strategy.encode("é" * 125)
+        assertEquals 22, strategy.encode("é" * 126).length()
+    }
+
+    void test_whitespace_and_control_characters_are_hashed() {
+        assertFalse strategy.encode("a b") == strategy.encode("ab")
+        assertEquals StringUtils.murmur3Base64Url("a\tb"), strategy.encode("a\tb")
+        assertEquals StringUtils.murmur3Base64Url("a\u0001b"), strategy.encode("a\u0001b")
+    }
+}
@@ -0,0 +1,29 @@
+package com.googlecode.hibernate.memcached.utils
+
+import com.googlecode.hibernate.memcached.BaseTestCase
+import com.googlecode.hibernate.memcached.strategy.BulkRegionAccessStrategy
+import org.hibernate.cache.spi.access.RegionAccessStrategy
+
+class RegionAccessStrategyUtilsTest extends BaseTestCase {
+
+    void test_bulk_strategies_read_all_keys_at_once() {
+        def calls = []
+        BulkRegionAccessStrategy strategy = [
+            getAll: { Collection keys, long txTimestamp -> calls << keys; [a: "1"] },
+            get: { Object key, long txTimestamp -> fail("read key by key") }
+        ] as BulkRegionAccessStrategy
+
+        assertEquals([a: "1"], RegionAccessStrategyUtils.getAll(strategy, ["a", "b"], 1))
+        assertEquals([["a", "b"]], calls)
+    }
+
+    void test_other_strategies_are_read_key_by_key() {
+        def reads = []
+        RegionAccessStrategy strategy = [
+            get: { Object key, long txTimestamp -> reads << key; key == "b" ? null : key.toUpperCase() }
+        ] as RegionAccessStrategy
+
+        assertEquals([a: "A", c: "C"], RegionAccessStrategyUtils.getAll(strategy, ["a", "b", "c"], 1))
+        assertEquals(["a", "b", "c"], reads)
+    }
+}
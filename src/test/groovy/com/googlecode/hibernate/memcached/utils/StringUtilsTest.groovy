@@ -24,6 +24,11 @@ class StringUtilsTest extends BaseTestCase {
         assertEquals "f18f2dcf68655fe9112ac57c62931cc490c3397c", StringUtils.sha1Hex("boosh! and/or kakow")
     }
 
+    void test_murmur3_base64_url() {
+        assertEquals "Apu9QbOn2MsZHa5IapAeWw", StringUtils.murmur3Base64Url("hello")
+        assertEquals 22, StringUtils.murmur3Base64Url("").length()
+    }
+
     void test_null_md5_hex () {
         shouldFail(IllegalArgumentException) {
             StringUtils.md5Hex(null)
@@ -1,5 +1,6 @@
 package com.googlecode.hibernate.memcached.integration;
 
+import java.io.IOException;
 import java.util.Properties;
 
 import org.hibernate.Session;
@@ -9,6 +10,7 @@ import org.hibernate.cfg.AnnotationConfiguration;
 import org.hibernate.cfg.Configuration;
 
 import com.googlecode.hibernate.memcached.BaseTestCase;
+import com.googlecode.hibernate.memcached.server.EmbeddedMemcachedServer;
 
 /**
  * DOCUMENT ME!
@@ -17,6 +19,9 @@ import com.googlecode.hibernate.memcached.BaseTestCase;
  */
 public abstract class AbstractHibernateTestCase extends BaseTestCase {
 
+    private static EmbeddedMemcachedServer server;
+
+    protected SessionFactory sessionFactory;
     protected Session session;
     protected Transaction transaction;
 
@@ -43,9 +48,26 @@ public abstract class AbstractHibernateTestCase extends BaseTestCase {
         props.setProperty("hibernate.cache.region.factory_class",
                 com.googlecode.hibernate.memcached.MemcachedRegionFactory.class.getName());
         props.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        props.setProperty("hibernate.memcached.servers", getServer().getServers());
         return props;
     }
 
+    /**
+     * Returns the memcached server shared by all integration tests, starting
+     * it on first use.
+     */
+    protected static synchronized EmbeddedMemcachedServer getServer() {
+        if (server == null) {
+            server = new EmbeddedMemcachedServer();
+            try {
+                server.start();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not start the embedded memcached server", e);
+            }
+        }
+        return server;
+    }
+
     protected Properties getConfigProperties() {
         return new Properties();
     }
@@ -57,7 +79,7 @@ public abstract class AbstractHibernateTestCase extends BaseTestCase {
     @Override
     protected void setUp() {
         setupBeforeTransaction();
-        SessionFactory sessionFactory = getConfiguration().buildSessionFactory();
+        sessionFactory = getConfiguration().buildSessionFactory();
         session = sessionFactory.openSession();
         transaction = session.beginTransaction();
         setupInTransaction();
@@ -76,6 +98,7 @@ public abstract class AbstractHibernateTestCase extends BaseTestCase {
         } finally {
             transaction.rollback();
             session.close();
+            sessionFactory.close();
         }
     }
 
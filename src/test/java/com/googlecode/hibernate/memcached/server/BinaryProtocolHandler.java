@@ -0,0 +1,273 @@
+package com.googlecode.hibernate.memcached.server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import com.googlecode.hibernate.memcached.server.EmbeddedMemcachedServer.Failure;
+import com.googlecode.hibernate.memcached.server.MemcachedStore.Item;
+import com.googlecode.hibernate.memcached.server.MemcachedStore.StoreMode;
+import com.googlecode.hibernate.memcached.server.MemcachedStore.StoreResult;
+
+/**
+ * Serves a connection using the memcached binary protocol, including the
+ * quiet variants of the commands.
+ */
+class BinaryProtocolHandler {
+
+    static final int REQUEST_MAGIC = 0x80;
+    static final int RESPONSE_MAGIC = 0x81;
+
+    private static final String CHARSET = "ISO-8859-1";
+    private static final byte[] EMPTY = new byte[0];
+
+    // Opcodes
+    private static final int GET = 0x00;
+    private static final int SET = 0x01;
+    private static final int ADD = 0x02;
+    private static final int REPLACE = 0x03;
+    private static final int DELETE = 0x04;
+    private static final int INCREMENT = 0x05;
+    private static final int DECREMENT = 0x06;
+    private static final int QUIT = 0x07;
+    private static final int FLUSH = 0x08;
+    private static final int GETQ = 0x09;
+    private static final int NOOP = 0x0a;
+    private static final int VERSION = 0x0b;
+    private static final int GETK = 0x0c;
+    private static final int GETKQ = 0x0d;
+    private static final int APPEND = 0x0e;
+    private static final int PREPEND = 0x0f;
+    private static final int STAT = 0x10;
+    private static final int SETQ = 0x11;
+    private static final int ADDQ = 0x12;
+    private static final int REPLACEQ = 0x13;
+    private static final int DELETEQ = 0x14;
+    private static final int INCREMENTQ = 0x15;
+    private static final int DECREMENTQ = 0x16;
+    private static final int QUITQ = 0x17;
+    private static final int FLUSHQ = 0x18;
+    private static final int APPENDQ = 0x19;
+    private static final int PREPENDQ = 0x1a;
+    private static final int TOUCH = 0x1c;
+
+    // Status codes
+    private static final int OK = 0x00;
+    private static final int KEY_NOT_FOUND = 0x01;
+    private static final int KEY_EXISTS = 0x02;
+    private static final int VALUE_TOO_LARGE = 0x03;
+    private static final int ITEM_NOT_STORED = 0x05;
+    private static final int NON_NUMERIC = 0x06;
+    private static final int UNKNOWN_COMMAND = 0x81;
+    private static final int INTERNAL_ERROR = 0x84;
+
+    private final EmbeddedMemcachedServer server;
+    private final MemcachedStore store;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final byte[] header = new byte[24];
+
+    BinaryProtocolHandler(EmbeddedMemcachedServer server, InputStream in, OutputStream out) {
+        this.server = server;
+        this.store = server.getStore();
+        this.in = new DataInputStream(in);
+        this.out = out;
+    }
+
+    void run() throws IOException {
+        while (true) {
+            try {
+                in.readFully(header);
+            } catch (IOException e) {
+                return;
+            }
+            ByteBuffer h = ByteBuffer.wrap(header);
+            if ((h.get(0) & 0xff) != REQUEST_MAGIC) {
+                throw new IOException("Invalid request magic");
+            }
+            int opcode = h.get(1) & 0xff;
+            int keyLength = h.getShort(2) & 0xffff;
+            int extrasLength = h.get(4) & 0xff;
+            int bodyLength = h.getInt(8);
+            int opaque = h.getInt(12);
+            long cas = h.getLong(16);
+
+            byte[] body = new byte[bodyLength];
+            in.readFully(body);
+            ByteBuffer extras = ByteBuffer.wrap(body, 0, extrasLength);
+            String key = new String(body, extrasLength, keyLength, CHARSET);
+            byte[] value = new byte[bodyLength - extrasLength - keyLength];
+            System.arraycopy(body, extrasLength + keyLength, value, 0, value.length);
+
+            Failure failure = server.nextFailure();
+            if (failure == Failure.DISCONNECT) {
+                return;
+            } else if (failure == Failure.ERROR) {
+                write(opcode, INTERNAL_ERROR, opaque, 0, EMPTY, EMPTY, "Injected failure".getBytes(CHARSET));
+            } else if (failure == Failure.NONE) {
+                if (opcode == QUIT || opcode == QUITQ) {
+                    if (opcode == QUIT) {
+                        write(opcode, OK, opaque, 0, EMPTY, EMPTY, EMPTY);
+                    }
+                    out.flush();
+                    return;
+                }
+                execute(opcode, opaque, cas, extras, key, value);
+            }
+
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    private void execute(int opcode, int opaque, long cas, ByteBuffer extras, String key, byte[] value) throws IOException {
+        switch (opcode) {
+        case GET:
+        case GETQ:
+        case GETK:
+        case GETKQ: {
+            Item item = store.get(key);
+            boolean withKey = opcode == GETK || opcode == GETKQ;
+            if (item != null) {
+                byte[] flags = ByteBuffer.allocate(4).putInt(item.getFlags()).array();
+                write(opcode, OK, opaque, item.getCas(), flags, withKey ? key.getBytes(CHARSET) : EMPTY, item.getValue());
+            } else if (opcode == GET || opcode == GETK) {
+                write(opcode, KEY_NOT_FOUND, opaque, 0, EMPTY, withKey ? key.getBytes(CHARSET) : EMPTY, "Not found".getBytes(CHARSET));
+            }
+            break;
+        }
+        case SET:
+        case SETQ:
+        case ADD:
+        case ADDQ:
+        case REPLACE:
+        case REPLACEQ: {
+            int flags = extras.getInt();
+            int exp = extras.getInt();
+            StoreMode mode = (opcode == SET || opcode == SETQ) ? StoreMode.SET
+                    : (opcode == ADD || opcode == ADDQ) ? StoreMode.ADD : StoreMode.REPLACE;
+            if (mode != StoreMode.SET && cas != 0) {
+                mode = StoreMode.CAS;
+            }
+            StoreResult result = store.store(mode, key, flags, exp, value, cas);
+            respondToStore(opcode, opaque, key, result, isQuiet(opcode));
+            break;
+        }
+        case APPEND:
+        case APPENDQ:
+        case PREPEND:
+        case PREPENDQ: {
+            StoreMode mode = (opcode == APPEND || opcode == APPENDQ) ? StoreMode.APPEND : StoreMode.PREPEND;
+            StoreResult result = store.store(mode, key, 0, 0, value, 0);
+            respondToStore(opcode, opaque, key, result, isQuiet(opcode));
+            break;
+        }
+        case DELETE:
+        case DELETEQ:
+            if (store.delete(key)) {
+                if (opcode == DELETE) {
+                    write(opcode, OK, opaque, 0, EMPTY, EMPTY, EMPTY);
+                }
+            } else {
+                write(opcode, KEY_NOT_FOUND, opaque, 0, EMPTY, EMPTY, "Not found".getBytes(CHARSET));
+            }
+            break;
+        case INCREMENT:
+        case INCREMENTQ:
+        case DECREMENT:
+        case DECREMENTQ: {
+            long delta = extras.getLong();
+            long initial = extras.getLong();
+            int exp = extras.getInt();
+            boolean increment = opcode == INCREMENT || opcode == INCREMENTQ;
+            try {
+                Item item = store.mutate(key, delta, increment, exp == -1 ? null : initial, exp);
+                if (item == null) {
+                    write(opcode, KEY_NOT_FOUND, opaque, 0, EMPTY, EMPTY, "Not found".getBytes(CHARSET));
+                } else if (!isQuiet(opcode)) {
+                    long result = new BigInteger(new String(item.getValue(), CHARSET)).longValue();
+                    write(opcode, OK, opaque, item.getCas(), EMPTY, EMPTY, ByteBuffer.allocate(8).putLong(result).array());
+                }
+            } catch (NumberFormatException e) {
+                write(opcode, NON_NUMERIC, opaque, 0, EMPTY, EMPTY, "Non-numeric value".getBytes(CHARSET));
+            }
+            break;
+        }
+        case TOUCH:
+            if (store.touch(key, extras.getInt())) {
+                write(opcode, OK, opaque, 0, EMPTY, EMPTY, EMPTY);
+            } else {
+                write(opcode, KEY_NOT_FOUND, opaque, 0, EMPTY, EMPTY, "Not found".getBytes(CHARSET));
+            }
+            break;
+        case FLUSH:
+        case FLUSHQ:
+            store.flush();
+            if (opcode == FLUSH) {
+                write(opcode, OK, opaque, 0, EMPTY, EMPTY, EMPTY);
+            }
+            break;
+        case NOOP:
+            write(opcode, OK, opaque, 0, EMPTY, EMPTY, EMPTY);
+            break;
+        case VERSION:
+            write(opcode, OK, opaque, 0, EMPTY, EMPTY, EmbeddedMemcachedServer.VERSION.getBytes(CHARSET));
+            break;
+        case STAT:
+            for (Map.Entry<String, String> stat : store.getStats().entrySet()) {
+                write(opcode, OK, opaque, 0, EMPTY, stat.getKey().getBytes(CHARSET), stat.getValue().getBytes(CHARSET));
+            }
+            write(opcode, OK, opaque, 0, EMPTY, EMPTY, EMPTY);
+            break;
+        default:
+            write(opcode, UNKNOWN_COMMAND, opaque, 0, EMPTY, EMPTY, "Unknown command".getBytes(CHARSET));
+        }
+    }
+
+    private void respondToStore(int opcode, int opaque, String key, StoreResult result, boolean quiet) throws IOException {
+        switch (result) {
+        case STORED:
+            if (!quiet) {
+                write(opcode, OK, opaque, store.get(key).getCas(), EMPTY, EMPTY, EMPTY);
+            }
+            break;
+        case EXISTS:
+            write(opcode, KEY_EXISTS, opaque, 0, EMPTY, EMPTY, "Data exists for key".getBytes(CHARSET));
+            break;
+        case NOT_FOUND:
+            write(opcode, KEY_NOT_FOUND, opaque, 0, EMPTY, EMPTY, "Not found".getBytes(CHARSET));
+            break;
+        case TOO_LARGE:
+            write(opcode, VALUE_TOO_LARGE, opaque, 0, EMPTY, EMPTY, "Too large".getBytes(CHARSET));
+            break;
+        default:
+            write(opcode, ITEM_NOT_STORED, opaque, 0, EMPTY, EMPTY, "Not stored".getBytes(CHARSET));
+        }
+    }
+
+    private boolean isQuiet(int opcode) {
+        return opcode == GETQ || opcode == GETKQ || (opcode >= SETQ && opcode <= PREPENDQ);
+    }
+
+    private void write(int opcode, int status, int opaque, long cas, byte[] extras, byte[] key, byte[] value) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(24);
+        h.put((byte) RESPONSE_MAGIC);
+        h.put((byte) opcode);
+        h.putShort((short) key.length);
+        h.put((byte) extras.length);
+        h.put((byte) 0);
+        h.putShort((short) status);
+        h.putInt(extras.length + key.length + value.length);
+        h.putInt(opaque);
+        h.putLong(cas);
+        out.write(h.array());
+        out.write(extras);
+        out.write(key);
+        out.write(value);
+    }
+}
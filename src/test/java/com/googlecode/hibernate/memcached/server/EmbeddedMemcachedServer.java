@@ -0,0 +1,278 @@
+package com.googlecode.hibernate.memcached.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-JVM memcached server for tests and benchmarks. It speaks both the
+ * text and the binary protocol (detected per connection from the first byte)
+ * and listens on an ephemeral loopback port, so no external memcached is
+ * needed:
+ * <pre>
+ * EmbeddedMemcachedServer server = new EmbeddedMemcachedServer();
+ * server.start();
+ * properties.setProperty("hibernate.memcached.servers", server.getServers());
+ * ...
+ * server.stop();
+ * </pre>
+ * Latency and failures can be injected to reproduce slow or failing servers,
+ * see {@link #setLatency(long, TimeUnit)} and {@link #injectFailure(Failure, double)}.
+ */
+public class EmbeddedMemcachedServer {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedMemcachedServer.class);
+
+    static final String VERSION = "1.4.15-embedded";
+
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+    public static final int DEFAULT_MAX_ITEM_SIZE = 1024 * 1024;
+
+    /**
+     * The kinds of failures that can be injected.
+     */
+    public enum Failure {
+        /** Requests are processed normally. */
+        NONE,
+        /** Requests are not processed and answered with a server error. */
+        ERROR,
+        /** The connection is closed instead of processing the request. */
+        DISCONNECT,
+        /** Requests are not processed and never answered. */
+        HANG
+    }
+
+    private final MemcachedStore store;
+    private final Set<Socket> connections = Collections.synchronizedSet(new HashSet<Socket>());
+    private final Random random = new Random();
+
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    private volatile long latencyMillis;
+    private volatile Failure failure = Failure.NONE;
+    private volatile double failureProbability;
+
+    public EmbeddedMemcachedServer() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_MAX_ITEM_SIZE);
+    }
+
+    /**
+     * @param maxBytes    the memory limit, least recently used items are
+     *                    evicted once it is reached
+     * @param maxItemSize the size of the largest value that can be stored
+     */
+    public EmbeddedMemcachedServer(long maxBytes, int maxItemSize) {
+        this.store = new MemcachedStore(maxBytes, maxItemSize);
+    }
+
+    /**
+     * Starts listening on an ephemeral loopback port.
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        running = true;
+
+        acceptor = new Thread("embedded-memcached-" + getPort()) {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Embedded memcached listening on {}", getServers());
+    }
+
+    /**
+     * Stops the server and closes all connections. The stored items are kept.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        closeQuietly(serverSocket);
+        disconnectAll();
+        try {
+            acceptor.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Gets the server address in the form used by
+     * <code>hibernate.memcached.servers</code>.
+     */
+    public String getServers() {
+        return "127.0.0.1:" + getPort();
+    }
+
+    public MemcachedStore getStore() {
+        return store;
+    }
+
+    /**
+     * Delays every response by the given time.
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyMillis = unit.toMillis(latency);
+    }
+
+    /**
+     * Makes the given fraction of requests fail.
+     * 
+     * @param failure     how requests fail
+     * @param probability the probability of a request failing, between 0
+     *                    and 1
+     */
+    public void injectFailure(Failure failure, double probability) {
+        this.failure = failure;
+        this.failureProbability = probability;
+    }
+
+    /**
+     * Removes injected latency and failures.
+     */
+    public void clearFaults() {
+        latencyMillis = 0;
+        failure = Failure.NONE;
+        failureProbability = 0;
+    }
+
+    /**
+     * Closes all client connections, as a server restart or network failure
+     * would.
+     */
+    public void disconnectAll() {
+        List<Socket> sockets;
+        synchronized (connections) {
+            sockets = new ArrayList<Socket>(connections);
+        }
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Determines how the next request fails, and applies the injected latency.
+     */
+    Failure nextFailure() {
+        long latency = latencyMillis;
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Failure current = failure;
+        if (current == Failure.NONE) {
+            return Failure.NONE;
+        }
+        synchronized (random) {
+            return random.nextDouble() < failureProbability ? current : Failure.NONE;
+        }
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread handler = new Thread("embedded-memcached-connection-" + socket.getPort()) {
+                    @Override
+                    public void run() {
+                        handleConnection(socket);
+                    }
+                };
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Could not accept connection", e);
+                }
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            in.mark(1);
+            int first = in.read();
+            if (first == -1) {
+                return;
+            }
+            in.reset();
+
+            if (first == BinaryProtocolHandler.REQUEST_MAGIC) {
+                new BinaryProtocolHandler(this, in, out).run();
+            } else {
+                new TextProtocolHandler(this, in, out).run();
+            }
+        } catch (SocketException e) {
+            log.debug("Connection closed", e);
+        } catch (IOException e) {
+            log.debug("Connection failed", e);
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+
+    private static void closeQuietly(ServerSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.googlecode.hibernate.memcached.server;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The storage of an {@link EmbeddedMemcachedServer}. Behaves like memcached:
+ * items expire after their time to live, every modification assigns a new
+ * CAS identifier and the least recently used items are evicted once the
+ * memory limit is reached.
+ * <p>
+ * The clock can be moved forward with {@link #advanceTime(long, TimeUnit)} to
+ * test expiration without waiting.
+ */
+public class MemcachedStore {
+
+    /**
+     * Expiration times larger than this are absolute unix times.
+     */
+    static final int MAX_RELATIVE_EXPIRATION = 60 * 60 * 24 * 30;
+
+    /**
+     * The approximate per item overhead counted against the memory limit.
+     */
+    static final int ITEM_OVERHEAD = 48;
+
+    private static final BigInteger MAX_UNSIGNED_LONG = BigInteger.ONE.shiftLeft(64);
+
+    public enum StoreMode {
+        SET, ADD, REPLACE, APPEND, PREPEND, CAS
+    }
+
+    public enum StoreResult {
+        STORED, NOT_STORED, EXISTS, NOT_FOUND, TOO_LARGE
+    }
+
+    /**
+     * A stored item. Items are immutable, modifications replace them.
+     */
+    public static final class Item {
+        private final int flags;
+        private final byte[] value;
+        private final long cas;
+        private final long expiresAt;
+
+        Item(int flags, byte[] value, long cas, long expiresAt) {
+            this.flags = flags;
+            this.value = value;
+            this.cas = cas;
+            this.expiresAt = expiresAt;
+        }
+
+        public int getFlags() {
+            return flags;
+        }
+
+        public byte[] getValue() {
+            return value;
+        }
+
+        public long getCas() {
+            return cas;
+        }
+    }
+
+    private final long maxBytes;
+    private final int maxItemSize;
+    private final LinkedHashMap<String, Item> items = new LinkedHashMap<String, Item>(16, 0.75f, true);
+
+    private long bytes;
+    private long nextCas = 1;
+    private long timeOffsetMillis;
+
+    private long getHits;
+    private long getMisses;
+    private long cmdGet;
+    private long cmdSet;
+    private long evictions;
+
+    /**
+     * @param maxBytes    the memory limit, the sum of all key, value and item
+     *                    overhead sizes
+     * @param maxItemSize the size of the largest value that can be stored
+     */
+    public MemcachedStore(long maxBytes, int maxItemSize) {
+        this.maxBytes = maxBytes;
+        this.maxItemSize = maxItemSize;
+    }
+
+    public synchronized Item get(String key) {
+        cmdGet++;
+        Item item = getLive(key);
+        if (item == null) {
+            getMisses++;
+        } else {
+            getHits++;
+        }
+        return item;
+    }
+
+    public synchronized StoreResult store(StoreMode mode, String key, int flags, int exp, byte[] value, long cas) {
+        cmdSet++;
+        Item current = getLive(key);
+        switch (mode) {
+        case ADD:
+            if (current != null) {
+                return StoreResult.NOT_STORED;
+            }
+            break;
+        case REPLACE:
+            if (current == null) {
+                return StoreResult.NOT_STORED;
+            }
+            break;
+        case APPEND:
+        case PREPEND:
+            if (current == null) {
+                return StoreResult.NOT_STORED;
+            }
+            byte[] combined = new byte[current.value.length + value.length];
+            byte[] first = mode == StoreMode.APPEND ? current.value : value;
+            byte[] second = mode == StoreMode.APPEND ? value : current.value;
+            System.arraycopy(first, 0, combined, 0, first.length);
+            System.arraycopy(second, 0, combined, first.length, second.length);
+            return put(key, new Item(current.flags, combined, nextCas++, current.expiresAt));
+        case CAS:
+            if (current == null) {
+                return StoreResult.NOT_FOUND;
+            }
+            if (current.cas != cas) {
+                return StoreResult.EXISTS;
+            }
+            break;
+        default:
+            if (cas != 0 && (current == null || current.cas != cas)) {
+                // the binary protocol expresses cas as a set with a CAS identifier
+                return current == null ? StoreResult.NOT_FOUND : StoreResult.EXISTS;
+            }
+        }
+        return put(key, new Item(flags, value, nextCas++, expiresAt(exp)));
+    }
+
+    public synchronized boolean delete(String key) {
+        return getLive(key) != null && remove(key) != null;
+    }
+
+    /**
+     * Increments or decrements the decimal number stored under the given key
+     * as an unsigned 64 bit integer. Increments wrap around, decrements stop
+     * at zero.
+     * 
+     * @param initial the value to store if the key does not exist, or
+     *                <code>null</code> to leave missing keys missing
+     * @return        the updated item, or <code>null</code> if the key does
+     *                not exist and no initial value was given
+     * @throws NumberFormatException if the stored value is not a number
+     */
+    public synchronized Item mutate(String key, long delta, boolean increment, Long initial, int exp) {
+        Item current = getLive(key);
+        if (current == null) {
+            if (initial == null) {
+                return null;
+            }
+            Item item = new Item(0, toUnsignedString(BigInteger.valueOf(initial)).getBytes(), nextCas++, expiresAt(exp));
+            put(key, item);
+            return item;
+        }
+
+        BigInteger value = new BigInteger(new String(current.value).trim());
+        BigInteger by = toUnsigned(delta);
+        if (increment) {
+            value = value.add(by).mod(MAX_UNSIGNED_LONG);
+        } else {
+            value = value.subtract(by).max(BigInteger.ZERO);
+        }
+        Item item = new Item(current.flags, value.toString().getBytes(), nextCas++, current.expiresAt);
+        put(key, item);
+        return item;
+    }
+
+    public synchronized boolean touch(String key, int exp) {
+        Item current = getLive(key);
+        if (current == null) {
+            return false;
+        }
+        items.put(key, new Item(current.flags, current.value, current.cas, expiresAt(exp)));
+        return true;
+    }
+
+    public synchronized void flush() {
+        items.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the statistics reported by the <code>stats</code> command.
+     */
+    public synchronized Map<String, String> getStats() {
+        Map<String, String> stats = new LinkedHashMap<String, String>();
+        stats.put("version", EmbeddedMemcachedServer.VERSION);
+        stats.put("curr_items", String.valueOf(items.size()));
+        stats.put("bytes", String.valueOf(bytes));
+        stats.put("limit_maxbytes", String.valueOf(maxBytes));
+        stats.put("cmd_get", String.valueOf(cmdGet));
+        stats.put("cmd_set", String.valueOf(cmdSet));
+        stats.put("get_hits", String.valueOf(getHits));
+        stats.put("get_misses", String.valueOf(getMisses));
+        stats.put("evictions", String.valueOf(evictions));
+        return stats;
+    }
+
+    /**
+     * Moves the clock of the store forward, expiring items as if the given
+     * time had passed.
+     */
+    public synchronized void advanceTime(long duration, TimeUnit unit) {
+        timeOffsetMillis += unit.toMillis(duration);
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis() + timeOffsetMillis;
+    }
+
+    private Item getLive(String key) {
+        Item item = items.get(key);
+        if (item != null && item.expiresAt != 0 && item.expiresAt <= currentTimeMillis()) {
+            remove(key);
+            return null;
+        }
+        return item;
+    }
+
+    private StoreResult put(String key, Item item) {
+        if (item.value.length > maxItemSize) {
+            return StoreResult.TOO_LARGE;
+        }
+        remove(key);
+        items.put(key, item);
+        bytes += sizeOf(key, item);
+
+        Iterator<Map.Entry<String, Item>> eldest = items.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Item> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                break;
+            }
+            bytes -= sizeOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+        return StoreResult.STORED;
+    }
+
+    private Item remove(String key) {
+        Item item = items.remove(key);
+        if (item != null) {
+            bytes -= sizeOf(key, item);
+        }
+        return item;
+    }
+
+    private long expiresAt(int exp) {
+        if (exp == 0) {
+            return 0;
+        }
+        if (exp < 0) {
+            return currentTimeMillis();
+        }
+        if (exp <= MAX_RELATIVE_EXPIRATION) {
+            return currentTimeMillis() + exp * 1000L;
+        }
+        return exp * 1000L;
+    }
+
+    private static long sizeOf(String key, Item item) {
+        return key.length() + item.value.length + ITEM_OVERHEAD;
+    }
+
+    private static BigInteger toUnsigned(long l) {
+        BigInteger value = BigInteger.valueOf(l);
+        return l < 0 ? value.add(MAX_UNSIGNED_LONG) : value;
+    }
+
+    private static String toUnsignedString(BigInteger value) {
+        return (value.signum() < 0 ? value.add(MAX_UNSIGNED_LONG) : value).toString();
+    }
+}
@@ -0,0 +1,170 @@
+package com.googlecode.hibernate.memcached.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import com.googlecode.hibernate.memcached.server.EmbeddedMemcachedServer.Failure;
+import com.googlecode.hibernate.memcached.server.MemcachedStore.Item;
+import com.googlecode.hibernate.memcached.server.MemcachedStore.StoreMode;
+import com.googlecode.hibernate.memcached.server.MemcachedStore.StoreResult;
+
+/**
+ * Serves a connection using the memcached text protocol.
+ */
+class TextProtocolHandler {
+
+    private static final String CHARSET = "ISO-8859-1";
+
+    private final EmbeddedMemcachedServer server;
+    private final MemcachedStore store;
+    private final DataInputStream in;
+    private final OutputStream out;
+
+    TextProtocolHandler(EmbeddedMemcachedServer server, InputStream in, OutputStream out) {
+        this.server = server;
+        this.store = server.getStore();
+        this.in = new DataInputStream(in);
+        this.out = out;
+    }
+
+    void run() throws IOException {
+        String line;
+        while ((line = readLine()) != null) {
+            String[] tokens = line.trim().split(" +");
+            String command = tokens[0];
+
+            // read the data block of storage commands before anything else
+            byte[] data = null;
+            if (isStorageCommand(command)) {
+                if (tokens.length < 5) {
+                    write("CLIENT_ERROR bad command line format");
+                    flush();
+                    continue;
+                }
+                data = new byte[Integer.parseInt(tokens[4])];
+                in.readFully(data);
+                readLine();
+            }
+
+            Failure failure = server.nextFailure();
+            if (failure == Failure.DISCONNECT) {
+                return;
+            } else if (failure == Failure.HANG) {
+                continue;
+            } else if (failure == Failure.ERROR) {
+                write("SERVER_ERROR injected failure");
+                flush();
+                continue;
+            }
+
+            if ("quit".equals(command)) {
+                return;
+            }
+            boolean noreply = "noreply".equals(tokens[tokens.length - 1]);
+            String response = execute(command, tokens, data);
+            if (response != null && !noreply) {
+                write(response);
+            }
+            flush();
+        }
+    }
+
+    private String execute(String command, String[] tokens, byte[] data) throws IOException {
+        try {
+            if ("get".equals(command) || "gets".equals(command)) {
+                boolean withCas = "gets".equals(command);
+                for (int i = 1; i < tokens.length; i++) {
+                    Item item = store.get(tokens[i]);
+                    if (item != null) {
+                        write("VALUE " + tokens[i] + " " + item.getFlags() + " " + item.getValue().length
+                                + (withCas ? " " + item.getCas() : ""));
+                        out.write(item.getValue());
+                        write("");
+                    }
+                }
+                return "END";
+            }
+            if (isStorageCommand(command)) {
+                String key = tokens[1];
+                int flags = (int) Long.parseLong(tokens[2]);
+                int exp = Integer.parseInt(tokens[3]);
+                StoreMode mode = StoreMode.valueOf(command.toUpperCase());
+                long cas = mode == StoreMode.CAS ? Long.parseLong(tokens[5]) : 0;
+                StoreResult result = store.store(mode, key, flags, exp, data, cas);
+                if (result == StoreResult.TOO_LARGE) {
+                    return "SERVER_ERROR object too large for cache";
+                }
+                return result.name();
+            }
+            if ("delete".equals(command)) {
+                return store.delete(tokens[1]) ? "DELETED" : "NOT_FOUND";
+            }
+            if ("incr".equals(command) || "decr".equals(command)) {
+                try {
+                    Item item = store.mutate(tokens[1], Long.parseLong(tokens[2]), "incr".equals(command), null, 0);
+                    return item == null ? "NOT_FOUND" : new String(item.getValue(), CHARSET);
+                } catch (NumberFormatException e) {
+                    return "CLIENT_ERROR cannot increment or decrement non-numeric value";
+                }
+            }
+            if ("touch".equals(command)) {
+                return store.touch(tokens[1], Integer.parseInt(tokens[2])) ? "TOUCHED" : "NOT_FOUND";
+            }
+            if ("flush_all".equals(command)) {
+                store.flush();
+                return "OK";
+            }
+            if ("version".equals(command)) {
+                return "VERSION " + EmbeddedMemcachedServer.VERSION;
+            }
+            if ("verbosity".equals(command)) {
+                return "OK";
+            }
+            if ("stats".equals(command)) {
+                for (Map.Entry<String, String> stat : store.getStats().entrySet()) {
+                    write("STAT " + stat.getKey() + " " + stat.getValue());
+                }
+                return "END";
+            }
+            return "ERROR";
+        } catch (RuntimeException e) {
+            return "CLIENT_ERROR " + e;
+        }
+    }
+
+    private boolean isStorageCommand(String command) {
+        return "set".equals(command) || "add".equals(command) || "replace".equals(command)
+                || "append".equals(command) || "prepend".equals(command) || "cas".equals(command);
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, CHARSET);
+            }
+            line.write(b);
+        }
+        return null;
+    }
+
+    private void write(String line) throws IOException {
+        out.write(line.getBytes(CHARSET));
+        out.write('\r');
+        out.write('\n');
+    }
+
+    private void flush() throws IOException {
+        // pipelined requests are answered with a single write
+        if (in.available() == 0) {
+            out.flush();
+        }
+    }
+}